@@ -17,6 +17,7 @@
 package org.apache.calcite.adapter.enumerable;
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.JoinType;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function2;
@@ -29,6 +30,7 @@
 import org.apache.calcite.linq4j.tree.MethodDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.type.RelDataType;
@@ -269,6 +271,61 @@ static Expression enforce(final Type storageType,
     return e;
   }
 
+  /** Returns the maximum number of bytes that a memory-intensive operator
+   * may use before it spills to disk, or -1 if there is no limit.
+   *
+   * @see CalciteConnectionConfig#operatorMemoryBudget() */
+  public static long memoryBudget(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    if (config == null) {
+      return -1L;
+    }
+    return Math.max(config.operatorMemoryBudget(), -1L);
+  }
+
+  /** Returns the number of threads that an operator may use; 1 if operators
+   * should run on the calling thread.
+   *
+   * @see CalciteConnectionConfig#parallelism() */
+  public static int parallelism(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    if (config == null) {
+      return 1;
+    }
+    return Math.max(config.parallelism(), 1);
+  }
+
+  /** Returns whether operators should ask their inputs for rows in
+   * {@link JavaRowFormat#CUSTOM} format, whose NOT NULL numeric columns are
+   * not boxed.
+   *
+   * @see CalciteConnectionConfig#primitiveRows() */
+  public static boolean primitiveRows(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    return config != null && config.primitiveRows();
+  }
+
+  /** Returns whether generated code should be compiled on a background
+   * thread, while the plan is interpreted.
+   *
+   * @see CalciteConnectionConfig#asyncCompilation() */
+  public static boolean asyncCompilation(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    return config != null && config.asyncCompilation();
+  }
+
+  /** Returns whether rows of a given type can be created in
+   * {@link JavaRowFormat#CUSTOM} format by calling the constructor of a
+   * generated class. */
+  static boolean fitsCustomFormat(RelDataType rowType) {
+    return rowType.getFieldCount()
+        <= EnumerableRelImplementor.MAX_CONSTRUCTOR_FIELDS;
+  }
+
   /** Transforms a JoinRelType to Linq4j JoinType. **/
   static JoinType toLinq4jJoinType(JoinRelType joinRelType) {
     switch (joinRelType) {
@@ -33,10 +33,12 @@
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexInputRef;
@@ -109,7 +111,12 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final JavaTypeFactory typeFactory = implementor.getTypeFactory();
     final BlockBuilder builder = new BlockBuilder();
     final EnumerableRel child = (EnumerableRel) getInput();
-    final Result result = implementor.visitChild(this, 0, child, pref);
+    final boolean primitiveRows = EnumUtils.primitiveRows(getCluster());
+    final Result result =
+        implementor.visitChild(this, 0, child,
+            primitiveRows && EnumUtils.fitsCustomFormat(child.getRowType())
+                ? Prefer.CUSTOM_NICE
+                : pref);
     Expression childExp =
         builder.append(
             "child",
@@ -178,14 +185,36 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     // return child
     //     .distinct(equalityComparer);
 
-    final PhysType inputPhysType = result.physType;
+    final long memoryBudget = EnumUtils.memoryBudget(getCluster());
+    final boolean sortedInput = isInputSorted();
+    final PhysType inputPhysType;
+    if (memoryBudget >= 0
+        && !sortedInput
+        && result.physType.getFormat() == JavaRowFormat.CUSTOM) {
+      // Rows may be spilled to disk, and instances of a custom class may not
+      // be serializable, so convert them to arrays.
+      inputPhysType =
+          PhysTypeImpl.of(typeFactory, child.getRowType(), JavaRowFormat.ARRAY);
+      childExp =
+          builder.append("child",
+              result.physType.convertTo(childExp, inputPhysType.getFormat()));
+    } else {
+      inputPhysType = result.physType;
+    }
 
     ParameterExpression parameter =
         Expressions.parameter(inputPhysType.getJavaRowType(), "a0");
 
+    // A key of several fields is a list, unless primitive rows are enabled,
+    // in which case it is an instance of a generated class whose equals and
+    // hashCode methods do not box.
     final PhysType keyPhysType =
         inputPhysType.project(groupSet.asList(), getGroupType() != Group.SIMPLE,
-            JavaRowFormat.LIST);
+            primitiveRows && getGroupType() == Group.SIMPLE
+                && groupSet.cardinality()
+                    <= EnumerableRelImplementor.MAX_CONSTRUCTOR_FIELDS
+                ? JavaRowFormat.CUSTOM
+                : JavaRowFormat.LIST);
     final int groupCount = getGroupCount();
 
     final List<AggImpState> aggs = new ArrayList<>(aggCalls.size());
@@ -405,6 +434,7 @@ public RexToLixTranslator rowTranslator() {
                           BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_SINGLE_GROUP_RESULT_SELECTOR.method,
                           resultSelector)))));
     } else if (aggCalls.isEmpty()
+        && !sortedInput
         && groupSet.equals(
             ImmutableBitSet.range(child.getRowType().getFieldCount()))) {
       builder.add(
@@ -427,23 +457,81 @@ public RexToLixTranslator rowTranslator() {
                   resultBlock.toBlock(),
                   key_,
                   acc_));
+      final Expressions.FluentList<Expression> arguments =
+          Expressions.list(keySelector_,
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                  resultSelector_));
       builder.add(
           Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                          resultSelector_))
-                      .appendIfNotNull(keyPhysType.comparer()))));
+              groupBy(childExp, arguments, keyPhysType.comparer(),
+                  sortedInput, memoryBudget,
+                  EnumUtils.parallelism(getCluster()))));
     }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Generates a call to the method that groups the input, given the key
+   * selector and the accumulator functions, choosing a streaming, spilling,
+   * parallel or in-memory implementation. */
+  private static Expression groupBy(Expression childExp,
+      Expressions.FluentList<Expression> arguments, Expression comparer,
+      boolean sortedInput, long memoryBudget, int parallelism) {
+    final Expression comparer_ =
+        Util.first(comparer, Expressions.constant(null));
+    if (sortedInput) {
+      // Rows with equal keys are adjacent, so we can emit each group as soon
+      // as the key changes, and hold one accumulator at a time.
+      return Expressions.call(BuiltInMethod.SORTED_GROUP_BY.method,
+          Expressions.<Expression>list(childExp)
+              .appendAll(arguments)
+              .append(comparer_));
+    } else if (memoryBudget >= 0) {
+      return Expressions.call(childExp,
+          BuiltInMethod.SPILLING_GROUP_BY.method,
+          arguments.append(comparer_)
+              .append(Expressions.constant(memoryBudget)));
+    } else if (parallelism > 1) {
+      // Each thread accumulates the groups whose keys hash to its partition.
+      // The parallel implementation does not spill, so a memory budget takes
+      // precedence.
+      return Expressions.call(BuiltInMethod.PARALLEL_GROUP_BY.method,
+          Expressions.<Expression>list(childExp)
+              .appendAll(arguments)
+              .append(comparer_)
+              .append(Expressions.constant(parallelism)));
+    } else {
+      return Expressions.call(childExp, BuiltInMethod.GROUP_BY2.method,
+          arguments.appendIfNotNull(comparer));
+    }
+  }
+
+  /** Returns whether the input is sorted on the group keys, in some order
+   * and direction, so that rows with the same key are adjacent. */
+  boolean isInputSorted() {
+    if (getGroupType() != Group.SIMPLE || groupSet.isEmpty()) {
+      return false;
+    }
+    final RelMetadataQuery mq = getCluster().getMetadataQuery();
+    final List<RelCollation> collations = mq.collations(getInput());
+    if (collations == null) {
+      return false;
+    }
+    final int groupCount = groupSet.cardinality();
+    for (RelCollation collation : collations) {
+      final List<Integer> keys = RelCollations.ordinals(collation);
+      if (keys.size() >= groupCount
+          && ImmutableBitSet.of(keys.subList(0, groupCount)).equals(groupSet)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static boolean hasOrderedCall(List<AggImpState> aggs) {
     for (AggImpState agg : aggs) {
       if (!agg.call.collation.equals(RelCollations.EMPTY)) {
@@ -112,12 +112,22 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final BlockBuilder builder = new BlockBuilder();
     final EnumerableRel child = (EnumerableRel) getInput();
 
+    // If primitive rows are enabled, ask for input rows as objects, and
+    // return objects unless the consumer needs arrays.
+    final boolean primitiveRows = EnumUtils.primitiveRows(getCluster());
     final Result result =
-        implementor.visitChild(this, 0, child, pref);
+        implementor.visitChild(this, 0, child,
+            primitiveRows && EnumUtils.fitsCustomFormat(child.getRowType())
+                ? Prefer.CUSTOM_NICE
+                : pref);
 
     final PhysType physType =
         PhysTypeImpl.of(
-            typeFactory, getRowType(), pref.prefer(result.format));
+            typeFactory, getRowType(),
+            pref.prefer(
+                primitiveRows && EnumUtils.fitsCustomFormat(getRowType())
+                    ? JavaRowFormat.CUSTOM
+                    : result.format));
 
     // final Enumerable<Employee> inputEnumerable = <<child adapter>>;
     // return new Enumerable<IntString>() {
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.util.BuiltInMethod;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>Reads its input on a separate thread, and passes the rows to its
+ * consumer through a bounded buffer, so that the operators below the
+ * exchange run concurrently with the operators above it. Rows are returned
+ * in the order they are read, so the exchange preserves the collation of
+ * its input.
+ *
+ * <p>All rows are processed within one JVM, so every distribution is
+ * satisfied trivially. */
+public class EnumerableExchange extends Exchange implements EnumerableRel {
+  /** Maximum number of chunks of rows that the producer may read ahead of
+   * the consumer. */
+  static final int BUFFER_SIZE = 16;
+
+  /** Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableExchange. */
+  public static EnumerableExchange create(RelNode input,
+      RelDistribution distribution) {
+    final RelOptCluster cluster = input.getCluster();
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    final RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution);
+    return new EnumerableExchange(cluster, traitSet, input, distribution);
+  }
+
+  @Override public Exchange copy(RelTraitSet traitSet, RelNode newInput,
+      RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final Expression childExp =
+        builder.append("child", result.block);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.EXCHANGE.method, childExp,
+                Expressions.constant(BUFFER_SIZE))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableExchange.java
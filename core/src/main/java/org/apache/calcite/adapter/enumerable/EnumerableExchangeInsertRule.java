@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rule that places an {@link EnumerableExchange} on each input of an
+ * {@link EnumerableAggregate} or {@link EnumerableHashJoin}, so that the
+ * input runs on a separate thread from the operator that consumes it.
+ *
+ * <p>The rule only fires if operators may use more than one thread (see
+ * {@link EnumUtils#parallelism}), and only on inputs that are expected to
+ * return at least {@link #MIN_ROW_COUNT} rows; for fewer rows, handing rows
+ * from one thread to another costs more than it saves.
+ *
+ * <p>It is applied to the physical plan, after the main planning phase; see
+ * {@link org.apache.calcite.tools.Programs#exchange}.
+ */
+class EnumerableExchangeInsertRule extends RelOptRule {
+  /** Estimated number of rows below which an input is not worth running on
+   * a separate thread. */
+  static final double MIN_ROW_COUNT = 100d;
+
+  EnumerableExchangeInsertRule(Class<? extends EnumerableRel> clazz,
+      String description) {
+    super(operand(clazz, any()), description);
+  }
+
+  @Override public boolean matches(RelOptRuleCall call) {
+    return EnumUtils.parallelism(call.rel(0).getCluster()) > 1;
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final RelNode rel = call.rel(0);
+    final RelMetadataQuery mq = call.getMetadataQuery();
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (Ord<RelNode> input : Ord.zip(rel.getInputs())) {
+      if (needsExchange(input.e, mq)) {
+        inputs.add(
+            EnumerableExchange.create(input.e, distribution(rel, input.i)));
+        changed = true;
+      } else {
+        inputs.add(input.e);
+      }
+    }
+    if (changed) {
+      call.transformTo(rel.copy(rel.getTraitSet(), inputs));
+    }
+  }
+
+  /** Returns the distribution that an operator would require of an input if
+   * it were partitioned across machines: by hash of the group keys of an
+   * aggregate, or the join keys of a join. */
+  private static RelDistribution distribution(RelNode rel, int ordinal) {
+    final List<Integer> keys;
+    if (rel instanceof EnumerableHashJoin) {
+      final JoinInfo joinInfo = ((EnumerableHashJoin) rel).analyzeCondition();
+      keys = ordinal == 0 ? joinInfo.leftKeys : joinInfo.rightKeys;
+    } else {
+      keys = ((EnumerableAggregate) rel).getGroupSet().asList();
+    }
+    return keys.isEmpty()
+        ? RelDistributions.SINGLETON
+        : RelDistributions.hash(keys);
+  }
+
+  private static boolean needsExchange(RelNode input, RelMetadataQuery mq) {
+    final RelNode rel = input instanceof HepRelVertex
+        ? ((HepRelVertex) input).getCurrentRel()
+        : input;
+    if (rel instanceof EnumerableExchange) {
+      return false;
+    }
+    final Double rowCount = mq.getRowCount(input);
+    return rowCount != null && rowCount >= MIN_ROW_COUNT;
+  }
+}
+
+// End EnumerableExchangeInsertRule.java
@@ -223,30 +223,44 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
             left, right, leftResult.physType, rightResult.physType, nonEquiCondition);
       }
     }
-    return implementor.result(
-        physType,
-        builder.append(
-            Expressions.call(
-                leftExpression,
-                BuiltInMethod.HASH_JOIN.method,
-                Expressions.list(
-                    rightExpression,
-                    leftResult.physType.generateAccessor(joinInfo.leftKeys),
-                    rightResult.physType.generateAccessor(joinInfo.rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
-                    .append(
-                        Util.first(keyPhysType.comparer(),
-                            Expressions.constant(null)))
-                    .append(
-                        Expressions.constant(joinType.generatesNullsOnLeft()))
-                    .append(
-                        Expressions.constant(
-                            joinType.generatesNullsOnRight()))
-                    .append(predicate)))
-            .toBlock());
+    final Expressions.FluentList<Expression> arguments =
+        Expressions.list(
+            rightExpression,
+            leftResult.physType.generateAccessor(joinInfo.leftKeys),
+            rightResult.physType.generateAccessor(joinInfo.rightKeys),
+            EnumUtils.joinSelector(joinType,
+                physType,
+                ImmutableList.of(
+                    leftResult.physType, rightResult.physType)))
+            .append(
+                Util.first(keyPhysType.comparer(),
+                    Expressions.constant(null)))
+            .append(
+                Expressions.constant(joinType.generatesNullsOnLeft()))
+            .append(
+                Expressions.constant(
+                    joinType.generatesNullsOnRight()))
+            .append(predicate);
+    final long memoryBudget = EnumUtils.memoryBudget(getCluster());
+    final int parallelism = EnumUtils.parallelism(getCluster());
+    final Expression join;
+    if (memoryBudget >= 0) {
+      join = Expressions.call(leftExpression,
+          BuiltInMethod.SPILLING_HASH_JOIN.method,
+          arguments.append(Expressions.constant(memoryBudget)));
+    } else if (parallelism > 1) {
+      // Each thread joins the rows whose keys hash to its partition. The
+      // parallel implementation does not spill, so a memory budget takes
+      // precedence.
+      join = Expressions.call(BuiltInMethod.PARALLEL_HASH_JOIN.method,
+          Expressions.<Expression>list(leftExpression)
+              .appendAll(arguments)
+              .append(Expressions.constant(parallelism)));
+    } else {
+      join = Expressions.call(leftExpression, BuiltInMethod.HASH_JOIN.method,
+          arguments);
+    }
+    return implementor.result(physType, builder.append(join).toBlock());
   }
 }
 
@@ -17,11 +17,14 @@
 package org.apache.calcite.adapter.enumerable;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.Helper;
 import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.interpreter.Compiler;
 import org.apache.calcite.interpreter.InterpretableConvention;
 import org.apache.calcite.interpreter.InterpretableRel;
+import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.interpreter.JaninoRexCompiler;
 import org.apache.calcite.interpreter.Node;
 import org.apache.calcite.interpreter.Row;
 import org.apache.calcite.interpreter.Sink;
@@ -56,9 +59,15 @@
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Relational expression that converts an enumerable input to interpretable
@@ -102,6 +111,20 @@ public Node implement(final InterpreterImplementor implementor) {
           .maximumSize(CalciteSystemProperty.BINDABLE_CACHE_MAX_SIZE.value())
           .build();
 
+  private static final AtomicInteger COMPILER_THREAD_COUNTER =
+      new AtomicInteger();
+
+  /** Threads on which generated code is compiled if
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#ASYNC_COMPILATION}
+   * is set. */
+  private static final ExecutorService COMPILER_EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r,
+            "calcite-compiler-" + COMPILER_THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
   public static Bindable toBindable(Map<String, Object> parameters,
       CalcitePrepare.SparkHandler spark, EnumerableRel rel,
       EnumerableRel.Prefer prefer) {
@@ -121,6 +144,8 @@ public static Bindable toBindable(Map<String, Object> parameters,
     try {
       if (spark != null && spark.enabled()) {
         return spark.compile(expr, s);
+      } else if (EnumUtils.asyncCompilation(rel.getCluster())) {
+        return getBindableAsync(expr, s, rel);
       } else {
         return getBindable(expr, s, rel.getRowType().getFieldCount());
       }
@@ -130,6 +155,32 @@ public static Bindable toBindable(Map<String, Object> parameters,
     }
   }
 
+  /** Returns a Bindable that interprets a relational expression until its
+   * generated code has been compiled on a background thread; or the compiled
+   * Bindable, if it is already in the cache. */
+  private static Bindable getBindableAsync(ClassDeclaration expr, String s,
+      EnumerableRel rel)
+      throws CompileException, IOException, ExecutionException {
+    final Bindable cached = BINDABLE_CACHE.getIfPresent(s);
+    if (cached != null) {
+      return cached;
+    }
+    final int fieldCount = rel.getRowType().getFieldCount();
+    final Future<Bindable> future =
+        COMPILER_EXECUTOR.submit(() -> getBindable(expr, s, fieldCount));
+    if (fieldCount == 1) {
+      // The compiled Bindable is Typed, and its element type is the Java
+      // class of the single column
+      final JavaTypeFactory typeFactory =
+          (JavaTypeFactory) rel.getCluster().getTypeFactory();
+      final Type elementType =
+          PhysTypeImpl.of(typeFactory, rel.getRowType(), JavaRowFormat.SCALAR)
+              .getJavaRowType();
+      return new AsyncScalarBindable(rel, s, future, elementType);
+    }
+    return new AsyncArrayBindable(rel, s, future);
+  }
+
   static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       throws CompileException, IOException, ExecutionException {
     ICompilerFactory compilerFactory;
@@ -139,27 +190,45 @@ static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       throw new IllegalStateException(
           "Unable to instantiate java compiler", e);
     }
-    final IClassBodyEvaluator cbe = compilerFactory.newClassBodyEvaluator();
-    cbe.setClassName(expr.name);
-    cbe.setExtendedClass(Utilities.class);
-    cbe.setImplementedInterfaces(
-        fieldCount == 1
-            ? new Class[] {Bindable.class, Typed.class}
-            : new Class[] {ArrayBindable.class});
-    cbe.setParentClassLoader(EnumerableInterpretable.class.getClassLoader());
-    if (CalciteSystemProperty.DEBUG.value()) {
-      // Add line numbers to the generated janino class
-      cbe.setDebuggingInformation(true, true, true);
+    final Class[] interfaces = fieldCount == 1
+        ? new Class[] {Bindable.class, Typed.class}
+        : new Class[] {ArrayBindable.class};
+    final ClassLoader parentClassLoader =
+        EnumerableInterpretable.class.getClassLoader();
+    final boolean debug = CalciteSystemProperty.DEBUG.value();
+    final PersistentBindableCache persistentCache =
+        PersistentBindableCache.instance();
+    final Callable<Bindable> creator;
+    if (persistentCache != null) {
+      creator = () -> persistentCache.get(expr.name, s, Utilities.class,
+          interfaces, parentClassLoader, debug);
+    } else {
+      final IClassBodyEvaluator cbe = compilerFactory.newClassBodyEvaluator();
+      cbe.setClassName(expr.name);
+      cbe.setExtendedClass(Utilities.class);
+      cbe.setImplementedInterfaces(interfaces);
+      cbe.setParentClassLoader(parentClassLoader);
+      if (debug) {
+        // Add line numbers to the generated janino class
+        cbe.setDebuggingInformation(true, true, true);
+      }
+      creator = () -> (Bindable) cbe.createInstance(new StringReader(s));
     }
 
     if (CalciteSystemProperty.BINDABLE_CACHE_MAX_SIZE.value() != 0) {
       StaticFieldDetector detector = new StaticFieldDetector();
       expr.accept(detector);
       if (!detector.containsStaticField) {
-        return BINDABLE_CACHE.get(s, () -> (Bindable) cbe.createInstance(new StringReader(s)));
+        return BINDABLE_CACHE.get(s, creator);
       }
     }
-    return (Bindable) cbe.createInstance(new StringReader(s));
+    try {
+      return creator.call();
+    } catch (CompileException | IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ExecutionException(e);
+    }
   }
 
   /**
@@ -174,6 +243,103 @@ static class StaticFieldDetector extends VisitorImpl<Void> {
     }
   }
 
+  /** Bindable that interprets a relational expression while its generated
+   * code is being compiled, and runs the compiled code once it is ready.
+   *
+   * <p>If the interpreter cannot handle the relational expression, binding
+   * waits for the compiler.
+   *
+   * @param <T> Element type; rows are arrays if there is more than one
+   * field, otherwise scalars, as in the compiled code */
+  private abstract static class AsyncBindable<T> implements Bindable<T> {
+    private final EnumerableRel rel;
+    private final String code;
+    private final Future<Bindable> future;
+    /** Compiles the expressions of each Filter and Project once, rather than
+     * once per execution. */
+    private final JaninoRexCompiler scalarCompiler;
+    private volatile boolean interpretable = true;
+
+    AsyncBindable(EnumerableRel rel, String code, Future<Bindable> future) {
+      this.rel = rel;
+      this.code = code;
+      this.future = future;
+      this.scalarCompiler =
+          new JaninoRexCompiler(rel.getCluster().getRexBuilder(), true);
+    }
+
+    public Enumerable<T> bind(DataContext dataContext) {
+      if (!future.isDone() && interpretable) {
+        final Interpreter interpreter;
+        try {
+          // Interpreter optimizes the relational expression, which is not
+          // thread-safe
+          synchronized (this) {
+            interpreter = new Interpreter(dataContext, rel, scalarCompiler);
+          }
+        } catch (RuntimeException | AssertionError e) {
+          // The interpreter does not support an operator in the plan.
+          interpretable = false;
+          return compiled().bind(dataContext);
+        }
+        Hook.ASYNC_INTERPRET.run(rel);
+        //noinspection unchecked
+        return rel.getRowType().getFieldCount() == 1
+            ? (Enumerable<T>) interpreter.select(row -> row[0])
+            : (Enumerable<T>) interpreter;
+      }
+      //noinspection unchecked
+      return compiled().bind(dataContext);
+    }
+
+    /** Returns the compiled Bindable, waiting if necessary. */
+    private Bindable compiled() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw Helper.INSTANCE.wrap("Error while compiling generated Java code:\n"
+            + code, (Exception) e.getCause());
+      }
+    }
+  }
+
+  /** Bindable that interprets a relational expression with one field while
+   * its generated code is being compiled. */
+  private static class AsyncScalarBindable extends AsyncBindable<Object>
+      implements Typed {
+    private final Type elementType;
+
+    AsyncScalarBindable(EnumerableRel rel, String code,
+        Future<Bindable> future, Type elementType) {
+      super(rel, code, future);
+      this.elementType = elementType;
+    }
+
+    public Type getElementType() {
+      return elementType;
+    }
+  }
+
+  /** Bindable that interprets a relational expression with more than one
+   * field while its generated code is being compiled. */
+  private static class AsyncArrayBindable extends AsyncBindable<Object[]>
+      implements ArrayBindable {
+    AsyncArrayBindable(EnumerableRel rel, String code,
+        Future<Bindable> future) {
+      super(rel, code, future);
+    }
+
+    public Class<Object[]> getElementType() {
+      return Object[].class;
+    }
+  }
+
   /** Converts a bindable over scalar values into an array bindable, with each
    * row as an array of 1 element. */
   static ArrayBindable box(final Bindable bindable) {
@@ -125,7 +125,7 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     return implementor.result(physType, builder.toBlock());
   }
 
-  private static Expression getExpression(RexNode offset) {
+  static Expression getExpression(RexNode offset) {
     if (offset instanceof RexDynamicParam) {
       final RexDynamicParam param = (RexDynamicParam) offset;
       return Expressions.convert_(
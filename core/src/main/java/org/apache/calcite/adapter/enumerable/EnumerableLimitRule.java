@@ -36,7 +36,9 @@ class EnumerableLimitRule extends RelOptRule {
 
   @Override public void onMatch(RelOptRuleCall call) {
     final Sort sort = call.rel(0);
-    if (sort.offset == null && sort.fetch == null) {
+    if (sort.offset == null && sort.fetch == null
+        || sort instanceof EnumerableLimitSort) {
+      // An EnumerableLimitSort already applies its own offset and fetch.
       return;
     }
     RelNode input = sort.getInput();
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Sort} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}
+ * that has a {@code fetch} (and optionally an {@code offset}).
+ *
+ * <p>Rather than sorting the whole input and then discarding all but the
+ * first rows, as {@link EnumerableLimit} on top of {@link EnumerableSort}
+ * does, keeps a bounded heap of the {@code offset + fetch} smallest rows
+ * seen so far. This takes O(n log k) time and O(k) memory for an input of n
+ * rows, where k is {@code offset + fetch}. */
+public class EnumerableLimitSort extends Sort implements EnumerableRel {
+  /**
+   * Creates an EnumerableLimitSort.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableLimitSort(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelCollation collation, RexNode offset, RexNode fetch) {
+    super(cluster, traitSet, input, collation, offset, fetch);
+    assert getConvention() instanceof EnumerableConvention;
+    assert getConvention() == input.getConvention();
+    assert fetch != null;
+  }
+
+  /** Creates an EnumerableLimitSort. */
+  public static EnumerableLimitSort create(RelNode input,
+      RelCollation collation, RexNode offset, RexNode fetch) {
+    final RelOptCluster cluster = input.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replace(collation);
+    return new EnumerableLimitSort(cluster, traitSet, input, collation,
+        offset, fetch);
+  }
+
+  @Override public EnumerableLimitSort copy(RelTraitSet traitSet,
+      RelNode newInput, RelCollation newCollation, RexNode offset,
+      RexNode fetch) {
+    return new EnumerableLimitSort(getCluster(), traitSet, newInput,
+        newCollation, offset, fetch);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Each input row is compared with the largest row in a heap of size k,
+    // and perhaps inserted into the heap.
+    final double rowCount = mq.getRowCount(this);
+    final double inputRowCount = mq.getRowCount(getInput());
+    double k = inputRowCount;
+    if (fetch instanceof RexLiteral) {
+      k = RexLiteral.intValue(fetch);
+      if (offset instanceof RexLiteral) {
+        k += RexLiteral.intValue(offset);
+      }
+      k = Math.min(k, inputRowCount);
+    }
+    final double bytesPerRow = getRowType().getFieldCount() * 4;
+    final double cpu =
+        inputRowCount * Math.log(Math.max(k, 2d)) * bytesPerRow;
+    return planner.getCostFactory().makeCost(rowCount, cpu, 0);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final Expression childExp =
+        builder.append("child", result.block);
+
+    final PhysType inputPhysType = result.physType;
+    final Pair<Expression, Expression> pair =
+        inputPhysType.generateCollationKey(
+            collation.getFieldCollations());
+
+    final Expression comparator =
+        builder.appendIfNotNull("comparator", pair.right);
+    final Expression offsetExp = offset == null
+        ? Expressions.constant(0)
+        : EnumerableLimit.getExpression(offset);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(
+                BuiltInMethod.ORDER_BY_WITH_FETCH_AND_OFFSET.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                Util.first(comparator, Expressions.constant(null)),
+                offsetExp,
+                EnumerableLimit.getExpression(fetch))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableLimitSort.java
@@ -38,6 +38,7 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
@@ -52,7 +53,11 @@
 
 /** Implementation of {@link org.apache.calcite.rel.core.Join} in
  * {@link EnumerableConvention enumerable calling convention} using
- * a merge algorithm. */
+ * a merge algorithm.
+ *
+ * <p>Both inputs must be sorted on the join keys. Supports all join types;
+ * conditions other than the equi-join keys are evaluated on each pair of
+ * rows whose keys match. */
 public class EnumerableMergeJoin extends Join implements EnumerableRel {
   EnumerableMergeJoin(
       RelOptCluster cluster,
@@ -65,7 +70,12 @@ public class EnumerableMergeJoin extends Join implements EnumerableRel {
     super(cluster, traits, left, right, condition, variablesSet, joinType);
     final List<RelCollation> collations =
         traits.getTraits(RelCollationTraitDef.INSTANCE);
-    assert collations == null || RelCollations.contains(collations, joinInfo.leftKeys);
+    // Right and full joins are not sorted on the left keys; see
+    // RelMdCollation.mergeJoin
+    assert collations == null
+        || joinType == JoinRelType.RIGHT
+        || joinType == JoinRelType.FULL
+        || RelCollations.contains(collations, joinInfo.leftKeys);
   }
 
   @Deprecated // to be removed before 2.0
@@ -93,7 +103,8 @@ public static EnumerableMergeJoin create(RelNode left, RelNode right,
     if (traitSet.isEnabled(RelCollationTraitDef.INSTANCE)) {
       final RelMetadataQuery mq = cluster.getMetadataQuery();
       final List<RelCollation> collations =
-          RelMdCollation.mergeJoin(mq, left, right, leftKeys, rightKeys);
+          RelMdCollation.mergeJoin(mq, left, right, leftKeys, rightKeys,
+              joinType);
       traitSet = traitSet.replace(collations);
     }
     return new EnumerableMergeJoin(cluster, traitSet, left, right, condition,
@@ -152,6 +163,16 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
           Types.castIfNecessary(keyClass,
               rightResult.physType.fieldReference(right_, pair.right)));
     }
+    Expression predicate = Expressions.constant(null);
+    if (!joinInfo.nonEquiConditions.isEmpty()) {
+      final RexNode nonEquiCondition = RexUtil.composeConjunction(
+          getCluster().getRexBuilder(), joinInfo.nonEquiConditions, true);
+      if (nonEquiCondition != null) {
+        predicate = EnumUtils.generatePredicate(implementor,
+            getCluster().getRexBuilder(), left, right, leftResult.physType,
+            rightResult.physType, nonEquiCondition);
+      }
+    }
     final PhysType leftKeyPhysType =
         leftResult.physType.project(joinInfo.leftKeys, JavaRowFormat.LIST);
     final PhysType rightKeyPhysType =
@@ -160,7 +181,7 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         physType,
         builder.append(
             Expressions.call(
-                BuiltInMethod.MERGE_JOIN.method,
+                BuiltInMethod.MERGE_JOIN2.method,
                 Expressions.list(
                     leftExpression,
                     rightExpression,
@@ -168,14 +189,13 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                         leftKeyPhysType.record(leftExpressions), left_),
                     Expressions.lambda(
                         rightKeyPhysType.record(rightExpressions), right_),
+                    predicate,
                     EnumUtils.joinSelector(joinType,
                         physType,
                         ImmutableList.of(
                             leftResult.physType, rightResult.physType)),
                     Expressions.constant(
-                        joinType.generatesNullsOnLeft()),
-                    Expressions.constant(
-                        joinType.generatesNullsOnRight())))).toBlock());
+                        EnumUtils.toLinq4jJoinType(joinType))))).toBlock());
   }
 }
 
@@ -31,6 +31,8 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
 
+import com.google.common.collect.ImmutableList;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -51,11 +53,6 @@ class EnumerableMergeJoinRule extends ConverterRule {
   @Override public RelNode convert(RelNode rel) {
     LogicalJoin join = (LogicalJoin) rel;
     final JoinInfo info = join.analyzeCondition();
-    if (join.getJoinType() != JoinRelType.INNER) {
-      // EnumerableMergeJoin only supports inner join.
-      // (It supports non-equi join, using a post-filter; see below.)
-      return null;
-    }
     if (info.pairs().size() == 0) {
       // EnumerableMergeJoin CAN support cartesian join, but disable it for now.
       return null;
@@ -88,23 +85,54 @@ class EnumerableMergeJoinRule extends ConverterRule {
     RelTraitSet traitSet = join.getTraitSet()
         .replace(EnumerableConvention.INSTANCE);
     if (!collations.isEmpty()) {
-      traitSet = traitSet.replace(collations);
+      traitSet = traitSet.replace(outputCollations(collations, join.getJoinType()));
     }
-    newRel = new EnumerableMergeJoin(cluster,
-        traitSet,
-        left,
-        right,
-        info.getEquiCondition(left, right, cluster.getRexBuilder()),
-        join.getVariablesSet(),
-        join.getJoinType());
-    if (!info.isEqui()) {
+    if (join.getJoinType() == JoinRelType.INNER && !info.isEqui()) {
+      // For an inner join, apply the non-equi conditions in a post-filter.
+      newRel = new EnumerableMergeJoin(cluster,
+          traitSet,
+          left,
+          right,
+          info.getEquiCondition(left, right, cluster.getRexBuilder()),
+          join.getVariablesSet(),
+          join.getJoinType());
       RexNode nonEqui = RexUtil.composeConjunction(cluster.getRexBuilder(),
           info.nonEquiConditions);
       newRel = new EnumerableFilter(cluster, newRel.getTraitSet(),
           newRel, nonEqui);
+    } else {
+      // For other join types, a row that fails the non-equi conditions is
+      // unmatched, so the join must evaluate them itself.
+      newRel = new EnumerableMergeJoin(cluster,
+          traitSet,
+          left,
+          right,
+          join.getCondition(),
+          join.getVariablesSet(),
+          join.getJoinType());
     }
     return newRel;
   }
+
+  /** Returns the collations of the output of a merge join, given the
+   * collations of its left and right inputs (the latter shifted to the
+   * output's field ordinals). Consistent with
+   * {@link org.apache.calcite.rel.metadata.RelMdCollation#mergeJoin}. */
+  private static List<RelCollation> outputCollations(
+      List<RelCollation> collations, JoinRelType joinType) {
+    switch (joinType) {
+    case INNER:
+      return collations;
+    case LEFT:
+    case SEMI:
+    case ANTI:
+      return collations.subList(0, 1);
+    case RIGHT:
+      return collations.subList(1, 2);
+    default:
+      return ImmutableList.of(RelCollations.EMPTY);
+    }
+  }
 }
 
 // End EnumerableMergeJoinRule.java
@@ -73,6 +73,12 @@
  * operators of {@link EnumerableConvention} calling convention.
  */
 public class EnumerableRelImplementor extends JavaRelImplementor {
+  /** Maximum number of fields of a synthetic record class that has a
+   * constructor with a parameter for each field. A JVM method may have at
+   * most 255 parameter slots, including {@code this}, and a {@code long} or
+   * {@code double} parameter occupies two slots. */
+  public static final int MAX_CONSTRUCTOR_FIELDS = 127;
+
   public final Map<String, Object> map;
   private final Map<String, RexToLixTranslator.InputGetter> corrVars =
       new HashMap<>();
@@ -203,6 +209,31 @@ private ClassDeclaration classDecl(
             parameters,
             blockBuilder.toBlock()));
 
+    // If there are not too many fields, a constructor that sets every field,
+    // so that JavaRowFormat.CUSTOM can create a record in one expression:
+    //   Foo(T0 f0, ...) { this.f0 = f0; ... }
+    final int fieldCount = type.getRecordFields().size();
+    if (fieldCount > 0 && fieldCount <= MAX_CONSTRUCTOR_FIELDS) {
+      final List<ParameterExpression> fieldParameters = new ArrayList<>();
+      final BlockBuilder fieldBlockBuilder = new BlockBuilder();
+      for (Types.RecordField field : type.getRecordFields()) {
+        final ParameterExpression parameter =
+            Expressions.parameter(field.getType(), field.getName());
+        fieldParameters.add(parameter);
+        fieldBlockBuilder.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.field(thisParameter, field.getName()),
+                    parameter)));
+      }
+      classDeclaration.memberDeclarations.add(
+          Expressions.constructorDecl(
+              Modifier.PUBLIC,
+              type,
+              fieldParameters,
+              fieldBlockBuilder.toBlock()));
+    }
+
     // equals method():
     //   public boolean equals(Object o) {
     //       if (this == o) return true;
@@ -62,12 +62,37 @@ private EnumerableRules() {
   public static final EnumerableAggregateRule ENUMERABLE_AGGREGATE_RULE =
       new EnumerableAggregateRule();
 
+  public static final RelOptRule ENUMERABLE_SORTED_AGGREGATE_RULE =
+      new EnumerableSortedAggregateRule();
+
   public static final EnumerableSortRule ENUMERABLE_SORT_RULE =
       new EnumerableSortRule();
 
   public static final EnumerableLimitRule ENUMERABLE_LIMIT_RULE =
       new EnumerableLimitRule();
 
+  public static final EnumerableLimitSortRule ENUMERABLE_LIMIT_SORT_RULE =
+      new EnumerableLimitSortRule();
+
+  public static final EnumerableExchangeRule ENUMERABLE_EXCHANGE_RULE =
+      new EnumerableExchangeRule();
+
+  /** Rule that runs the inputs of a hash aggregate on separate threads, if
+   * operators may use more than one thread. Not part of
+   * {@link #ENUMERABLE_RULES}; see
+   * {@link org.apache.calcite.tools.Programs#exchange}. */
+  public static final RelOptRule ENUMERABLE_AGGREGATE_EXCHANGE_RULE =
+      new EnumerableExchangeInsertRule(EnumerableAggregate.class,
+          "EnumerableExchangeInsertRule:aggregate");
+
+  /** Rule that runs the inputs of a hash join on separate threads, if
+   * operators may use more than one thread. Not part of
+   * {@link #ENUMERABLE_RULES}; see
+   * {@link org.apache.calcite.tools.Programs#exchange}. */
+  public static final RelOptRule ENUMERABLE_JOIN_EXCHANGE_RULE =
+      new EnumerableExchangeInsertRule(EnumerableHashJoin.class,
+          "EnumerableExchangeInsertRule:join");
+
   public static final EnumerableUnionRule ENUMERABLE_UNION_RULE =
       new EnumerableUnionRule();
 
@@ -120,8 +145,11 @@ private EnumerableRules() {
       EnumerableRules.ENUMERABLE_PROJECT_RULE,
       EnumerableRules.ENUMERABLE_FILTER_RULE,
       EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
+      EnumerableRules.ENUMERABLE_SORTED_AGGREGATE_RULE,
       EnumerableRules.ENUMERABLE_SORT_RULE,
       EnumerableRules.ENUMERABLE_LIMIT_RULE,
+      EnumerableRules.ENUMERABLE_LIMIT_SORT_RULE,
+      EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
       EnumerableRules.ENUMERABLE_COLLECT_RULE,
       EnumerableRules.ENUMERABLE_UNCOLLECT_RULE,
       EnumerableRules.ENUMERABLE_UNION_RULE,
@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
@@ -81,14 +82,18 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
+    // Sort in arrays rather than a tree, spilling sorted runs to disk if the
+    // input exceeds the memory budget
+    final Expression comparator =
+        builder.appendIfNotNull("comparator", pair.right);
     builder.add(
         Expressions.return_(null,
             Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+                BuiltInMethod.SPILLING_ORDER_BY.method,
+                builder.append("keySelector", pair.left),
+                Util.first(comparator, Expressions.constant(null)),
+                Expressions.constant(
+                    EnumUtils.memoryBudget(getCluster())))));
     return implementor.result(physType, builder.toBlock());
   }
 }
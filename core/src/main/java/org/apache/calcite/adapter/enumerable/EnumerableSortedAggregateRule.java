@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+
+/**
+ * Rule to convert a {@link org.apache.calcite.rel.logical.LogicalAggregate}
+ * to an {@link EnumerableSortedAggregate}.
+ *
+ * <p>The input is required to be sorted on the group keys; the rule puts an
+ * {@link EnumerableSort} on top of the input, which the planner removes if the
+ * input is already sorted.
+ *
+ * @see EnumerableAggregateRule
+ */
+class EnumerableSortedAggregateRule extends ConverterRule {
+  EnumerableSortedAggregateRule() {
+    super(LogicalAggregate.class, Convention.NONE,
+        EnumerableConvention.INSTANCE, "EnumerableSortedAggregateRule");
+  }
+
+  public RelNode convert(RelNode rel) {
+    final LogicalAggregate agg = (LogicalAggregate) rel;
+    if (agg.getGroupType() != Aggregate.Group.SIMPLE
+        || agg.getGroupSet().isEmpty()) {
+      return null;
+    }
+    // The enumerable convention does not add sorts to satisfy a required
+    // collation, so sort explicitly. If the input is already sorted,
+    // SortRemoveRule will remove the sort.
+    final RelNode input =
+        convert(agg.getInput(),
+            agg.getInput().getTraitSet()
+                .replace(EnumerableConvention.INSTANCE));
+    final RelNode sortedInput =
+        EnumerableSort.create(input,
+            EnumerableSortedAggregate.inputCollation(agg.getGroupSet()),
+            null, null);
+    try {
+      return EnumerableSortedAggregate.create(
+          sortedInput,
+          agg.getGroupSet(),
+          agg.getGroupSets(),
+          agg.getAggCallList());
+    } catch (InvalidRelException e) {
+      EnumerableRules.LOGGER.debug(e.toString());
+      return null;
+    }
+  }
+}
+
+// End EnumerableSortedAggregateRule.java
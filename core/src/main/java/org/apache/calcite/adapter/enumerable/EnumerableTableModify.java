@@ -140,6 +140,11 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         Expressions.statement(
             Expressions.call(
                 convertedChildExp, method, collectionParameter)));
+    builder.add(
+        Expressions.statement(
+            Expressions.call(
+                BuiltInMethod.STATISTIC_CATALOG_TABLE_MODIFIED.method,
+                expression)));
     final Expression updatedCountParameter =
         builder.append(
             "updatedCount",
@@ -36,6 +36,9 @@
  * How a row is represented as a Java value.
  */
 public enum JavaRowFormat {
+  /** A record is an instance of a class that has a field for each column,
+   * such as a class generated for a synthetic record type. A NOT NULL column
+   * of a numeric type is held in a primitive field, so is never boxed. */
   CUSTOM {
     Type javaRowClass(
         JavaTypeFactory typeFactory,
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.runtime.Bindable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache of compiled {@link Bindable} classes that is stored in a directory,
+ * and therefore survives restarts of the JVM.
+ *
+ * <p>Each entry is a file whose name is a hash of the generated Java source,
+ * and which contains the bytecode of the class and its nested classes. On a
+ * miss, the source is compiled by Janino and the bytecode is written to a new
+ * file; on a hit, the bytecode is read and defined by a new class loader,
+ * which is much cheaper than compiling.
+ *
+ * <p>The hash includes a fingerprint of the build: a digest of the jar files
+ * (or class directories) that contain Calcite's code generator, linq4j and
+ * Janino. Classes compiled by one build are therefore never loaded by
+ * another, even if both have the same version number.
+ *
+ * <p>The hash also includes a fingerprint of the class path that the
+ * generated code is compiled against: the name, size and modification time
+ * of each entry of the class loader that loads the classes, and of the
+ * system class path. A class compiled against one version of a
+ * user-defined function or adapter jar is therefore not loaded after that
+ * jar has been replaced. (The fingerprint does not cover the contents of
+ * entries; if a jar is rewritten in place and keeps its size and
+ * modification time, clear the directory.)
+ *
+ * <p>Enabled by setting
+ * {@link CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY}; see
+ * {@link #instance()}.
+ */
+public class PersistentBindableCache {
+  /** Written at the start of each file, to detect files that are not cache
+   * entries or are in an old format. */
+  private static final int MAGIC = 0xCA1C17E1;
+
+  private static final String SUFFIX = ".bindable";
+
+  /** Fingerprint of the build, computed on first use. */
+  private static final Supplier<byte[]> BUILD_FINGERPRINT =
+      Suppliers.memoize(PersistentBindableCache::buildFingerprint)::get;
+
+  /** Fingerprints of the class path of each class loader, computed on first
+   * use of that class loader. */
+  private static final LoadingCache<ClassLoader, byte[]> CLASS_PATH_FINGERPRINTS =
+      CacheBuilder.newBuilder().weakKeys()
+          .build(CacheLoader.from(PersistentBindableCache::classPathFingerprint));
+
+  private static final PersistentBindableCache INSTANCE = create();
+
+  private final File directory;
+  private final byte[] fingerprint;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong compileNanos = new AtomicLong();
+
+  /** Creates a PersistentBindableCache that stores classes in a given
+   * directory. */
+  public PersistentBindableCache(File directory) {
+    this(directory, BUILD_FINGERPRINT.get());
+  }
+
+  /** Creates a PersistentBindableCache with a given build fingerprint. */
+  @VisibleForTesting
+  PersistentBindableCache(File directory, byte[] fingerprint) {
+    this.directory = directory;
+    this.fingerprint = fingerprint.clone();
+  }
+
+  private static PersistentBindableCache create() {
+    final String directory =
+        CalciteSystemProperty.BINDABLE_CACHE_DIRECTORY.value();
+    return directory.isEmpty()
+        ? null
+        : new PersistentBindableCache(new File(directory));
+  }
+
+  /** Returns the cache configured by
+   * {@link CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY}, or null if the
+   * property is not set. */
+  public static PersistentBindableCache instance() {
+    return INSTANCE;
+  }
+
+  /** Returns the number of requests that were satisfied by loading a class
+   * from the directory. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of requests that required a compilation. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the total time, in nanoseconds, spent compiling on misses. */
+  public long getCompileNanos() {
+    return compileNanos.get();
+  }
+
+  /**
+   * Returns an instance of a class with a given body, loading the class from
+   * the directory if it has been compiled before, otherwise compiling it and
+   * saving it in the directory.
+   *
+   * @param className Name of the class
+   * @param body Body of the class: fields, methods and nested classes
+   * @param extendedClass Class that the class extends
+   * @param interfaces Interfaces that the class implements
+   * @param parentClassLoader Class loader of the classes that the body uses
+   * @param debug Whether to generate debugging information
+   */
+  public Bindable get(String className, String body, Class<?> extendedClass,
+      Class<?>[] interfaces, ClassLoader parentClassLoader, boolean debug)
+      throws CompileException, IOException {
+    final StringBuilder buf = new StringBuilder()
+        .append("public final class ").append(className)
+        .append(" extends ").append(extendedClass.getName());
+    for (int i = 0; i < interfaces.length; i++) {
+      buf.append(i == 0 ? " implements " : ", ")
+          .append(interfaces[i].getName());
+    }
+    final String source = buf.append(" {\n").append(body).append("\n}\n")
+        .toString();
+    final byte[] classPathFingerprint =
+        CLASS_PATH_FINGERPRINTS.getUnchecked(parentClassLoader);
+    final File file =
+        new File(directory,
+            key(fingerprint, classPathFingerprint, source, debug) + SUFFIX);
+    Map<String, byte[]> classes = read(file);
+    if (classes != null) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+      final long start = System.nanoTime();
+      classes = compile(source, parentClassLoader, debug);
+      compileNanos.addAndGet(System.nanoTime() - start);
+      write(file, classes);
+    }
+    final SimpleCompiler compiler = new SimpleCompiler();
+    compiler.setParentClassLoader(parentClassLoader);
+    compiler.cook(classes);
+    try {
+      return (Bindable) compiler.getClassLoader().loadClass(className)
+          .getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("while loading " + file, e);
+    }
+  }
+
+  /** Compiles a compilation unit and returns the bytecode of each class,
+   * keyed by class name. */
+  private static Map<String, byte[]> compile(String source,
+      ClassLoader parentClassLoader, boolean debug)
+      throws CompileException, IOException {
+    final Java.CompilationUnit unit =
+        new Parser(new Scanner(null, new StringReader(source)))
+            .parseCompilationUnit();
+    final ClassFile[] classFiles =
+        new UnitCompiler(unit, new ClassLoaderIClassLoader(parentClassLoader))
+            .compileUnit(debug, debug, debug);
+    final Map<String, byte[]> classes = new LinkedHashMap<>();
+    for (ClassFile classFile : classFiles) {
+      classes.put(classFile.getThisClassName(), classFile.toByteArray());
+    }
+    return classes;
+  }
+
+  /** Reads the classes in a file; returns null if the file does not exist or
+   * cannot be read, deleting it in the latter case. */
+  private static Map<String, byte[]> read(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    try (DataInputStream in =
+             new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("not a cache entry");
+      }
+      final Map<String, byte[]> classes = new LinkedHashMap<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        final String name = in.readUTF();
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        classes.put(name, bytes);
+      }
+      return classes;
+    } catch (IOException e) {
+      // The file is truncated or corrupt; recompile, and overwrite it.
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+      return null;
+    }
+  }
+
+  /** Writes classes to a file. Writes to a temporary file first, then
+   * renames it, so that another JVM never reads a partial file. The cache is
+   * an optimization, so failure to write is not an error. */
+  private void write(File file, Map<String, byte[]> classes) {
+    File tempFile = null;
+    try {
+      Files.createDirectories(directory.toPath());
+      tempFile = File.createTempFile("bindable", ".tmp", directory);
+      try (DataOutputStream out =
+               new DataOutputStream(
+                   new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeInt(entry.getValue().length);
+          out.write(entry.getValue());
+        }
+      }
+      Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      tempFile = null;
+    } catch (IOException e) {
+      // ignore
+    } finally {
+      if (tempFile != null) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
+    }
+  }
+
+  /** Returns a hash of the build and class path fingerprints, the source
+   * and whether debugging information is generated, as a hexadecimal
+   * string. */
+  private static String key(byte[] fingerprint, byte[] classPathFingerprint,
+      String source, boolean debug) {
+    final MessageDigest digest = sha256();
+    digest.update(fingerprint);
+    digest.update(classPathFingerprint);
+    digest.update((byte) (debug ? 1 : 0));
+    final byte[] bytes =
+        digest.digest(source.getBytes(StandardCharsets.UTF_8));
+    final StringBuilder buf = new StringBuilder();
+    for (byte b : bytes) {
+      buf.append(Character.forDigit((b >> 4) & 0xF, 16))
+          .append(Character.forDigit(b & 0xF, 16));
+    }
+    return buf.toString();
+  }
+
+  /** Computes a digest of the jar files or class directories that contain
+   * the code generator, linq4j and Janino.
+   *
+   * <p>If any of them cannot be read, returns a random value, so that this
+   * JVM neither loads entries written by other builds nor writes entries
+   * that they would load. */
+  private static byte[] buildFingerprint() {
+    final Set<Path> paths = new LinkedHashSet<>();
+    for (Class<?> c : new Class[] {PersistentBindableCache.class,
+        Expressions.class, UnitCompiler.class, CompileException.class}) {
+      final Path path = codeSource(c);
+      if (path == null) {
+        return randomFingerprint();
+      }
+      paths.add(path);
+    }
+    final MessageDigest digest = sha256();
+    try {
+      for (Path path : paths) {
+        digest.update(path.getFileName().toString()
+            .getBytes(StandardCharsets.UTF_8));
+        if (Files.isDirectory(path)) {
+          // Hash the files in a stable order, by relative path
+          final List<Path> files;
+          try (Stream<Path> stream = Files.walk(path)) {
+            files = stream.filter(Files::isRegularFile)
+                .collect(Collectors.toCollection(ArrayList::new));
+          }
+          Collections.sort(files);
+          for (Path file : files) {
+            digest.update(path.relativize(file).toString()
+                .getBytes(StandardCharsets.UTF_8));
+            update(digest, file);
+          }
+        } else {
+          update(digest, path);
+        }
+      }
+    } catch (IOException e) {
+      return randomFingerprint();
+    }
+    return digest.digest();
+  }
+
+  /** Computes a digest of the class path of a class loader: the URLs of the
+   * {@link URLClassLoader}s in its chain, and the entries of the system
+   * class path (whose class loader is not a {@code URLClassLoader} since
+   * JDK 9).
+   *
+   * <p>For each entry, the digest covers its name, and the size and
+   * modification time of a jar file, or the number of files and latest
+   * modification time of a class directory. Hashing the contents, as
+   * {@link #buildFingerprint()} does for Calcite's own jars, would be too
+   * expensive for a long class path.
+   *
+   * <p>If an entry cannot be read, returns a random value. */
+  private static byte[] classPathFingerprint(ClassLoader classLoader) {
+    final Set<String> entries = new LinkedHashSet<>();
+    for (ClassLoader c = classLoader; c != null; c = c.getParent()) {
+      if (c instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) c).getURLs()) {
+          final Path path = toPath(url);
+          entries.add(path == null ? url.toString() : path.toString());
+        }
+      }
+    }
+    final String classPath = System.getProperty("java.class.path", "");
+    for (String entry : classPath.split(File.pathSeparator)) {
+      if (!entry.isEmpty()) {
+        entries.add(Paths.get(entry).toAbsolutePath().toString());
+      }
+    }
+    final MessageDigest digest = sha256();
+    try {
+      for (String entry : entries) {
+        digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        final Path path = Paths.get(entry);
+        long size = -1L;
+        long lastModified = -1L;
+        if (Files.isDirectory(path)) {
+          size = 0L;
+          try (Stream<Path> stream = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+              ++size;
+              lastModified = Math.max(lastModified,
+                  Files.getLastModifiedTime(file).toMillis());
+            }
+          }
+        } else if (Files.exists(path)) {
+          size = Files.size(path);
+          lastModified = Files.getLastModifiedTime(path).toMillis();
+        }
+        digest.update(
+            (size + ":" + lastModified).getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (IOException | RuntimeException e) {
+      return randomFingerprint();
+    }
+    return digest.digest();
+  }
+
+  /** Returns the jar file or class directory from which a class was loaded,
+   * or null if it is not known. */
+  private static Path codeSource(Class<?> c) {
+    final ProtectionDomain domain = c.getProtectionDomain();
+    if (domain == null || domain.getCodeSource() == null) {
+      return null;
+    }
+    return toPath(domain.getCodeSource().getLocation());
+  }
+
+  /** Converts a "file:" URL to a path; returns null if it is not one. */
+  private static Path toPath(URL url) {
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      return Paths.get(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Adds the contents of a file to a digest. */
+  private static void update(MessageDigest digest, Path file)
+      throws IOException {
+    final byte[] buffer = new byte[8192];
+    try (InputStream in = Files.newInputStream(file)) {
+      for (int n; (n = in.read(buffer)) > 0;) {
+        digest.update(buffer, 0, n);
+      }
+    }
+  }
+
+  private static byte[] randomFingerprint() {
+    return UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
+
+// End PersistentBindableCache.java
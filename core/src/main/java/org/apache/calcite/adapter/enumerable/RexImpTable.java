@@ -337,7 +337,7 @@ public class RexImpTable {
 
     // arithmetic
     defineBinary(PLUS, Add, NullPolicy.STRICT, "plus");
-    defineBinary(MINUS, Subtract, NullPolicy.STRICT, "minus");
+    defineMinus();
     defineBinary(MULTIPLY, Multiply, NullPolicy.STRICT, "multiply");
     defineBinary(DIVIDE, Divide, NullPolicy.STRICT, "divide");
     defineBinary(DIVIDE_INTEGER, Divide, NullPolicy.STRICT, "divide");
@@ -860,6 +860,24 @@ private void defineUnary(
         new UnaryImplementor(expressionType), false);
   }
 
+  /** Defines the implementor of {@code MINUS}. "datetime - interval" is
+   * converted to {@code MINUS_DATE} during SQL-to-rel conversion, but not if
+   * built using {@link org.apache.calcite.rex.RexBuilder}; its operands must
+   * not be harmonized, and it is implemented as datetime arithmetic. */
+  private void defineMinus() {
+    final CallImplementor minus =
+        createImplementor(new BinaryImplementor(Subtract, "minus"),
+            NullPolicy.STRICT, true);
+    final CallImplementor datetimeMinus =
+        createImplementor(new DatetimeArithmeticImplementor(),
+            NullPolicy.STRICT, false);
+    map.put(MINUS, (translator, call, nullAs) ->
+        SqlTypeUtil.isDatetime(call.getOperands().get(0).getType())
+            && SqlTypeUtil.isInterval(call.getOperands().get(1).getType())
+            ? datetimeMinus.implement(translator, call, nullAs)
+            : minus.implement(translator, call, nullAs));
+  }
+
   private void defineBinary(
       SqlOperator operator,
       ExpressionType expressionType,
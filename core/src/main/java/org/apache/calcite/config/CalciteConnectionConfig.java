@@ -34,6 +34,8 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   boolean approximateDecimal();
   /** @see CalciteConnectionProperty#NULL_EQUAL_TO_EMPTY */
   boolean nullEqualToEmpty();
+  /** @see CalciteConnectionProperty#ASYNC_COMPILATION */
+  boolean asyncCompilation();
   /** @see CalciteConnectionProperty#AUTO_TEMP */
   boolean autoTemp();
   /** @see CalciteConnectionProperty#MATERIALIZATIONS_ENABLED */
@@ -76,6 +78,24 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   String locale();
   /** @see CalciteConnectionProperty#TYPE_COERCION */
   boolean typeCoercion();
+  /** @see CalciteConnectionProperty#OPERATOR_MEMORY_BUDGET */
+  long operatorMemoryBudget();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#PLAN_CACHE_SIZE */
+  int planCacheSize();
+  /** @see CalciteConnectionProperty#PLANNER_REL_LIMIT */
+  int plannerRelLimit();
+  /** @see CalciteConnectionProperty#PLANNER_RULE_MATCH_LIMIT */
+  int plannerRuleMatchLimit();
+  /** @see CalciteConnectionProperty#PLANNER_RULE_MATCH_PARALLELISM */
+  int plannerRuleMatchParallelism();
+  /** @see CalciteConnectionProperty#PLANNER_TIME_LIMIT */
+  long plannerTimeLimit();
+  /** @see CalciteConnectionProperty#PLANNER_TOP_DOWN */
+  boolean plannerTopDown();
+  /** @see CalciteConnectionProperty#PRIMITIVE_ROWS */
+  boolean primitiveRows();
 }
 
 // End CalciteConnectionConfig.java
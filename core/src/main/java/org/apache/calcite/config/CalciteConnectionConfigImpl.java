@@ -64,6 +64,11 @@ public boolean approximateDecimal() {
     return CalciteConnectionProperty.NULL_EQUAL_TO_EMPTY.wrap(properties).getBoolean();
   }
 
+  public boolean asyncCompilation() {
+    return CalciteConnectionProperty.ASYNC_COMPILATION.wrap(properties)
+        .getBoolean();
+  }
+
   public boolean autoTemp() {
     return CalciteConnectionProperty.AUTO_TEMP.wrap(properties).getBoolean();
   }
@@ -174,6 +179,51 @@ public boolean typeCoercion() {
     return CalciteConnectionProperty.TYPE_COERCION.wrap(properties)
         .getBoolean();
   }
+
+  public long operatorMemoryBudget() {
+    return CalciteConnectionProperty.OPERATOR_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties)
+        .getInt();
+  }
+
+  public int planCacheSize() {
+    return CalciteConnectionProperty.PLAN_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public int plannerRelLimit() {
+    return CalciteConnectionProperty.PLANNER_REL_LIMIT.wrap(properties)
+        .getInt();
+  }
+
+  public int plannerRuleMatchLimit() {
+    return CalciteConnectionProperty.PLANNER_RULE_MATCH_LIMIT.wrap(properties)
+        .getInt();
+  }
+
+  public int plannerRuleMatchParallelism() {
+    return CalciteConnectionProperty.PLANNER_RULE_MATCH_PARALLELISM
+        .wrap(properties).getInt();
+  }
+
+  public long plannerTimeLimit() {
+    return CalciteConnectionProperty.PLANNER_TIME_LIMIT.wrap(properties)
+        .getLong();
+  }
+
+  public boolean plannerTopDown() {
+    return CalciteConnectionProperty.PLANNER_TOP_DOWN.wrap(properties)
+        .getBoolean();
+  }
+
+  public boolean primitiveRows() {
+    return CalciteConnectionProperty.PRIMITIVE_ROWS.wrap(properties)
+        .getBoolean();
+  }
 }
 
 // End CalciteConnectionConfigImpl.java
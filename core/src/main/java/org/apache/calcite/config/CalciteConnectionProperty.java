@@ -53,6 +53,12 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
    */
   NULL_EQUAL_TO_EMPTY("nullEqualToEmpty", Type.BOOLEAN, true, false),
 
+  /** Whether to compile the generated code of a query on a background
+   * thread. Until the code has been compiled, executions of the query are
+   * interpreted, if the interpreter supports every operator in the plan. If
+   * false (the default), preparing a query waits for compilation. */
+  ASYNC_COMPILATION("asyncCompilation", Type.BOOLEAN, false, false),
+
   /** Whether to store query results in temporary tables. */
   AUTO_TEMP("autoTemp", Type.BOOLEAN, false, false),
 
@@ -155,7 +161,62 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
 
   /** Whether to make implicit type coercion when type mismatch
    * for validation, default true. */
-  TYPE_COERCION("typeCoercion", Type.BOOLEAN, true, false);
+  TYPE_COERCION("typeCoercion", Type.BOOLEAN, true, false),
+
+  /** Maximum number of bytes that a memory-intensive operator in the
+   * Enumerable convention (such as a hash join, sort or aggregate) may hold
+   * in memory before it spills its input to temporary files. If negative
+   * (the default), operators never spill. */
+  OPERATOR_MEMORY_BUDGET("operatorMemoryBudget", Type.NUMBER, -1L, false),
+
+  /** Number of threads that an operator in the Enumerable convention
+   * (a hash aggregate or hash join) may use. If 1 (the default) or less,
+   * operators run on the calling thread. If greater than 1, the planner
+   * also places an Exchange on each large input of a hash aggregate or hash
+   * join, so that the input runs on a separate thread. Independently of this
+   * property, an Exchange in the plan runs its input on a separate thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Maximum number of prepared queries that a connection keeps in its plan
+   * cache. A query that differs from a cached query only in literals that
+   * are compared to columns or other expressions re-uses the cached plan and
+   * generated code. If zero or negative (the default), there is no plan
+   * cache. */
+  PLAN_CACHE_SIZE("planCacheSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of relational expressions that the planner may register
+   * for a query before it stops firing rules; see
+   * {@link #PLANNER_TIME_LIMIT}. If negative (the default), there is no
+   * limit. */
+  PLANNER_REL_LIMIT("plannerRelLimit", Type.NUMBER, -1, false),
+
+  /** Maximum number of rule matches that the planner may fire for a query;
+   * see {@link #PLANNER_TIME_LIMIT}. If negative (the default), there is no
+   * limit. */
+  PLANNER_RULE_MATCH_LIMIT("plannerRuleMatchLimit", Type.NUMBER, -1, false),
+
+  /** Number of threads that the planner uses to match the operands of rules
+   * to newly registered relational expressions, in batches. Default 1, which
+   * matches rules on the planner's own thread. */
+  PLANNER_RULE_MATCH_PARALLELISM("plannerRuleMatchParallelism", Type.NUMBER,
+      1, false),
+
+  /** Maximum time, in milliseconds, that the planner may spend firing rules
+   * for a query. Once it is exceeded, the planner returns the best plan found
+   * so far (or, if it has not found an implementable plan, the first one it
+   * finds). If negative (the default), there is no limit. */
+  PLANNER_TIME_LIMIT("plannerTimeLimit", Type.NUMBER, -1L, false),
+
+  /** Whether the planner should fire rules top-down, starting from the root
+   * and pruning physical alternatives whose cost exceeds that of the best
+   * plan found so far, rather than in order of importance. Default false. */
+  PLANNER_TOP_DOWN("plannerTopDown", Type.BOOLEAN, false, false),
+
+  /** Whether operators in the Enumerable convention (currently Calc and
+   * Aggregate) should ask their inputs for rows that are instances of
+   * generated classes, in which NOT NULL numeric columns are primitive
+   * fields, rather than arrays of boxed values. Default false. */
+  PRIMITIVE_ROWS("primitiveRows", Type.BOOLEAN, false, false);
 
   private final String camelName;
   private final Type type;
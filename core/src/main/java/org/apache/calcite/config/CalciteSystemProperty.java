@@ -312,6 +312,38 @@
       intProperty("calcite.bindable.cache.concurrencyLevel", 1,
           v -> v >= 1 && v <= Integer.MAX_VALUE);
 
+  /**
+   * The directory in which compiled Bindable classes are stored, so that they
+   * can be re-used after the JVM restarts.
+   *
+   * <p>The default value is empty, which disables the persistent cache.</p>
+   *
+   * <p>Each file in the directory holds the bytecode of the classes generated
+   * for one query, and its name is a hash of the generated source. The
+   * directory is created if it does not exist. Stale files are harmless, and
+   * the directory may be deleted at any time.</p>
+   *
+   * @see org.apache.calcite.adapter.enumerable.PersistentBindableCache
+   */
+  public static final CalciteSystemProperty<String> BINDABLE_CACHE_DIRECTORY =
+      stringProperty("calcite.bindable.cache.directory", "");
+
+  /**
+   * The maximum number of functions, compiled from expressions for constant
+   * reduction, kept in the cache of
+   * {@link org.apache.calcite.rex.RexExecutable}.
+   *
+   * <p>The default value is 1000.</p>
+   *
+   * <p>The property can take any value between [0, {@link Integer#MAX_VALUE}] inclusive. If the
+   * value is not valid (or not specified) then the default value is used.</p>
+   *
+   * <p>Setting this property to 0 disables the cache.</p>
+   */
+  public static final CalciteSystemProperty<Integer> REX_EXECUTABLE_CACHE_MAX_SIZE =
+      intProperty("calcite.rex.executable.cache.maxSize", 1000,
+          v -> v >= 0 && v <= Integer.MAX_VALUE);
+
   private static CalciteSystemProperty<Boolean> booleanProperty(String key,
       boolean defaultValue) {
     // Note that "" -> true (convenient for command-lines flags like '-Dflag')
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.interpreter;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An interpreter node that produces its rows on demand.
+ *
+ * <p>Rather than writing all of its rows into a {@link Sink} when it is run,
+ * the node gives its output as an {@link Enumerable} (see
+ * {@link Compiler#enumerable(RelNode, Enumerable)}), and reads from its
+ * inputs only when its consumer asks for a row. Rows therefore stream through
+ * a pipeline of such nodes without being buffered, and if the consumer stops
+ * early (say to satisfy a {@code LIMIT}) the nodes below it do no more work.
+ *
+ * @param <T> Type of relational expression
+ */
+abstract class AbstractPipelinedNode<T extends RelNode> implements Node {
+  protected final Compiler compiler;
+  protected final T rel;
+
+  AbstractPipelinedNode(Compiler compiler, T rel) {
+    this.compiler = compiler;
+    this.rel = rel;
+    compiler.enumerable(rel, new AbstractEnumerable<Row>() {
+      public Enumerator<Row> enumerator() {
+        return AbstractPipelinedNode.this.enumerator();
+      }
+    });
+  }
+
+  /** Does nothing; rows are computed as the consumer reads them. */
+  public void run() {
+  }
+
+  /** Creates an enumerator over the rows of this node. The enumerator must
+   * not read from its inputs until its {@link Enumerator#moveNext()} method
+   * is called. */
+  protected abstract Enumerator<Row> enumerator();
+
+  /** Enumerator that computes its rows from rows read from one or more
+   * {@link Source}s, and closes the sources when it is closed. */
+  abstract static class RowEnumerator implements Enumerator<Row> {
+    protected final ImmutableList<Source> sources;
+    private Row current;
+
+    RowEnumerator(Source... sources) {
+      this.sources = ImmutableList.copyOf(sources);
+    }
+
+    /** Returns the next row, or null if there are no more rows. */
+    protected abstract Row next();
+
+    public Row current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      current = next();
+      return current != null;
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      for (Source source : sources) {
+        source.close();
+      }
+    }
+  }
+}
+
+// End AbstractPipelinedNode.java
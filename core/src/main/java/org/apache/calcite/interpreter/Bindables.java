@@ -444,7 +444,7 @@ public Enumerable<Object[]> bind(DataContext dataContext) {
     }
 
     public Node implement(InterpreterImplementor implementor) {
-      return new SortNode(implementor.compiler, this);
+      return SortNode.create(implementor.compiler, this);
     }
   }
 
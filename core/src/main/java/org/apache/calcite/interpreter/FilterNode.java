@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.core.Filter;
 
 import com.google.common.collect.ImmutableList;
@@ -24,7 +25,7 @@
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Filter}.
  */
-public class FilterNode extends AbstractSingleNode<Filter> {
+public class FilterNode extends AbstractPipelinedNode<Filter> {
   private final Scalar condition;
   private final Context context;
 
@@ -36,15 +37,21 @@ public FilterNode(Compiler compiler, Filter rel) {
     this.context = compiler.createContext();
   }
 
-  public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Boolean b = (Boolean) condition.execute(context);
-      if (b != null && b) {
-        sink.send(row);
+  protected Enumerator<Row> enumerator() {
+    final Source source = compiler.source(rel, 0);
+    return new RowEnumerator(source) {
+      protected Row next() {
+        Row row;
+        while ((row = source.receive()) != null) {
+          context.values = row.getValues();
+          Boolean b = (Boolean) condition.execute(context);
+          if (b != null && b) {
+            return row;
+          }
+        }
+        return null;
       }
-    }
+    };
   }
 }
 
@@ -81,10 +81,18 @@ public class Interpreter extends AbstractEnumerable<Object[]>
 
   /** Creates an Interpreter. */
   public Interpreter(DataContext dataContext, RelNode rootRel) {
+    this(dataContext, rootRel,
+        new JaninoRexCompiler(rootRel.getCluster().getRexBuilder()));
+  }
+
+  /** Creates an Interpreter that uses a given compiler for scalar
+   * expressions. */
+  public Interpreter(DataContext dataContext, RelNode rootRel,
+      ScalarCompiler scalarCompiler) {
     this.dataContext = Objects.requireNonNull(dataContext);
     final RelNode rel = optimize(rootRel);
     final CompilerImpl compiler =
-        new Nodes.CoreCompiler(this, rootRel.getCluster());
+        new Nodes.CoreCompiler(this, rootRel.getCluster(), scalarCompiler);
     Pair<RelNode, Map<RelNode, NodeInfo>> pair = compiler.visitRoot(rel);
     this.rootRel = pair.left;
     this.nodes = ImmutableMap.copyOf(pair.right);
@@ -394,9 +402,10 @@ static class CompilerImpl extends RelVisitor
     private static final String REWRITE_METHOD_NAME = "rewrite";
     private static final String VISIT_METHOD_NAME = "visit";
 
-    CompilerImpl(Interpreter interpreter, RelOptCluster cluster) {
+    CompilerImpl(Interpreter interpreter, RelOptCluster cluster,
+        ScalarCompiler scalarCompiler) {
       this.interpreter = interpreter;
-      this.scalarCompiler = new JaninoRexCompiler(cluster.getRexBuilder());
+      this.scalarCompiler = Objects.requireNonNull(scalarCompiler);
     }
 
     /** Visits the tree, starting from the root {@code p}. */
@@ -571,7 +580,7 @@ static class Edge extends Pair<RelNode, Integer> {
 
   /** Converts a list of expressions to a scalar that can compute their
    * values. */
-  interface ScalarCompiler {
+  public interface ScalarCompiler {
     Scalar compile(List<RexNode> nodes, RelDataType inputRowType);
   }
 }
@@ -52,6 +52,8 @@
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Compiles a scalar expression ({@link RexNode}) to an expression that
@@ -61,11 +63,33 @@
 public class JaninoRexCompiler implements Interpreter.ScalarCompiler {
   private final RexBuilder rexBuilder;
 
+  /** Compiled scalars, keyed by expressions and input row type; null if this
+   * compiler does not cache. The generated classes have no fields, so each
+   * {@link Scalar} can be shared between threads. */
+  private final Map<Pair<List<RexNode>, RelDataType>, Scalar> cache;
+
   public JaninoRexCompiler(RexBuilder rexBuilder) {
+    this(rexBuilder, false);
+  }
+
+  /** Creates a JaninoRexCompiler that, if {@code cache} is true, compiles
+   * each list of expressions only once. Use a caching compiler for several
+   * interpreters that evaluate the same relational expression. */
+  public JaninoRexCompiler(RexBuilder rexBuilder, boolean cache) {
     this.rexBuilder = rexBuilder;
+    this.cache = cache ? new ConcurrentHashMap<>() : null;
   }
 
   public Scalar compile(List<RexNode> nodes, RelDataType inputRowType) {
+    if (cache != null) {
+      return cache.computeIfAbsent(
+          Pair.of(ImmutableList.copyOf(nodes), inputRowType),
+          pair -> compile2(pair.left, pair.right));
+    }
+    return compile2(nodes, inputRowType);
+  }
+
+  private Scalar compile2(List<RexNode> nodes, RelDataType inputRowType) {
     final RexProgramBuilder programBuilder =
         new RexProgramBuilder(inputRowType, rexBuilder);
     for (RexNode node : nodes) {
@@ -16,22 +16,50 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableIntList;
 
 import com.google.common.collect.ImmutableList;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Join}.
+ *
+ * <p>If the condition contains equalities between columns of the left and
+ * right inputs, builds a hash table on the right input and probes it with
+ * each left row; otherwise compares each left row with every right row.
+ * Either way, the rest of the condition is evaluated for each candidate
+ * pair. Supports all join types.
  */
 public class JoinNode implements Node {
   private final Source leftSource;
   private final Source rightSource;
   private final Sink sink;
   private final Join rel;
+  private final ImmutableIntList leftKeys;
+  private final ImmutableIntList rightKeys;
+  /** For each key, whether a null value matches nothing (as in "=") rather
+   * than null (as in "IS NOT DISTINCT FROM"). */
+  private final boolean[] filterNulls;
+  /** Condition other than the keys, or null if there is none. */
   private final Scalar condition;
   private final Context context;
 
@@ -39,37 +67,187 @@ public JoinNode(Compiler compiler, Join rel) {
     this.leftSource = compiler.source(rel, 0);
     this.rightSource = compiler.source(rel, 1);
     this.sink = compiler.sink(rel);
-    this.condition = compiler.compile(ImmutableList.of(rel.getCondition()),
-        compiler.combinedRowType(rel.getInputs()));
     this.rel = rel;
     this.context = compiler.createContext();
 
+    final List<Integer> leftKeys = new ArrayList<>();
+    final List<Integer> rightKeys = new ArrayList<>();
+    final List<Boolean> filterNulls = new ArrayList<>();
+    final List<RexNode> nonEquiList = new ArrayList<>();
+    RelOptUtil.splitJoinCondition(rel.getLeft(), rel.getRight(),
+        rel.getCondition(), leftKeys, rightKeys, filterNulls, nonEquiList);
+
+    // Keys whose values are not comparable using equals() go back into the
+    // condition.
+    final RexBuilder rexBuilder = rel.getCluster().getRexBuilder();
+    final int leftCount = rel.getLeft().getRowType().getFieldCount();
+    for (int i = leftKeys.size() - 1; i >= 0; i--) {
+      final RelDataType leftType = rel.getLeft().getRowType().getFieldList()
+          .get(leftKeys.get(i)).getType();
+      final RelDataType rightType = rel.getRight().getRowType().getFieldList()
+          .get(rightKeys.get(i)).getType();
+      if (!isHashable(leftType, rightType)) {
+        nonEquiList.add(
+            rexBuilder.makeCall(
+                filterNulls.get(i)
+                    ? SqlStdOperatorTable.EQUALS
+                    : SqlStdOperatorTable.IS_NOT_DISTINCT_FROM,
+                rexBuilder.makeInputRef(leftType, leftKeys.get(i)),
+                rexBuilder.makeInputRef(rightType,
+                    leftCount + rightKeys.get(i))));
+        leftKeys.remove(i);
+        rightKeys.remove(i);
+        filterNulls.remove(i);
+      }
+    }
+    this.leftKeys = ImmutableIntList.copyOf(leftKeys);
+    this.rightKeys = ImmutableIntList.copyOf(rightKeys);
+    this.filterNulls = new boolean[filterNulls.size()];
+    for (int i = 0; i < filterNulls.size(); i++) {
+      this.filterNulls[i] = filterNulls.get(i);
+    }
+    if (nonEquiList.isEmpty()) {
+      this.condition = null;
+    } else {
+      final RexNode remaining =
+          RexUtil.composeConjunction(rexBuilder, nonEquiList);
+      this.condition = compiler.compile(ImmutableList.of(remaining),
+          compiler.combinedRowType(rel.getInputs()));
+    }
+  }
+
+  /** Returns whether values of two types can be matched by putting them in
+   * a hash table. Approximate numeric values are not, because
+   * {@code 0.0 = -0.0}. */
+  private static boolean isHashable(RelDataType leftType,
+      RelDataType rightType) {
+    final SqlTypeName typeName = leftType.getSqlTypeName();
+    if (typeName != rightType.getSqlTypeName()) {
+      return false;
+    }
+    switch (typeName) {
+    case REAL:
+    case FLOAT:
+    case DOUBLE:
+      return false;
+    default:
+      return true;
+    }
   }
 
   public void run() throws InterruptedException {
-    List<Row> rightList = null;
+    final JoinRelType joinType = rel.getJoinType();
     final int leftCount = rel.getLeft().getRowType().getFieldCount();
     final int rightCount = rel.getRight().getRowType().getFieldCount();
-    context.values = new Object[rel.getRowType().getFieldCount()];
-    Row left;
+
+    // Build: read the right input, hashing it on its keys.
+    final List<Row> rightList = new ArrayList<>();
+    final Map<List<Object>, List<Row>> rightMap = new HashMap<>();
     Row right;
-    while ((left = leftSource.receive()) != null) {
-      System.arraycopy(left.getValues(), 0, context.values, 0, leftCount);
-      if (rightList == null) {
-        rightList = new ArrayList<>();
-        while ((right = rightSource.receive()) != null) {
+    while ((right = rightSource.receive()) != null) {
+      if (leftKeys.isEmpty()) {
+        rightList.add(right);
+      } else {
+        final List<Object> key = key(right, rightKeys);
+        if (key != null) {
+          rightMap.computeIfAbsent(key, k -> new ArrayList<>()).add(right);
+        } else if (joinType.generatesNullsOnLeft()) {
+          // Cannot match, but is needed for null generation.
           rightList.add(right);
         }
       }
-      for (Row right2 : rightList) {
-        System.arraycopy(right2.getValues(), 0, context.values, leftCount,
+    }
+    final Set<Row> matchedRights = joinType.generatesNullsOnLeft()
+        ? Collections.newSetFromMap(new IdentityHashMap<>())
+        : null;
+
+    // Probe: for each left row, find the right rows that match.
+    context.values = new Object[leftCount + rightCount];
+    Row left;
+    while ((left = leftSource.receive()) != null) {
+      final List<Row> candidates;
+      if (leftKeys.isEmpty()) {
+        candidates = rightList;
+      } else {
+        final List<Object> key = key(left, leftKeys);
+        candidates = key == null
+            ? ImmutableList.of()
+            : rightMap.getOrDefault(key, ImmutableList.of());
+      }
+      System.arraycopy(left.getValues(), 0, context.values, 0, leftCount);
+      boolean matched = false;
+      for (Row candidate : candidates) {
+        System.arraycopy(candidate.getValues(), 0, context.values, leftCount,
             rightCount);
-        final Boolean execute = (Boolean) condition.execute(context);
-        if (execute != null && execute) {
+        if (condition != null) {
+          final Boolean execute = (Boolean) condition.execute(context);
+          if (execute == null || !execute) {
+            continue;
+          }
+        }
+        matched = true;
+        if (joinType == JoinRelType.SEMI || joinType == JoinRelType.ANTI) {
+          break;
+        }
+        if (matchedRights != null) {
+          matchedRights.add(candidate);
+        }
+        sink.send(Row.asCopy(context.values));
+      }
+      switch (joinType) {
+      case SEMI:
+        if (matched) {
+          sink.send(left);
+        }
+        break;
+      case ANTI:
+        if (!matched) {
+          sink.send(left);
+        }
+        break;
+      default:
+        if (!matched && joinType.generatesNullsOnRight()) {
+          Arrays.fill(context.values, leftCount, leftCount + rightCount,
+              null);
           sink.send(Row.asCopy(context.values));
         }
       }
     }
+
+    // Right rows that matched no left row.
+    if (matchedRights != null) {
+      Arrays.fill(context.values, 0, leftCount, null);
+      final List<List<Row>> rightLists = new ArrayList<>(rightMap.values());
+      rightLists.add(rightList);
+      for (List<Row> rows : rightLists) {
+        for (Row row : rows) {
+          if (!matchedRights.contains(row)) {
+            System.arraycopy(row.getValues(), 0, context.values, leftCount,
+                rightCount);
+            sink.send(Row.asCopy(context.values));
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns the key of a row, or null if it has a null value in a key
+   * that does not match nulls. */
+  private List<Object> key(Row row, ImmutableIntList keys) {
+    final Object[] values = new Object[keys.size()];
+    for (int i = 0; i < values.length; i++) {
+      Object value = row.getObject(keys.get(i));
+      if (value == null) {
+        if (filterNulls[i]) {
+          return null;
+        }
+      } else if (value instanceof BigDecimal) {
+        // 1.0 and 1.00 are equal in SQL but not according to equals()
+        value = ((BigDecimal) value).stripTrailingZeros();
+      }
+      values[i] = value;
+    }
+    return Arrays.asList(values);
   }
 }
 
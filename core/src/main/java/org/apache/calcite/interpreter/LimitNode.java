@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.interpreter;
+
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rex.RexLiteral;
+
+/**
+ * Interpreter node that implements a
+ * {@link org.apache.calcite.rel.core.Sort} that has no collation, only an
+ * offset and/or fetch.
+ *
+ * <p>Unlike {@link SortNode}, it does not need to read all of its input, and
+ * stops reading once it has returned {@code offset + fetch} rows.
+ */
+public class LimitNode extends AbstractPipelinedNode<Sort> {
+  private final int offset;
+  private final int fetch;
+
+  public LimitNode(Compiler compiler, Sort rel) {
+    super(compiler, rel);
+    assert rel.getCollation().getFieldCollations().isEmpty();
+    this.offset =
+        rel.offset == null
+            ? 0
+            : ((RexLiteral) rel.offset).getValueAs(Integer.class);
+    this.fetch =
+        rel.fetch == null
+            ? -1
+            : ((RexLiteral) rel.fetch).getValueAs(Integer.class);
+  }
+
+  protected Enumerator<Row> enumerator() {
+    final Source source = compiler.source(rel, 0);
+    return new RowEnumerator(source) {
+      int skipped = 0;
+      int returned = 0;
+
+      protected Row next() {
+        if (fetch >= 0 && returned >= fetch) {
+          return null;
+        }
+        for (; skipped < offset; skipped++) {
+          if (source.receive() == null) {
+            return null;
+          }
+        }
+        final Row row = source.receive();
+        if (row != null) {
+          ++returned;
+        }
+        return row;
+      }
+    };
+  }
+}
+
+// End LimitNode.java
@@ -41,8 +41,9 @@ public class Nodes {
    * that knows how to handle the core logical
    * {@link org.apache.calcite.rel.RelNode}s. */
   public static class CoreCompiler extends Interpreter.CompilerImpl {
-    CoreCompiler(Interpreter interpreter, RelOptCluster cluster) {
-      super(interpreter, cluster);
+    CoreCompiler(Interpreter interpreter, RelOptCluster cluster,
+        Interpreter.ScalarCompiler scalarCompiler) {
+      super(interpreter, cluster, scalarCompiler);
     }
 
     public void visit(Aggregate agg) {
@@ -71,7 +72,7 @@ public void visit(Bindables.BindableTableScan scan) {
     }
 
     public void visit(Sort sort) {
-      node = new SortNode(this, sort);
+      node = SortNode.create(this, sort);
     }
 
     public void visit(Union union) {
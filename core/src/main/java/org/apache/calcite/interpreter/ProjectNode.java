@@ -16,13 +16,14 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.core.Project;
 
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Project}.
  */
-public class ProjectNode extends AbstractSingleNode<Project> {
+public class ProjectNode extends AbstractPipelinedNode<Project> {
   private final Scalar scalar;
   private final Context context;
   private final int projectCount;
@@ -35,14 +36,20 @@ public ProjectNode(Compiler compiler, Project rel) {
     this.context = compiler.createContext();
   }
 
-  public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Object[] values = new Object[projectCount];
-      scalar.execute(context, values);
-      sink.send(new Row(values));
-    }
+  protected Enumerator<Row> enumerator() {
+    final Source source = compiler.source(rel, 0);
+    return new RowEnumerator(source) {
+      protected Row next() {
+        final Row row = source.receive();
+        if (row == null) {
+          return null;
+        }
+        context.values = row.getValues();
+        Object[] values = new Object[projectCount];
+        scalar.execute(context, values);
+        return new Row(values);
+      }
+    };
   }
 }
 
@@ -36,6 +36,15 @@ public SortNode(Compiler compiler, Sort rel) {
     super(compiler, rel);
   }
 
+  /** Creates a node that implements a {@link Sort}; a {@link LimitNode} if
+   * the sort has no collation, otherwise a {@code SortNode}. */
+  public static Node create(Compiler compiler, Sort rel) {
+    if (rel.getCollation().getFieldCollations().isEmpty()) {
+      return new LimitNode(compiler, rel);
+    }
+    return new SortNode(compiler, rel);
+  }
+
   public void run() throws InterruptedException {
     final int offset =
         rel.offset == null
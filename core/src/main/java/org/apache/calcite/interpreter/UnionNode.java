@@ -16,10 +16,9 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.core.Union;
 
-import com.google.common.collect.ImmutableList;
-
 import java.util.HashSet;
 import java.util.Set;
 
@@ -27,31 +26,32 @@
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Union}.
  */
-public class UnionNode implements Node {
-  private final ImmutableList<Source> sources;
-  private final Sink sink;
-  private final Union rel;
-
+public class UnionNode extends AbstractPipelinedNode<Union> {
   public UnionNode(Compiler compiler, Union rel) {
-    ImmutableList.Builder<Source> builder = ImmutableList.builder();
-    for (int i = 0; i < rel.getInputs().size(); i++) {
-      builder.add(compiler.source(rel, i));
-    }
-    this.sources = builder.build();
-    this.sink = compiler.sink(rel);
-    this.rel = rel;
+    super(compiler, rel);
   }
 
-  public void run() throws InterruptedException {
+  protected Enumerator<Row> enumerator() {
+    final Source[] sources = new Source[rel.getInputs().size()];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = compiler.source(rel, i);
+    }
     final Set<Row> rows = rel.all ? null : new HashSet<>();
-    for (Source source : sources) {
-      Row row;
-      while ((row = source.receive()) != null) {
-        if (rows == null || rows.add(row)) {
-          sink.send(row);
+    return new RowEnumerator(sources) {
+      int i = 0;
+
+      protected Row next() {
+        for (; i < sources.size(); i++) {
+          Row row;
+          while ((row = sources.get(i).receive()) != null) {
+            if (rows == null || rows.add(row)) {
+              return row;
+            }
+          }
         }
+        return null;
       }
-    }
+    };
   }
 }
 
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
@@ -28,16 +29,19 @@
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Values}.
+ *
+ * <p>The rows are computed when the node is created, and are given to the
+ * consumer as an enumerable, so there is nothing to do when the node is
+ * run.
  */
 public class ValuesNode implements Node {
-  private final Sink sink;
   private final int fieldCount;
   private final ImmutableList<Row> rows;
 
   public ValuesNode(Compiler compiler, Values rel) {
-    this.sink = compiler.sink(rel);
     this.fieldCount = rel.getRowType().getFieldCount();
     this.rows = createRows(compiler, rel.getTuples());
+    compiler.enumerable(rel, Linq4j.asEnumerable(rows));
   }
 
   private ImmutableList<Row> createRows(Compiler compiler,
@@ -59,11 +63,7 @@ private ImmutableList<Row> createRows(Compiler compiler,
     return rows.build();
   }
 
-  public void run() throws InterruptedException {
-    for (Row row : rows) {
-      sink.send(row);
-    }
-    sink.end();
+  public void run() {
   }
 }
 
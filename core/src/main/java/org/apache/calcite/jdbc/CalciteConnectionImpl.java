@@ -44,6 +44,7 @@
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.runtime.Hook;
@@ -98,6 +99,7 @@
   final CalciteSchema rootSchema;
   final Function0<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
+  final PlanCache planCache;
 
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
@@ -145,6 +147,9 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
     this.properties.put(InternalProperty.QUOTING, cfg.quoting());
+    this.planCache = cfg.planCacheSize() > 0
+        ? new PlanCache(cfg.planCacheSize())
+        : null;
   }
 
   CalciteMetaImpl meta() {
@@ -563,6 +568,10 @@ public RelRunner getRelRunner() {
       return runner;
     }
 
+    @Override public PlanCache getPlanCache() {
+      return connection.planCache;
+    }
+
     public CalcitePrepare.SparkHandler spark() {
       final boolean enable = config().spark();
       return CalcitePrepare.Dummy.getSparkHandler(enable);
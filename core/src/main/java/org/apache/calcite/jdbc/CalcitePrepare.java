@@ -30,6 +30,7 @@
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
@@ -127,6 +128,12 @@ interface Context {
 
     /** Gets a runner; it can execute a relational expression. */
     RelRunner getRelRunner();
+
+    /** Returns the cache of prepared queries, or null if queries are not to
+     * be cached. */
+    default PlanCache getPlanCache() {
+      return null;
+    }
   }
 
   /** Callback to register Spark as the main engine. */
@@ -364,6 +371,18 @@ public Enumerable<T> enumerable(DataContext dataContext) {
     public List<RelCollation> getCollationList() {
       return collationList;
     }
+
+    /** Creates a copy of this signature, for a statement that re-uses the
+     * plan and generated code of the statement that this signature was
+     * prepared for. */
+    public CalciteSignature<T> copy(String sql,
+        List<AvaticaParameter> parameterList,
+        Map<String, Object> internalParameters, CalciteSchema rootSchema,
+        long maxRowCount) {
+      return new CalciteSignature<>(sql, parameterList, internalParameters,
+          rowType, columns, cursorFactory, rootSchema, collationList,
+          maxRowCount, bindable, statementType);
+    }
   }
 
   /** A union type of the three possible ways of expressing a query: as a SQL
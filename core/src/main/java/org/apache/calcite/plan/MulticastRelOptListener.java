@@ -76,6 +76,13 @@ public void relChosen(RelChosenEvent event) {
     }
   }
 
+  // implement RelOptListener
+  public void planningCompleted(PlanningCompletedEvent event) {
+    for (RelOptListener listener : listeners) {
+      listener.planningCompleted(event);
+    }
+  }
+
   // implement RelOptListener
   public void relDiscarded(RelDiscardedEvent event) {
     for (RelOptListener listener : listeners) {
@@ -79,6 +79,18 @@ public interface RelOptListener extends EventListener {
    */
   void relChosen(RelChosenEvent event);
 
+  /**
+   * Notifies this listener that the planner has finished searching for the
+   * best plan, and reports how much work it did. The rel attribute of the
+   * event is the chosen plan.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param event details about the event
+   */
+  default void planningCompleted(PlanningCompletedEvent event) {
+  }
+
   //~ Inner Classes ----------------------------------------------------------
 
   /**
@@ -105,6 +117,52 @@ public RelChosenEvent(Object eventSource, RelNode rel) {
     }
   }
 
+  /** Event indicating that the planner has finished searching for the best
+   * plan. */
+  class PlanningCompletedEvent extends RelEvent {
+    private final int ruleMatchCount;
+    private final int relCount;
+    private final long elapsedMillis;
+    private final boolean budgetExhausted;
+
+    public PlanningCompletedEvent(
+        Object eventSource,
+        RelNode rel,
+        int ruleMatchCount,
+        int relCount,
+        long elapsedMillis,
+        boolean budgetExhausted) {
+      super(eventSource, rel);
+      this.ruleMatchCount = ruleMatchCount;
+      this.relCount = relCount;
+      this.elapsedMillis = elapsedMillis;
+      this.budgetExhausted = budgetExhausted;
+    }
+
+    /** Returns the number of rule matches that were fired. */
+    public int getRuleMatchCount() {
+      return ruleMatchCount;
+    }
+
+    /** Returns the number of relational expressions registered with the
+     * planner. */
+    public int getRelCount() {
+      return relCount;
+    }
+
+    /** Returns the time spent searching, in milliseconds. */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    /** Returns whether the planner stopped because it had used its planning
+     * budget, rather than because it had run out of rule matches; if so, the
+     * chosen plan is the best found so far, and a better plan may exist. */
+    public boolean isBudgetExhausted() {
+      return budgetExhausted;
+    }
+  }
+
   /** Event indicating that a relational expression has been found to
    * be equivalent to an equivalence class. */
   class RelEquivalenceEvent extends RelEvent {
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the materializations registered with a planner, used to choose
+ * which materializations are worth trying to use in a query.
+ *
+ * <p>Without an index, every materialization is matched against every
+ * query, so planning time grows with the number of materializations. The
+ * index maps each table to the materializations whose definition uses that
+ * table, directly or through another materialization; a materialization is a
+ * candidate for a query only if it uses at least one table that the query
+ * uses. It also records the tables that each materialization's definition
+ * scans directly, so that {@link RelOptMaterializations} can skip
+ * materializations that scan a table the query cannot contain.
+ *
+ * <p>The index also keeps {@link Metrics} for each materialization: how often
+ * the planner tried to use it, how often it succeeded, and how long it spent.
+ */
+public class RelOptMaterializationIndex {
+  private final Map<RelOptMaterialization, Entry> entries =
+      new LinkedHashMap<>();
+
+  /** Maps a table's qualified name to the materializations that use it;
+   * null if it needs to be rebuilt. */
+  private SetMultimap<List<String>, RelOptMaterialization> byTable =
+      LinkedHashMultimap.create();
+
+  /** Creates an empty index. */
+  public RelOptMaterializationIndex() {
+  }
+
+  /** Creates an index of the given materializations. */
+  public RelOptMaterializationIndex(
+      Collection<RelOptMaterialization> materializations) {
+    for (RelOptMaterialization materialization : materializations) {
+      add(materialization);
+    }
+  }
+
+  /** Adds a materialization to the index. */
+  public synchronized void add(RelOptMaterialization materialization) {
+    if (!entries.containsKey(materialization)) {
+      entries.put(materialization, new Entry(materialization));
+      byTable = null;
+    }
+  }
+
+  /** Removes all materializations. */
+  public synchronized void clear() {
+    entries.clear();
+    byTable = LinkedHashMultimap.create();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /** Returns all materializations, in the order they were added. */
+  public List<RelOptMaterialization> getMaterializations() {
+    return ImmutableList.copyOf(entries.keySet());
+  }
+
+  /** Returns the materializations that use at least one of the given tables,
+   * directly or through other materializations, in the order they were
+   * added. */
+  public List<RelOptMaterialization> getCandidates(
+      Collection<List<String>> tableNames) {
+    final SetMultimap<List<String>, RelOptMaterialization> byTable =
+        byTable();
+    final Set<RelOptMaterialization> candidates = new HashSet<>();
+    for (List<String> tableName : tableNames) {
+      candidates.addAll(byTable.get(tableName));
+    }
+    final List<RelOptMaterialization> list = new ArrayList<>();
+    for (RelOptMaterialization materialization : entries.keySet()) {
+      if (candidates.contains(materialization)) {
+        list.add(materialization);
+      }
+    }
+    return list;
+  }
+
+  /** Returns the qualified names of the tables that a materialization's
+   * definition scans directly. */
+  public Set<List<String>> getTableNames(
+      RelOptMaterialization materialization) {
+    return entry(materialization).tableNames;
+  }
+
+  /** Returns the metrics of a materialization. */
+  public Metrics getMetrics(RelOptMaterialization materialization) {
+    return entry(materialization).metrics;
+  }
+
+  private Entry entry(RelOptMaterialization materialization) {
+    final Entry entry = entries.get(materialization);
+    return entry != null ? entry : new Entry(materialization);
+  }
+
+  /** Returns the map from table names to materializations, rebuilding it if
+   * materializations have been added since it was last built. */
+  private synchronized SetMultimap<List<String>, RelOptMaterialization>
+      byTable() {
+    if (byTable == null) {
+      // Materializations may be defined in terms of other materializations;
+      // find the tables that each uses, directly or indirectly.
+      final Map<List<String>, RelOptMaterialization> byName = new HashMap<>();
+      for (RelOptMaterialization materialization : entries.keySet()) {
+        if (materialization.qualifiedTableName != null) {
+          byName.put(materialization.qualifiedTableName, materialization);
+        }
+      }
+      final SetMultimap<List<String>, RelOptMaterialization> map =
+          LinkedHashMultimap.create();
+      for (Entry entry : entries.values()) {
+        final Set<RelOptMaterialization> seen = new HashSet<>();
+        addTables(map, entry.materialization, entry, byName, seen);
+      }
+      byTable = map;
+    }
+    return byTable;
+  }
+
+  private void addTables(
+      SetMultimap<List<String>, RelOptMaterialization> map,
+      RelOptMaterialization materialization, Entry entry,
+      Map<List<String>, RelOptMaterialization> byName,
+      Set<RelOptMaterialization> seen) {
+    if (!seen.add(entry.materialization)) {
+      return;
+    }
+    for (List<String> tableName : entry.tableNames) {
+      map.put(tableName, materialization);
+      final RelOptMaterialization used = byName.get(tableName);
+      if (used != null) {
+        addTables(map, materialization, entries.get(used), byName, seen);
+      }
+    }
+  }
+
+  /** Information about a materialization. */
+  private static class Entry {
+    final RelOptMaterialization materialization;
+    final Set<List<String>> tableNames;
+    final Metrics metrics = new Metrics();
+
+    Entry(RelOptMaterialization materialization) {
+      this.materialization = materialization;
+      final ImmutableSet.Builder<List<String>> b = ImmutableSet.builder();
+      for (RelOptTable table : RelOptUtil.findTables(materialization.queryRel)) {
+        b.add(table.getQualifiedName());
+      }
+      this.tableNames = b.build();
+    }
+  }
+
+  /** Planning cost of a materialization. */
+  public static class Metrics {
+    private long attemptCount;
+    private long rewriteCount;
+    private long elapsedNanos;
+
+    /** Records an attempt to use the materialization. */
+    public synchronized void recordAttempt(boolean rewritten,
+        long elapsedNanos) {
+      ++attemptCount;
+      if (rewritten) {
+        ++rewriteCount;
+      }
+      this.elapsedNanos += elapsedNanos;
+    }
+
+    /** Returns the number of times that the planner tried to use the
+     * materialization. */
+    public synchronized long getAttemptCount() {
+      return attemptCount;
+    }
+
+    /** Returns the number of times that the planner succeeded in rewriting a
+     * query using the materialization. */
+    public synchronized long getRewriteCount() {
+      return rewriteCount;
+    }
+
+    /** Returns the time, in nanoseconds, that the planner spent trying to
+     * use the materialization. */
+    public synchronized long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    @Override public synchronized String toString() {
+      return "attempts: " + attemptCount
+          + ", rewrites: " + rewriteCount
+          + ", elapsedNanos: " + elapsedNanos;
+    }
+  }
+}
+
+// End RelOptMaterializationIndex.java
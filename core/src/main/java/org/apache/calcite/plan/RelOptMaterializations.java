@@ -38,6 +38,7 @@
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,17 +61,48 @@ public abstract class RelOptMaterializations {
    */
   public static List<Pair<RelNode, List<RelOptMaterialization>>> useMaterializedViews(
       final RelNode rel, List<RelOptMaterialization> materializations) {
+    return useMaterializedViews(rel,
+        new RelOptMaterializationIndex(materializations));
+  }
+
+  /**
+   * Returns a list of RelNode transformed from all possible combination of
+   * materialized view uses, considering only the materializations in
+   * {@code index} that might match the query, and recording the cost of
+   * each attempt in the index's {@link RelOptMaterializationIndex.Metrics}.
+   *
+   * @param rel    the original RelNode
+   * @param index  index of the materialized views
+   * @return the list of transformed RelNode together with their corresponding
+   *         materialized views used in the transformation.
+   */
+  public static List<Pair<RelNode, List<RelOptMaterialization>>> useMaterializedViews(
+      final RelNode rel, RelOptMaterializationIndex index) {
     final List<RelOptMaterialization> applicableMaterializations =
-        getApplicableMaterializations(rel, materializations);
+        getApplicableMaterializations(rel, index);
     final List<Pair<RelNode, List<RelOptMaterialization>>> applied =
         new ArrayList<>();
     applied.add(Pair.of(rel, ImmutableList.of()));
+    // A materialization can only be substituted if every table that its
+    // definition scans is in the query, or is a materialization that has
+    // already been substituted into the query.
+    final Set<List<String>> availableTableNames = new HashSet<>();
+    for (RelOptTable table : RelOptUtil.findTables(rel)) {
+      availableTableNames.add(table.getQualifiedName());
+    }
     for (RelOptMaterialization m : applicableMaterializations) {
+      if (!availableTableNames.containsAll(index.getTableNames(m))) {
+        continue;
+      }
       int count = applied.size();
       for (int i = 0; i < count; i++) {
         Pair<RelNode, List<RelOptMaterialization>> current = applied.get(i);
+        final long start = System.nanoTime();
         List<RelNode> sub = substitute(current.left, m);
+        index.getMetrics(m).recordAttempt(!sub.isEmpty(),
+            System.nanoTime() - start);
         if (!sub.isEmpty()) {
+          availableTableNames.add(m.qualifiedTableName);
           ImmutableList.Builder<RelOptMaterialization> builder =
               ImmutableList.builder();
           builder.addAll(current.right);
@@ -121,6 +153,18 @@ public static List<Pair<RelNode, RelOptLattice>> useLattices(
     return latticeUses;
   }
 
+  /**
+   * Returns a list of materializations that can potentially be used by the query.
+   */
+  public static List<RelOptMaterialization> getApplicableMaterializations(
+      RelNode rel, RelOptMaterializationIndex index) {
+    final Set<List<String>> tableNames = new HashSet<>();
+    for (RelOptTable table : RelOptUtil.findTables(rel)) {
+      tableNames.add(table.getQualifiedName());
+    }
+    return getApplicableMaterializations(rel, index.getCandidates(tableNames));
+  }
+
   /**
    * Returns a list of materializations that can potentially be used by the query.
    */
@@ -176,6 +176,18 @@ public interface RelOptPlanner {
    */
   List<RelOptMaterialization> getMaterializations();
 
+  /**
+   * Returns an index of the materializations that have been registered with
+   * the planner.
+   *
+   * <p>The default implementation builds a new index from
+   * {@link #getMaterializations()} each time it is called; planners that
+   * hold materializations should keep an index and return it.
+   */
+  default RelOptMaterializationIndex getMaterializationIndex() {
+    return new RelOptMaterializationIndex(getMaterializations());
+  }
+
   /**
    * Defines a lattice.
    *
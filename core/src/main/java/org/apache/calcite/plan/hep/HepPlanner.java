@@ -25,6 +25,7 @@
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptCostImpl;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptMaterializationIndex;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleOperand;
@@ -101,8 +102,8 @@ public class HepPlanner extends AbstractRelOptPlanner {
 
   private final Function2<RelNode, RelNode, Void> onCopyHook;
 
-  private final List<RelOptMaterialization> materializations =
-      new ArrayList<>();
+  private final RelOptMaterializationIndex materializationIndex =
+      new RelOptMaterializationIndex();
 
   //~ Constructors -----------------------------------------------------------
 
@@ -177,7 +178,7 @@ public boolean addRule(RelOptRule rule) {
     for (RelOptRule rule : ImmutableList.copyOf(allRules)) {
       removeRule(rule);
     }
-    this.materializations.clear();
+    this.materializationIndex.clear();
   }
 
   public boolean removeRule(RelOptRule rule) {
@@ -1034,11 +1035,15 @@ public long getRelMetadataTimestamp(RelNode rel) {
   }
 
   @Override public ImmutableList<RelOptMaterialization> getMaterializations() {
-    return ImmutableList.copyOf(materializations);
+    return ImmutableList.copyOf(materializationIndex.getMaterializations());
+  }
+
+  @Override public RelOptMaterializationIndex getMaterializationIndex() {
+    return materializationIndex;
   }
 
   @Override public void addMaterialization(RelOptMaterialization materialization) {
-    materializations.add(materialization);
+    materializationIndex.add(materialization);
   }
 }
 
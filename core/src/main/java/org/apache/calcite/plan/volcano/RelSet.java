@@ -268,6 +268,7 @@ private void postEquivalenceEvent(VolcanoPlanner planner, RelNode rel) {
   void addInternal(RelNode rel) {
     if (!rels.contains(rel)) {
       rels.add(rel);
+      clearMetadataCache();
       for (RelTrait trait : rel.getTraitSet()) {
         assert trait == trait.getTraitDef().canonize(trait);
       }
@@ -289,6 +290,14 @@ void addInternal(RelNode rel) {
     }
   }
 
+  /** Discards the cached metadata of each subset of this set, and of the
+   * relational expressions whose metadata was derived from it. */
+  void clearMetadataCache() {
+    for (RelSubset subset : subsets) {
+      subset.clearMetadataCache();
+    }
+  }
+
   /**
    * Merges <code>otherSet</code> into this RelSet.
    *
@@ -311,6 +320,7 @@ void mergeWith(
     assert otherSet.equivalentSet == null;
     LOGGER.trace("Merge set#{} into set#{}", otherSet.id, id);
     otherSet.equivalentSet = this;
+    planner.ruleQueue.mergeSets(this, otherSet);
 
     // remove from table
     boolean existed = planner.allSets.remove(otherSet);
@@ -330,7 +340,9 @@ void mergeWith(
       for (RelNode otherRel : otherSubset.getRels()) {
         planner.reregister(this, otherRel);
       }
+      otherSubset.clearMetadataCache();
     }
+    clearMetadataCache();
 
     // Has another set merged with this?
     assert equivalentSet == null;
@@ -350,6 +350,7 @@ void propagateCostImprovements0(VolcanoPlanner planner, RelMetadataQuery mq,
 
         bestCost = cost;
         best = rel;
+        clearMetadataCache();
 
         // Lower cost means lower importance. Other nodes will change
         // too, but we'll get to them later.
@@ -366,6 +367,13 @@ void propagateCostImprovements0(VolcanoPlanner planner, RelMetadataQuery mq,
     }
   }
 
+  /** Discards cached metadata of this subset, and of the relational
+   * expressions whose metadata was derived from it. Called when the subset's
+   * expressions or its best expression change. */
+  void clearMetadataCache() {
+    getCluster().getMetadataQuery().clearCache(this);
+  }
+
   public void propagateBoostRemoval(VolcanoPlanner planner) {
     planner.ruleQueue.recompute(this);
 
@@ -27,6 +27,7 @@
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 
@@ -37,11 +38,13 @@
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -345,8 +348,22 @@ void addMatch(VolcanoRuleMatch match) {
 
       matchList.list.add(match);
 
-      matchList.matchMap.put(
-          planner.getSubset(match.rels[0]), match);
+      final RelSubset subset = planner.getSubset(match.rels[0]);
+      matchList.matchMap.put(subset, match);
+      if (subset != null) {
+        matchList.setMatches.put(VolcanoPlanner.equivRoot(subset.set), match);
+      }
+    }
+  }
+
+  /**
+   * Called when one equivalence set is merged into another; from now on,
+   * rule matches queued for the obsolete set belong to the surviving set.
+   */
+  void mergeSets(RelSet set, RelSet otherSet) {
+    for (PhaseMatchList matchList : matchListMap.values()) {
+      matchList.setMatches.putAll(set,
+          matchList.setMatches.removeAll(otherSet));
     }
   }
 
@@ -433,6 +450,7 @@ private void dump(PrintWriter pw) {
    *                              {@link #phaseCompleted(VolcanoPlannerPhase)}.
    */
   VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
+    planner.queueDeferredRuleMatches();
     dump();
 
     PhaseMatchList phaseMatchList = matchListMap.get(phase);
@@ -479,6 +497,15 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
         match = matchList.remove(bestPos);
       }
 
+      if (phaseMatchList.poppedBySet.remove(match)) {
+        // Already returned by popMatch(VolcanoPlannerPhase, RelSet)
+        continue;
+      }
+      final RelSubset subset = planner.getSubset(match.rels[0]);
+      if (subset != null) {
+        phaseMatchList.setMatches.remove(VolcanoPlanner.equivRoot(subset.set),
+            match);
+      }
       if (skipMatch(match)) {
         LOGGER.debug("Skip match: {}", match);
       } else {
@@ -498,6 +525,43 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
     return match;
   }
 
+  /**
+   * Removes a rule match whose root operand belongs to a given equivalence
+   * set, and returns it. Unlike {@link #popMatch(VolcanoPlannerPhase)}, does
+   * not consider importance; matches are returned in the order they were
+   * queued.
+   *
+   * <p>Matches are indexed by set, so this method does not scan the whole
+   * queue. A match that it returns stays in the importance-ordered list
+   * until {@link #popMatch(VolcanoPlannerPhase)} reaches and discards it.
+   *
+   * <p>Returns {@code null} if there are no more matches for the set.
+   */
+  VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase, RelSet set) {
+    planner.queueDeferredRuleMatches();
+    final PhaseMatchList phaseMatchList = matchListMap.get(phase);
+    if (phaseMatchList == null) {
+      throw new AssertionError("Used match list for phase " + phase
+          + " after phase complete");
+    }
+    final Iterator<VolcanoRuleMatch> iterator =
+        phaseMatchList.setMatches.get(set).iterator();
+    while (iterator.hasNext()) {
+      final VolcanoRuleMatch match = iterator.next();
+      iterator.remove();
+      phaseMatchList.poppedBySet.add(match);
+      phaseMatchList.matchMap.remove(planner.getSubset(match.rels[0]), match);
+      if (skipMatch(match)) {
+        LOGGER.debug("Skip match: {}", match);
+        continue;
+      }
+      match.recomputeDigest();
+      LOGGER.debug("Pop match: {}", match);
+      return match;
+    }
+    return null;
+  }
+
   /** Returns whether to skip a match. This happens if any of the
    * {@link RelNode}s have importance zero. */
   private boolean skipMatch(VolcanoRuleMatch match) {
@@ -685,6 +749,22 @@ private static class PhaseMatchList {
     final Multimap<RelSubset, VolcanoRuleMatch> matchMap =
         HashMultimap.create();
 
+    /**
+     * Multi-map of the equivalence set of each rule-match's root operand to
+     * rule-matches, in the order they were queued. Allows
+     * {@link RuleQueue#popMatch(VolcanoPlannerPhase, RelSet)} to find a set's
+     * matches without scanning {@link #list}.
+     */
+    final Multimap<RelSet, VolcanoRuleMatch> setMatches =
+        LinkedHashMultimap.create();
+
+    /**
+     * Rule-matches that have been popped by set but are still in
+     * {@link #list}.
+     */
+    final Set<VolcanoRuleMatch> poppedBySet =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+
     PhaseMatchList(VolcanoPlannerPhase phase) {
       this.phase = phase;
     }
@@ -693,6 +773,8 @@ void clear() {
       list.clear();
       names.clear();
       matchMap.clear();
+      setMatches.clear();
+      poppedBySet.clear();
     }
   }
 }
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Fires the rules of a {@link VolcanoPlanner} top-down, in the style of the
+ * Cascades optimizer, rather than in order of importance.
+ *
+ * <p>A <dfn>goal</dfn> is a {@link RelSubset}, that is, an equivalence set
+ * and the traits that its plan must have. To optimize a goal, the driver
+ * fires the queued rule matches of the goal's set, then optimizes the inputs
+ * of each physical expression in the set, recursively, cheapest expression
+ * first. The inputs of logical expressions are explored too, without a
+ * bound, because transformation rules there may yield cheaper physical
+ * plans.
+ *
+ * <p>Each goal is optimized with an upper bound: the cost of the best plan
+ * that its consumer already has, less the consumer's own cost and the cost
+ * of the consumer's other inputs. An expression whose own cost is greater
+ * than the bound cannot be part of a cheaper plan, so its inputs are not
+ * optimized, and rule matches that are reachable only through it are never
+ * fired. The driver remembers the bound with which each goal was optimized,
+ * and optimizes the goal again only if it is asked with a larger bound.
+ *
+ * <p>When the root has been optimized, the driver fires the rule matches of
+ * sets that no expression consumes, such as those registered for
+ * materialized views. Firing rules may queue matches for goals that have
+ * already been optimized, so the driver repeats the whole pass until a pass
+ * fires no matches. Matches that then remain in the rule queue, because
+ * they are reachable only through pruned expressions, are discarded.
+ */
+class TopDownRuleDriver {
+  private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
+
+  /** Orders expressions by cost, and expressions of equal cost in the order
+   * they were created. */
+  private static final Comparator<Pair<RelOptCost, RelNode>> COST_COMPARATOR =
+      (p0, p1) -> p0.left.isLt(p1.left) ? -1
+          : p1.left.isLt(p0.left) ? 1
+          : Integer.compare(p0.right.getId(), p1.right.getId());
+
+  private final VolcanoPlanner planner;
+  private final VolcanoPlannerPhase phase;
+
+  /** Bound with which each goal has been optimized. */
+  private final Map<RelSubset, RelOptCost> bounds = new HashMap<>();
+
+  /** Sets that are being optimized. A set that is reached again, via a
+   * cycle, is not optimized a second time. */
+  private final Set<RelSet> activeSets = new HashSet<>();
+
+  /** Number of rule matches fired. */
+  private int fireCount;
+
+  /** Whether the planner has used its budget. */
+  private boolean stopped;
+
+  private final RelOptCost infiniteCost;
+
+  TopDownRuleDriver(VolcanoPlanner planner, VolcanoPlannerPhase phase) {
+    this.planner = planner;
+    this.phase = phase;
+    this.infiniteCost = planner.getCostFactory().makeInfiniteCost();
+  }
+
+  /** Optimizes the root of the planner.
+   *
+   * @return Whether the root was fully optimized; false if the planner
+   * stopped because it used its budget */
+  boolean drive() {
+    int fireCountBefore;
+    do {
+      fireCountBefore = fireCount;
+      bounds.clear();
+      optimize(planner.root, infiniteCost);
+      fireDetached();
+    } while (!stopped && fireCount > fireCountBefore);
+    return !stopped;
+  }
+
+  /** Fires the rule matches of sets that are not reachable from the root.
+   * Such a set, for example one registered for a materialized view, has no
+   * consumers, but its rules may merge it into a set that does. */
+  private void fireDetached() {
+    for (RelSet set : new ArrayList<>(planner.allSets)) {
+      if (set.equivalentSet != null
+          || set == planner.root.set
+          || !set.getParentRels().isEmpty()) {
+        continue;
+      }
+      for (;;) {
+        if (planner.isBudgetExhausted()) {
+          stopped = true;
+          return;
+        }
+        final VolcanoRuleMatch match =
+            planner.ruleQueue.popMatch(phase, set);
+        if (match == null) {
+          break;
+        }
+        fire(match);
+        if (set.equivalentSet != null) {
+          // Merged into another set; its remaining matches belong to that
+          // set now.
+          break;
+        }
+      }
+    }
+  }
+
+  /** Optimizes a goal, firing the rule matches of its set and optimizing
+   * the inputs of its physical expressions. */
+  private void optimize(RelSubset goal, RelOptCost bound) {
+    goal = planner.canonize(goal);
+    final RelOptCost previousBound = bounds.get(goal);
+    if (previousBound != null && !previousBound.isLt(bound)) {
+      // Already optimized, with at least as large a bound.
+      return;
+    }
+    final RelSet set = goal.set;
+    if (!activeSets.add(set)) {
+      return;
+    }
+    bounds.put(goal, bound);
+    try {
+      final Unvisited unvisited = new Unvisited();
+      for (;;) {
+        if (stopped || planner.isBudgetExhausted()) {
+          stopped = true;
+          return;
+        }
+        goal = planner.canonize(goal);
+        final VolcanoRuleMatch match =
+            planner.ruleQueue.popMatch(phase, goal.set);
+        if (match != null) {
+          fire(match);
+          continue;
+        }
+        final RelNode rel = unvisited.poll(goal);
+        if (rel == null) {
+          // No more rule matches, and the inputs of every expression have
+          // been optimized. Optimizing the inputs may have created new
+          // expressions, or rule matches, in this set; hence the loop.
+          return;
+        }
+        if (rel.getConvention() == Convention.NONE) {
+          // A logical expression has no cost, so it cannot be pruned; its
+          // inputs are explored so that transformation rules fire there.
+          optimizeInputs(rel, infiniteCost);
+        } else {
+          optimizeInputs(rel, min(bound, goal.bestCost));
+        }
+      }
+    } finally {
+      activeSets.remove(set);
+    }
+  }
+
+  private void fire(VolcanoRuleMatch match) {
+    planner.fireMatch(match);
+    ++fireCount;
+  }
+
+  /** Optimizes the inputs of an expression, unless its own cost shows that
+   * it cannot cost {@code bound} or less. Expressions that cost the same as
+   * the bound are kept, because cost models such as {@link VolcanoCost}
+   * compare only some components of a cost. */
+  private void optimizeInputs(RelNode rel, RelOptCost bound) {
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    RelOptCost remaining = bound;
+    if (!remaining.isInfinite()) {
+      final RelOptCost selfCost = mq.getNonCumulativeCost(rel);
+      if (selfCost == null || remaining.isLt(selfCost)) {
+        LOGGER.trace("Prune {}: self cost {}, bound {}", rel, selfCost,
+            remaining);
+        return;
+      }
+      remaining = remaining.minus(selfCost);
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (stopped) {
+        return;
+      }
+      final RelSubset subset = planner.getSubset(input);
+      if (subset == null) {
+        continue;
+      }
+      optimize(subset, remaining);
+      if (!remaining.isInfinite()) {
+        final RelOptCost inputCost = planner.canonize(subset).bestCost;
+        if (inputCost.isInfinite() || remaining.isLt(inputCost)) {
+          LOGGER.trace("Prune {}: input cost {}, bound {}", rel, inputCost,
+              remaining);
+          return;
+        }
+        remaining = remaining.minus(inputCost);
+      }
+    }
+  }
+
+  private static RelOptCost min(RelOptCost cost0, RelOptCost cost1) {
+    return cost1.isLt(cost0) ? cost1 : cost0;
+  }
+
+  /** Expressions in a goal's set whose inputs have not been optimized,
+   * cheapest first. Logical expressions have infinite cost, so they come
+   * last.
+   *
+   * <p>Expressions whose traits do not satisfy the goal are included,
+   * because a converter may change their traits; if they are more expensive
+   * than the bound, so is the converter.
+   *
+   * <p>The cost of each expression is computed once, when it is first seen.
+   * Expressions are appended to a set's list as they are registered, so each
+   * call looks only at those added since the previous call. Because the
+   * list may also shrink, or be replaced when sets merge, the whole list is
+   * scanned again before reporting that there are none left. */
+  private class Unvisited {
+    private final PriorityQueue<Pair<RelOptCost, RelNode>> queue =
+        new PriorityQueue<>(COST_COMPARATOR);
+    private final Set<RelNode> seen = new HashSet<>();
+    private RelSet set;
+    private int scanned;
+
+    /** Removes and returns the cheapest expression whose inputs have not
+     * been optimized, or returns null if there are none. */
+    RelNode poll(RelSubset goal) {
+      scan(goal, false);
+      if (queue.isEmpty()) {
+        scan(goal, true);
+      }
+      final Pair<RelOptCost, RelNode> pair = queue.poll();
+      return pair == null ? null : pair.right;
+    }
+
+    private void scan(RelSubset goal, boolean full) {
+      final List<RelNode> rels = goal.set.rels;
+      if (full || goal.set != set || rels.size() < scanned) {
+        set = goal.set;
+        scanned = 0;
+      }
+      final RelMetadataQuery mq = goal.getCluster().getMetadataQuery();
+      for (; scanned < rels.size(); scanned++) {
+        final RelNode rel = rels.get(scanned);
+        if (seen.add(rel)) {
+          queue.add(Pair.of(planner.getCost(rel, mq), rel));
+        }
+      }
+    }
+  }
+}
+
+// End TopDownRuleDriver.java
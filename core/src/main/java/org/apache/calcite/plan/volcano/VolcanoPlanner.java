@@ -29,6 +29,7 @@
 import org.apache.calcite.plan.RelOptLattice;
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptMaterializationIndex;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
@@ -57,6 +58,7 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
@@ -80,6 +82,12 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -90,6 +98,25 @@
 public class VolcanoPlanner extends AbstractRelOptPlanner {
   protected static final double COST_IMPROVEMENT = .5;
 
+  private static final AtomicInteger MATCHER_THREAD_COUNTER =
+      new AtomicInteger();
+
+  /** Minimum number of rule calls that a matcher thread is given; a batch
+   * with fewer calls per thread uses fewer threads, down to just the
+   * planner's thread, because handing off a small amount of work costs more
+   * than it saves. */
+  private static final int MIN_CALLS_PER_TASK = 32;
+
+  /** Threads on which rule matches are generated if
+   * {@link #setRuleMatchParallelism(int)} is greater than 1. */
+  private static final ExecutorService MATCHER_EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r,
+            "calcite-rule-matcher-" + MATCHER_THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
   //~ Instance fields --------------------------------------------------------
 
   protected RelSubset root;
@@ -118,6 +145,61 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   protected boolean impatient = false;
 
+  /**
+   * Maximum time, in milliseconds, that {@link #findBestExp()} may spend
+   * firing rules. Negative means no limit.
+   */
+  private long timeLimitMillis = -1;
+
+  /**
+   * Maximum number of rule matches that {@link #findBestExp()} may fire.
+   * Negative means no limit.
+   */
+  private int ruleMatchLimit = -1;
+
+  /**
+   * Maximum number of relational expressions that may be registered before
+   * {@link #findBestExp()} stops firing rules. Negative means no limit.
+   */
+  private int relLimit = -1;
+
+  /**
+   * Number of relational expressions registered by the current call to
+   * {@link #findBestExp()}.
+   */
+  private int relCount;
+
+  /**
+   * Number of rule matches fired by the current call to
+   * {@link #findBestExp()}.
+   */
+  private int ruleMatchCount;
+
+  /**
+   * Value of {@link System#nanoTime()} when the current call to
+   * {@link #findBestExp()} started.
+   */
+  private long startNanos;
+
+  /**
+   * Whether {@link #findBestExp()} uses a {@link TopDownRuleDriver} rather
+   * than firing rule matches in order of importance.
+   */
+  private boolean topDownOpt;
+
+  /**
+   * Number of threads that generate the rule matches of a newly registered
+   * relational expression; see {@link #setRuleMatchParallelism(int)}.
+   */
+  private int ruleMatchParallelism = 1;
+
+  /**
+   * Relational expressions that have been registered but whose rule matches
+   * have not yet been generated; used if {@link #ruleMatchParallelism} is
+   * greater than 1. See {@link #queueDeferredRuleMatches()}.
+   */
+  private final List<RelNode> unmatchedRels = new ArrayList<>();
+
   /**
    * Operands that apply to a given class of {@link RelNode}.
    *
@@ -215,8 +297,8 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   private boolean noneConventionHasInfiniteCost = true;
 
-  private final List<RelOptMaterialization> materializations =
-      new ArrayList<>();
+  private final RelOptMaterializationIndex materializationIndex =
+      new RelOptMaterializationIndex();
 
   /**
    * Map of lattices by the qualified name of their star table.
@@ -308,12 +390,16 @@ public RelNode getRoot() {
   }
 
   @Override public List<RelOptMaterialization> getMaterializations() {
-    return ImmutableList.copyOf(materializations);
+    return materializationIndex.getMaterializations();
+  }
+
+  @Override public RelOptMaterializationIndex getMaterializationIndex() {
+    return materializationIndex;
   }
 
   @Override public void addMaterialization(
       RelOptMaterialization materialization) {
-    materializations.add(materialization);
+    materializationIndex.add(materialization);
   }
 
   @Override public void addLattice(RelOptLattice lattice) {
@@ -334,7 +420,8 @@ protected void registerMaterializations() {
 
     // Register rels using materialized views.
     final List<Pair<RelNode, List<RelOptMaterialization>>> materializationUses =
-        RelOptMaterializations.useMaterializedViews(originalRoot, materializations);
+        RelOptMaterializations.useMaterializedViews(originalRoot,
+            materializationIndex);
     for (Pair<RelNode, List<RelOptMaterialization>> use : materializationUses) {
       RelNode rel = use.left;
       Hook.SUB.run(rel);
@@ -346,7 +433,7 @@ protected void registerMaterializations() {
     final Set<RelOptMaterialization> applicableMaterializations =
         new HashSet<>(
             RelOptMaterializations.getApplicableMaterializations(
-                originalRoot, materializations));
+                originalRoot, materializationIndex));
     for (Pair<RelNode, List<RelOptMaterialization>> use : materializationUses) {
       applicableMaterializations.removeAll(use.right);
     }
@@ -424,10 +511,13 @@ public RelSet getSet(RelNode rel) {
     this.mapRel2Subset.clear();
     this.relImportances.clear();
     this.ruleQueue.clear();
+    this.unmatchedRels.clear();
     this.ruleNames.clear();
-    this.materializations.clear();
+    this.materializationIndex.clear();
     this.latticeByName.clear();
     this.provenanceMap.clear();
+    this.relCount = 0;
+    this.ruleMatchCount = 0;
   }
 
   public List<RelOptRule> getRules() {
@@ -559,6 +649,10 @@ public RelOptPlanner chooseDelegate() {
    * <li>For non-ambitious planners: When an implementable plan is found.</li>
    * </ol>
    *
+   * <p>The planner also stops, with the best plan found so far, if it has
+   * found an implementable plan and has exceeded its budget; see
+   * {@link #setBudget(long, int, int)}.
+   *
    * <p>Furthermore, after every 10 iterations without an implementable plan,
    * RelSubSets that contain only logical RelNodes are given an importance
    * boost via {@link #injectImportanceBoost()}. Once an implementable plan is
@@ -569,12 +663,25 @@ public RelOptPlanner chooseDelegate() {
    * query
    */
   public RelNode findBestExp() {
+    startNanos = System.nanoTime();
+    ruleMatchCount = 0;
+    relCount = 0;
     ensureRootConverters();
     registerMaterializations();
     int cumulativeTicks = 0;
+    boolean budgetExhausted = false;
     for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
+      if (budgetExhausted) {
+        break;
+      }
       setInitialImportance();
 
+      if (topDownOpt && phase == VolcanoPlannerPhase.OPTIMIZE) {
+        budgetExhausted = !new TopDownRuleDriver(this, phase).drive();
+        ruleQueue.phaseCompleted(phase);
+        continue;
+      }
+
       RelOptCost targetCost = costFactory.makeHugeCost();
       int tick = 0;
       int firstFiniteTick = -1;
@@ -618,6 +725,11 @@ public RelNode findBestExp() {
         } else if (root.bestCost.isInfinite() && ((tick % 10) == 0)) {
           injectImportanceBoost();
         }
+        if (isBudgetExhausted()) {
+          // Over budget. Take the current best.
+          budgetExhausted = true;
+          break;
+        }
 
         LOGGER.debug("PLANNER = {}; TICK = {}/{}; PHASE = {}; COST = {}",
             this, cumulativeTicks, tick, phase.toString(), root.bestCost);
@@ -627,12 +739,7 @@ public RelNode findBestExp() {
           break;
         }
 
-        assert match.getRule().matches(match);
-        match.onMatch();
-
-        // The root may have been merged with another
-        // subset. Find the new root subset.
-        root = canonize(root);
+        fireMatch(match);
       }
 
       ruleQueue.phaseCompleted(phase);
@@ -652,6 +759,15 @@ public RelNode findBestExp() {
       if (!provenanceMap.isEmpty()) {
         LOGGER.debug("Provenance:\n{}", provenance(cheapest));
       }
+      LOGGER.debug("Metadata cache: {}",
+          root.getCluster().getMetadataQuery().getCacheStats());
+    }
+    if (listener != null) {
+      listener.planningCompleted(
+          new RelOptListener.PlanningCompletedEvent(this, cheapest,
+              ruleMatchCount, relCount,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+              budgetExhausted));
     }
     return cheapest;
   }
@@ -924,9 +1040,99 @@ public void setNoneConventionHasInfiniteCost(boolean infinite) {
     this.noneConventionHasInfiniteCost = infinite;
   }
 
+  /**
+   * Sets the planning budget. When {@link #findBestExp()} has exceeded any of
+   * the limits, and has found an implementable plan, it stops firing rules
+   * and returns the best plan found so far. If it has not yet found an
+   * implementable plan, it keeps going until it finds one. The limits apply
+   * to each call to {@link #findBestExp()}.
+   *
+   * @param timeLimitMillis Maximum time to spend firing rules, in
+   *                        milliseconds, or negative for no limit
+   * @param ruleMatchLimit  Maximum number of rule matches to fire, or
+   *                        negative for no limit
+   * @param relLimit        Maximum number of relational expressions to
+   *                        register, or negative for no limit
+   */
+  public void setBudget(long timeLimitMillis, int ruleMatchLimit,
+      int relLimit) {
+    this.timeLimitMillis = timeLimitMillis;
+    this.ruleMatchLimit = ruleMatchLimit;
+    this.relLimit = relLimit;
+  }
+
+  /** Returns whether the planning budget set by
+   * {@link #setBudget(long, int, int)} has been used, and there is an
+   * implementable plan, so {@link #findBestExp()} should stop firing
+   * rules. */
+  boolean isBudgetExhausted() {
+    if (root.bestCost.isInfinite()) {
+      return false;
+    }
+    if ((ruleMatchLimit >= 0 && ruleMatchCount >= ruleMatchLimit)
+        || (relLimit >= 0 && relCount >= relLimit)
+        || (timeLimitMillis >= 0
+            && System.nanoTime() - startNanos
+                >= TimeUnit.MILLISECONDS.toNanos(timeLimitMillis))) {
+      LOGGER.debug("Planning budget exhausted after {} rule matches, "
+          + "{} rels", ruleMatchCount, relCount);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Sets whether {@link #findBestExp()} optimizes top-down, in the style of
+   * the Cascades optimizer, pruning alternatives that cannot beat the best
+   * plan found so far; see {@link TopDownRuleDriver}. If false (the default),
+   * it fires every rule match, in order of importance.
+   *
+   * @param topDownOpt Whether to optimize top-down
+   */
+  public void setTopDownOpt(boolean topDownOpt) {
+    this.topDownOpt = topDownOpt;
+  }
+
+  /**
+   * Sets the number of threads that generate the rule matches of newly
+   * registered relational expressions. If greater than 1, matching is
+   * deferred until the planner next takes a match from its rule queue;
+   * then the operands of the rules that apply to all expressions registered
+   * since are matched concurrently, and the matches are queued on the
+   * planner's thread. The default is 1, which matches rules on the planner's
+   * thread as each expression is registered.
+   *
+   * <p>The predicates of rule operands must be thread-safe. A rule's
+   * {@link RelOptRule#matches(RelOptRuleCall)} method is always called on
+   * the planner's thread.
+   *
+   * @param ruleMatchParallelism Number of threads
+   */
+  public void setRuleMatchParallelism(int ruleMatchParallelism) {
+    if (ruleMatchParallelism < 1) {
+      throw new IllegalArgumentException("ruleMatchParallelism must be "
+          + "positive: " + ruleMatchParallelism);
+    }
+    this.ruleMatchParallelism = ruleMatchParallelism;
+  }
+
+  /** Fires a rule match that has been removed from the rule queue. */
+  void fireMatch(VolcanoRuleMatch match) {
+    assert match.getRule().matches(match);
+    match.onMatch();
+    ++ruleMatchCount;
+
+    // The root may have been merged with another
+    // subset. Find the new root subset.
+    root = canonize(root);
+  }
+
   public RelOptCost getCost(RelNode rel, RelMetadataQuery mq) {
     assert rel != null : "pre-condition: rel != null";
     if (rel instanceof RelSubset) {
+      // A cost computed from this one (say by Correlate.computeSelfCost)
+      // must be discarded when the subset's best cost changes.
+      mq.addDependency(rel);
       return ((RelSubset) rel).bestCost;
     }
     if (noneConventionHasInfiniteCost
@@ -1451,6 +1657,7 @@ void rename(RelNode rel) {
           subset.best = equivRel;
           subset.bestCost = getCost(equivRel);
         }
+        subset.set.clearMetadataCache();
 
         if (equivSubset != subset) {
           // The equivalent relational expression is in a different
@@ -1500,7 +1707,7 @@ void reregister(
    * @param subset Subset
    * @return Leader of subset's equivalence class
    */
-  private RelSubset canonize(final RelSubset subset) {
+  RelSubset canonize(final RelSubset subset) {
     if (subset.set.equivalentSet == null) {
       return subset;
     }
@@ -1523,6 +1730,10 @@ private RelSubset canonize(final RelSubset subset) {
   void fireRules(
       RelNode rel,
       boolean deferred) {
+    if (deferred && ruleMatchParallelism > 1) {
+      unmatchedRels.add(rel);
+      return;
+    }
     for (RelOptRuleOperand operand : classOperands.get(rel.getClass())) {
       if (operand.matches(rel)) {
         final VolcanoRuleCall ruleCall;
@@ -1536,6 +1747,77 @@ void fireRules(
     }
   }
 
+  /**
+   * Queues the rule matches of the relational expressions that have been
+   * registered since the last call, matching the operands of rules
+   * concurrently. {@link RuleQueue} calls this method before it removes a
+   * match, so each batch contains the expressions registered by a rule
+   * firing (or by {@link #setRoot(RelNode)}), and the cost of handing work
+   * to the matcher threads is shared by all of them.
+   *
+   * <p>Matching only reads the planner's data structures, and they are not
+   * modified until every task has finished. The matches are queued in the
+   * order in which the expressions were registered. An expression is
+   * matched after later expressions have been registered, so a match may be
+   * found from two of its expressions; {@link RuleQueue#addMatch} discards
+   * the second.
+   */
+  void queueDeferredRuleMatches() {
+    if (unmatchedRels.isEmpty()) {
+      return;
+    }
+    final List<Pair<CollectingRuleCall, RelNode>> calls = new ArrayList<>();
+    for (RelNode rel : unmatchedRels) {
+      for (RelOptRuleOperand operand : classOperands.get(rel.getClass())) {
+        if (operand.matches(rel)) {
+          calls.add(Pair.of(new CollectingRuleCall(this, operand), rel));
+        }
+      }
+    }
+    unmatchedRels.clear();
+    final int taskCount =
+        Math.max(1,
+            Math.min(ruleMatchParallelism, calls.size() / MIN_CALLS_PER_TASK));
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int task = 1; task < taskCount; task++) {
+      final int first = task;
+      futures.add(
+          MATCHER_EXECUTOR.submit(() -> match(calls, first, taskCount)));
+    }
+    match(calls, 0, taskCount);
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        Util.throwIfUnchecked(e.getCause());
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    for (Pair<CollectingRuleCall, RelNode> call : calls) {
+      for (Pair<RelNode[], Map<RelNode, List<RelNode>>> candidate
+          : call.left.candidates) {
+        final DeferringRuleCall ruleCall =
+            new DeferringRuleCall(this, call.left.getOperand0(),
+                candidate.left, candidate.right);
+        if (ruleCall.getRule().matches(ruleCall)) {
+          ruleCall.onMatch();
+        }
+      }
+    }
+  }
+
+  /** Matches every {@code step}th call, starting at {@code first}. */
+  private static void match(List<Pair<CollectingRuleCall, RelNode>> calls,
+      int first, int step) {
+    for (int i = first; i < calls.size(); i += step) {
+      final Pair<CollectingRuleCall, RelNode> call = calls.get(i);
+      call.left.match(call.right);
+    }
+  }
+
   private boolean fixUpInputs(RelNode rel) {
     List<RelNode> inputs = rel.getInputs();
     int i = -1;
@@ -1555,6 +1837,10 @@ private boolean fixUpInputs(RelNode rel) {
         }
       }
     }
+    if (changeCount > 0) {
+      // Metadata that was derived from the old inputs is no longer valid.
+      rel.getCluster().getMetadataQuery().clearCache(rel);
+    }
     return changeCount > 0;
   }
 
@@ -1595,7 +1881,7 @@ private RelSet merge(RelSet set, RelSet set2) {
     return set;
   }
 
-  private static RelSet equivRoot(RelSet s) {
+  static RelSet equivRoot(RelSet s) {
     RelSet p = s; // iterates at twice the rate, to detect cycles
     while (s.equivalentSet != null) {
       p = forward2(s, p);
@@ -1817,6 +2103,7 @@ private RelSubset registerImpl(
   private RelSubset addRelToSet(RelNode rel, RelSet set) {
     RelSubset subset = set.add(rel);
     mapRel2Subset.put(rel, subset);
+    ++relCount;
 
     // While a tree of RelNodes is being registered, sometimes nodes' costs
     // improve and the subset doesn't hear about it. You can end up with
@@ -1953,6 +2240,14 @@ private static class DeferringRuleCall extends VolcanoRuleCall {
       super(planner, operand);
     }
 
+    DeferringRuleCall(
+        VolcanoPlanner planner,
+        RelOptRuleOperand operand,
+        RelNode[] rels,
+        Map<RelNode, List<RelNode>> nodeInputs) {
+      super(planner, operand, rels, nodeInputs);
+    }
+
     /**
      * Rather than invoking the rule (as the base method does), creates a
      * {@link VolcanoRuleMatch} which can be invoked later.
@@ -1968,6 +2263,32 @@ protected void onMatch() {
     }
   }
 
+  /**
+   * A rule call that, rather than invoking the rule or creating a
+   * {@link VolcanoRuleMatch}, records the relational expressions that matched
+   * its operands. It does not call
+   * {@link RelOptRule#matches(RelOptRuleCall)}, and so may be used on a
+   * thread other than the planner's.
+   */
+  private static class CollectingRuleCall extends VolcanoRuleCall {
+    final List<Pair<RelNode[], Map<RelNode, List<RelNode>>>> candidates =
+        new ArrayList<>();
+
+    CollectingRuleCall(
+        VolcanoPlanner planner,
+        RelOptRuleOperand operand) {
+      super(planner, operand);
+    }
+
+    @Override void onOperandsMatched() {
+      candidates.add(
+          Pair.of(rels.clone(),
+              nodeInputs.isEmpty()
+                  ? ImmutableMap.of()
+                  : new HashMap<>(nodeInputs)));
+    }
+  }
+
   /**
    * Where a RelNode came from.
    */
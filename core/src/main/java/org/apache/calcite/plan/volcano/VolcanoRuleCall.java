@@ -127,7 +127,6 @@ public void transformTo(RelNode rel, Map<RelNode, RelNode> equiv) {
             entry.getKey(), entry.getValue(), this);
       }
       volcanoPlanner.ensureRegistered(rel, rels[0], this);
-      rels[0].getCluster().invalidateMetadataQuery();
 
       if (volcanoPlanner.listener != null) {
         RelOptListener.RuleProductionEvent event =
@@ -247,6 +246,18 @@ void match(RelNode rel) {
     matchRecurse(solve + 1);
   }
 
+  /**
+   * Called when all operands have matched.
+   */
+  void onOperandsMatched() {
+    // Now ask the rule whether it matches; this gives the rule chance to
+    // apply side-conditions. If the side-conditions are satisfied, we have a
+    // match.
+    if (getRule().matches(this)) {
+      onMatch();
+    }
+  }
+
   /**
    * Recursively matches operands above a given solve order.
    *
@@ -257,12 +268,7 @@ private void matchRecurse(int solve) {
     assert solve <= rule.operands.size();
     final List<RelOptRuleOperand> operands = getRule().operands;
     if (solve == operands.size()) {
-      // We have matched all operands. Now ask the rule whether it
-      // matches; this gives the rule chance to apply side-conditions.
-      // If the side-conditions are satisfied, we have a match.
-      if (getRule().matches(this)) {
-        onMatch();
-      }
+      onOperandsMatched();
     } else {
       final int operandOrdinal = operand0.solveOrder[solve];
       final int previousOperandOrdinal = operand0.solveOrder[solve - 1];
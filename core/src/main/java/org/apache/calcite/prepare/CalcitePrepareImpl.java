@@ -88,6 +88,7 @@
 import org.apache.calcite.sql.SqlExplainFormat;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlOperatorTable;
@@ -432,6 +433,11 @@ protected RelOptPlanner createPlanner(
     }
     final VolcanoPlanner planner =
         new VolcanoPlanner(costFactory, externalContext);
+    final CalciteConnectionConfig config = prepareContext.config();
+    planner.setBudget(config.plannerTimeLimit(),
+        config.plannerRuleMatchLimit(), config.plannerRelLimit());
+    planner.setTopDownOpt(config.plannerTopDown());
+    planner.setRuleMatchParallelism(config.plannerRuleMatchParallelism());
     planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
     if (CalciteSystemProperty.ENABLE_COLLATION_TRAIT.value()) {
       planner.addRelTraitDef(RelCollationTraitDef.INSTANCE);
@@ -481,6 +487,83 @@ <T> CalciteSignature<T> prepare_(
     if (SIMPLE_SQLS.contains(query.sql)) {
       return simplePrepare(context, query.sql);
     }
+    final PlanCache planCache = context.getPlanCache();
+    if (planCache != null && query.sql != null) {
+      return prepareCached(context, query, elementType, maxRowCount,
+          planCache);
+    }
+    return prepare_(context, query, null, elementType, maxRowCount);
+  }
+
+  /** Prepares a SQL statement, re-using if possible a plan from the
+   * connection's plan cache. */
+  private <T> CalciteSignature<T> prepareCached(Context context,
+      Query<T> query, Type elementType, long maxRowCount,
+      PlanCache planCache) {
+    final PlanCache.Key key =
+        planCache.key(context, query.sql, false, elementType);
+    PlanCache.Entry entry = planCache.get(key);
+    if (entry != null) {
+      return copy(entry.signature, query.sql, context,
+          entry.signature.parameters, ImmutableMap.of(), maxRowCount);
+    }
+    SqlNode sqlNode = parseStmt(context, query.sql);
+    if (!sqlNode.isA(SqlKind.QUERY)) {
+      return prepare_(context, query, sqlNode, elementType, maxRowCount);
+    }
+    final List<SqlLiteral> literals = PlanCache.normalize(sqlNode);
+    if (literals != null) {
+      final PlanCache.Key normalizedKey =
+          planCache.key(context, sqlNode.toString(), true, elementType);
+      entry = planCache.get(normalizedKey);
+      if (entry == null) {
+        CalciteSignature<T> signature;
+        try {
+          signature =
+              prepare_(context, query, sqlNode, elementType, maxRowCount);
+        } catch (RuntimeException e) {
+          // Probably the type of a parameter could not be derived. Preparing
+          // the query as written will give the proper error, if any.
+          signature = null;
+        }
+        entry = new PlanCache.Entry(signature);
+        planCache.put(normalizedKey, entry);
+      }
+      if (entry.signature != null) {
+        final Map<String, Object> values =
+            PlanCache.bind(literals, entry.signature.parameters);
+        if (values != null) {
+          return copy(entry.signature, query.sql, context,
+              ImmutableList.of(), values, maxRowCount);
+        }
+      }
+      sqlNode = parseStmt(context, query.sql);
+    }
+    final CalciteSignature<T> signature =
+        prepare_(context, query, sqlNode, elementType, maxRowCount);
+    planCache.put(key, new PlanCache.Entry(signature));
+    return signature;
+  }
+
+  /** Copies a cached signature for a new statement, binding the values of
+   * any literals that were replaced with parameters. */
+  private static <T> CalciteSignature<T> copy(CalciteSignature<?> signature,
+      String sql, Context context, List<AvaticaParameter> parameters,
+      Map<String, Object> values, long maxRowCount) {
+    final Map<String, Object> internalParameters =
+        new LinkedHashMap<>(signature.internalParameters);
+    internalParameters.putAll(values);
+    //noinspection unchecked
+    return ((CalciteSignature<T>) signature).copy(sql, parameters,
+        internalParameters, context.getRootSchema(), maxRowCount);
+  }
+
+  private <T> CalciteSignature<T> prepare_(
+      Context context,
+      Query<T> query,
+      SqlNode sqlNode,
+      Type elementType,
+      long maxRowCount) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     CalciteCatalogReader catalogReader =
         new CalciteCatalogReader(
@@ -500,7 +583,7 @@ <T> CalciteSignature<T> prepare_(
         throw new AssertionError("factory returned null planner");
       }
       try {
-        return prepare2_(context, query, elementType, maxRowCount,
+        return prepare2_(context, query, sqlNode, elementType, maxRowCount,
             catalogReader, planner);
       } catch (RelOptPlanner.CannotPlanException e) {
         exception = e;
@@ -577,6 +660,22 @@ <T> CalciteSignature<T> prepare2_(
       long maxRowCount,
       CalciteCatalogReader catalogReader,
       RelOptPlanner planner) {
+    return prepare2_(context, query, null, elementType, maxRowCount,
+        catalogReader, planner);
+  }
+
+  /** Prepares a statement.
+   *
+   * @param sqlNode Parse tree of the SQL statement, or null to parse
+   * {@code query.sql} */
+  <T> CalciteSignature<T> prepare2_(
+      Context context,
+      Query<T> query,
+      SqlNode sqlNode,
+      Type elementType,
+      long maxRowCount,
+      CalciteCatalogReader catalogReader,
+      RelOptPlanner planner) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     final EnumerableRel.Prefer prefer;
     if (elementType == Object[].class) {
@@ -597,26 +696,10 @@ <T> CalciteSignature<T> prepare2_(
     final Meta.StatementType statementType;
     if (query.sql != null) {
       final CalciteConnectionConfig config = context.config();
-      final SqlParser.ConfigBuilder parserConfig = createParserConfig()
-          .setQuotedCasing(config.quotedCasing())
-          .setUnquotedCasing(config.unquotedCasing())
-          .setQuoting(config.quoting())
-          .setConformance(config.conformance())
-          .setCaseSensitive(config.caseSensitive());
-      final SqlParserImplFactory parserFactory =
-          config.parserFactory(SqlParserImplFactory.class, null);
-      if (parserFactory != null) {
-        parserConfig.setParserFactory(parserFactory);
-      }
-      SqlParser parser = createParser(query.sql,  parserConfig);
-      SqlNode sqlNode;
-      try {
-        sqlNode = parser.parseStmt();
-        statementType = getStatementType(sqlNode.getKind());
-      } catch (SqlParseException e) {
-        throw new RuntimeException(
-            "parse failed: " + e.getMessage(), e);
+      if (sqlNode == null) {
+        sqlNode = parseStmt(context, query.sql);
       }
+      statementType = getStatementType(sqlNode.getKind());
 
       Hook.PARSE_TREE.run(new Object[] {query.sql, sqlNode});
 
@@ -706,6 +789,29 @@ <T> CalciteSignature<T> prepare2_(
         statementType);
   }
 
+  /** Parses a SQL statement, using the parser settings of the connection. */
+  private SqlNode parseStmt(Context context, String sql) {
+    final CalciteConnectionConfig config = context.config();
+    final SqlParser.ConfigBuilder parserConfig = createParserConfig()
+        .setQuotedCasing(config.quotedCasing())
+        .setUnquotedCasing(config.unquotedCasing())
+        .setQuoting(config.quoting())
+        .setConformance(config.conformance())
+        .setCaseSensitive(config.caseSensitive());
+    final SqlParserImplFactory parserFactory =
+        config.parserFactory(SqlParserImplFactory.class, null);
+    if (parserFactory != null) {
+      parserConfig.setParserFactory(parserFactory);
+    }
+    SqlParser parser = createParser(sql,  parserConfig);
+    try {
+      return parser.parseStmt();
+    } catch (SqlParseException e) {
+      throw new RuntimeException(
+          "parse failed: " + e.getMessage(), e);
+    }
+  }
+
   private SqlValidator createSqlValidator(Context context,
       CalciteCatalogReader catalogReader) {
     final SqlOperatorTable opTab0 =
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCharStringLiteral;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.apache.calcite.util.NlsString;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache of prepared queries, owned by a connection.
+ *
+ * <p>Before a query is looked up, each numeric or character literal that is
+ * compared to an expression other than a literal (say
+ * {@code empid = 100}) is replaced with a dynamic parameter. Queries that
+ * differ only in those literals therefore share an entry, and re-use its
+ * plan and generated code, the literal values being passed to the code as
+ * internal parameters. If a literal's value cannot be converted to the
+ * type that was derived for its parameter, the query is prepared as
+ * written, and cached under its original text.
+ *
+ * <p>A query that already has dynamic parameters is cached under its
+ * original text, and found without being parsed.
+ *
+ * <p>The key of an entry includes the modification count of the
+ * connection's root schema (see
+ * {@link org.apache.calcite.jdbc.CalciteSchema#getModificationCount()}), so
+ * adding or removing a table, function or schema (say by DDL) makes
+ * existing entries unreachable.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#PLAN_CACHE_SIZE
+ */
+public class PlanCache {
+  private static final Set<SqlKind> COMPARISONS =
+      EnumSet.of(SqlKind.EQUALS, SqlKind.NOT_EQUALS, SqlKind.LESS_THAN,
+          SqlKind.LESS_THAN_OR_EQUAL, SqlKind.GREATER_THAN,
+          SqlKind.GREATER_THAN_OR_EQUAL);
+
+  private final Cache<Key, Entry> cache;
+
+  public PlanCache(int maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /** Creates a key.
+   *
+   * @param context Context of the statement
+   * @param sql SQL text, original or normalized
+   * @param normalized Whether literals have been replaced with parameters
+   * @param elementType Element type of the statement
+   */
+  Key key(CalcitePrepare.Context context, String sql, boolean normalized,
+      Type elementType) {
+    return new Key(sql, normalized, elementType,
+        context.getDefaultSchemaPath(),
+        context.getMutableRootSchema().getModificationCount());
+  }
+
+  /** Returns the entry for a key, or null. */
+  Entry get(Key key) {
+    return cache.getIfPresent(key);
+  }
+
+  void put(Key key, Entry entry) {
+    cache.put(key, entry);
+  }
+
+  /** Removes all entries. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Replaces, in place, those literals in a query that can become dynamic
+   * parameters, and returns them in the order of their parameters.
+   *
+   * <p>Returns null, and does not modify the query, if it already contains
+   * dynamic parameters. */
+  static List<SqlLiteral> normalize(SqlNode query) {
+    final Normalizer normalizer = new Normalizer();
+    query.accept(normalizer);
+    if (normalizer.hasDynamicParam) {
+      return null;
+    }
+    final List<SqlLiteral> literals = new ArrayList<>();
+    for (Pair<SqlBasicCall, Integer> pair : normalizer.operands) {
+      final SqlLiteral literal = pair.left.operand(pair.right);
+      pair.left.setOperand(pair.right,
+          new SqlDynamicParam(literals.size(), literal.getParserPosition()));
+      literals.add(literal);
+    }
+    return literals;
+  }
+
+  /** Converts the values of literals to the types of the parameters that
+   * replaced them, and returns them as internal parameters; or returns null
+   * if a value cannot be converted exactly. */
+  static Map<String, Object> bind(List<SqlLiteral> literals,
+      List<AvaticaParameter> parameters) {
+    if (literals.size() != parameters.size()) {
+      return null;
+    }
+    final Map<String, Object> map = new HashMap<>();
+    for (Ord<SqlLiteral> literal : Ord.zip(literals)) {
+      final Object value = value(literal.e, parameters.get(literal.i));
+      if (value == null) {
+        return null;
+      }
+      map.put("?" + literal.i, value);
+    }
+    return map;
+  }
+
+  private static Object value(SqlLiteral literal, AvaticaParameter parameter) {
+    if (literal instanceof SqlNumericLiteral) {
+      final BigDecimal v = literal.bigDecimalValue();
+      try {
+        switch (parameter.parameterType) {
+        case Types.TINYINT:
+          return v.byteValueExact();
+        case Types.SMALLINT:
+          return v.shortValueExact();
+        case Types.INTEGER:
+          return v.intValueExact();
+        case Types.BIGINT:
+          return v.longValueExact();
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+          return v;
+        case Types.REAL:
+          final float f = v.floatValue();
+          return new BigDecimal(f).compareTo(v) == 0 ? f : null;
+        case Types.FLOAT:
+        case Types.DOUBLE:
+          final double d = v.doubleValue();
+          return new BigDecimal(d).compareTo(v) == 0 ? d : null;
+        default:
+          return null;
+        }
+      } catch (ArithmeticException e) {
+        return null;
+      }
+    }
+    final String s = literal.getValueAs(String.class);
+    if (parameter.parameterType == Types.VARCHAR
+        && (parameter.precision <= 0 || s.length() <= parameter.precision)) {
+      return s;
+    }
+    return null;
+  }
+
+  /** Returns whether a literal can be replaced with a dynamic parameter:
+   * an exact integer, or a character string without character set or
+   * collation. */
+  private static boolean isNormalizable(SqlNode node) {
+    if (node instanceof SqlNumericLiteral) {
+      final SqlNumericLiteral literal = (SqlNumericLiteral) node;
+      return literal.isExact() && literal.getScale() == 0;
+    }
+    if (node instanceof SqlCharStringLiteral) {
+      final NlsString s = ((SqlLiteral) node).getValueAs(NlsString.class);
+      return s.getCharsetName() == null && s.getCollation() == null;
+    }
+    return false;
+  }
+
+  /** Visitor that finds the literals that can become dynamic parameters,
+   * in depth-first order, which is the order in which the validator numbers
+   * parameters. */
+  private static class Normalizer extends SqlBasicVisitor<Void> {
+    final List<Pair<SqlBasicCall, Integer>> operands = new ArrayList<>();
+    boolean hasDynamicParam;
+
+    @Override public Void visit(SqlCall call) {
+      if (call instanceof SqlBasicCall
+          && call.isA(COMPARISONS)
+          && call.operandCount() == 2) {
+        for (int i = 0; i < 2; i++) {
+          final SqlNode operand = call.operand(i);
+          final SqlNode other = call.operand(1 - i);
+          if (isNormalizable(operand)
+              && !(other instanceof SqlLiteral)
+              && !(other instanceof SqlDynamicParam)) {
+            operands.add(Pair.of((SqlBasicCall) call, i));
+          } else {
+            operand.accept(this);
+          }
+        }
+        return null;
+      }
+      return super.visit(call);
+    }
+
+    @Override public Void visit(SqlDynamicParam param) {
+      hasDynamicParam = true;
+      return null;
+    }
+  }
+
+  /** Key of a cache entry. */
+  static class Key {
+    final String sql;
+    final boolean normalized;
+    final Type elementType;
+    final List<String> defaultSchemaPath;
+    final long modificationCount;
+
+    Key(String sql, boolean normalized, Type elementType,
+        List<String> defaultSchemaPath, long modificationCount) {
+      this.sql = Objects.requireNonNull(sql);
+      this.normalized = normalized;
+      this.elementType = Objects.requireNonNull(elementType);
+      this.defaultSchemaPath = Objects.requireNonNull(defaultSchemaPath);
+      this.modificationCount = modificationCount;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(sql, normalized, elementType, defaultSchemaPath,
+          modificationCount);
+    }
+
+    @Override public boolean equals(Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && sql.equals(((Key) obj).sql)
+          && normalized == ((Key) obj).normalized
+          && elementType.equals(((Key) obj).elementType)
+          && defaultSchemaPath.equals(((Key) obj).defaultSchemaPath)
+          && modificationCount == ((Key) obj).modificationCount;
+    }
+  }
+
+  /** Cache entry. If {@link #signature} is null, the normalized query could
+   * not be prepared, and queries with this key must be prepared as
+   * written. */
+  static class Entry {
+    final CalcitePrepare.CalciteSignature<?> signature;
+
+    Entry(CalcitePrepare.CalciteSignature<?> signature) {
+      this.signature = signature;
+    }
+  }
+}
+
+// End PlanCache.java
@@ -48,6 +48,7 @@
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.StreamableTable;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TemporalTable;
@@ -58,6 +59,7 @@
 import org.apache.calcite.sql.validate.SqlMonotonicity;
 import org.apache.calcite.sql2rel.InitializerExpressionFactory;
 import org.apache.calcite.sql2rel.NullInitializerExpressionFactory;
+import org.apache.calcite.statistic.StatisticCatalog;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -121,7 +123,7 @@ public static RelOptTableImpl create(
       Table table,
       Expression expression) {
     return new RelOptTableImpl(schema, rowType, names, table,
-        c -> expression, table.getStatistic().getRowCount());
+        c -> expression, statistic(table).getRowCount());
   }
 
   public static RelOptTableImpl create(RelOptSchema schema, RelDataType rowType,
@@ -129,7 +131,7 @@ public static RelOptTableImpl create(RelOptSchema schema, RelDataType rowType,
     final SchemaPlus schemaPlus = MySchemaPlus.create(path);
     return new RelOptTableImpl(schema, rowType, Pair.left(path), table,
         getClassExpressionFunction(schemaPlus, Util.last(path).left, table),
-        table.getStatistic().getRowCount());
+        statistic(table).getRowCount());
   }
 
   public static RelOptTableImpl create(RelOptSchema schema, RelDataType rowType,
@@ -222,6 +224,12 @@ public Expression getExpression(Class clazz) {
         && this.table == ((RelOptTableImpl) obj).table;
   }
 
+  /** Returns the statistic of a table; statistics that have been collected
+   * by analyzing the table take precedence over those the table provides. */
+  private static Statistic statistic(Table table) {
+    return StatisticCatalog.instance().getStatistic(table);
+  }
+
   @Override public int hashCode() {
     return (this.table == null)
         ? super.hashCode() : this.table.hashCode();
@@ -231,7 +239,7 @@ public double getRowCount() {
       return rowCount;
     }
     if (table != null) {
-      final Double rowCount = table.getStatistic().getRowCount();
+      final Double rowCount = statistic(table).getRowCount();
       if (rowCount != null) {
         return rowCount;
       }
@@ -300,28 +308,28 @@ public RelNode toRel(ToRelContext context) {
 
   public List<RelCollation> getCollationList() {
     if (table != null) {
-      return table.getStatistic().getCollations();
+      return statistic(table).getCollations();
     }
     return ImmutableList.of();
   }
 
   public RelDistribution getDistribution() {
     if (table != null) {
-      return table.getStatistic().getDistribution();
+      return statistic(table).getDistribution();
     }
     return RelDistributionTraitDef.INSTANCE.getDefault();
   }
 
   public boolean isKey(ImmutableBitSet columns) {
     if (table != null) {
-      return table.getStatistic().isKey(columns);
+      return statistic(table).isKey(columns);
     }
     return false;
   }
 
   public List<RelReferentialConstraint> getReferentialConstraints() {
     if (table != null) {
-      return table.getStatistic().getReferentialConstraints();
+      return statistic(table).getReferentialConstraints();
     }
     return ImmutableList.of();
   }
@@ -348,7 +356,7 @@ public List<String> getQualifiedName() {
   }
 
   public SqlMonotonicity getMonotonicity(String columnName) {
-    for (RelCollation collation : table.getStatistic().getCollations()) {
+    for (RelCollation collation : statistic(table).getCollations()) {
       final RelFieldCollation fieldCollation =
           collation.getFieldCollations().get(0);
       final int fieldIndex = fieldCollation.getFieldIndex();
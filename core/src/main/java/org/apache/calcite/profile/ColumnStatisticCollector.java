@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.profile;
+
+import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+import com.yahoo.sketches.frequencies.ErrorType;
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.quantiles.ItemsSketch;
+import com.yahoo.sketches.quantiles.ItemsUnion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a {@link ColumnStatistic} from the values of a column, in one pass
+ * and in bounded memory.
+ *
+ * <p>Values are counted exactly until there are more than
+ * {@link #EXACT_THRESHOLD} distinct values; then the collector switches to
+ * sketches: HyperLogLog for the number of distinct values, and a
+ * frequent-items sketch for the most common values. The histogram is always
+ * built from a quantiles sketch.
+ *
+ * <p>Collectors are mergeable: collectors that have seen different parts of
+ * a data set can be combined using {@link #merge}, and a collector may
+ * continue to receive values after {@link #finish()} has been called.
+ */
+public class ColumnStatisticCollector {
+  /** Number of distinct values up to which values are counted exactly. */
+  static final int EXACT_THRESHOLD = 1000;
+
+  /** Maximum size of the map in the frequent-items sketch; must be a power
+   * of 2. */
+  private static final int FREQUENCY_MAP_SIZE = 1024;
+
+  /** Number of standard deviations below its estimate that the
+   * distinct-value sketch must still show as many distinct values as rows
+   * for a column to be considered unique. */
+  private static final int UNIQUE_STD_DEVS = 3;
+
+  private final int bucketCount;
+  private final int mostCommonCount;
+  private ItemsSketch<Comparable> quantiles;
+  private Map<Comparable, long[]> counts = new HashMap<>();
+  private HllSketch distinctSketch;
+  private com.yahoo.sketches.frequencies.ItemsSketch<Comparable> frequencies;
+  private long rowCount;
+  private long nullCount;
+
+  /**
+   * Creates a ColumnStatisticCollector.
+   *
+   * @param bucketCount Number of buckets in the histogram
+   * @param mostCommonCount Maximum number of most common values to record
+   */
+  public ColumnStatisticCollector(int bucketCount, int mostCommonCount) {
+    Preconditions.checkArgument(bucketCount > 0);
+    Preconditions.checkArgument(mostCommonCount >= 0);
+    this.bucketCount = bucketCount;
+    this.mostCommonCount = mostCommonCount;
+    //noinspection unchecked
+    this.quantiles = ItemsSketch.getInstance((Ordering) Ordering.natural());
+  }
+
+  /** Adds a value; null and {@link NullSentinel#INSTANCE} represent
+   * null. */
+  public void add(Comparable value) {
+    ++rowCount;
+    if (value == null || value == NullSentinel.INSTANCE) {
+      ++nullCount;
+      return;
+    }
+    final Comparable v = Histogram.normalize(value);
+    quantiles.update(v);
+    if (counts != null) {
+      final long[] count = counts.computeIfAbsent(v, k -> new long[1]);
+      ++count[0];
+      if (counts.size() > EXACT_THRESHOLD) {
+        // Too many values. Switch to sketches.
+        switchToSketches();
+      }
+    } else {
+      update(distinctSketch, v);
+      frequencies.update(v);
+    }
+  }
+
+  /** Converts the exact counts into sketches. */
+  private void switchToSketches() {
+    distinctSketch = HllSketch.builder().build();
+    frequencies =
+        new com.yahoo.sketches.frequencies.ItemsSketch<>(FREQUENCY_MAP_SIZE);
+    for (Map.Entry<Comparable, long[]> e : counts.entrySet()) {
+      update(distinctSketch, e.getKey());
+      frequencies.update(e.getKey(), e.getValue()[0]);
+    }
+    counts = null;
+  }
+
+  /** Adds the values seen by another collector, as if they had been added to
+   * this collector. The other collector is not modified. */
+  public void merge(ColumnStatisticCollector other) {
+    rowCount += other.rowCount;
+    nullCount += other.nullCount;
+    final ItemsUnion<Comparable> union = ItemsUnion.getInstance(quantiles);
+    union.update(other.quantiles);
+    quantiles = union.getResult();
+    if (counts != null && other.counts != null) {
+      for (Map.Entry<Comparable, long[]> e : other.counts.entrySet()) {
+        final long[] count =
+            counts.computeIfAbsent(e.getKey(), k -> new long[1]);
+        count[0] += e.getValue()[0];
+      }
+      if (counts.size() > EXACT_THRESHOLD) {
+        switchToSketches();
+      }
+      return;
+    }
+    if (counts != null) {
+      switchToSketches();
+    }
+    if (other.counts != null) {
+      for (Map.Entry<Comparable, long[]> e : other.counts.entrySet()) {
+        update(distinctSketch, e.getKey());
+        frequencies.update(e.getKey(), e.getValue()[0]);
+      }
+    } else {
+      distinctSketch.union(other.distinctSketch);
+      frequencies.merge(other.frequencies);
+    }
+  }
+
+  /** Returns whether every value added so far is probably distinct and not
+   * null. The answer is exact while values are counted exactly. Otherwise it
+   * is true only if the lower error bound of the distinct-value sketch
+   * reaches the row count; a column that merely might be unique is
+   * described by its distinct count, not reported as unique. */
+  public boolean isProbablyUnique() {
+    if (nullCount > 0) {
+      return false;
+    }
+    if (counts != null) {
+      return counts.size() == rowCount;
+    }
+    return distinctSketch.getLowerBound(UNIQUE_STD_DEVS) >= rowCount;
+  }
+
+  private static void update(HllSketch sketch, Comparable value) {
+    if (value instanceof String) {
+      sketch.update((String) value);
+    } else {
+      sketch.update(value.toString());
+    }
+  }
+
+  /** Returns the statistic for the values added so far. */
+  public ColumnStatistic finish() {
+    if (rowCount == 0) {
+      return Statistics.column(null, null, new HashMap<>(), null);
+    }
+    final long nonNullCount = rowCount - nullCount;
+    final double distinctCount;
+    final List<Map.Entry<Comparable, Long>> candidates = new ArrayList<>();
+    if (counts != null) {
+      distinctCount = counts.size();
+      for (Map.Entry<Comparable, long[]> e : counts.entrySet()) {
+        candidates.add(Pair.of(e.getKey(), e.getValue()[0]));
+      }
+    } else {
+      distinctCount = Math.min(distinctSketch.getEstimate(), nonNullCount);
+      for (com.yahoo.sketches.frequencies.ItemsSketch.Row<Comparable> row
+          : frequencies.getFrequentItems(ErrorType.NO_FALSE_POSITIVES)) {
+        candidates.add(Pair.of(row.getItem(), row.getEstimate()));
+      }
+    }
+    // A value is "common" if it occurs more than once, and more often than
+    // the average value.
+    candidates.sort((e0, e1) -> Long.compare(e1.getValue(), e0.getValue()));
+    final Map<Comparable, Double> mostCommonValues = new LinkedHashMap<>();
+    for (Map.Entry<Comparable, Long> e : candidates) {
+      if (mostCommonValues.size() >= mostCommonCount
+          || e.getValue() <= 1
+          || e.getValue() * distinctCount <= nonNullCount) {
+        break;
+      }
+      mostCommonValues.put(e.getKey(), (double) e.getValue() / rowCount);
+    }
+    final Histogram histogram;
+    if (nonNullCount == 0) {
+      histogram = null;
+    } else {
+      final Comparable[] bounds = quantiles.getQuantiles(bucketCount + 1);
+      histogram = bounds == null || bounds.length < 2
+          ? new Histogram(
+              Arrays.asList(quantiles.getMinValue(), quantiles.getMaxValue()))
+          : new Histogram(Arrays.asList(bounds));
+    }
+    return Statistics.column(distinctCount, (double) nullCount / rowCount,
+        mostCommonValues, histogram);
+  }
+}
+
+// End ColumnStatisticCollector.java
@@ -17,6 +17,7 @@
 package org.apache.calcite.profile;
 
 import org.apache.calcite.materialize.Lattice;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.JsonBuilder;
 import org.apache.calcite.util.Util;
@@ -30,6 +31,7 @@
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
@@ -119,7 +121,7 @@ public Object toMap(JsonBuilder jsonBuilder) {
 
   /** Unique key. */
   class Unique implements Statistic {
-    final NavigableSet<Column> columns;
+    public final NavigableSet<Column> columns;
 
     public Unique(SortedSet<Column> columns) {
       this.columns = ImmutableSortedSet.copyOf(columns);
@@ -240,13 +242,28 @@ class Profile {
     public final List<Distribution> distributionList;
     public final List<Unique> uniqueList;
 
+    /** Statistics about each column, such as a histogram of its values; an
+     * element is null if the profiler did not compute statistics for that
+     * column. */
+    public final List<ColumnStatistic> columnStatisticList;
+
     private final Map<ImmutableBitSet, Distribution> distributionMap;
     private final List<Distribution> singletonDistributionList;
 
     Profile(List<Column> columns, RowCount rowCount,
         Iterable<FunctionalDependency> functionalDependencyList,
         Iterable<Distribution> distributionList, Iterable<Unique> uniqueList) {
+      this(columns, rowCount, functionalDependencyList, distributionList,
+          uniqueList, Collections.nCopies(columns.size(), null));
+    }
+
+    Profile(List<Column> columns, RowCount rowCount,
+        Iterable<FunctionalDependency> functionalDependencyList,
+        Iterable<Distribution> distributionList, Iterable<Unique> uniqueList,
+        List<ColumnStatistic> columnStatisticList) {
       this.rowCount = rowCount;
+      this.columnStatisticList =
+          Collections.unmodifiableList(new ArrayList<>(columnStatisticList));
       this.functionalDependencyList =
           ImmutableList.copyOf(functionalDependencyList);
       this.distributionList = ImmutableList.copyOf(distributionList);
@@ -259,11 +276,13 @@ class Profile {
       }
       distributionMap = m.build();
 
-      final ImmutableList.Builder<Distribution> b = ImmutableList.builder();
+      // A column has no distribution if the profiler did not find it
+      // interesting, for example a unique column
+      final List<Distribution> b = new ArrayList<>();
       for (int i = 0; i < columns.size(); i++) {
         b.add(distributionMap.get(ImmutableBitSet.of(i)));
       }
-      singletonDistributionList = b.build();
+      singletonDistributionList = Collections.unmodifiableList(b);
     }
 
     public List<Statistic> statistics() {
@@ -287,7 +306,8 @@ public double cardinality(ImmutableBitSet columnOrdinals) {
             cardinalityList.add(distribution.cardinality);
             for (int ordinal : originalOrdinals.except(columnOrdinals)) {
               final Distribution d = singletonDistributionList.get(ordinal);
-              cardinalityList.add(d.cardinality);
+              cardinalityList.add(
+                  d == null ? (double) rowCount.rowCount : d.cardinality);
             }
             return Lattice.getRowCount(rowCount.rowCount, cardinalityList);
           }
@@ -22,6 +22,7 @@
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.rel.metadata.NullSentinel;
 import org.apache.calcite.runtime.FlatLists;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.PartiallyOrderedSet;
@@ -74,10 +75,23 @@ public class ProfilerImpl implements Profiler {
   /** Whether a successor is considered interesting enough to analyze. */
   private final Predicate<Pair<Space, Column>> predicate;
 
+  /** Number of buckets in the histogram of each column. */
+  private final int histogramBucketCount;
+
+  /** Maximum number of most common values recorded for each column. */
+  private final int mostCommonCount;
+
   public static Builder builder() {
     return new Builder();
   }
 
+  /** Creates a {@code ProfilerImpl} that does not compute column
+   * statistics. */
+  ProfilerImpl(int combinationsPerPass,
+      int interestingCount, Predicate<Pair<Space, Column>> predicate) {
+    this(combinationsPerPass, interestingCount, predicate, 0, 0);
+  }
+
   /**
    * Creates a {@code ProfilerImpl}.
    *
@@ -87,14 +101,21 @@ public static Builder builder() {
    *   interesting
    * @param predicate Whether a successor is considered interesting enough to
    *   analyze
+   * @param histogramBucketCount Number of buckets in the histogram of each
+   *   column
+   * @param mostCommonCount Maximum number of most common values recorded for
+   *   each column
    */
   ProfilerImpl(int combinationsPerPass,
-      int interestingCount, Predicate<Pair<Space, Column>> predicate) {
+      int interestingCount, Predicate<Pair<Space, Column>> predicate,
+      int histogramBucketCount, int mostCommonCount) {
     Preconditions.checkArgument(combinationsPerPass > 2);
     Preconditions.checkArgument(interestingCount > 2);
     this.combinationsPerPass = combinationsPerPass;
     this.interestingCount = interestingCount;
     this.predicate = predicate;
+    this.histogramBucketCount = histogramBucketCount;
+    this.mostCommonCount = mostCommonCount;
   }
 
   public Profile profile(Iterable<List<Comparable>> rows,
@@ -141,6 +162,9 @@ class Run {
             e2.columnOrdinals.contains(e1.columnOrdinals));
     private final List<ImmutableBitSet> keyOrdinalLists =
         new ArrayList<>();
+    /** Statistics about each column, computed during the pass in which the
+     * column's singleton space is computed. */
+    private final List<ColumnStatistic> columnStatistics;
     private int rowCount;
 
     /**
@@ -160,6 +184,9 @@ class Run {
       }
       this.singletonSpaces =
           new ArrayList<>(Collections.nCopies(columns.size(), (Space) null));
+      this.columnStatistics =
+          new ArrayList<>(
+              Collections.nCopies(columns.size(), (ColumnStatistic) null));
       if (combinationsPerPass > Math.pow(2D, columns.size())) {
         // There are not many columns. We can compute all combinations in the
         // first pass.
@@ -182,9 +209,12 @@ class Run {
         }
       }
       // The surprise queue must have enough room for all singleton groups
-      // plus all initial groups.
-      surprises = new SurpriseQueue(1 + columns.size() + initialGroups.size(),
-          interestingCount);
+      // plus all initial groups, and its warm-up period must be at least 4,
+      // even if there are only one or two columns.
+      surprises =
+          new SurpriseQueue(
+              Math.max(4, 1 + columns.size() + initialGroups.size()),
+              interestingCount);
     }
 
     Profile profile(Iterable<List<Comparable>> rows) {
@@ -205,7 +235,8 @@ Profile profile(Iterable<List<Comparable>> rows) {
         }
       }
       return new Profile(columns, new RowCount(rowCount),
-          functionalDependencies, distributions.values(), uniques);
+          functionalDependencies, distributions.values(), uniques,
+          columnStatistics);
     }
 
     /** Populates {@code spaces} with the next batch.
@@ -281,8 +312,19 @@ void pass(int pass, List<Space> spaces, Iterable<List<Comparable>> rows) {
             + ", distributions.size: " + distributions.size());
       }
 
+      // While computing the space of a single column, also compute a
+      // histogram and the most common values of that column.
+      final List<Pair<Integer, ColumnStatisticCollector>> statisticCollectors =
+          new ArrayList<>();
       for (Space space : spaces) {
         space.collector = Collector.create(space, 1000);
+        if (space.columnOrdinals.cardinality() == 1
+            && histogramBucketCount > 0) {
+          statisticCollectors.add(
+              Pair.of(space.columnOrdinals.nth(0),
+                  new ColumnStatisticCollector(histogramBucketCount,
+                      mostCommonCount)));
+        }
       }
 
       int rowCount = 0;
@@ -291,6 +333,14 @@ void pass(int pass, List<Space> spaces, Iterable<List<Comparable>> rows) {
         for (Space space : spaces) {
           space.collector.add(row);
         }
+        for (Pair<Integer, ColumnStatisticCollector> pair
+            : statisticCollectors) {
+          pair.right.add(row.get(pair.left));
+        }
+      }
+      for (Pair<Integer, ColumnStatisticCollector> pair
+          : statisticCollectors) {
+        columnStatistics.set(pair.left, pair.right.finish());
       }
 
       // Populate unique keys.
@@ -486,9 +536,12 @@ public Distribution distribution() {
   public static class Builder {
     int combinationsPerPass = 100;
     Predicate<Pair<Space, Column>> predicate = p -> true;
+    int histogramBucketCount = 0;
+    int mostCommonCount = 0;
 
     public ProfilerImpl build() {
-      return new ProfilerImpl(combinationsPerPass, 200, predicate);
+      return new ProfilerImpl(combinationsPerPass, 200, predicate,
+          histogramBucketCount, mostCommonCount);
     }
 
     public Builder withPassSize(int passSize) {
@@ -496,6 +549,20 @@ public Builder withPassSize(int passSize) {
       return this;
     }
 
+    /** Sets the number of buckets in the histogram, and the maximum number
+     * of most common values, computed for each column; the default is 0,
+     * which means that no column statistics are computed.
+     *
+     * @see Profile#columnStatisticList */
+    public Builder withColumnStatistics(int histogramBucketCount,
+        int mostCommonCount) {
+      Preconditions.checkArgument(histogramBucketCount >= 0);
+      Preconditions.checkArgument(mostCommonCount >= 0);
+      this.histogramBucketCount = histogramBucketCount;
+      this.mostCommonCount = mostCommonCount;
+      return this;
+    }
+
     public Builder withMinimumSurprise(double v) {
       predicate =
           spaceColumnPair -> {
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.profile;
+
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Implementation of {@link Profiler} that profiles very large data sets in a
+ * single pass and in bounded memory.
+ *
+ * <p>The row count is exact. Statistics about each column (number of distinct
+ * values, null fraction, most common values and histogram) are computed over
+ * every row, using the mergeable sketches of
+ * {@link ColumnStatisticCollector}. Meanwhile, a reservoir sample of at most
+ * {@code sampleSize} rows is kept. When the profile is requested, another
+ * profiler (typically {@link ProfilerImpl}) runs over the sample to find
+ * interesting combinations of columns, keys and functional dependencies, and
+ * the cardinalities of those combinations are scaled up to the whole data
+ * set.
+ *
+ * <p>If the data set has no more rows than the sample, the result is the
+ * same as running the other profiler over the whole data set. Otherwise:
+ * functional dependencies are those that hold in the sample; a column is a
+ * key only if it has no nulls and even the lower error bound of its
+ * distinct-value sketch reaches the row count, so a column that is probably
+ * but not certainly unique is described only by its distinct count; and
+ * combinations of columns are not reported as keys, because a sample cannot
+ * show that they are unique.
+ *
+ * <p>The work is done by an {@link Accumulator}. To profile a partitioned
+ * data set in parallel, populate one accumulator per partition and
+ * {@link Accumulator#merge merge} them (as {@link #profileParallel} does).
+ * To profile a data set incrementally, keep its accumulator, add new rows as
+ * they arrive, and call {@link Accumulator#profile} again.
+ */
+public class SamplingProfiler implements Profiler {
+  private final Profiler sampleProfiler;
+  private final int sampleSize;
+  private final int histogramBucketCount;
+  private final int mostCommonCount;
+
+  /**
+   * Creates a SamplingProfiler.
+   *
+   * @param sampleProfiler Profiler to run over the sample
+   * @param sampleSize Maximum number of rows in the sample
+   * @param histogramBucketCount Number of buckets in the histogram of each
+   *   column
+   * @param mostCommonCount Maximum number of most common values recorded for
+   *   each column
+   */
+  public SamplingProfiler(Profiler sampleProfiler, int sampleSize,
+      int histogramBucketCount, int mostCommonCount) {
+    Preconditions.checkArgument(sampleSize > 0);
+    Preconditions.checkArgument(histogramBucketCount > 0);
+    Preconditions.checkArgument(mostCommonCount >= 0);
+    this.sampleProfiler = Objects.requireNonNull(sampleProfiler);
+    this.sampleSize = sampleSize;
+    this.histogramBucketCount = histogramBucketCount;
+    this.mostCommonCount = mostCommonCount;
+  }
+
+  public Profile profile(Iterable<List<Comparable>> rows,
+      List<Column> columns, Collection<ImmutableBitSet> initialGroups) {
+    final Accumulator accumulator = accumulator(columns);
+    for (List<Comparable> row : rows) {
+      accumulator.add(row);
+    }
+    return accumulator.profile(initialGroups);
+  }
+
+  /** Profiles a data set that consists of several partitions, reading the
+   * partitions in parallel. */
+  public Profile profileParallel(
+      List<? extends Iterable<List<Comparable>>> partitions,
+      List<Column> columns, Collection<ImmutableBitSet> initialGroups) {
+    return partitions.parallelStream()
+        .map(rows -> {
+          final Accumulator accumulator = accumulator(columns);
+          for (List<Comparable> row : rows) {
+            accumulator.add(row);
+          }
+          return accumulator;
+        })
+        .reduce(Accumulator::merge)
+        .orElseGet(() -> accumulator(columns))
+        .profile(initialGroups);
+  }
+
+  /** Creates an empty accumulator. */
+  public Accumulator accumulator(List<Column> columns) {
+    return new Accumulator(columns);
+  }
+
+  /** Accumulates the state of a profile: row count, column statistics and a
+   * sample of rows.
+   *
+   * <p>Not thread-safe; use one accumulator per thread, and merge them. */
+  public class Accumulator {
+    private final List<Column> columns;
+    private final List<ColumnStatisticCollector> collectors =
+        new ArrayList<>();
+    private final List<List<Comparable>> sample = new ArrayList<>();
+    private final Random random = new Random(0);
+    private long rowCount;
+
+    Accumulator(List<Column> columns) {
+      this.columns = ImmutableList.copyOf(columns);
+      for (int i = 0; i < columns.size(); i++) {
+        collectors.add(
+            new ColumnStatisticCollector(histogramBucketCount,
+                mostCommonCount));
+      }
+    }
+
+    /** Returns the number of rows added so far. */
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    /** Adds a row. Null values must be represented by
+     * {@link org.apache.calcite.rel.metadata.NullSentinel#INSTANCE}. */
+    public void add(List<Comparable> row) {
+      ++rowCount;
+      for (int i = 0; i < collectors.size(); i++) {
+        collectors.get(i).add(row.get(i));
+      }
+      // Reservoir sampling: the n-th row replaces a random element of the
+      // sample with probability sampleSize / n.
+      if (sample.size() < sampleSize) {
+        sample.add(new ArrayList<>(row));
+      } else {
+        final long j = (long) (random.nextDouble() * rowCount);
+        if (j < sampleSize) {
+          sample.set((int) j, new ArrayList<>(row));
+        }
+      }
+    }
+
+    /** Adds the rows seen by another accumulator, over the same columns, to
+     * this accumulator, and returns this accumulator. The other accumulator
+     * is not modified. */
+    public Accumulator merge(Accumulator other) {
+      Preconditions.checkArgument(columns.equals(other.columns));
+      for (int i = 0; i < collectors.size(); i++) {
+        collectors.get(i).merge(other.collectors.get(i));
+      }
+      // Each sample is a uniform sample of its partition. Draw from the two
+      // samples without replacement, choosing each time between them in
+      // proportion to the number of rows not yet drawn from each
+      // partition.
+      final List<List<Comparable>> sample0 = new ArrayList<>(sample);
+      final List<List<Comparable>> sample1 = new ArrayList<>(other.sample);
+      Collections.shuffle(sample0, random);
+      Collections.shuffle(sample1, random);
+      long remaining0 = rowCount;
+      long remaining1 = other.rowCount;
+      final int size = Math.min(sampleSize, sample0.size() + sample1.size());
+      sample.clear();
+      while (sample.size() < size) {
+        final boolean first = sample1.isEmpty()
+            || !sample0.isEmpty()
+            && random.nextDouble() * (remaining0 + remaining1) < remaining0;
+        if (first) {
+          sample.add(sample0.remove(sample0.size() - 1));
+          --remaining0;
+        } else {
+          sample.add(sample1.remove(sample1.size() - 1));
+          --remaining1;
+        }
+      }
+      rowCount += other.rowCount;
+      return this;
+    }
+
+    /** Returns the profile of the rows added so far. Rows may be added after
+     * this method has been called. */
+    public Profile profile(Collection<ImmutableBitSet> initialGroups) {
+      final List<ColumnStatistic> columnStatistics = new ArrayList<>();
+      for (ColumnStatisticCollector collector : collectors) {
+        columnStatistics.add(collector.finish());
+      }
+      final Profile sampleProfile =
+          sampleProfiler.profile(sample, columns, initialGroups);
+      final RowCount rowCount =
+          new RowCount((int) Math.min(this.rowCount, Integer.MAX_VALUE));
+      if (this.rowCount == sample.size()) {
+        // The sample contains every row; its profile is exact.
+        return new Profile(columns, rowCount,
+            sampleProfile.functionalDependencyList,
+            sampleProfile.distributionList, sampleProfile.uniqueList,
+            columnStatistics);
+      }
+
+      final List<Distribution> distributions = new ArrayList<>();
+      for (Distribution d : sampleProfile.distributionList) {
+        distributions.add(scale(d, columnStatistics));
+      }
+      final List<Unique> uniques = new ArrayList<>();
+      for (Column column : columns) {
+        if (collectors.get(column.ordinal).isProbablyUnique()) {
+          uniques.add(new Unique(ImmutableSortedSet.of(column)));
+        }
+      }
+      return new Profile(columns, rowCount,
+          sampleProfile.functionalDependencyList, distributions, uniques,
+          columnStatistics);
+    }
+
+    /** Converts a distribution computed over the sample into a distribution
+     * over the whole data set. */
+    private Distribution scale(Distribution d,
+        List<ColumnStatistic> columnStatistics) {
+      final ImmutableBitSet ordinals = d.columnOrdinals();
+      final double cardinality;
+      final double expectedCardinality;
+      switch (ordinals.cardinality()) {
+      case 0:
+        return d;
+      case 1:
+        cardinality = cardinality(columnStatistics.get(ordinals.nth(0)));
+        expectedCardinality = rowCount;
+        break;
+      default:
+        cardinality = estimateCardinality(ordinals, columnStatistics);
+        expectedCardinality = Math.min(rowCount,
+            d.expectedCardinality * cardinality / d.cardinality);
+      }
+      final int nullCount =
+          (int) Math.min(Integer.MAX_VALUE,
+              Math.round((double) d.nullCount * rowCount / sample.size()));
+      return new Distribution(d.columns,
+          cardinality == d.cardinality ? d.values : null, cardinality,
+          nullCount, expectedCardinality, d.minimal);
+    }
+
+    /** Returns the number of distinct values of a column, counting null as a
+     * value. */
+    private double cardinality(ColumnStatistic statistic) {
+      return statistic.getDistinctCount()
+          + (statistic.getNullFraction() > 0d ? 1d : 0d);
+    }
+
+    /** Estimates the number of distinct values of a combination of columns
+     * in the whole data set, from the frequencies of values in the sample.
+     *
+     * <p>Uses the "Guaranteed-Error Estimator" of Charikar et al.: values
+     * seen more than once in the sample are assumed to have been seen
+     * already, and each value seen exactly once stands for
+     * sqrt(rowCount / sampleSize) values. */
+    private double estimateCardinality(ImmutableBitSet ordinals,
+        List<ColumnStatistic> columnStatistics) {
+      final Map<List<Comparable>, int[]> counts = new HashMap<>();
+      for (List<Comparable> row : sample) {
+        final List<Comparable> key = new ArrayList<>();
+        for (int i : ordinals) {
+          key.add(row.get(i));
+        }
+        ++counts.computeIfAbsent(key, k -> new int[1])[0];
+      }
+      int singletonCount = 0;
+      for (int[] count : counts.values()) {
+        if (count[0] == 1) {
+          ++singletonCount;
+        }
+      }
+      final double estimate =
+          Math.sqrt((double) rowCount / sample.size()) * singletonCount
+              + counts.size() - singletonCount;
+
+      // There cannot be more values than rows, or than the product of the
+      // number of values of each column.
+      double max = rowCount;
+      double product = 1d;
+      for (int i : ordinals) {
+        product *= cardinality(columnStatistics.get(i));
+      }
+      max = Math.min(max, product);
+      return Math.max(counts.size(), Math.min(estimate, max));
+    }
+  }
+}
+
+// End SamplingProfiler.java
@@ -251,63 +251,12 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append(" mq");
       paramList(buff, method.e)
           .append(") {\n");
-      buff.append("    final java.util.List key = ")
-          .append(
-              (method.e.getParameterTypes().length < 4
-              ? org.apache.calcite.runtime.FlatLists.class
-              : ImmutableList.class).getName())
-          .append(".of(")
-          .append(def.metadataClass.getName());
-      if (method.i == 0) {
-        buff.append(".DEF");
+      if (method.e.getParameterTypes().length == 0) {
+        cacheInSlot(buff, def, method);
       } else {
-        buff.append(".DEF.methods.get(")
-            .append(method.i)
-            .append(")");
+        cacheInMap(buff, def, method);
       }
-      buff.append(", r");
-      safeArgList(buff, method.e)
-          .append(");\n")
-          .append("    final Object v = mq.map.get(key);\n")
-          .append("    if (v != null) {\n")
-          .append("      if (v == ")
-          .append(NullSentinel.class.getName())
-          .append(".ACTIVE) {\n")
-          .append("        throw ")
-          .append(CyclicMetadataException.class.getName())
-          .append(".INSTANCE;\n")
-          .append("      }\n")
-          .append("      if (v == ")
-          .append(NullSentinel.class.getName())
-          .append(".INSTANCE) {\n")
-          .append("        return null;\n")
-          .append("      }\n")
-          .append("      return (")
-          .append(method.e.getReturnType().getName())
-          .append(") v;\n")
-          .append("    }\n")
-          .append("    mq.map.put(key,")
-          .append(NullSentinel.class.getName())
-          .append(".ACTIVE);\n")
-          .append("    try {\n")
-          .append("      final ")
-          .append(method.e.getReturnType().getName())
-          .append(" x = ")
-          .append(method.e.getName())
-          .append("_(r, mq");
-      argList(buff, method.e)
-          .append(");\n")
-          .append("      mq.map.put(key, ")
-          .append(NullSentinel.class.getName())
-          .append(".mask(x));\n")
-          .append("      return x;\n")
-          .append("    } catch (")
-          .append(Exception.class.getName())
-          .append(" e) {\n")
-          .append("      mq.map.remove(key);\n")
-          .append("      throw e;\n")
-          .append("    }\n")
-          .append("  }\n")
+      buff.append("  }\n")
           .append("\n")
           .append("  private ")
           .append(method.e.getReturnType().getName())
@@ -379,6 +328,98 @@ private static <M extends Metadata> MetadataHandler<M> load3(
     }
   }
 
+  /** Generates code that looks up the result of a metadata method in
+   * {@link RelMetadataQuery#map}, computing and storing it if it is absent. */
+  private static void cacheInMap(StringBuilder buff, MetadataDef<?> def,
+      Ord<Method> method) {
+    buff.append("    final java.util.List key = ")
+        .append(
+            (method.e.getParameterTypes().length < 4
+            ? org.apache.calcite.runtime.FlatLists.class
+            : ImmutableList.class).getName())
+        .append(".of(")
+        .append(def.metadataClass.getName());
+    if (method.i == 0) {
+      buff.append(".DEF");
+    } else {
+      buff.append(".DEF.methods.get(")
+          .append(method.i)
+          .append(")");
+    }
+    buff.append(", r");
+    safeArgList(buff, method.e)
+        .append(");\n")
+        .append("    final Object v = mq.map.get(key);\n");
+    cacheLookup(buff, method.e, "key");
+  }
+
+  /** Generates code that looks up the result of a metadata method that has
+   * no arguments in its slot in {@link RelMetadataQuery}. Unlike
+   * {@link #cacheInMap}, the generated code does not allocate a key. */
+  private static void cacheInSlot(StringBuilder buff, MetadataDef<?> def,
+      Ord<Method> method) {
+    final int slot =
+        RelMetadataQuery.slot(method.i == 0 ? def : def.methods.get(method.i));
+    buff.append("    final Object v = mq.cacheSlots(r, ")
+        .append(slot)
+        .append(")[")
+        .append(slot)
+        .append("];\n");
+    cacheLookup(buff, method.e, Integer.toString(slot));
+  }
+
+  /** Generates code that returns the cached value {@code v} if present,
+   * otherwise calls the metadata method and caches its result.
+   *
+   * @param key Expression that identifies the cache entry, passed to the
+   *   {@code cacheXxx} methods of {@link RelMetadataQuery}
+   */
+  private static void cacheLookup(StringBuilder buff, Method method,
+      String key) {
+    buff.append("    if (v != null) {\n")
+        .append("      if (v == ")
+        .append(NullSentinel.class.getName())
+        .append(".ACTIVE) {\n")
+        .append("        mq.cacheCycle(r);\n")
+        .append("        throw ")
+        .append(CyclicMetadataException.class.getName())
+        .append(".INSTANCE;\n")
+        .append("      }\n")
+        .append("      mq.cacheHit(")
+        .append(key)
+        .append(", r);\n")
+        .append("      if (v == ")
+        .append(NullSentinel.class.getName())
+        .append(".INSTANCE) {\n")
+        .append("        return null;\n")
+        .append("      }\n")
+        .append("      return (")
+        .append(method.getReturnType().getName())
+        .append(") v;\n")
+        .append("    }\n")
+        .append("    mq.cacheBegin(")
+        .append(key)
+        .append(", r);\n")
+        .append("    Object result = null;\n")
+        .append("    try {\n")
+        .append("      final ")
+        .append(method.getReturnType().getName())
+        .append(" x = ")
+        .append(method.getName())
+        .append("_(r, mq");
+    argList(buff, method)
+        .append(");\n")
+        .append("      result = ")
+        .append(NullSentinel.class.getName())
+        .append(".mask(x);\n")
+        .append("      return x;\n")
+        .append("    } finally {\n")
+        .append("      mq.cacheEnd(")
+        .append(key)
+        .append(", r, result);\n")
+        .append("    }\n");
+  }
+
   private static String findProvider(
       List<Pair<String, MetadataHandler>> providerList,
       Class<?> declaringClass) {
@@ -16,10 +16,13 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.adapter.enumerable.EnumUtils;
 import org.apache.calcite.adapter.enumerable.EnumerableCorrelate;
+import org.apache.calcite.adapter.enumerable.EnumerableExchange;
 import org.apache.calcite.adapter.enumerable.EnumerableHashJoin;
 import org.apache.calcite.adapter.enumerable.EnumerableMergeJoin;
 import org.apache.calcite.adapter.enumerable.EnumerableNestedLoopJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableSortedAggregate;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.hep.HepRelVertex;
@@ -144,7 +147,20 @@ public ImmutableList<RelCollation> collations(EnumerableMergeJoin join,
     // order of the left and right sides.
     return ImmutableList.copyOf(
         RelMdCollation.mergeJoin(mq, join.getLeft(), join.getRight(),
-            join.analyzeCondition().leftKeys, join.analyzeCondition().rightKeys));
+            join.analyzeCondition().leftKeys, join.analyzeCondition().rightKeys,
+            join.getJoinType()));
+  }
+
+  public ImmutableList<RelCollation> collations(
+      EnumerableSortedAggregate aggregate, RelMetadataQuery mq) {
+    return ImmutableList.of(
+        EnumerableSortedAggregate.outputCollation(aggregate.getGroupSet()));
+  }
+
+  public ImmutableList<RelCollation> collations(EnumerableExchange exchange,
+      RelMetadataQuery mq) {
+    // The rows are read by one thread, and returned in the same order.
+    return mq.collations(exchange.getInput());
   }
 
   public ImmutableList<RelCollation> collations(EnumerableHashJoin join,
@@ -424,19 +440,45 @@ public int compare(List<RexLiteral> o1, List<RexLiteral> o2) {
   public static List<RelCollation> mergeJoin(RelMetadataQuery mq,
       RelNode left, RelNode right,
       ImmutableIntList leftKeys, ImmutableIntList rightKeys) {
+    return mergeJoin(mq, left, right, leftKeys, rightKeys, JoinRelType.INNER);
+  }
+
+  /** Helper method to determine a {@link Join}'s collation assuming that it
+   * uses a merge-join algorithm and has a given join type.
+   *
+   * <p>Left, semi- and anti-joins preserve the sort order of the left input,
+   * and a right join preserves that of the right input. A full join generates
+   * nulls on both sides, interleaved with the other rows, so its output is not
+   * sorted. */
+  public static List<RelCollation> mergeJoin(RelMetadataQuery mq,
+      RelNode left, RelNode right,
+      ImmutableIntList leftKeys, ImmutableIntList rightKeys,
+      JoinRelType joinType) {
     final ImmutableList.Builder<RelCollation> builder = ImmutableList.builder();
 
     final ImmutableList<RelCollation> leftCollations = mq.collations(left);
     assert RelCollations.contains(leftCollations, leftKeys)
         : "cannot merge join: left input is not sorted on left keys";
-    builder.addAll(leftCollations);
-
     final ImmutableList<RelCollation> rightCollations = mq.collations(right);
     assert RelCollations.contains(rightCollations, rightKeys)
         : "cannot merge join: right input is not sorted on right keys";
-    final int leftFieldCount = left.getRowType().getFieldCount();
-    for (RelCollation collation : rightCollations) {
-      builder.add(RelCollations.shift(collation, leftFieldCount));
+
+    switch (joinType) {
+    case INNER:
+    case LEFT:
+    case SEMI:
+    case ANTI:
+      builder.addAll(leftCollations);
+      break;
+    }
+    switch (joinType) {
+    case INNER:
+    case RIGHT:
+      final int leftFieldCount = left.getRowType().getFieldCount();
+      for (RelCollation collation : rightCollations) {
+        builder.add(RelCollations.shift(collation, leftFieldCount));
+      }
+      break;
     }
     return builder.build();
   }
@@ -448,6 +490,12 @@ public static List<RelCollation> enumerableHashJoin(RelMetadataQuery mq,
       RelNode left, RelNode right, JoinRelType joinType) {
     if (joinType == JoinRelType.SEMI) {
       return enumerableSemiJoin(mq, left, right);
+    } else if (EnumUtils.memoryBudget(left.getCluster()) >= 0
+        || EnumUtils.parallelism(left.getCluster()) > 1) {
+      // If the join spills to disk or runs in parallel, it processes the left
+      // input one partition at a time, and therefore does not preserve its
+      // sort order
+      return ImmutableList.of();
     } else {
       return enumerableJoin0(mq, left, right, joinType);
     }
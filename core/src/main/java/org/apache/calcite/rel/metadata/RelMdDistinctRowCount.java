@@ -25,11 +25,13 @@
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.util.Bug;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -78,6 +80,43 @@ public Double getDistinctRowCount(RelNode rel, RelMetadataQuery mq,
     return null;
   }
 
+  /** Estimates the number of distinct values of a table's columns from the
+   * distinct counts in the table's column statistics, if every column in
+   * {@code groupKey} has one. */
+  public Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq,
+      ImmutableBitSet groupKey, RexNode predicate) {
+    final Double d = getDistinctRowCount((RelNode) rel, mq, groupKey,
+        predicate);
+    if (d != null || groupKey.isEmpty()) {
+      return d;
+    }
+    final Double rowCount = mq.getRowCount(rel);
+    if (rowCount == null) {
+      return null;
+    }
+    double distinctCount = 1D;
+    for (int column : groupKey) {
+      final ColumnStatistic stat =
+          RelMdUtil.getColumnStatistic(mq, rel, column);
+      if (stat == null || stat.getDistinctCount() == null) {
+        return null;
+      }
+      double n = stat.getDistinctCount();
+      if (stat.getNullFraction() == null || stat.getNullFraction() > 0D) {
+        // Null is a distinct value too.
+        ++n;
+      }
+      distinctCount *= n;
+    }
+    distinctCount = Math.min(distinctCount, rowCount);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return distinctCount;
+    }
+    final Double selectivity = mq.getSelectivity(rel, predicate);
+    return RelMdUtil.numDistinctVals(distinctCount,
+        rowCount * (selectivity == null ? 1D : selectivity));
+  }
+
   public Double getDistinctRowCount(Union rel, RelMetadataQuery mq,
       ImmutableBitSet groupKey, RexNode predicate) {
     double rowCount = 0.0;
@@ -184,10 +184,11 @@ public Double getSelectivity(Project rel, RelMetadataQuery mq,
     }
   }
 
-  // Catch-all rule when none of the others apply.
+  // Catch-all rule when none of the others apply. Uses column statistics of
+  // the underlying tables if there are any.
   public Double getSelectivity(RelNode rel, RelMetadataQuery mq,
       RexNode predicate) {
-    return RelMdUtil.guessSelectivity(predicate);
+    return RelMdUtil.estimateSelectivity(mq, rel, predicate);
   }
 }
 
@@ -35,12 +35,17 @@
 import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlFunctionCategory;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.calcite.statistic.StatisticCatalog;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.NumberUtil;
 
@@ -49,8 +54,10 @@
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -404,6 +411,197 @@ public static double guessSelectivity(
     }
   }
 
+  /**
+   * Estimates the selectivity of a predicate on the output of a relational
+   * expression, using statistics about the columns that the predicate
+   * references where a table has them (see
+   * {@link Statistic#getColumnStatistic(int)}), and
+   * {@link #guessSelectivity(RexNode)} otherwise.
+   *
+   * <p>If none of the conjunctions of the predicate can use column statistics,
+   * returns the same value as {@link #guessSelectivity(RexNode)}.
+   *
+   * @param mq        Metadata query
+   * @param rel       Relational expression whose output the predicate
+   *                  references
+   * @param predicate predicate for which selectivity will be computed; null
+   *                  means true, so gives selectivity of 1.0
+   * @return estimated selectivity
+   */
+  public static double estimateSelectivity(RelMetadataQuery mq, RelNode rel,
+      RexNode predicate) {
+    if ((predicate == null) || predicate.isAlwaysTrue()) {
+      return 1.0;
+    }
+    double sel = 1.0;
+    boolean found = false;
+    for (RexNode pred : RelOptUtil.conjunctions(predicate)) {
+      final Double s = columnSelectivity(mq, rel, pred);
+      if (s != null) {
+        found = true;
+        sel *= s;
+      } else {
+        sel *= guessSelectivity(pred);
+      }
+    }
+    return found ? sel : guessSelectivity(predicate);
+  }
+
+  /** Returns the selectivity of a simple predicate computed from column
+   * statistics, or null if the predicate is not of a form that column
+   * statistics can estimate, or if there are no statistics. */
+  private static Double columnSelectivity(RelMetadataQuery mq, RelNode rel,
+      RexNode pred) {
+    switch (pred.getKind()) {
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final RexNode operand = ((RexCall) pred).getOperands().get(0);
+      if (!(operand instanceof RexInputRef)) {
+        return null;
+      }
+      final ColumnStatistic stat =
+          getColumnStatistic(mq, rel, ((RexInputRef) operand).getIndex());
+      if (stat == null || stat.getNullFraction() == null) {
+        return null;
+      }
+      return pred.getKind() == SqlKind.IS_NULL
+          ? stat.getNullFraction()
+          : 1.0 - stat.getNullFraction();
+
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final List<RexNode> operands = ((RexCall) pred).getOperands();
+      RexNode op0 = operands.get(0);
+      RexNode op1 = operands.get(1);
+      SqlKind kind = pred.getKind();
+      if (op0 instanceof RexLiteral && op1 instanceof RexInputRef) {
+        op0 = operands.get(1);
+        op1 = operands.get(0);
+        kind = kind.reverse();
+      }
+      if (!(op0 instanceof RexInputRef)) {
+        return null;
+      }
+      final ColumnStatistic stat0 =
+          getColumnStatistic(mq, rel, ((RexInputRef) op0).getIndex());
+      if (op1 instanceof RexInputRef && kind == SqlKind.EQUALS) {
+        // Equi-join condition; assume that each value of the column with
+        // fewer distinct values matches a value of the other column.
+        final ColumnStatistic stat1 =
+            getColumnStatistic(mq, rel, ((RexInputRef) op1).getIndex());
+        double ndv = 0;
+        for (ColumnStatistic s : Arrays.asList(stat0, stat1)) {
+          if (s != null && s.getDistinctCount() != null) {
+            ndv = Math.max(ndv, s.getDistinctCount());
+          }
+        }
+        return ndv > 0 ? 1.0 / Math.max(1.0, ndv) : null;
+      }
+      if (stat0 == null || !(op1 instanceof RexLiteral)) {
+        return null;
+      }
+      final Comparable value = ((RexLiteral) op1).getValue4();
+      if (value == null) {
+        return null;
+      }
+      try {
+        return comparisonSelectivity(stat0, kind, Histogram.normalize(value));
+      } catch (ClassCastException e) {
+        // The statistics hold values of a different type than the literal.
+        return null;
+      }
+
+    default:
+      return null;
+    }
+  }
+
+  private static Double comparisonSelectivity(ColumnStatistic stat,
+      SqlKind kind, Comparable value) {
+    final double nullFraction =
+        stat.getNullFraction() == null ? 0.0 : stat.getNullFraction();
+    final Histogram histogram = stat.getHistogram();
+    switch (kind) {
+    case EQUALS:
+      return equalsSelectivity(stat, value, nullFraction);
+    case NOT_EQUALS:
+      final Double eq = equalsSelectivity(stat, value, nullFraction);
+      return eq == null ? null : Math.max(0.0, 1.0 - nullFraction - eq);
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+      if (histogram == null) {
+        return null;
+      }
+      return (1.0 - nullFraction)
+          * histogram.fractionBelow(value, kind == SqlKind.LESS_THAN_OR_EQUAL);
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      if (histogram == null) {
+        return null;
+      }
+      return (1.0 - nullFraction)
+          * (1.0 - histogram.fractionBelow(value, kind == SqlKind.GREATER_THAN));
+    default:
+      return null;
+    }
+  }
+
+  private static Double equalsSelectivity(ColumnStatistic stat,
+      Comparable value, double nullFraction) {
+    final Map<Comparable, Double> mostCommonValues =
+        stat.getMostCommonValues();
+    double mostCommonFraction = 0.0;
+    int mostCommonCount = 0;
+    if (mostCommonValues != null) {
+      final Double fraction = mostCommonValues.get(value);
+      if (fraction != null) {
+        return fraction;
+      }
+      for (Double f : mostCommonValues.values()) {
+        mostCommonFraction += f;
+      }
+      mostCommonCount = mostCommonValues.size();
+    }
+    if (stat.getDistinctCount() == null) {
+      return null;
+    }
+    // The remaining rows are spread evenly over the remaining values.
+    return Math.max(0.0, 1.0 - nullFraction - mostCommonFraction)
+        / Math.max(1.0, stat.getDistinctCount() - mostCommonCount);
+  }
+
+  /**
+   * Returns statistics about the table column from which an output column of
+   * a relational expression comes.
+   *
+   * @param mq     Metadata query
+   * @param rel    Relational expression
+   * @param column 0-based ordinal of output column
+   * @return column statistics, or null if the column does not come directly
+   * from a single table column, or the table has no statistics about it
+   */
+  public static ColumnStatistic getColumnStatistic(RelMetadataQuery mq,
+      RelNode rel, int column) {
+    final RelColumnOrigin origin = mq.getColumnOrigin(rel, column);
+    if (origin == null) {
+      return null;
+    }
+    final Table table = origin.getOriginTable().unwrap(Table.class);
+    if (table == null) {
+      return null;
+    }
+    final Statistic statistic =
+        StatisticCatalog.instance().getStatistic(table);
+    if (statistic == null) {
+      return null;
+    }
+    return statistic.getColumnStatistic(origin.getOriginColumnOrdinal());
+  }
+
   /**
    * AND's two predicates together, either of which may be null, removing
    * redundant filters.
@@ -27,17 +27,28 @@
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.util.ImmutableBitSet;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * RelMetadataQuery provides a strongly-typed facade on top of
@@ -73,11 +84,50 @@
  * instance of {@link DefaultRelMetadataProvider}, pre-pending it to the default
  * providers. Then supply that instance to the planner via the appropriate
  * plugin mechanism.
+ *
+ * <p>Results are cached, and the cache records which relational expressions
+ * each result was derived from. When a relational expression changes (for
+ * instance, a {@code RelSubset} gets a new best expression), call
+ * {@link #clearCache(RelNode)} to discard only the results that depend on it.
  */
 public class RelMetadataQuery {
   /** Set of active metadata queries, and cache of previous results. */
   public final Map<List, Object> map = new HashMap<>();
 
+  /** Handlers of metadata methods that have no arguments other than the
+   * relational expression, such as {@code getRowCount}, look up and store
+   * results in an array per relational expression, indexed by
+   * {@link #slot(Object)}, rather than in {@link #map}; so that finding a
+   * result in the cache allocates nothing. */
+  private final Map<RelNode, Object[]> slotMap = new IdentityHashMap<>();
+
+  /** The metadata method of each slot, as it would appear as the first
+   * element of a key in {@link #map}: a {@link MetadataDef} for the first
+   * method of a kind of metadata, otherwise a {@link Method}. Slots are
+   * shared by all queries. */
+  private static final List<Object> SLOTS = new CopyOnWriteArrayList<>();
+
+  /** Keys in {@link #map} of the cached results of each relational
+   * expression. */
+  private final SetMultimap<RelNode, List> keysByRel = HashMultimap.create();
+
+  /** For each relational expression, the relational expressions whose cached
+   * results were computed using its metadata. */
+  private final SetMultimap<RelNode, RelNode> dependents =
+      HashMultimap.create();
+
+  /** Relational expressions whose metadata is being computed, innermost
+   * first. */
+  private final Deque<RelNode> activeRels = new ArrayDeque<>();
+
+  /** Active relational expressions whose metadata was requested while it was
+   * being computed; that is, which are part of a cycle. */
+  private final Set<RelNode> cyclicRels = new HashSet<>();
+
+  /** Cache statistics, keyed by the first element of the cache key (a
+   * {@link MetadataDef} or a {@link Method}). */
+  private final Map<Object, CacheStats> cacheStats = new HashMap<>();
+
   public final JaninoRelMetadataProvider metadataProvider;
 
   protected static final RelMetadataQuery EMPTY = new RelMetadataQuery(false);
@@ -186,6 +236,212 @@ private RelMetadataQuery(boolean dummy) {
     this.uniqueKeysHandler = initialHandler(BuiltInMetadata.UniqueKeys.Handler.class);
   }
 
+  /** Returns the slot of a metadata method, allocating one if necessary.
+   * Called when generating metadata handlers.
+   *
+   * @param head Metadata method; a {@link MetadataDef} or {@link Method}
+   * @return Index of the method's result in the array returned by
+   * {@link #cacheSlots(RelNode, int)}
+   */
+  public static synchronized int slot(Object head) {
+    int slot = SLOTS.indexOf(head);
+    if (slot < 0) {
+      slot = SLOTS.size();
+      SLOTS.add(head);
+    }
+    return slot;
+  }
+
+  /** Returns the array of cached results of a relational expression, with
+   * room for at least {@code slot}. Called by generated metadata handlers;
+   * a null element means that the result is not cached. */
+  public Object[] cacheSlots(RelNode rel, int slot) {
+    Object[] values = slotMap.get(rel);
+    if (values == null || values.length <= slot) {
+      final int length = Math.max(slot + 1, SLOTS.size());
+      values = values == null
+          ? new Object[length]
+          : Arrays.copyOf(values, length);
+      slotMap.put(rel, values);
+    }
+    return values;
+  }
+
+  /** Records that a metadata result for {@code rel} was found in the cache.
+   * Called by generated metadata handlers. */
+  public void cacheHit(int slot, RelNode rel) {
+    stats(SLOTS.get(slot)).hits++;
+    addDependency(rel);
+  }
+
+  /** As {@link #cacheBegin(List, RelNode)}, for a result stored in a
+   * slot. */
+  public void cacheBegin(int slot, RelNode rel) {
+    stats(SLOTS.get(slot)).misses++;
+    addDependency(rel);
+    cacheSlots(rel, slot)[slot] = NullSentinel.ACTIVE;
+    activeRels.push(rel);
+  }
+
+  /** As {@link #cacheEnd(List, RelNode, Object)}, for a result stored in a
+   * slot. */
+  public void cacheEnd(int slot, RelNode rel, Object value) {
+    activeRels.pop();
+    // Look up the array again; it may have been grown since cacheBegin.
+    cacheSlots(rel, slot)[slot] = value;
+    endCycle(rel);
+  }
+
+  /** Records that a metadata result for {@code rel} was found in the cache.
+   * Called by generated metadata handlers. */
+  public void cacheHit(List key, RelNode rel) {
+    stats(key).hits++;
+    addDependency(rel);
+  }
+
+  /** Records that a metadata result for {@code rel} was requested while it
+   * was being computed. Called by generated metadata handlers, which then
+   * throw {@link CyclicMetadataException}. */
+  public void cacheCycle(RelNode rel) {
+    addDependency(rel);
+    cyclicRels.add(rel);
+  }
+
+  /** Records that a metadata result for {@code rel} is not in the cache and
+   * is about to be computed, and marks it as active, to detect cycles. Called
+   * by generated metadata handlers, and must be followed by a call to
+   * {@link #cacheEnd(List, RelNode, Object)}. */
+  public void cacheBegin(List key, RelNode rel) {
+    stats(key).misses++;
+    addDependency(rel);
+    map.put(key, NullSentinel.ACTIVE);
+    keysByRel.put(rel, key);
+    activeRels.push(rel);
+  }
+
+  /** Stores the result of a metadata computation, or if {@code value} is null
+   * (because the computation failed) removes the active entry. Null results
+   * must be masked using {@link NullSentinel#mask(Object)}. */
+  public void cacheEnd(List key, RelNode rel, Object value) {
+    activeRels.pop();
+    if (value == null) {
+      map.remove(key);
+      keysByRel.remove(rel, key);
+    } else {
+      map.put(key, value);
+    }
+    endCycle(rel);
+  }
+
+  private void endCycle(RelNode rel) {
+    if (cyclicRels.remove(rel)) {
+      // Results computed while "rel" was part of a cycle used a fallback
+      // value for it. Discard them; they will be computed again using the
+      // real value. Keep the result of "rel" itself.
+      clearCache(ImmutableList.copyOf(dependents.get(rel)), rel);
+    }
+  }
+
+  /** Records that the metadata result currently being computed, if any, was
+   * derived from {@code rel}, so that {@link #clearCache(RelNode) clearing}
+   * {@code rel} will discard it. Metadata handlers need only call this method
+   * if they use state of {@code rel} other than its metadata, such as a
+   * planner's cost. */
+  public void addDependency(RelNode rel) {
+    final RelNode activeRel = activeRels.peek();
+    if (activeRel != null && activeRel != rel) {
+      dependents.put(rel, activeRel);
+    }
+  }
+
+  private CacheStats stats(List key) {
+    return stats(key.get(0));
+  }
+
+  private CacheStats stats(Object head) {
+    return cacheStats.computeIfAbsent(head, k -> new CacheStats());
+  }
+
+  /** Removes the cached metadata results of a relational expression, and of
+   * every relational expression whose cached results were computed, directly
+   * or indirectly, from them. Results for other relational expressions remain
+   * cached.
+   *
+   * <p>Call this method when something that the metadata of {@code rel}
+   * depends on has changed; for example, when a {@code RelSubset} has
+   * gained an expression or has a new best expression.
+   *
+   * @param rel Relational expression
+   * @return Whether any results were removed
+   */
+  public boolean clearCache(RelNode rel) {
+    return clearCache(ImmutableList.of(rel), null);
+  }
+
+  /** Removes the cached results of some relational expressions and of their
+   * dependents, except those of {@code keep}, if not null.
+   *
+   * <p>The result of {@code keep} remains derived from any of the cleared
+   * relational expressions that it depended on, so those dependencies are
+   * kept too. */
+  private boolean clearCache(Collection<RelNode> rels, RelNode keep) {
+    final Deque<RelNode> queue = new ArrayDeque<>(rels);
+    final Set<RelNode> visited = new HashSet<>();
+    if (keep != null) {
+      visited.add(keep);
+    }
+    boolean removed = false;
+    while (!queue.isEmpty()) {
+      final RelNode r = queue.pop();
+      if (!visited.add(r)) {
+        continue;
+      }
+      if (activeRels.contains(r)) {
+        // Being computed; its result, and results derived from it, will be
+        // stored when it is done.
+        continue;
+      }
+      for (List key : keysByRel.removeAll(r)) {
+        if (map.remove(key) != null) {
+          stats(key).invalidations++;
+          removed = true;
+        }
+      }
+      final Object[] values = slotMap.remove(r);
+      if (values != null) {
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] != null) {
+            stats(SLOTS.get(i)).invalidations++;
+            removed = true;
+          }
+        }
+      }
+      final Set<RelNode> rDependents = dependents.removeAll(r);
+      if (keep != null && rDependents.contains(keep)) {
+        dependents.put(r, keep);
+      }
+      queue.addAll(rDependents);
+    }
+    return removed;
+  }
+
+  /** Returns statistics about the use of this query's cache, per kind of
+   * metadata; the key is the name of the metadata method, for example
+   * "RowCount.getRowCount". */
+  public Map<String, CacheStats> getCacheStats() {
+    final ImmutableSortedMap.Builder<String, CacheStats> builder =
+        ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<Object, CacheStats> entry : cacheStats.entrySet()) {
+      final Method method = entry.getKey() instanceof MetadataDef
+          ? ((MetadataDef<?>) entry.getKey()).methods.get(0)
+          : (Method) entry.getKey();
+      builder.put(
+          method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+          entry.getValue());
+    }
+    return builder.build();
+  }
+
   /** Re-generates the handler for a given kind of metadata, adding support for
    * {@code class_} if it is not already present. */
   protected <M extends Metadata, H extends MetadataHandler<M>> H
@@ -907,6 +1163,41 @@ private static Double validateResult(Double result) {
     return result;
   }
 
+  /** Counts of how often the cache of a {@link RelMetadataQuery} was used for
+   * one kind of metadata. */
+  public static class CacheStats {
+    long hits;
+    long misses;
+    long invalidations;
+
+    /** Returns the number of results that were found in the cache. */
+    public long getHits() {
+      return hits;
+    }
+
+    /** Returns the number of results that had to be computed. */
+    public long getMisses() {
+      return misses;
+    }
+
+    /** Returns the number of cached results that were removed by
+     * {@link RelMetadataQuery#clearCache(RelNode)}. */
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    /** Returns the proportion of requests that were found in the cache, or 0
+     * if there have been no requests. */
+    public double getHitRatio() {
+      final long requests = hits + misses;
+      return requests == 0 ? 0D : (double) hits / requests;
+    }
+
+    @Override public String toString() {
+      return "hits=" + hits + ", misses=" + misses
+          + ", invalidations=" + invalidations;
+    }
+  }
 }
 
 // End RelMetadataQuery.java
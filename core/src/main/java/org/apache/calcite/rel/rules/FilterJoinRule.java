@@ -326,6 +326,11 @@ private List<RexNode> getConjunctions(Filter filter) {
    */
   protected void validateJoinFilters(List<RexNode> aboveFilters,
       List<RexNode> joinFilters, Join join, JoinRelType joinType) {
+    if (!joinType.projectsRight()) {
+      // A semi- or anti-join does not output the fields of its right input,
+      // so filters that reference them cannot be moved above it.
+      return;
+    }
     final Iterator<RexNode> filterIter = joinFilters.iterator();
     while (filterIter.hasNext()) {
       RexNode exp = filterIter.next();
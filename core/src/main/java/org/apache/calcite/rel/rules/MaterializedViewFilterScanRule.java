@@ -18,6 +18,7 @@
 
 import org.apache.calcite.plan.MaterializedViewSubstitutionVisitor;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptMaterializationIndex;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
@@ -68,13 +69,14 @@ public void onMatch(RelOptRuleCall call) {
 
   protected void apply(RelOptRuleCall call, Filter filter, TableScan scan) {
     final RelOptPlanner planner = call.getPlanner();
-    final List<RelOptMaterialization> materializations =
-        planner.getMaterializations();
-    if (!materializations.isEmpty()) {
+    final RelOptMaterializationIndex materializationIndex =
+        planner.getMaterializationIndex();
+    if (!materializationIndex.isEmpty()) {
       RelNode root = filter.copy(filter.getTraitSet(),
           Collections.singletonList((RelNode) scan));
       List<RelOptMaterialization> applicableMaterializations =
-          RelOptMaterializations.getApplicableMaterializations(root, materializations);
+          RelOptMaterializations.getApplicableMaterializations(root,
+              materializationIndex);
       for (RelOptMaterialization materialization : applicableMaterializations) {
         if (RelOptUtil.areRowTypesEqual(scan.getRowType(),
             materialization.queryRel.getRowType(), false)) {
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexPermuteInputsShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.mapping.Mappings;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Planner rule that finds the optimal ordering for join operators using
+ * dynamic programming.
+ *
+ * <p>It is triggered by the pattern {@link MultiJoin}, and considers every
+ * bushy join tree of its inputs that has no cartesian products. It
+ * enumerates each pair of a connected set of inputs and a connected
+ * complement exactly once, in an order that ensures that the best plans for
+ * both sets are known (the DPccp algorithm of Moerkotte and Neumann). A join
+ * condition that references three or more inputs is a hyperedge: it
+ * connects two sets only if it references both and all of the inputs it
+ * references are in their union.
+ *
+ * <p>The cost of a plan is the total number of rows produced by its joins.
+ * The number of rows in each input comes from
+ * {@link RelMetadataQuery#getRowCount}; the selectivity of an equi-join
+ * condition on two columns is estimated from the number of distinct values
+ * in each, from {@link RelMetadataQuery#getDistinctRowCount}.
+ *
+ * <p>The number of pairs grows exponentially with the number of inputs. If a
+ * {@code MultiJoin} has more than {@code maxFactors} inputs, or its inputs
+ * cannot be joined without cartesian products, the rule falls back to the
+ * greedy algorithm of {@link MultiJoinOptimizeBushyRule}. If it contains
+ * outer joins, the rule falls back to {@link LoptOptimizeJoinRule}.
+ */
+public class MultiJoinOptimizeDpRule extends RelOptRule {
+  /** Default value of the {@code maxFactors} parameter. */
+  public static final int DEFAULT_MAX_FACTORS = 12;
+
+  public static final MultiJoinOptimizeDpRule INSTANCE =
+      new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER,
+          DEFAULT_MAX_FACTORS);
+
+  private final int maxFactors;
+  private final MultiJoinOptimizeBushyRule greedyRule;
+  private final LoptOptimizeJoinRule outerJoinRule;
+
+  /** Creates a MultiJoinOptimizeDpRule.
+   *
+   * @param relBuilderFactory Builder for relational expressions
+   * @param maxFactors Maximum number of inputs for which to use dynamic
+   *                   programming; if there are more, the rule uses the
+   *                   greedy algorithm
+   */
+  public MultiJoinOptimizeDpRule(RelBuilderFactory relBuilderFactory,
+      int maxFactors) {
+    super(operand(MultiJoin.class, any()), relBuilderFactory, null);
+    // A set of inputs is represented as the bits of a long.
+    this.maxFactors = Math.min(maxFactors, Long.SIZE - 1);
+    this.greedyRule = new MultiJoinOptimizeBushyRule(relBuilderFactory);
+    this.outerJoinRule = new LoptOptimizeJoinRule(relBuilderFactory);
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final MultiJoin multiJoinRel = call.rel(0);
+    if (multiJoinRel.isFullOuterJoin()
+        || multiJoinRel.getJoinTypes().stream()
+            .anyMatch(joinType -> joinType != JoinRelType.INNER)) {
+      outerJoinRule.onMatch(call);
+      return;
+    }
+    final LoptMultiJoin multiJoin = new LoptMultiJoin(multiJoinRel);
+    if (multiJoin.getNumJoinFactors() > maxFactors) {
+      greedyRule.onMatch(call);
+      return;
+    }
+    final Enumerator enumerator =
+        new Enumerator(multiJoin, call.getMetadataQuery());
+    final Plan best = enumerator.solve();
+    if (best == null) {
+      // The inputs are not connected.
+      greedyRule.onMatch(call);
+      return;
+    }
+
+    final RexBuilder rexBuilder = multiJoinRel.getCluster().getRexBuilder();
+    final RelBuilder relBuilder = call.builder();
+    final Pair<RelNode, Mappings.TargetMapping> top =
+        build(best, enumerator, multiJoin, relBuilder, rexBuilder);
+    relBuilder.push(top.left);
+    final List<RexNode> topConditions = new ArrayList<>(enumerator.topConditions);
+    if (multiJoinRel.getPostJoinFilter() != null) {
+      topConditions.add(multiJoinRel.getPostJoinFilter());
+    }
+    if (!topConditions.isEmpty()) {
+      relBuilder.filter(
+          RexUtil.composeConjunction(rexBuilder, topConditions)
+              .accept(new RexPermuteInputsShuttle(top.right, top.left)));
+    }
+    relBuilder.project(relBuilder.fields(top.right));
+    call.transformTo(relBuilder.build());
+  }
+
+  /** Converts a plan to a relational expression, and a mapping from the
+   * fields of the {@code MultiJoin} to its fields. */
+  private Pair<RelNode, Mappings.TargetMapping> build(Plan plan,
+      Enumerator enumerator, LoptMultiJoin multiJoin, RelBuilder relBuilder,
+      RexBuilder rexBuilder) {
+    if (plan.left == null) {
+      final int factor = Long.numberOfTrailingZeros(plan.factors);
+      final RelNode rel = multiJoin.getJoinFactor(factor);
+      final Mappings.TargetMapping mapping =
+          Mappings.offsetSource(
+              Mappings.createIdentity(rel.getRowType().getFieldCount()),
+              multiJoin.getJoinStart(factor),
+              multiJoin.getNumTotalFields());
+      relBuilder.push(rel);
+      final List<RexNode> conditions = enumerator.leafConditions.get(factor);
+      if (conditions != null) {
+        relBuilder.filter(
+            RexUtil.composeConjunction(rexBuilder, conditions)
+                .accept(new RexPermuteInputsShuttle(mapping, rel)));
+      }
+      return Pair.of(relBuilder.build(), mapping);
+    }
+    final Pair<RelNode, Mappings.TargetMapping> leftPair =
+        build(plan.left, enumerator, multiJoin, relBuilder, rexBuilder);
+    final Pair<RelNode, Mappings.TargetMapping> rightPair =
+        build(plan.right, enumerator, multiJoin, relBuilder, rexBuilder);
+    final RelNode left = leftPair.left;
+    final RelNode right = rightPair.left;
+    final Mappings.TargetMapping mapping =
+        Mappings.merge(leftPair.right,
+            Mappings.offsetTarget(rightPair.right,
+                left.getRowType().getFieldCount()));
+    final RexNode condition =
+        RexUtil.composeConjunction(rexBuilder, plan.conditions)
+            .accept(new RexPermuteInputsShuttle(mapping, left, right));
+    final RelNode join = relBuilder.push(left)
+        .push(right)
+        .join(JoinRelType.INNER, condition)
+        .build();
+    return Pair.of(join, mapping);
+  }
+
+  /** Best plan found for a set of inputs. */
+  private static class Plan {
+    /** Inputs, as bits. */
+    final long factors;
+    /** Left and right inputs; null if this is a single input. */
+    final Plan left;
+    final Plan right;
+    /** Conditions applied by the join; in terms of the fields of the
+     * {@code MultiJoin}. */
+    final ImmutableList<RexNode> conditions;
+    final double rowCount;
+    final double cost;
+
+    Plan(long factors, Plan left, Plan right,
+        ImmutableList<RexNode> conditions, double rowCount, double cost) {
+      this.factors = factors;
+      this.left = left;
+      this.right = right;
+      this.conditions = conditions;
+      this.rowCount = rowCount;
+      this.cost = cost;
+    }
+  }
+
+  /** Join condition and the inputs that it references. */
+  private static class HyperEdge {
+    final RexNode condition;
+    final long factors;
+    final double selectivity;
+
+    HyperEdge(RexNode condition, long factors, double selectivity) {
+      this.condition = condition;
+      this.factors = factors;
+      this.selectivity = selectivity;
+    }
+  }
+
+  /** Enumerates the join trees of a {@code MultiJoin} and remembers the best
+   * plan for each connected set of inputs. */
+  private static class Enumerator {
+    private final int n;
+    private final List<HyperEdge> edges = new ArrayList<>();
+    /** For each input, the inputs that share a condition with it. */
+    private final long[] neighbors;
+    private final Map<Long, Plan> plans = new HashMap<>();
+
+    /** Conditions that reference one input, by input. */
+    final Map<Integer, List<RexNode>> leafConditions = new HashMap<>();
+    /** Conditions that reference no inputs. */
+    final List<RexNode> topConditions = new ArrayList<>();
+
+    Enumerator(LoptMultiJoin multiJoin, RelMetadataQuery mq) {
+      n = multiJoin.getNumJoinFactors();
+      neighbors = new long[n];
+      for (RexNode condition : multiJoin.getJoinFilters()) {
+        final LoptMultiJoin.Edge edge = multiJoin.createEdge(condition);
+        switch (edge.factors.cardinality()) {
+        case 0:
+          topConditions.add(condition);
+          break;
+        case 1:
+          leafConditions.computeIfAbsent(edge.factors.nth(0),
+              k -> new ArrayList<>()).add(condition);
+          break;
+        default:
+          final long factors = toLong(edge.factors);
+          edges.add(
+              new HyperEdge(condition, factors,
+                  selectivity(multiJoin, mq, condition)));
+          for (int factor : edge.factors) {
+            neighbors[factor] |= factors & ~(1L << factor);
+          }
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        double rowCount = mq.getRowCount(multiJoin.getJoinFactor(i));
+        final List<RexNode> conditions = leafConditions.get(i);
+        if (conditions != null) {
+          rowCount *= RelMdUtil.guessSelectivity(
+              RexUtil.composeConjunction(
+                  multiJoin.getMultiJoinRel().getCluster().getRexBuilder(),
+                  conditions));
+        }
+        plans.put(1L << i,
+            new Plan(1L << i, null, null, ImmutableList.of(), rowCount, 0d));
+      }
+    }
+
+    /** Estimates the selectivity of a join condition. If it is an equality
+     * between columns of two inputs, uses the greater of their numbers of
+     * distinct values. */
+    private static double selectivity(LoptMultiJoin multiJoin,
+        RelMetadataQuery mq, RexNode condition) {
+      if (condition.isA(SqlKind.EQUALS)) {
+        final List<RexNode> operands = ((RexCall) condition).getOperands();
+        if (operands.get(0) instanceof RexInputRef
+            && operands.get(1) instanceof RexInputRef) {
+          final Double ndv0 =
+              distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(0));
+          final Double ndv1 =
+              distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(1));
+          if (ndv0 != null && ndv1 != null
+              && Math.max(ndv0, ndv1) >= 1d) {
+            return 1d / Math.max(ndv0, ndv1);
+          }
+        }
+      }
+      return RelMdUtil.guessSelectivity(condition);
+    }
+
+    private static Double distinctRowCount(LoptMultiJoin multiJoin,
+        RelMetadataQuery mq, RexInputRef ref) {
+      final int factor = multiJoin.findRef(ref.getIndex());
+      return mq.getDistinctRowCount(multiJoin.getJoinFactor(factor),
+          ImmutableBitSet.of(ref.getIndex() - multiJoin.getJoinStart(factor)),
+          null);
+    }
+
+    /** Returns the best plan that joins all inputs, or null if there is no
+     * plan without cartesian products. */
+    Plan solve() {
+      for (int i = n - 1; i >= 0; i--) {
+        final long v = 1L << i;
+        emitCsg(v);
+        enumerateCsgRec(v, lowerOrEqual(i));
+      }
+      return plans.get(lowerOrEqual(n - 1));
+    }
+
+    /** Returns the inputs with ordinal {@code i} or less. */
+    private static long lowerOrEqual(int i) {
+      return i == Long.SIZE - 1 ? -1L : (1L << (i + 1)) - 1;
+    }
+
+    private long neighborhood(long s, long excluded) {
+      long result = 0;
+      for (long bits = s; bits != 0; bits &= bits - 1) {
+        result |= neighbors[Long.numberOfTrailingZeros(bits)];
+      }
+      return result & ~s & ~excluded;
+    }
+
+    /** Extends a connected set {@code s1}, without using inputs in
+     * {@code x}, and emits each connected set found. */
+    private void enumerateCsgRec(long s1, long x) {
+      final long neighborhood = neighborhood(s1, x);
+      for (long s = neighborhood & -neighborhood; s != 0;
+           s = (s - neighborhood) & neighborhood) {
+        emitCsg(s1 | s);
+      }
+      for (long s = neighborhood & -neighborhood; s != 0;
+           s = (s - neighborhood) & neighborhood) {
+        enumerateCsgRec(s1 | s, x | neighborhood);
+      }
+    }
+
+    /** Emits each connected complement of a connected set {@code s1}. */
+    private void emitCsg(long s1) {
+      final int min = Long.numberOfTrailingZeros(s1);
+      final long x = s1 | lowerOrEqual(min);
+      final long neighborhood = neighborhood(s1, x);
+      for (long bits = neighborhood; bits != 0;) {
+        final int i = Long.SIZE - 1 - Long.numberOfLeadingZeros(bits);
+        final long s2 = 1L << i;
+        bits &= ~s2;
+        emitCsgCmp(s1, s2);
+        enumerateCmpRec(s1, s2, x | (neighborhood & lowerOrEqual(i)));
+      }
+    }
+
+    private void enumerateCmpRec(long s1, long s2, long x) {
+      final long neighborhood = neighborhood(s2, x);
+      for (long s = neighborhood & -neighborhood; s != 0;
+           s = (s - neighborhood) & neighborhood) {
+        emitCsgCmp(s1, s2 | s);
+      }
+      for (long s = neighborhood & -neighborhood; s != 0;
+           s = (s - neighborhood) & neighborhood) {
+        enumerateCmpRec(s1, s2 | s, x | neighborhood);
+      }
+    }
+
+    /** Considers joining the best plans for two disjoint sets of inputs. */
+    private void emitCsgCmp(long s1, long s2) {
+      final Plan p1 = plans.get(s1);
+      final Plan p2 = plans.get(s2);
+      if (p1 == null || p2 == null) {
+        // One of the sets is connected only via hyperedges that are not
+        // yet complete.
+        return;
+      }
+      final long s = s1 | s2;
+      final ImmutableList.Builder<RexNode> conditions = ImmutableList.builder();
+      double selectivity = 1d;
+      boolean connected = false;
+      for (HyperEdge edge : edges) {
+        if ((edge.factors & ~s) == 0
+            && (edge.factors & ~s1) != 0
+            && (edge.factors & ~s2) != 0) {
+          conditions.add(edge.condition);
+          selectivity *= edge.selectivity;
+          connected = true;
+        }
+      }
+      if (!connected) {
+        return;
+      }
+      final double rowCount = p1.rowCount * p2.rowCount * selectivity;
+      final double cost = rowCount + p1.cost + p2.cost;
+      final Plan best = plans.get(s);
+      if (best == null || cost < best.cost) {
+        // As MultiJoinOptimizeBushyRule does, put the smaller input on the
+        // left.
+        plans.put(s,
+            p1.rowCount <= p2.rowCount
+                ? new Plan(s, p1, p2, conditions.build(), rowCount, cost)
+                : new Plan(s, p2, p1, conditions.build(), rowCount, cost));
+      }
+    }
+
+    private static long toLong(ImmutableBitSet bitSet) {
+      long bits = 0;
+      for (int i : bitSet) {
+        bits |= 1L << i;
+      }
+      return bits;
+    }
+  }
+}
+
+// End MultiJoinOptimizeDpRule.java
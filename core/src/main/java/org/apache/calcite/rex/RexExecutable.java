@@ -17,10 +17,16 @@
 package org.apache.calcite.rex;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Utilities;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.janino.ClassBodyEvaluator;
@@ -33,6 +39,7 @@
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Result of compiling code generated from a {@link RexNode} expression.
@@ -40,6 +47,16 @@
 public class RexExecutable {
   private static final String GENERATED_CLASS_NAME = "Reducer";
 
+  /** Compiled functions, keyed by their source code. The generated code is
+   * determined by the expressions (their digests and types), and the
+   * functions have no state, so executables compiled from the same
+   * expressions can share a function. */
+  private static final Cache<String, Function1<DataContext, Object[]>> CACHE =
+      CacheBuilder.newBuilder()
+          .maximumSize(
+              CalciteSystemProperty.REX_EXECUTABLE_CACHE_MAX_SIZE.value())
+          .build();
+
   private final Function1<DataContext, Object[]> compiledFunction;
   private final String code;
   private DataContext dataContext;
@@ -51,6 +68,19 @@ public RexExecutable(String code, Object reason) {
 
   private static Function1<DataContext, Object[]> compile(String code,
       Object reason) {
+    if (CalciteSystemProperty.REX_EXECUTABLE_CACHE_MAX_SIZE.value() == 0) {
+      return compile0(code, reason);
+    }
+    try {
+      return CACHE.get(code, () -> compile0(code, reason));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Util.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static Function1<DataContext, Object[]> compile0(String code,
+      Object reason) {
     try {
       final ClassBodyEvaluator cbe = new ClassBodyEvaluator();
       cbe.setClassName(GENERATED_CLASS_NAME);
@@ -29,17 +29,21 @@
 import org.apache.calcite.linq4j.tree.MethodCallExpression;
 import org.apache.calcite.linq4j.tree.MethodDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.rel.metadata.NullSentinel;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.NlsString;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -115,18 +119,63 @@ public RexExecutable getExecutable(RexBuilder rexBuilder, List<RexNode> exps,
   }
 
   /**
-   * Do constant reduction using generated code.
+   * Do constant reduction.
+   *
+   * <p>Expressions that {@link RexInterpreter} can evaluate are reduced
+   * without generating code; the rest are compiled, all together, into
+   * one {@link RexExecutable}.
    */
   public void reduce(RexBuilder rexBuilder, List<RexNode> constExps,
       List<RexNode> reducedValues) {
-    final String code = compile(rexBuilder, constExps,
-        (list, index, storageType) -> {
-          throw new UnsupportedOperationException();
-        });
-
-    final RexExecutable executable = new RexExecutable(code, constExps);
-    executable.setDataContext(dataContext);
-    executable.reduce(rexBuilder, constExps, reducedValues);
+    final RexNode[] values = new RexNode[constExps.size()];
+    final List<RexNode> compiledExps = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = interpret(rexBuilder, constExps.get(i));
+      if (values[i] == null) {
+        compiledExps.add(constExps.get(i));
+      }
+    }
+    if (!compiledExps.isEmpty()) {
+      final String code = compile(rexBuilder, compiledExps,
+          (list, index, storageType) -> {
+            throw new UnsupportedOperationException();
+          });
+
+      final RexExecutable executable = new RexExecutable(code, compiledExps);
+      executable.setDataContext(dataContext);
+      final List<RexNode> compiledValues = new ArrayList<>();
+      executable.reduce(rexBuilder, compiledExps, compiledValues);
+      int j = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) {
+          values[i] = compiledValues.get(j++);
+        }
+      }
+    }
+    reducedValues.addAll(Arrays.asList(values));
+  }
+
+  /** Reduces an expression to a literal using {@link RexInterpreter};
+   * returns null if the interpreter cannot evaluate the expression, or fails
+   * while doing so, and generated code should be used instead. */
+  private static RexNode interpret(RexBuilder rexBuilder, RexNode e) {
+    if (!RexInterpreter.isReducible(e)) {
+      return null;
+    }
+    try {
+      final Comparable v = RexInterpreter.evaluateExact(e);
+      final Object value;
+      if (v == NullSentinel.INSTANCE) {
+        value = null;
+      } else if (v instanceof NlsString) {
+        value = ((NlsString) v).getValue();
+      } else {
+        value = v;
+      }
+      return rexBuilder.makeLiteral(value, e.getType(), true);
+    } catch (RuntimeException ex) {
+      return null;
+    }
   }
 
   /**
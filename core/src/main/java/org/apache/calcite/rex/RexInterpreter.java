@@ -20,10 +20,18 @@
 import org.apache.calcite.avatica.util.TimeUnit;
 import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.fun.SqlTrimFunction;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.NlsString;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -31,6 +39,7 @@
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.IntPredicate;
 
 /**
@@ -39,34 +48,254 @@
  * <p>Caveats:
  * <ul>
  *   <li>It uses interpretation, so it is not very efficient.
- *   <li>It is intended for testing, so does not cover very many functions and
- *   operators. (Feel free to contribute more!)
+ *   <li>It is intended for testing, and for reducing constant expressions
+ *   (see {@link #isReducible(RexNode)}), so does not cover very many
+ *   functions and operators. (Feel free to contribute more!)
  *   <li>It is not well tested.
  * </ul>
  */
 public class RexInterpreter implements RexVisitor<Comparable> {
   private static final NullSentinel N = NullSentinel.INSTANCE;
 
+  /** String functions that the interpreter can evaluate. */
+  private static final Set<SqlOperator> STRING_OPERATORS =
+      ImmutableSet.of(SqlStdOperatorTable.UPPER, SqlStdOperatorTable.LOWER,
+          SqlStdOperatorTable.INITCAP, SqlStdOperatorTable.CHAR_LENGTH,
+          SqlStdOperatorTable.CHARACTER_LENGTH, SqlStdOperatorTable.CONCAT,
+          SqlStdOperatorTable.SUBSTRING, SqlStdOperatorTable.TRIM);
+
   private final Map<RexNode, Comparable> environment;
+  private final boolean exact;
 
   /** Creates an interpreter.
    *
    * @param environment Values of certain expressions (usually
    *       {@link RexInputRef}s)
+   * @param exact Whether to throw if integer arithmetic overflows
    */
-  private RexInterpreter(Map<RexNode, Comparable> environment) {
+  private RexInterpreter(Map<RexNode, Comparable> environment, boolean exact) {
     this.environment = ImmutableMap.copyOf(environment);
+    this.exact = exact;
   }
 
   /** Evaluates an expression in an environment. */
   public static Comparable evaluate(RexNode e, Map<RexNode, Comparable> map) {
-    final Comparable v = e.accept(new RexInterpreter(map));
+    final Comparable v = e.accept(new RexInterpreter(map, false));
     if (false) {
       System.out.println("evaluate " + e + " on " + map + " returns " + v);
     }
     return v;
   }
 
+  /** Evaluates a constant expression that {@link #isReducible(RexNode)},
+   * throwing {@link ArithmeticException} if integer arithmetic overflows. */
+  static Comparable evaluateExact(RexNode e) {
+    return e.accept(new RexInterpreter(ImmutableMap.of(), true));
+  }
+
+  /** Returns whether an expression can be reduced to a constant by
+   * {@link #evaluateExact} rather than by generated code.
+   *
+   * <p>The expression must not reference any inputs, and must use only
+   * types and operators for which this interpreter returns the same value as
+   * generated code. Approximate numeric types, division, and comparisons
+   * between character strings (which depend on collation and padding) are
+   * not supported. Integer arithmetic that overflows throws, rather than
+   * wrapping around as generated code does, so the caller can fall back to
+   * generated code. */
+  static boolean isReducible(RexNode e) {
+    if (e instanceof RexLiteral) {
+      return isReducible(e.getType());
+    }
+    if (!(e instanceof RexCall)
+        || e instanceof RexOver
+        || !isReducible(e.getType())) {
+      return false;
+    }
+    final RexCall call = (RexCall) e;
+    for (RexNode operand : call.operands) {
+      if (!isReducible(operand)) {
+        return false;
+      }
+    }
+    final List<RelDataType> types = RexUtil.types(call.operands);
+    final SqlTypeName typeName = call.getType().getSqlTypeName();
+    switch (call.getKind()) {
+    case EQUALS:
+    case NOT_EQUALS:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case IS_DISTINCT_FROM:
+    case IS_NOT_DISTINCT_FROM:
+      return isComparable(types.get(0).getSqlTypeName(),
+          types.get(1).getSqlTypeName());
+    case AND:
+    case OR:
+    case NOT:
+    case CASE:
+    case COALESCE:
+    case IS_TRUE:
+    case IS_NOT_TRUE:
+    case IS_NULL:
+    case IS_NOT_NULL:
+    case IS_FALSE:
+    case IS_NOT_FALSE:
+      return true;
+    case PLUS:
+    case MINUS:
+      if (isDatetime(call)) {
+        // "datetime - interval" is MINUS_DATE after SQL-to-rel conversion,
+        // but plain MINUS if built using RexBuilder
+        return (call.getOperator() == SqlStdOperatorTable.DATETIME_PLUS
+            || call.getOperator() == SqlStdOperatorTable.MINUS_DATE
+            || call.getOperator() == SqlStdOperatorTable.MINUS)
+            && SqlTypeName.INTERVAL_TYPES.contains(
+                types.get(1).getSqlTypeName())
+            && typeName == types.get(0).getSqlTypeName();
+      }
+      // fall through
+    case PLUS_PREFIX:
+    case MINUS_PREFIX:
+    case TIMES:
+      if (!SqlTypeName.EXACT_TYPES.contains(typeName)) {
+        return false;
+      }
+      for (RelDataType type : types) {
+        if (!SqlTypeName.EXACT_TYPES.contains(type.getSqlTypeName())) {
+          return false;
+        }
+      }
+      return true;
+    case CAST:
+      return isReducibleCast(types.get(0), call.getType());
+    case EXTRACT:
+      if (types.get(1).getSqlTypeName() != SqlTypeName.DATE) {
+        return false;
+      }
+      switch (((TimeUnitRange) ((RexLiteral) call.operands.get(0)).getValue())
+          .startUnit) {
+      case MILLENNIUM:
+      case CENTURY:
+      case YEAR:
+      case QUARTER:
+      case MONTH:
+      case DAY:
+      case DOW:
+      case DECADE:
+      case DOY:
+      case ISODOW:
+      case ISOYEAR:
+      case WEEK:
+        return true;
+      default:
+        return false;
+      }
+    default:
+      if (!STRING_OPERATORS.contains(call.getOperator())) {
+        return false;
+      }
+      for (RexNode operand : call.operands) {
+        switch (operand.getType().getSqlTypeName()) {
+        case CHAR:
+        case VARCHAR:
+        case SYMBOL:
+          break;
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+          if (call.getOperator() == SqlStdOperatorTable.SUBSTRING) {
+            break;
+          }
+          // fall through
+        default:
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static boolean isReducible(RelDataType type) {
+    switch (type.getSqlTypeName()) {
+    case BOOLEAN:
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+    case DECIMAL:
+    case CHAR:
+    case VARCHAR:
+    case DATE:
+    case TIMESTAMP:
+    case SYMBOL:
+    case NULL:
+      return true;
+    default:
+      return SqlTypeName.INTERVAL_TYPES.contains(type.getSqlTypeName());
+    }
+  }
+
+  private static boolean isComparable(SqlTypeName typeName0,
+      SqlTypeName typeName1) {
+    if (SqlTypeName.CHAR_TYPES.contains(typeName0)
+        || SqlTypeName.CHAR_TYPES.contains(typeName1)) {
+      return false;
+    }
+    return typeName0 == typeName1
+        || SqlTypeName.EXACT_TYPES.contains(typeName0)
+        && SqlTypeName.EXACT_TYPES.contains(typeName1);
+  }
+
+  /** Returns whether {@link #cast} converts values from one type to
+   * another the same way as generated code. */
+  private static boolean isReducibleCast(RelDataType fromType,
+      RelDataType toType) {
+    final SqlTypeName from = fromType.getSqlTypeName();
+    switch (toType.getSqlTypeName()) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      return SqlTypeName.INT_TYPES.contains(from);
+    case DECIMAL:
+      return from == SqlTypeName.DECIMAL
+          && fromType.getPrecision() == toType.getPrecision()
+          && fromType.getScale() == toType.getScale();
+    case BOOLEAN:
+      return from == SqlTypeName.BOOLEAN;
+    case DATE:
+      return from == SqlTypeName.DATE
+          || from == SqlTypeName.TIMESTAMP
+          || SqlTypeName.CHAR_TYPES.contains(from);
+    case TIMESTAMP:
+      return from == SqlTypeName.TIMESTAMP
+          && toType.getPrecision() >= fromType.getPrecision()
+          || from == SqlTypeName.DATE
+          || SqlTypeName.CHAR_TYPES.contains(from);
+    case CHAR:
+    case VARCHAR:
+      return SqlTypeName.CHAR_TYPES.contains(from)
+          || SqlTypeName.INT_TYPES.contains(from)
+          || from == SqlTypeName.BOOLEAN
+          || from == SqlTypeName.DATE
+          || from == SqlTypeName.TIMESTAMP;
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isDatetime(RexCall call) {
+    switch (call.operands.get(0).getType().getSqlTypeName()) {
+    case DATE:
+    case TIMESTAMP:
+      return true;
+    default:
+      return false;
+    }
+  }
+
   private IllegalArgumentException unbound(RexNode e) {
     return new IllegalArgumentException("unbound: " + e);
   }
@@ -177,16 +406,24 @@ public Comparable visitCall(RexCall call) {
       return values.get(0);
     case MINUS_PREFIX:
       return containsNull(values) ? N
-          : number(values.get(0)).negate();
+          : checkRange(call, number(values.get(0)).negate());
     case PLUS:
+      if (isDatetime(call)) {
+        return datetimePlus(call, values);
+      }
       return containsNull(values) ? N
-          : number(values.get(0)).add(number(values.get(1)));
+          : checkRange(call, number(values.get(0)).add(number(values.get(1))));
     case MINUS:
+      if (isDatetime(call)) {
+        return datetimePlus(call, values);
+      }
       return containsNull(values) ? N
-          : number(values.get(0)).subtract(number(values.get(1)));
+          : checkRange(call,
+              number(values.get(0)).subtract(number(values.get(1))));
     case TIMES:
       return containsNull(values) ? N
-          : number(values.get(0)).multiply(number(values.get(1)));
+          : checkRange(call,
+              number(values.get(0)).multiply(number(values.get(1))));
     case DIVIDE:
       return containsNull(values) ? N
           : number(values.get(0)).divide(number(values.get(1)));
@@ -200,8 +437,130 @@ public Comparable visitCall(RexCall call) {
     case EXTRACT:
       return extract(call, values);
     default:
+      if (STRING_OPERATORS.contains(call.getOperator())) {
+        return string(call, values);
+      }
+      throw unbound(call);
+    }
+  }
+
+  /** Evaluates a string function. */
+  private Comparable string(RexCall call, List<Comparable> values) {
+    if (containsNull(values)) {
+      return N;
+    }
+    final SqlOperator op = call.getOperator();
+    if (op == SqlStdOperatorTable.CHAR_LENGTH
+        || op == SqlStdOperatorTable.CHARACTER_LENGTH) {
+      return BigDecimal.valueOf(SqlFunctions.charLength(string(values.get(0))));
+    }
+    final String s;
+    if (op == SqlStdOperatorTable.UPPER) {
+      s = SqlFunctions.upper(string(values.get(0)));
+    } else if (op == SqlStdOperatorTable.LOWER) {
+      s = SqlFunctions.lower(string(values.get(0)));
+    } else if (op == SqlStdOperatorTable.INITCAP) {
+      s = SqlFunctions.initcap(string(values.get(0)));
+    } else if (op == SqlStdOperatorTable.CONCAT) {
+      s = SqlFunctions.concat(string(values.get(0)), string(values.get(1)));
+    } else if (op == SqlStdOperatorTable.SUBSTRING) {
+      s = values.size() == 2
+          ? SqlFunctions.substring(string(values.get(0)),
+              number(values.get(1)).intValueExact())
+          : SqlFunctions.substring(string(values.get(0)),
+              number(values.get(1)).intValueExact(),
+              number(values.get(2)).intValueExact());
+    } else if (op == SqlStdOperatorTable.TRIM) {
+      // Strict, as in the default conformance that RexExecutorImpl uses
+      final SqlTrimFunction.Flag flag = (SqlTrimFunction.Flag) values.get(0);
+      s = SqlFunctions.trim(
+          flag == SqlTrimFunction.Flag.BOTH
+              || flag == SqlTrimFunction.Flag.LEADING,
+          flag == SqlTrimFunction.Flag.BOTH
+              || flag == SqlTrimFunction.Flag.TRAILING,
+          string(values.get(1)), string(values.get(2)), true);
+    } else {
       throw unbound(call);
     }
+    return nlsString(call.getType(), s);
+  }
+
+  private static String string(Comparable value) {
+    return value instanceof NlsString
+        ? ((NlsString) value).getValue()
+        : (String) value;
+  }
+
+  private static NlsString nlsString(RelDataType type, String s) {
+    return new NlsString(s,
+        type.getCharset() == null ? null : type.getCharset().name(),
+        type.getCollation());
+  }
+
+  /** Evaluates a call to {@code DATETIME_PLUS}, {@code MINUS_DATE} or
+   * {@code MINUS} that adds an interval to, or subtracts an interval from,
+   * a DATE or TIMESTAMP value. */
+  private Comparable datetimePlus(RexCall call, List<Comparable> values) {
+    final SqlTypeName typeName1 =
+        call.operands.get(1).getType().getSqlTypeName();
+    if (!SqlTypeName.INTERVAL_TYPES.contains(typeName1)
+        || call.getType().getSqlTypeName()
+        != call.operands.get(0).getType().getSqlTypeName()) {
+      throw unbound(call);
+    }
+    if (containsNull(values)) {
+      return N;
+    }
+    final boolean minus = call.getKind() == SqlKind.MINUS;
+    final Comparable v0 = values.get(0);
+    if (SqlTypeName.YEAR_INTERVAL_TYPES.contains(typeName1)) {
+      final int months = number(values.get(1)).intValue();
+      if (v0 instanceof Long) {
+        return SqlFunctions.addMonths((Long) v0, minus ? -months : months);
+      }
+      return SqlFunctions.addMonths((Integer) v0, minus ? -months : months);
+    }
+    final long millis = number(values.get(1)).longValue();
+    if (v0 instanceof Long) {
+      return minus ? (Long) v0 - millis : (Long) v0 + millis;
+    }
+    final int days = (int) (millis / DateTimeUtils.MILLIS_PER_DAY);
+    return minus ? (Integer) v0 - days : (Integer) v0 + days;
+  }
+
+  /** Throws if a value does not fit into the integer type of a call, when
+   * evaluating exactly. */
+  private BigDecimal checkRange(RexCall call, BigDecimal v) {
+    if (!exact) {
+      return v;
+    }
+    final long min;
+    final long max;
+    switch (call.getType().getSqlTypeName()) {
+    case TINYINT:
+      min = Byte.MIN_VALUE;
+      max = Byte.MAX_VALUE;
+      break;
+    case SMALLINT:
+      min = Short.MIN_VALUE;
+      max = Short.MAX_VALUE;
+      break;
+    case INTEGER:
+      min = Integer.MIN_VALUE;
+      max = Integer.MAX_VALUE;
+      break;
+    case BIGINT:
+      min = Long.MIN_VALUE;
+      max = Long.MAX_VALUE;
+      break;
+    default:
+      return v;
+    }
+    if (v.compareTo(BigDecimal.valueOf(min)) < 0
+        || v.compareTo(BigDecimal.valueOf(max)) > 0) {
+      throw new ArithmeticException("overflow: " + call);
+    }
+    return v;
   }
 
   private Comparable extract(RexCall call, List<Comparable> values) {
@@ -266,10 +625,75 @@ private TimeUnitRange subUnit(TimeUnitRange unit) {
   }
 
   private Comparable cast(RexCall call, List<Comparable> values) {
-    if (values.get(0) == N) {
+    final Comparable value = values.get(0);
+    if (value == N) {
       return N;
     }
-    return values.get(0);
+    final SqlTypeName from = call.operands.get(0).getType().getSqlTypeName();
+    final RelDataType toType = call.getType();
+    switch (toType.getSqlTypeName()) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      if (SqlTypeName.INT_TYPES.contains(from)) {
+        return checkRange(call, number(value));
+      }
+      break;
+    case DATE:
+      switch (from) {
+      case CHAR:
+      case VARCHAR:
+        return DateTimeUtils.dateStringToUnixDate(string(value));
+      case TIMESTAMP:
+        return (int) Math.floorDiv((Long) value, DateTimeUtils.MILLIS_PER_DAY);
+      }
+      break;
+    case TIMESTAMP:
+      switch (from) {
+      case CHAR:
+      case VARCHAR:
+        return DateTimeUtils.timestampStringToUnixDate(string(value));
+      case DATE:
+        return (Integer) value * DateTimeUtils.MILLIS_PER_DAY;
+      }
+      break;
+    case CHAR:
+    case VARCHAR:
+      final String s;
+      switch (from) {
+      case CHAR:
+      case VARCHAR:
+        s = string(value);
+        break;
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+        s = Long.toString(number(value).longValueExact());
+        break;
+      case BOOLEAN:
+        s = SqlFunctions.toString((Boolean) value);
+        break;
+      case DATE:
+        s = DateTimeUtils.unixDateToString((Integer) value);
+        break;
+      case TIMESTAMP:
+        s = DateTimeUtils.unixTimestampToString((Long) value);
+        break;
+      default:
+        return value;
+      }
+      final int precision = toType.getPrecision();
+      if (precision == RelDataType.PRECISION_NOT_SPECIFIED) {
+        return nlsString(toType, s);
+      }
+      return nlsString(toType,
+          toType.getSqlTypeName() == SqlTypeName.CHAR
+              ? SqlFunctions.truncateOrPad(s, precision)
+              : SqlFunctions.truncate(s, precision));
+    }
+    return value;
   }
 
   private Comparable not(Comparable value) {
@@ -61,6 +61,11 @@ public enum Hook {
    * Janino. */
   JAVA_PLAN,
 
+  /** Called with the relational expression of a query that is being
+   * interpreted because its generated code has not finished compiling; see
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#ASYNC_COMPILATION}. */
+  ASYNC_INTERPRET,
+
   /** Called with the output of sql-to-rel-converter. */
   CONVERTED,
 
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import java.util.Map;
+
+/**
+ * Statistics about a column of a {@link Table}.
+ *
+ * <p>Each of the methods may return {@code null} meaning "not known".</p>
+ *
+ * <p>Values, such as the keys of {@link #getMostCommonValues()} and the
+ * bounds of {@link #getHistogram()}, are in the form returned by
+ * {@link Histogram#normalize(Comparable)}.</p>
+ *
+ * @see Statistic#getColumnStatistic(int)
+ * @see Statistics#column
+ */
+public interface ColumnStatistic {
+  /** Returns the approximate number of distinct non-null values. */
+  Double getDistinctCount();
+
+  /** Returns the fraction of rows in which the value is null. */
+  Double getNullFraction();
+
+  /** Returns the most common non-null values, each with the fraction of rows
+   * that have that value. */
+  Map<Comparable, Double> getMostCommonValues();
+
+  /** Returns an equi-depth histogram of the non-null values. */
+  Histogram getHistogram();
+}
+
+// End ColumnStatistic.java
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.util.NlsString;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Equi-depth histogram of the values of a column.
+ *
+ * <p>A histogram with {@code n} buckets has {@code n + 1} bounds, in
+ * ascending order; the first bound is the smallest value, the last bound is
+ * the largest value, and each bucket holds approximately the same number of
+ * values. A value that occurs very often may be the bound of several
+ * consecutive buckets.
+ *
+ * @see ColumnStatistic#getHistogram()
+ */
+public class Histogram {
+  private final ImmutableList<Comparable> bounds;
+
+  /** Creates a histogram with given bounds. */
+  public Histogram(List<? extends Comparable> bounds) {
+    Preconditions.checkArgument(bounds.size() >= 2,
+        "histogram must have at least two bounds");
+    final ImmutableList.Builder<Comparable> b = ImmutableList.builder();
+    for (Comparable bound : bounds) {
+      b.add(normalize(bound));
+    }
+    this.bounds = b.build();
+    //noinspection unchecked
+    Preconditions.checkArgument(Ordering.natural().isOrdered(this.bounds),
+        "bounds must be in ascending order");
+  }
+
+  /** Creates a histogram with a given number of buckets from a collection of
+   * values, or returns null if there are no values. Null values are
+   * ignored. */
+  public static Histogram of(Collection<? extends Comparable> values,
+      int bucketCount) {
+    Preconditions.checkArgument(bucketCount > 0);
+    final List<Comparable> list = new ArrayList<>();
+    for (Comparable value : values) {
+      if (value != null) {
+        list.add(normalize(value));
+      }
+    }
+    if (list.isEmpty()) {
+      return null;
+    }
+    //noinspection unchecked
+    list.sort(Ordering.natural());
+    final List<Comparable> bounds = new ArrayList<>();
+    for (int i = 0; i <= bucketCount; i++) {
+      bounds.add(list.get((int) ((long) i * (list.size() - 1) / bucketCount)));
+    }
+    return new Histogram(bounds);
+  }
+
+  /** Converts a value to the form in which statistics hold it, so that
+   * values from different sources (rows, literals) can be compared: numbers
+   * become {@link BigDecimal} without trailing zeros, and character strings
+   * become {@link String}. */
+  public static Comparable normalize(Comparable value) {
+    if (value instanceof BigDecimal) {
+      return ((BigDecimal) value).stripTrailingZeros();
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return BigDecimal.valueOf(((Number) value).doubleValue())
+          .stripTrailingZeros();
+    }
+    if (value instanceof Number) {
+      return BigDecimal.valueOf(((Number) value).longValue());
+    }
+    if (value instanceof NlsString) {
+      return ((NlsString) value).getValue();
+    }
+    if (value instanceof Character) {
+      return value.toString();
+    }
+    return value;
+  }
+
+  public List<Comparable> getBounds() {
+    return bounds;
+  }
+
+  public int getBucketCount() {
+    return bounds.size() - 1;
+  }
+
+  /** Returns the estimated fraction of values that are less than a given
+   * value, or, if {@code inclusive}, less than or equal to it.
+   *
+   * <p>Within a bucket, values are assumed to be uniformly distributed
+   * between the bounds if the values are numbers; otherwise, half of the
+   * bucket is assumed to be below the value. */
+  public double fractionBelow(Comparable value, boolean inclusive) {
+    final Comparable v = normalize(value);
+    final int bucketCount = getBucketCount();
+    double buckets = 0d;
+    for (int i = 0; i < bucketCount; i++) {
+      final Comparable lower = bounds.get(i);
+      final Comparable upper = bounds.get(i + 1);
+      //noinspection unchecked
+      final int cUpper = upper.compareTo(v);
+      if (cUpper < 0 || inclusive && cUpper == 0) {
+        // The whole bucket is below the value.
+        buckets += 1d;
+        continue;
+      }
+      //noinspection unchecked
+      final int cLower = lower.compareTo(v);
+      if (cLower < 0 || inclusive && cLower == 0) {
+        buckets += fraction(lower, upper, v);
+      }
+      break;
+    }
+    return buckets / bucketCount;
+  }
+
+  /** Returns the estimated fraction of a bucket's values that are below a
+   * value that lies between the bucket's bounds. */
+  private static double fraction(Comparable lower, Comparable upper,
+      Comparable v) {
+    if (lower instanceof BigDecimal
+        && upper instanceof BigDecimal
+        && v instanceof BigDecimal) {
+      final double width =
+          ((BigDecimal) upper).subtract((BigDecimal) lower).doubleValue();
+      if (width > 0d) {
+        return ((BigDecimal) v).subtract((BigDecimal) lower).doubleValue()
+            / width;
+      }
+    }
+    return 0.5d;
+  }
+
+  @Override public String toString() {
+    return "Histogram" + bounds;
+  }
+}
+
+// End Histogram.java
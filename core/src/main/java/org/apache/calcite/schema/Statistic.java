@@ -48,6 +48,15 @@ public interface Statistic {
 
   /** Returns the distribution of the data in this table. */
   RelDistribution getDistribution();
+
+  /** Returns statistics about a column of this table, such as its number of
+   * distinct values and a histogram of its values.
+   *
+   * @param column Ordinal of the column
+   */
+  default ColumnStatistic getColumnStatistic(int column) {
+    return null;
+  }
 }
 
 // End Statistic.java
@@ -23,8 +23,12 @@
 import org.apache.calcite.util.ImmutableBitSet;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility functions regarding {@link Statistic}.
@@ -84,6 +88,21 @@ public static Statistic of(final Double rowCount,
       final List<ImmutableBitSet> keys,
       final List<RelReferentialConstraint> referentialConstraints,
       final List<RelCollation> collations) {
+    return of(rowCount, keys, referentialConstraints, collations,
+        ImmutableList.of());
+  }
+
+  /** Returns a statistic with a given row count, set of unique keys,
+   * referential constraints, collations, and statistics for each column.
+   * An element of {@code columnStatistics} may be null if nothing is known
+   * about that column. */
+  public static Statistic of(final Double rowCount,
+      final List<ImmutableBitSet> keys,
+      final List<RelReferentialConstraint> referentialConstraints,
+      final List<RelCollation> collations,
+      List<ColumnStatistic> columnStatistics) {
+    final List<ColumnStatistic> columnStatisticList =
+        Collections.unmodifiableList(new ArrayList<>(columnStatistics));
     return new Statistic() {
       public Double getRowCount() {
         return rowCount;
@@ -109,6 +128,60 @@ public List<RelCollation> getCollations() {
       public RelDistribution getDistribution() {
         return RelDistributionTraitDef.INSTANCE.getDefault();
       }
+
+      public ColumnStatistic getColumnStatistic(int column) {
+        return column < columnStatisticList.size()
+            ? columnStatisticList.get(column)
+            : null;
+      }
+    };
+  }
+
+  /** Returns a statistic about a column.
+   *
+   * @param distinctCount Number of distinct non-null values, or null
+   * @param nullFraction Fraction of rows in which the value is null, or null
+   * @param mostCommonValues Most common non-null values, each with the
+   *                         fraction of rows that have that value, or null
+   * @param histogram Histogram of the non-null values, or null
+   */
+  public static ColumnStatistic column(final Double distinctCount,
+      final Double nullFraction, Map<Comparable, Double> mostCommonValues,
+      final Histogram histogram) {
+    final ImmutableMap<Comparable, Double> mostCommonValueMap;
+    if (mostCommonValues == null) {
+      mostCommonValueMap = null;
+    } else {
+      final ImmutableMap.Builder<Comparable, Double> b =
+          ImmutableMap.builder();
+      for (Map.Entry<Comparable, Double> e : mostCommonValues.entrySet()) {
+        b.put(Histogram.normalize(e.getKey()), e.getValue());
+      }
+      mostCommonValueMap = b.build();
+    }
+    return new ColumnStatistic() {
+      public Double getDistinctCount() {
+        return distinctCount;
+      }
+
+      public Double getNullFraction() {
+        return nullFraction;
+      }
+
+      public Map<Comparable, Double> getMostCommonValues() {
+        return mostCommonValueMap;
+      }
+
+      public Histogram getHistogram() {
+        return histogram;
+      }
+
+      @Override public String toString() {
+        return "{distinctCount: " + distinctCount
+            + ", nullFraction: " + nullFraction
+            + ", mostCommonValues: " + mostCommonValueMap
+            + ", histogram: " + histogram + "}";
+      }
     };
   }
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.statistic;
+
+import org.apache.calcite.materialize.SqlStatisticProvider;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.RelReferentialConstraint;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.mapping.IntPair;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Implementation of {@link SqlStatisticProvider} that uses statistics held
+ * in a {@link StatisticCatalog}, and asks another provider about tables that
+ * have not been analyzed.
+ *
+ * <p>For an analyzed table, whether a join is a foreign key is decided by the
+ * referential constraints of the table's statistic, and whether columns are
+ * a key by the keys that the table declares, without looking at the data.
+ */
+public class CatalogSqlStatisticProvider implements SqlStatisticProvider {
+  /** Instance that uses the statistics in {@link StatisticCatalog#instance()},
+   * and, for tables that have not been analyzed,
+   * {@link QuerySqlStatisticProvider#SILENT_CACHING_INSTANCE}. */
+  public static final SqlStatisticProvider INSTANCE =
+      new CatalogSqlStatisticProvider(StatisticCatalog.instance(),
+          QuerySqlStatisticProvider.SILENT_CACHING_INSTANCE);
+
+  private final StatisticCatalog catalog;
+  private final SqlStatisticProvider provider;
+
+  /** Creates a CatalogSqlStatisticProvider.
+   *
+   * @param catalog Catalog of statistics
+   * @param provider Provider for tables that are not in the catalog
+   */
+  public CatalogSqlStatisticProvider(StatisticCatalog catalog,
+      SqlStatisticProvider provider) {
+    this.catalog = Objects.requireNonNull(catalog);
+    this.provider = Objects.requireNonNull(provider);
+  }
+
+  /** Returns the collected statistic of a table, or null. */
+  private Statistic statistic(RelOptTable table) {
+    final Table t = table.unwrap(Table.class);
+    return t == null ? null : catalog.get(t);
+  }
+
+  public double tableCardinality(RelOptTable table) {
+    final Statistic statistic = statistic(table);
+    if (statistic != null && statistic.getRowCount() != null) {
+      return statistic.getRowCount();
+    }
+    return provider.tableCardinality(table);
+  }
+
+  public boolean isForeignKey(RelOptTable fromTable, List<Integer> fromColumns,
+      RelOptTable toTable, List<Integer> toColumns) {
+    final Statistic statistic = statistic(fromTable);
+    if (statistic == null || statistic(toTable) == null) {
+      return provider.isForeignKey(fromTable, fromColumns, toTable,
+          toColumns);
+    }
+    if (statistic.getReferentialConstraints() == null) {
+      return false;
+    }
+    for (RelReferentialConstraint constraint
+        : statistic.getReferentialConstraints()) {
+      if (constraint.getTargetQualifiedName()
+          .equals(toTable.getQualifiedName())
+          && constraint.getColumnPairs()
+          .equals(IntPair.zip(fromColumns, toColumns))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isKey(RelOptTable table, List<Integer> columns) {
+    final Statistic statistic = statistic(table);
+    if (statistic == null) {
+      return provider.isKey(table, columns);
+    }
+    return statistic.isKey(ImmutableBitSet.of(columns));
+  }
+}
+
+// End CatalogSqlStatisticProvider.java
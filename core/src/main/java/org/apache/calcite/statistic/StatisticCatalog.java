@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.statistic;
+
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Objects;
+
+/**
+ * Holds statistics that have been collected about tables, for example by the
+ * {@code ANALYZE TABLE} statement, so that the planner can use them rather
+ * than the statistics that the table itself provides, and without running
+ * queries.
+ *
+ * <p>Statistics are held against a {@link Table} object, not a table name,
+ * so a table that is dropped and re-created under the same name has no
+ * statistics until it is analyzed again. Statistics are discarded when their
+ * table is modified, and when it is garbage-collected.
+ *
+ * @see CatalogSqlStatisticProvider
+ */
+public class StatisticCatalog {
+  private static final StatisticCatalog INSTANCE = new StatisticCatalog();
+
+  private final Cache<Table, Statistic> statistics =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  /** Returns the instance of the statistic catalog. */
+  public static StatisticCatalog instance() {
+    return INSTANCE;
+  }
+
+  /** Records the statistic of a table, replacing any previous statistic. */
+  public void put(Table table, Statistic statistic) {
+    statistics.put(Objects.requireNonNull(table),
+        Objects.requireNonNull(statistic));
+  }
+
+  /** Returns the statistic that has been collected about a table, or null if
+   * the table has not been analyzed. */
+  public Statistic get(Table table) {
+    return statistics.getIfPresent(table);
+  }
+
+  /** Removes the statistic of a table. */
+  public void remove(Table table) {
+    statistics.invalidate(table);
+  }
+
+  /** Called by generated code after it has modified the contents of a
+   * table; removes the table's statistic, which is now out of date, from the
+   * catalog. */
+  public static void tableModified(Table table) {
+    INSTANCE.remove(table);
+  }
+
+  /** Returns the statistic of a table: the statistic that has been collected
+   * about it, if any, otherwise the statistic that the table provides. */
+  public Statistic getStatistic(Table table) {
+    final Statistic statistic = statistics.getIfPresent(table);
+    return statistic != null ? statistic : table.getStatistic();
+  }
+}
+
+// End StatisticCatalog.java
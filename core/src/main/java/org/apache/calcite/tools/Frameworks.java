@@ -38,7 +38,7 @@
 import org.apache.calcite.sql2rel.SqlRexConvertletTable;
 import org.apache.calcite.sql2rel.SqlToRelConverter;
 import org.apache.calcite.sql2rel.StandardConvertletTable;
-import org.apache.calcite.statistic.QuerySqlStatisticProvider;
+import org.apache.calcite.statistic.CatalogSqlStatisticProvider;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
@@ -237,7 +237,7 @@ private ConfigBuilder() {
       sqlToRelConverterConfig = SqlToRelConverter.Config.DEFAULT;
       typeSystem = RelDataTypeSystem.DEFAULT;
       evolveLattice = false;
-      statisticProvider = QuerySqlStatisticProvider.SILENT_CACHING_INSTANCE;
+      statisticProvider = CatalogSqlStatisticProvider.INSTANCE;
     }
 
     /** Creates a ConfigBuilder, initializing from an existing config. */
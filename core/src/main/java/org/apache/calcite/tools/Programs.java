@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumUtils;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteSystemProperty;
@@ -51,6 +52,7 @@
 import org.apache.calcite.rel.rules.LoptOptimizeJoinRule;
 import org.apache.calcite.rel.rules.MatchRule;
 import org.apache.calcite.rel.rules.MultiJoinOptimizeBushyRule;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.SemiJoinRule;
 import org.apache.calcite.rel.rules.SortProjectTransposeRule;
@@ -91,8 +93,11 @@ public class Programs {
           EnumerableRules.ENUMERABLE_PROJECT_RULE,
           EnumerableRules.ENUMERABLE_FILTER_RULE,
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
+          EnumerableRules.ENUMERABLE_SORTED_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_LIMIT_SORT_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
           EnumerableRules.ENUMERABLE_INTERSECT_RULE,
           EnumerableRules.ENUMERABLE_MINUS_RULE,
@@ -198,6 +203,31 @@ public static Program of(final HepProgram hepProgram, final boolean noDag,
   public static Program heuristicJoinOrder(
       final Iterable<? extends RelOptRule> rules,
       final boolean bushy, final int minJoinCount) {
+    return joinOrder(rules,
+        bushy
+            ? MultiJoinOptimizeBushyRule.INSTANCE
+            : LoptOptimizeJoinRule.INSTANCE,
+        minJoinCount);
+  }
+
+  /** Creates a program that invokes join-order optimization by dynamic
+   * programming
+   * (via {@link org.apache.calcite.rel.rules.JoinToMultiJoinRule},
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule})
+   * if there are {@code minJoinCount} or more joins. If a join has more than
+   * {@code maxFactors} inputs, it uses the greedy algorithm of
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeBushyRule}. */
+  public static Program dpJoinOrder(
+      final Iterable<? extends RelOptRule> rules,
+      final int minJoinCount, final int maxFactors) {
+    return joinOrder(rules,
+        new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER, maxFactors),
+        minJoinCount);
+  }
+
+  private static Program joinOrder(final Iterable<? extends RelOptRule> rules,
+      final RelOptRule multiJoinRule, final int minJoinCount) {
     return (planner, rel, requiredOutputTraits, materializations, lattices) -> {
       final int joinCount = RelOptUtil.countJoins(rel);
       final Program program;
@@ -214,7 +244,7 @@ public static Program heuristicJoinOrder(
             of(hep, false, DefaultRelMetadataProvider.INSTANCE);
 
         // Create a program that contains a rule to expand a MultiJoin
-        // into heuristically ordered joins.
+        // into ordered joins.
         // We use the rule set passed in, but remove JoinCommuteRule and
         // JoinPushThroughJoinRule, because they cause exhaustive search.
         final List<RelOptRule> list = Lists.newArrayList(rules);
@@ -223,9 +253,7 @@ public static Program heuristicJoinOrder(
                 JoinAssociateRule.INSTANCE,
                 JoinPushThroughJoinRule.LEFT,
                 JoinPushThroughJoinRule.RIGHT));
-        list.add(bushy
-            ? MultiJoinOptimizeBushyRule.INSTANCE
-            : LoptOptimizeJoinRule.INSTANCE);
+        list.add(multiJoinRule);
         final Program program2 = ofRules(list);
 
         program = sequence(program1, program2);
@@ -239,6 +267,24 @@ public static Program calc(RelMetadataProvider metadataProvider) {
     return hep(RelOptRules.CALC_RULES, true, metadataProvider);
   }
 
+  /** Returns a program that places an exchange on the large inputs of each
+   * hash aggregate and hash join, if operators may use more than one thread
+   * (see {@link CalciteConnectionConfig#parallelism()}); otherwise returns
+   * the plan unchanged. */
+  public static Program exchange(RelMetadataProvider metadataProvider) {
+    final Program program =
+        hep(
+            ImmutableList.of(
+                EnumerableRules.ENUMERABLE_AGGREGATE_EXCHANGE_RULE,
+                EnumerableRules.ENUMERABLE_JOIN_EXCHANGE_RULE),
+            true, metadataProvider);
+    return (planner, rel, requiredOutputTraits, materializations, lattices) ->
+        EnumUtils.parallelism(rel.getCluster()) > 1
+            ? program.run(planner, rel, requiredOutputTraits, materializations,
+                lattices)
+            : rel;
+  }
+
   @Deprecated // to be removed before 2.0
   public static Program subquery(RelMetadataProvider metadataProvider) {
     return subQuery(metadataProvider);
@@ -295,7 +341,11 @@ public static Program standard(RelMetadataProvider metadataProvider) {
 
         // Second planner pass to do physical "tweaks". This the first time
         // that EnumerableCalcRel is introduced.
-        calc(metadataProvider));
+        calc(metadataProvider),
+
+        // If operators may use several threads, run the inputs of aggregates
+        // and joins on their own threads.
+        exchange(metadataProvider));
   }
 
   /** Program backed by a {@link RuleSet}. */
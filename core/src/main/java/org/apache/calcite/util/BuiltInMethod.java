@@ -97,11 +97,13 @@
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.SqlJsonConstructorNullClause;
 import org.apache.calcite.sql.SqlJsonQueryEmptyOrErrorBehavior;
 import org.apache.calcite.sql.SqlJsonQueryWrapperBehavior;
 import org.apache.calcite.sql.SqlJsonValueEmptyOrErrorBehavior;
+import org.apache.calcite.statistic.StatisticCatalog;
 
 import com.google.common.collect.ImmutableMap;
 
@@ -169,6 +171,14 @@ public enum BuiltInMethod {
       Function1.class,
       Function1.class, Function2.class, EqualityComparer.class,
       boolean.class, boolean.class, Predicate2.class),
+  SPILLING_HASH_JOIN(ExtendedEnumerable.class, "hashJoin", Enumerable.class,
+      Function1.class,
+      Function1.class, Function2.class, EqualityComparer.class,
+      boolean.class, boolean.class, Predicate2.class, long.class),
+  PARALLEL_HASH_JOIN(EnumerableDefaults.class, "parallelHashJoin",
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      Function2.class, EqualityComparer.class, boolean.class, boolean.class,
+      Predicate2.class, int.class),
   MATCH(Enumerables.class, "match", Enumerable.class, Function1.class,
       Matcher.class, Enumerables.Emitter.class, int.class, int.class),
   PATTERN_BUILDER(Utilities.class, "patternBuilder"),
@@ -185,6 +195,9 @@ public enum BuiltInMethod {
   MERGE_JOIN(EnumerableDefaults.class, "mergeJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class, Function2.class,
       boolean.class, boolean.class),
+  MERGE_JOIN2(EnumerableDefaults.class, "mergeJoin", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Predicate2.class,
+      Function2.class, JoinType.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
@@ -212,10 +225,26 @@ public enum BuiltInMethod {
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
+  SPILLING_GROUP_BY(ExtendedEnumerable.class, "groupBy", Function1.class,
+      Function0.class, Function2.class, Function2.class,
+      EqualityComparer.class, long.class),
+  SORTED_GROUP_BY(EnumerableDefaults.class, "sortedGroupBy",
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class),
+  PARALLEL_GROUP_BY(EnumerableDefaults.class, "parallelGroupBy",
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class, int.class),
+  EXCHANGE(EnumerableDefaults.class, "exchange", Enumerable.class,
+      int.class),
   AGGREGATE(ExtendedEnumerable.class, "aggregate", Object.class,
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  SPILLING_ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
+      Comparator.class, long.class),
+  ORDER_BY_WITH_FETCH_AND_OFFSET(EnumerableDefaults.class, "orderBy",
+      Enumerable.class, Function1.class, Comparator.class, int.class,
+      int.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   REPEAT_UNION_ALL(EnumerableDefaults.class, "repeatUnionAll", Enumerable.class,
@@ -405,6 +434,8 @@ public enum BuiltInMethod {
   MODIFIABLE_TABLE_GET_MODIFIABLE_COLLECTION(ModifiableTable.class,
       "getModifiableCollection"),
   SCANNABLE_TABLE_SCAN(ScannableTable.class, "scan", DataContext.class),
+  STATISTIC_CATALOG_TABLE_MODIFIED(StatisticCatalog.class, "tableModified",
+      Table.class),
   STRING_TO_BOOLEAN(SqlFunctions.class, "toBoolean", String.class),
   INTERNAL_TO_DATE(SqlFunctions.class, "internalToDate", int.class),
   INTERNAL_TO_TIME(SqlFunctions.class, "internalToTime", int.class),
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.runtime.ArrayBindable;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.Utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link PersistentBindableCache}.
+ *
+ * <p>Each test uses a fresh temporary directory, and creates several caches
+ * over it to simulate restarts of the JVM.
+ */
+public class PersistentBindableCacheTest {
+  /** Body of a class that returns one row, and has a nested class, so that
+   * the compiled form consists of more than one class. */
+  private static final String BODY = ""
+      + "public static class Pair {\n"
+      + "  public final int x;\n"
+      + "  public Pair(int x) { this.x = x; }\n"
+      + "}\n"
+      + "public org.apache.calcite.linq4j.Enumerable bind(\n"
+      + "    org.apache.calcite.DataContext root) {\n"
+      + "  return org.apache.calcite.linq4j.Linq4j.singletonEnumerable(\n"
+      + "      new Object[] {new Pair(42).x, \"x\"});\n"
+      + "}\n"
+      + "public Class getElementType() {\n"
+      + "  return Object[].class;\n"
+      + "}\n";
+
+  private File directory;
+
+  @Before public void setUp() throws IOException {
+    directory = Files.createTempDirectory("bindable").toFile();
+  }
+
+  @After public void tearDown() {
+    final File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    directory.delete();
+  }
+
+  private Bindable get(PersistentBindableCache cache) throws Exception {
+    return get(cache, PersistentBindableCacheTest.class.getClassLoader());
+  }
+
+  private Bindable get(PersistentBindableCache cache,
+      ClassLoader parentClassLoader) throws Exception {
+    return cache.get("Baz", BODY, Utilities.class,
+        new Class[] {ArrayBindable.class}, parentClassLoader, false);
+  }
+
+  private static String run(Bindable bindable) {
+    return Arrays.toString(
+        (Object[]) bindable.bind(null).first());
+  }
+
+  /** Tests that classes compiled by one cache are loaded, not compiled, by
+   * a later cache over the same directory. */
+  @Test public void testHitAfterRestart() throws Exception {
+    final PersistentBindableCache cache = new PersistentBindableCache(directory);
+    assertThat(run(get(cache)), is("[42, x]"));
+    assertThat(cache.getMissCount(), is(1L));
+    assertThat(cache.getHitCount(), is(0L));
+    assertThat(directory.listFiles().length, is(1));
+
+    assertThat(run(get(cache)), is("[42, x]"));
+    assertThat(cache.getMissCount(), is(1L));
+    assertThat(cache.getHitCount(), is(1L));
+
+    // A new cache over the same directory, as after a restart, loads the
+    // classes rather than compiling them.
+    final PersistentBindableCache cache2 =
+        new PersistentBindableCache(directory);
+    assertThat(run(get(cache2)), is("[42, x]"));
+    assertThat(cache2.getMissCount(), is(0L));
+    assertThat(cache2.getHitCount(), is(1L));
+    assertThat(cache2.getCompileNanos(), is(0L));
+  }
+
+  /** Tests that classes compiled by one build are not loaded by a build
+   * with a different fingerprint. */
+  @Test public void testDifferentBuild() throws Exception {
+    final PersistentBindableCache cache =
+        new PersistentBindableCache(directory, new byte[] {1});
+    assertThat(run(get(cache)), is("[42, x]"));
+    assertThat(cache.getMissCount(), is(1L));
+
+    final PersistentBindableCache cache2 =
+        new PersistentBindableCache(directory, new byte[] {2});
+    assertThat(run(get(cache2)), is("[42, x]"));
+    assertThat(cache2.getMissCount(), is(1L));
+    assertThat(cache2.getHitCount(), is(0L));
+    assertThat(directory.listFiles().length, is(2));
+
+    final PersistentBindableCache cache3 =
+        new PersistentBindableCache(directory, new byte[] {1});
+    assertThat(run(get(cache3)), is("[42, x]"));
+    assertThat(cache3.getHitCount(), is(1L));
+  }
+
+  /** Tests that classes compiled against a class path are not loaded after
+   * an entry of the class path has changed, as when a jar of user-defined
+   * functions is replaced. */
+  @Test public void testClassPathChanged() throws Exception {
+    final File udfDirectory = Files.createTempDirectory("udf").toFile();
+    final File udfFile = new File(udfDirectory, "Udf.class");
+    try {
+      try (OutputStream out = new FileOutputStream(udfFile)) {
+        out.write(new byte[] {1});
+      }
+      final URL[] urls = {udfDirectory.toURI().toURL()};
+      final ClassLoader parent =
+          PersistentBindableCacheTest.class.getClassLoader();
+      final PersistentBindableCache cache =
+          new PersistentBindableCache(directory);
+      try (URLClassLoader loader = new URLClassLoader(urls, parent)) {
+        assertThat(run(get(cache, loader)), is("[42, x]"));
+        assertThat(cache.getMissCount(), is(1L));
+      }
+
+      // Same class path, after a restart: hit
+      final PersistentBindableCache cache2 =
+          new PersistentBindableCache(directory);
+      try (URLClassLoader loader = new URLClassLoader(urls, parent)) {
+        assertThat(run(get(cache2, loader)), is("[42, x]"));
+        assertThat(cache2.getHitCount(), is(1L));
+        assertThat(cache2.getMissCount(), is(0L));
+      }
+
+      // The class path entry has changed: miss
+      try (OutputStream out = new FileOutputStream(udfFile)) {
+        out.write(new byte[] {1, 2});
+      }
+      //noinspection ResultOfMethodCallIgnored
+      udfFile.setLastModified(udfFile.lastModified() + 10_000L);
+      final PersistentBindableCache cache3 =
+          new PersistentBindableCache(directory);
+      try (URLClassLoader loader = new URLClassLoader(urls, parent)) {
+        assertThat(run(get(cache3, loader)), is("[42, x]"));
+        assertThat(cache3.getHitCount(), is(0L));
+        assertThat(cache3.getMissCount(), is(1L));
+      }
+      assertThat(directory.listFiles().length, is(2));
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      udfFile.delete();
+      //noinspection ResultOfMethodCallIgnored
+      udfDirectory.delete();
+    }
+  }
+
+  /** Tests that a corrupt file is recompiled and replaced. */
+  @Test public void testCorruptFile() throws Exception {
+    final PersistentBindableCache cache = new PersistentBindableCache(directory);
+    get(cache);
+    final File file = directory.listFiles()[0];
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[] {1, 2, 3});
+    }
+    final PersistentBindableCache cache2 =
+        new PersistentBindableCache(directory);
+    assertThat(run(get(cache2)), is("[42, x]"));
+    assertThat(cache2.getMissCount(), is(1L));
+    assertThat(run(get(cache2)), is("[42, x]"));
+    assertThat(cache2.getHitCount(), is(1L));
+  }
+}
+
+// End PersistentBindableCacheTest.java
@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.plan;
 
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelCollations;
@@ -58,6 +60,7 @@
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -546,6 +549,72 @@ private void splitJoinConditionHelper(RexNode joinCond, List<Integer> expLeftKey
         is(relBuilder.call(SqlStdOperatorTable.PLUS, leftKeyInputRef, relBuilder.literal(1))
             .toString()));
   }
+
+  /** Tests that {@link RelOptMaterializationIndex} returns only the
+   * materializations that use a table of the query, directly or through
+   * another materialization. */
+  @Test public void testMaterializationIndex() {
+    // "SALGRADE" plays the part of a materialized view on "EMP" join "DEPT"
+    final RelNode empDept = relBuilder.push(empScan).push(deptScan)
+        .join(JoinRelType.INNER).build();
+    final RelNode salgrade = relBuilder.scan("SALGRADE").build();
+    final RelNode bonus = relBuilder.scan("BONUS").build();
+    final List<String> salgradeName =
+        Iterables.getOnlyElement(RelOptUtil.findTables(salgrade))
+            .getQualifiedName();
+    final List<String> empName = ImmutableList.of("scott", "EMP");
+    final List<String> bonusName = ImmutableList.of("scott", "BONUS");
+    final RelOptMaterialization m0 =
+        new RelOptMaterialization(empDept, empDept, null, salgradeName);
+    final RelOptMaterialization m1 =
+        new RelOptMaterialization(bonus, bonus, null,
+            ImmutableList.of("scott", "MV1"));
+    final RelOptMaterialization m2 =
+        new RelOptMaterialization(salgrade, salgrade, null,
+            ImmutableList.of("scott", "MV2"));
+
+    // Add "m2" before "m0", the materialization that it uses
+    final RelOptMaterializationIndex index = new RelOptMaterializationIndex();
+    assertThat(index.isEmpty(), is(true));
+    index.add(m2);
+    index.add(m1);
+    index.add(m0);
+    assertThat(index.getMaterializations(), is(ImmutableList.of(m2, m1, m0)));
+    assertThat(index.getCandidates(ImmutableList.of(empName)),
+        is(ImmutableList.of(m2, m0)));
+    assertThat(index.getCandidates(ImmutableList.of(bonusName)),
+        is(ImmutableList.of(m1)));
+    assertThat(index.getCandidates(ImmutableList.of(salgradeName)),
+        is(ImmutableList.of(m2)));
+    assertThat(index.getCandidates(ImmutableList.of(empName, bonusName)),
+        is(ImmutableList.of(m2, m1, m0)));
+    assertThat(index.getCandidates(ImmutableList.of()).isEmpty(), is(true));
+    assertThat(index.getTableNames(m0).toString(),
+        is("[[scott, EMP], [scott, DEPT]]"));
+
+    final RelOptMaterializationIndex.Metrics metrics = index.getMetrics(m1);
+    assertThat(metrics.toString(),
+        is("attempts: 0, rewrites: 0, elapsedNanos: 0"));
+    metrics.recordAttempt(false, 10L);
+    metrics.recordAttempt(true, 5L);
+    assertThat(metrics.toString(),
+        is("attempts: 2, rewrites: 1, elapsedNanos: 15"));
+
+    index.clear();
+    assertThat(index.isEmpty(), is(true));
+    assertThat(index.getCandidates(ImmutableList.of(empName)).isEmpty(),
+        is(true));
+    // HepPlanner keeps an index, so metrics accumulate across rule calls
+    final HepPlanner hepPlanner = new HepPlanner(HepProgram.builder().build());
+    hepPlanner.addMaterialization(m1);
+    final RelOptMaterializationIndex hepIndex =
+        hepPlanner.getMaterializationIndex();
+    assertThat(hepPlanner.getMaterializationIndex(), sameInstance(hepIndex));
+    assertThat(hepIndex.getCandidates(ImmutableList.of(bonusName)),
+        is(ImmutableList.of(m1)));
+    hepPlanner.clear();
+    assertThat(hepIndex.isEmpty(), is(true));
+  }
 }
 
 // End RelOptUtilTest.java
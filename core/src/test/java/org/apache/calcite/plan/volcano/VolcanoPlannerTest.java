@@ -34,6 +34,7 @@
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
 import org.apache.calcite.tools.RelBuilder;
 
@@ -60,6 +61,7 @@
 import static org.apache.calcite.test.Matchers.isLinux;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
@@ -413,6 +415,205 @@ public RelNode convert(RelNode rel) {
         resultLeaf.label);
   }
 
+  /** Tests that when a subset gets a new best expression, the planner
+   * discards the cached metadata that was derived from the subset, rather
+   * than the whole metadata query. */
+  @Test public void testMetadataCacheInvalidation() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(new SmallPhysLeafRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    RelNode convertedRel =
+        planner.changeTraits(
+            leafRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+
+    // Until the rule fires, the PHYS subset has no best expression, so its
+    // row count is that of the original expression.
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    assertThat(mq.getRowCount(convertedRel), equalTo(1d));
+    assertThat(mq.getRowCount(leafRel), equalTo(1d));
+
+    planner.chooseDelegate().findBestExp();
+    assertThat(cluster.getMetadataQuery(), sameInstance(mq));
+    assertThat(mq.getRowCount(convertedRel), equalTo(10d));
+    // Results that did not depend on the subset are still cached.
+    final RelMetadataQuery.CacheStats stats =
+        mq.getCacheStats().get("RowCount.getRowCount");
+    final long misses = stats.getMisses();
+    assertThat(mq.getRowCount(leafRel), equalTo(1d));
+    assertThat(stats.getMisses(), equalTo(misses));
+  }
+
+  /**
+   * Tests that when the planner exceeds its budget, it returns the first
+   * implementable plan rather than the best one, and says so.
+   */
+  @Test public void testBudget() {
+    for (int ruleMatchLimit : new int[] {-1, 0}) {
+      VolcanoPlanner planner = new VolcanoPlanner();
+      planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+      planner.setBudget(-1, ruleMatchLimit, -1);
+
+      planner.addRule(new PhysLeafRule());
+      planner.addRule(new GoodSingleRule());
+      planner.addRule(new GoodRemoveSingleRule());
+
+      final List<RelOptListener.PlanningCompletedEvent> events =
+          completedEvents(planner);
+
+      RelOptCluster cluster = newCluster(planner);
+      NoneLeafRel leafRel =
+          new NoneLeafRel(
+              cluster,
+              "a");
+      NoneSingleRel singleRel =
+          new NoneSingleRel(
+              cluster,
+              leafRel);
+      RelNode convertedRel =
+          planner.changeTraits(
+              singleRel,
+              cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+      planner.setRoot(convertedRel);
+      RelNode result = planner.chooseDelegate().findBestExp();
+      assertThat(events.size(), equalTo(1));
+      final RelOptListener.PlanningCompletedEvent event = events.get(0);
+      assertThat(event.getRel(), sameInstance(result));
+      if (ruleMatchLimit < 0) {
+        assertTrue(result instanceof PhysLeafRel);
+        assertThat(event.isBudgetExhausted(), equalTo(false));
+        assertThat(event.getRuleMatchCount(), equalTo(3));
+      } else {
+        // GoodRemoveSingleRule has not fired yet.
+        assertTrue(result instanceof PhysSingleRel);
+        assertThat(event.isBudgetExhausted(), equalTo(true));
+        assertThat(event.getRuleMatchCount(), equalTo(2));
+      }
+    }
+  }
+
+  /** Tests that the budget applies to each query when a planner is re-used,
+   * as {@link org.apache.calcite.tools.Programs} does; the counts of rule
+   * matches and registered expressions start again from zero. */
+  @Test public void testBudgetReusedPlanner() {
+    final VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    final List<RelOptListener.PlanningCompletedEvent> events =
+        completedEvents(planner);
+    for (int i = 0; i < 3; i++) {
+      planner.clear();
+      planner.addRule(new PhysLeafRule());
+      planner.addRule(new GoodSingleRule());
+      planner.addRule(new GoodRemoveSingleRule());
+      if (i > 0) {
+        // Enough for one query, but not for two
+        planner.setBudget(-1, -1, events.get(0).getRelCount() + 1);
+      }
+      RelOptCluster cluster = newCluster(planner);
+      NoneSingleRel singleRel =
+          new NoneSingleRel(
+              cluster,
+              new NoneLeafRel(cluster, "a"));
+      planner.setRoot(
+          planner.changeTraits(
+              singleRel,
+              cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+      RelNode result = planner.chooseDelegate().findBestExp();
+      assertTrue(result instanceof PhysLeafRel);
+      final RelOptListener.PlanningCompletedEvent event = events.get(i);
+      assertThat(event.isBudgetExhausted(), equalTo(false));
+      assertThat(event.getRuleMatchCount(), equalTo(3));
+      assertThat(event.getRelCount(), equalTo(events.get(0).getRelCount()));
+    }
+  }
+
+  /** Tests that the planner finds the same plan when it optimizes top-down,
+   * with {@link VolcanoPlanner#setTopDownOpt(boolean)}, as when it fires rules
+   * in order of importance. */
+  @Test public void testTopDown() {
+    for (boolean topDown : new boolean[] {false, true}) {
+      VolcanoPlanner planner = new VolcanoPlanner();
+      planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+      planner.setTopDownOpt(topDown);
+
+      planner.addRule(new PhysLeafRule());
+      planner.addRule(new GoodSingleRule());
+      planner.addRule(new GoodRemoveSingleRule());
+
+      final List<RelOptListener.PlanningCompletedEvent> events =
+          completedEvents(planner);
+
+      RelOptCluster cluster = newCluster(planner);
+      NoneLeafRel leafRel =
+          new NoneLeafRel(
+              cluster,
+              "a");
+      NoneSingleRel singleRel =
+          new NoneSingleRel(
+              cluster,
+              leafRel);
+      RelNode convertedRel =
+          planner.changeTraits(
+              singleRel,
+              cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+      planner.setRoot(convertedRel);
+      RelNode result = planner.chooseDelegate().findBestExp();
+      assertTrue(result instanceof PhysLeafRel);
+      assertThat(events.size(), equalTo(1));
+      assertThat(events.get(0).isBudgetExhausted(), equalTo(false));
+      assertThat(events.get(0).getRuleMatchCount(), equalTo(3));
+    }
+  }
+
+  /** Tests that the planner fires the same rule matches, and finds the same
+   * plan, if it matches rules concurrently, with
+   * {@link VolcanoPlanner#setRuleMatchParallelism(int)}. */
+  @Test public void testRuleMatchParallelism() {
+    for (int parallelism : new int[] {1, 2, 4}) {
+      VolcanoPlanner planner = new VolcanoPlanner();
+      planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+      planner.setRuleMatchParallelism(parallelism);
+
+      planner.addRule(new PhysLeafRule());
+      planner.addRule(new GoodSingleRule());
+      planner.addRule(new GoodRemoveSingleRule());
+      planner.addRule(new ReformedSingleRule());
+
+      final List<RelOptListener.PlanningCompletedEvent> events =
+          completedEvents(planner);
+
+      RelOptCluster cluster = newCluster(planner);
+      NoneLeafRel leafRel =
+          new NoneLeafRel(
+              cluster,
+              "a");
+      NoneSingleRel singleRel =
+          new NoneSingleRel(
+              cluster,
+              leafRel);
+      NoneSingleRel singleRel2 =
+          new NoneSingleRel(
+              cluster,
+              singleRel);
+      RelNode convertedRel =
+          planner.changeTraits(
+              singleRel2,
+              cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+      planner.setRoot(convertedRel);
+      RelNode result = planner.chooseDelegate().findBestExp();
+      assertTrue(result instanceof PhysLeafRel);
+      assertThat(events.size(), equalTo(1));
+      assertThat(events.get(0).getRuleMatchCount(), equalTo(5));
+    }
+  }
+
   @Ignore("CALCITE-2592 EnumerableMergeJoin is never taken")
   @Test public void testMergeJoin() {
     VolcanoPlanner planner = new VolcanoPlanner();
@@ -580,6 +781,28 @@ private void checkEvent(
 
   //~ Inner Classes ----------------------------------------------------------
 
+  /** Planner rule that converts a {@link NoneLeafRel} to a
+   * {@link PhysLeafRel} with 10 rows. */
+  private static class SmallPhysLeafRule extends RelOptRule {
+    SmallPhysLeafRule() {
+      super(operand(NoneLeafRel.class, any()));
+    }
+
+    @Override public Convention getOutConvention() {
+      return PHYS_CALLING_CONVENTION;
+    }
+
+    public void onMatch(RelOptRuleCall call) {
+      NoneLeafRel leafRel = call.rel(0);
+      call.transformTo(
+          new PhysLeafRel(leafRel.getCluster(), leafRel.label) {
+            @Override public double estimateRowCount(RelMetadataQuery mq) {
+              return 10d;
+            }
+          });
+    }
+  }
+
   /** Converter from PHYS to ENUMERABLE convention. */
   class PhysToIteratorConverter extends ConverterImpl {
     PhysToIteratorConverter(
@@ -724,6 +947,20 @@ public void onMatch(RelOptRuleCall call) {
     }
   }
 
+  /** Adds a listener to a planner, and returns the list to which it adds an
+   * event each time planning completes. */
+  private static List<RelOptListener.PlanningCompletedEvent> completedEvents(
+      VolcanoPlanner planner) {
+    final List<RelOptListener.PlanningCompletedEvent> events =
+        new ArrayList<>();
+    planner.addListener(new TestListener() {
+      @Override public void planningCompleted(PlanningCompletedEvent event) {
+        events.add(event);
+      }
+    });
+    return events;
+  }
+
   /** Implementation of {@link RelOptListener}. */
   private static class TestListener implements RelOptListener {
     private List<RelEvent> eventList;
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link PlanCache}.
+ */
+public class PlanCacheTest {
+  private static final String SQL = "select name from s.emps where empid = ";
+
+  /** Tests that queries that differ only in a literal share a plan. */
+  @Test public void testLiterals() throws SQLException {
+    final AtomicInteger planCount = new AtomicInteger();
+    try (Connection connection = connect(10);
+         Hook.Closeable ignore = countPlans(planCount)) {
+      assertThat(query(connection, SQL + "100"), is("Bill"));
+      assertThat(query(connection, SQL + "200"), is("Eric"));
+      assertThat(query(connection, SQL + "300"), is(""));
+      assertThat(query(connection, SQL + " 110"), is("Theodore"));
+      assertThat(planCount.get(), is(1));
+
+      final String sql2 = "select empid from s.emps\n"
+          + "where name = 'Eric' and deptno = 20";
+      assertThat(query(connection, sql2), is("200"));
+      assertThat(
+          query(connection,
+              sql2.replace("Eric", "Sebastian").replace("20", "10")),
+          is("150"));
+      assertThat(planCount.get(), is(2));
+
+      // A literal too large for an INTEGER parameter is prepared as written
+      assertThat(query(connection, SQL + "10000000000"), is(""));
+      assertThat(planCount.get(), is(3));
+      assertThat(query(connection, SQL + "10000000000"), is(""));
+      assertThat(planCount.get(), is(3));
+    }
+  }
+
+  /** Tests that a query with dynamic parameters is cached under its text,
+   * and that a change to the schema makes the cached plans unreachable. */
+  @Test public void testDynamicParametersAndSchemaChange()
+      throws SQLException {
+    final AtomicInteger planCount = new AtomicInteger();
+    try (Connection connection = connect(10);
+         Hook.Closeable ignore = countPlans(planCount)) {
+      for (int empid : new int[] {100, 200}) {
+        try (PreparedStatement statement =
+                 connection.prepareStatement(SQL + "?")) {
+          statement.setInt(1, empid);
+          try (ResultSet resultSet = statement.executeQuery()) {
+            assertThat(resultSet.next(), is(true));
+          }
+        }
+      }
+      assertThat(planCount.get(), is(1));
+
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("t", new ReflectiveSchema(new JdbcTest.HrSchema()));
+      assertThat(query(connection, SQL + "150"), is("Sebastian"));
+      assertThat(query(connection, SQL + "100"), is("Bill"));
+      assertThat(planCount.get(), is(2));
+    }
+  }
+
+  /** Tests that there is no plan cache by default. */
+  @Test public void testDisabled() throws SQLException {
+    final AtomicInteger planCount = new AtomicInteger();
+    try (Connection connection = connect(0);
+         Hook.Closeable ignore = countPlans(planCount)) {
+      assertThat(query(connection, SQL + "100"), is("Bill"));
+      assertThat(query(connection, SQL + "100"), is("Bill"));
+      assertThat(planCount.get(), is(2));
+    }
+  }
+
+  private static Hook.Closeable countPlans(AtomicInteger planCount) {
+    final Consumer<RelNode> handler = rel -> planCount.incrementAndGet();
+    return Hook.CONVERTED.addThread(handler);
+  }
+
+  private static Connection connect(int planCacheSize) throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.LEX.camelName(),
+        Lex.JAVA.name());
+    info.setProperty(CalciteConnectionProperty.PLAN_CACHE_SIZE.camelName(),
+        Integer.toString(planCacheSize));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    connection.unwrap(CalciteConnection.class).getRootSchema()
+        .add("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+    return connection;
+  }
+
+  /** Executes a query and returns the values of its first column,
+   * separated by commas. */
+  private static String query(Connection connection, String sql)
+      throws SQLException {
+    final StringBuilder b = new StringBuilder();
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      while (resultSet.next()) {
+        if (b.length() > 0) {
+          b.append(",");
+        }
+        b.append(resultSet.getString(1));
+      }
+    }
+    return b.toString();
+  }
+}
+
+// End PlanCacheTest.java
@@ -20,6 +20,7 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.test.CalciteAssert;
 import org.apache.calcite.test.Matchers;
 import org.apache.calcite.test.SlowTests;
@@ -38,6 +39,7 @@
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -54,6 +56,7 @@
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
@@ -321,6 +324,235 @@ public class ProfilerTest {
         "{type:distribution,columns:[],cardinality:1,expectedCardinality:1.0,surprise:0}");
   }
 
+  /** Tests that {@link ProfilerImpl} computes column statistics if asked. */
+  @Test public void testProfileColumnStatistics() {
+    final List<List<Comparable>> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(
+          ImmutableList.of(i < 40 ? 3 : i,
+              i % 5 == 0 ? NullSentinel.INSTANCE : "s" + (i % 2), i));
+    }
+    final List<Profiler.Column> columns =
+        ImmutableList.of(new Profiler.Column(0, "x"),
+            new Profiler.Column(1, "y"), new Profiler.Column(2, "z"));
+    final Profiler.Profile profile =
+        new ProfilerImpl.Builder().withColumnStatistics(4, 10).build()
+            .profile(rows, columns, ImmutableList.of());
+    assertThat(profile.columnStatisticList.size(), is(3));
+
+    final ColumnStatistic x = profile.columnStatisticList.get(0);
+    assertThat(x.getDistinctCount(), is(61d));
+    assertThat(x.getNullFraction(), is(0d));
+    assertThat(x.getMostCommonValues().toString(), is("{3=0.4}"));
+    assertThat(x.getHistogram().getBucketCount(), is(4));
+    assertThat(x.getHistogram().getBounds().get(0).toString(), is("3"));
+    assertThat(x.getHistogram().getBounds().get(4).toString(), is("99"));
+
+    // Values are uniformly distributed, so none of them is "most common"
+    final ColumnStatistic y = profile.columnStatisticList.get(1);
+    assertThat(y.getDistinctCount(), is(2d));
+    assertThat(y.getNullFraction(), is(0.2d));
+    assertThat(y.getMostCommonValues().isEmpty(), is(true));
+    assertThat(y.getHistogram().toString(), is("Histogram[s0, s0, s1, s1, s1]"));
+
+    // Without column statistics, the list contains only nulls
+    final Profiler.Profile profile2 =
+        new ProfilerImpl.Builder().build()
+            .profile(rows, columns, ImmutableList.of());
+    assertThat(profile2.columnStatisticList.get(0), nullValue());
+  }
+
+  /** Tests that {@link ColumnStatisticCollector} switches to sketches when
+   * there are many distinct values. */
+  @Test public void testColumnStatisticCollectorSketch() {
+    final ColumnStatisticCollector collector =
+        new ColumnStatisticCollector(10, 5);
+    for (int i = 0; i < 5000; i++) {
+      collector.add(i);
+      if (i % 5 == 0) {
+        collector.add(-1);
+      }
+    }
+    collector.add(null);
+    final ColumnStatistic statistic = collector.finish();
+    assertThat(statistic.getDistinctCount(), Matchers.within(5001d, 150d));
+    assertThat(statistic.getNullFraction(), is(1d / 6001d));
+    assertThat(statistic.getMostCommonValues().keySet().toString(),
+        is("[-1]"));
+    assertThat(statistic.getMostCommonValues().get(BigDecimal.valueOf(-1)),
+        is(1000d / 6001d));
+    assertThat(statistic.getHistogram().getBounds().get(0).toString(),
+        is("-1"));
+    assertThat(statistic.getHistogram().getBounds().get(10).toString(),
+        is("4999"));
+  }
+
+  /** Tests that {@link ColumnStatisticCollector#merge} gives the same
+   * result as adding all values to one collector. */
+  @Test public void testColumnStatisticCollectorMerge() {
+    final ColumnStatisticCollector all = new ColumnStatisticCollector(10, 5);
+    final ColumnStatisticCollector c0 = new ColumnStatisticCollector(10, 5);
+    final ColumnStatisticCollector c1 = new ColumnStatisticCollector(10, 5);
+    for (int i = 0; i < 3000; i++) {
+      final Comparable v = i % 3 == 0 ? null : i % 700;
+      all.add(v);
+      (i < 1000 ? c0 : c1).add(v);
+    }
+    c0.merge(c1);
+    final ColumnStatistic merged = c0.finish();
+    final ColumnStatistic expected = all.finish();
+    assertThat(merged.getDistinctCount(), is(expected.getDistinctCount()));
+    assertThat(merged.getNullFraction(), is(expected.getNullFraction()));
+    assertThat(merged.getMostCommonValues(),
+        is(expected.getMostCommonValues()));
+    // Histograms are approximate, but the end points are exact
+    assertThat(merged.getHistogram().getBounds().get(0),
+        is(expected.getHistogram().getBounds().get(0)));
+    assertThat(merged.getHistogram().getBounds().get(10),
+        is(expected.getHistogram().getBounds().get(10)));
+    assertThat(c0.isProbablyUnique(), is(false));
+
+    // One collector has switched to sketches, the other has not
+    final ColumnStatisticCollector c2 = new ColumnStatisticCollector(10, 5);
+    final ColumnStatisticCollector c3 = new ColumnStatisticCollector(10, 5);
+    for (int i = 0; i < 5000; i++) {
+      (i < 100 ? c2 : c3).add(i);
+    }
+    assertThat(c2.isProbablyUnique(), is(true));
+    c2.merge(c3);
+    final ColumnStatistic statistic = c2.finish();
+    assertThat(statistic.getDistinctCount(), Matchers.within(5000d, 150d));
+    assertThat(statistic.getHistogram().getBounds().get(0).toString(),
+        is("0"));
+    // The sketch cannot rule out duplicates, so the column is not unique
+    assertThat(c2.isProbablyUnique(), is(false));
+  }
+
+  /** Tests {@link SamplingProfiler} on a data set larger than its sample. */
+  @Test public void testSamplingProfiler() {
+    final List<List<Comparable>> rows = samplingRows(20_000);
+    final SamplingProfiler profiler = samplingProfiler();
+    final Profiler.Profile profile =
+        profiler.profile(rows, SAMPLING_COLUMNS, ImmutableList.of());
+    assertThat(profile.rowCount.rowCount, is(20_000));
+
+    // Column statistics are computed from every row, not from the sample
+    final ColumnStatistic x = profile.columnStatisticList.get(0);
+    assertThat(x.getDistinctCount(), Matchers.within(20_000d, 600d));
+    final ColumnStatistic y = profile.columnStatisticList.get(1);
+    assertThat(y.getDistinctCount(), is(10d));
+    assertThat(y.getNullFraction(), is(0d));
+    final ColumnStatistic z = profile.columnStatisticList.get(2);
+    assertThat(z.getDistinctCount(), is(100d));
+    assertThat(z.getNullFraction(), is(0.25d));
+
+    // "x" is unique in the data set, but a sketch cannot prove it; its
+    // distinct count is close to the row count, but it is not a key
+    assertThat(profile.uniqueList.size(), is(0));
+
+    // Cardinalities of single columns are scaled up to the whole data set;
+    // the cardinality of (y, z) is estimated from the sample
+    assertThat(profile.cardinality(ImmutableBitSet.of(1)), is(10d));
+    assertThat(profile.cardinality(ImmutableBitSet.of(2)), is(101d));
+    assertThat(profile.cardinality(ImmutableBitSet.of(1, 2)),
+        Matchers.within(110d, 5d));
+  }
+
+  /** Tests that {@link SamplingProfiler} gives the same profile as the
+   * profiler it wraps if every row fits into the sample. */
+  @Test public void testSamplingProfilerSmall() {
+    final List<List<Comparable>> rows = samplingRows(500);
+    final Profiler.Profile profile =
+        samplingProfiler().profile(rows, SAMPLING_COLUMNS, ImmutableList.of());
+    final Profiler.Profile profile2 =
+        new ProfilerImpl.Builder().withColumnStatistics(10, 5).build()
+            .profile(rows, SAMPLING_COLUMNS, ImmutableList.of());
+    assertThat(toJson(profile), is(toJson(profile2)));
+    assertSameStatistics(profile.columnStatisticList,
+        profile2.columnStatisticList);
+  }
+
+  /** Tests that {@link SamplingProfiler} can profile partitions in parallel,
+   * and update a profile incrementally. */
+  @Test public void testSamplingProfilerMerge() {
+    final List<List<Comparable>> rows = samplingRows(20_000);
+    final SamplingProfiler profiler = samplingProfiler();
+    final Profiler.Profile profile =
+        profiler.profile(rows, SAMPLING_COLUMNS, ImmutableList.of());
+    final Profiler.Profile parallelProfile =
+        profiler.profileParallel(
+            ImmutableList.of(rows.subList(0, 5_000),
+                rows.subList(5_000, 6_000), rows.subList(6_000, 20_000)),
+            SAMPLING_COLUMNS, ImmutableList.of());
+    assertThat(parallelProfile.rowCount.rowCount, is(20_000));
+    assertSameStatistics(parallelProfile.columnStatisticList.subList(1, 3),
+        profile.columnStatisticList.subList(1, 3));
+    assertThat(parallelProfile.uniqueList.size(), is(0));
+
+    final SamplingProfiler.Accumulator accumulator =
+        profiler.accumulator(SAMPLING_COLUMNS);
+    rows.subList(0, 10_000).forEach(accumulator::add);
+    final Profiler.Profile halfProfile =
+        accumulator.profile(ImmutableList.of());
+    assertThat(halfProfile.rowCount.rowCount, is(10_000));
+    rows.subList(10_000, 20_000).forEach(accumulator::add);
+    final Profiler.Profile fullProfile =
+        accumulator.profile(ImmutableList.of());
+    assertThat(fullProfile.rowCount.rowCount, is(20_000));
+    assertSameStatistics(fullProfile.columnStatisticList,
+        profile.columnStatisticList);
+  }
+
+  /** Asserts that two lists of column statistics are the same, except for
+   * the interior bounds of histograms, which are approximate. */
+  private static void assertSameStatistics(List<ColumnStatistic> list,
+      List<ColumnStatistic> expectedList) {
+    assertThat(list.size(), is(expectedList.size()));
+    for (int i = 0; i < list.size(); i++) {
+      final ColumnStatistic c = list.get(i);
+      final ColumnStatistic expected = expectedList.get(i);
+      assertThat(c.getDistinctCount(), is(expected.getDistinctCount()));
+      assertThat(c.getNullFraction(), is(expected.getNullFraction()));
+      assertThat(c.getMostCommonValues(), is(expected.getMostCommonValues()));
+      final List<Comparable> bounds = c.getHistogram().getBounds();
+      final List<Comparable> expectedBounds =
+          expected.getHistogram().getBounds();
+      assertThat(bounds.get(0), is(expectedBounds.get(0)));
+      assertThat(Util.last(bounds), is(Util.last(expectedBounds)));
+    }
+  }
+
+  private static final List<Profiler.Column> SAMPLING_COLUMNS =
+      ImmutableList.of(new Profiler.Column(0, "x"),
+          new Profiler.Column(1, "y"), new Profiler.Column(2, "z"));
+
+  /** Returns rows with a unique column "x", a column "y" with 10 values,
+   * and a column "z" with 100 values and 25% nulls; if "z" is not null, it
+   * determines "y". */
+  private static List<List<Comparable>> samplingRows(int rowCount) {
+    final List<List<Comparable>> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(
+          ImmutableList.of(i, i % 10,
+              i / 100 % 4 == 1
+                  ? NullSentinel.INSTANCE
+                  : (Comparable) (i % 100)));
+    }
+    return rows;
+  }
+
+  private static SamplingProfiler samplingProfiler() {
+    return new SamplingProfiler(new ProfilerImpl.Builder().build(), 1_000,
+        10, 5);
+  }
+
+  private static List<String> toJson(Profiler.Profile profile) {
+    final JsonBuilder jb = new JsonBuilder();
+    return profile.statistics().stream()
+        .map(statistic -> jb.toJsonString(statistic.toMap(jb)))
+        .collect(Collectors.toList());
+  }
+
   /** Tests
    * {@link org.apache.calcite.profile.ProfilerImpl.SurpriseQueue}. */
   @Test public void testSurpriseQueue() {
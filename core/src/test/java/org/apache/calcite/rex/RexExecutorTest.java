@@ -19,16 +19,23 @@
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.avatica.util.TimeUnit;
+import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.sql.SqlBinaryOperator;
+import org.apache.calcite.sql.SqlIntervalQualifier;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.fun.SqlMonotonicBinaryOperator;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.fun.SqlTrimFunction;
+import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.type.InferTypes;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
@@ -37,7 +44,9 @@
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.util.DateString;
 import org.apache.calcite.util.NlsString;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.TestUtil;
+import org.apache.calcite.util.TimestampString;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
@@ -50,11 +59,14 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -282,6 +294,175 @@ private void testContextLiteral(
     });
   }
 
+  /** Tests that casts, datetime arithmetic and string functions are reduced
+   * by {@link RexInterpreter}, without generating code, to the same values
+   * as generated code. */
+  @Test public void testInterpretedReduction() throws Exception {
+    check((rexBuilder, executor) -> {
+      final RelDataTypeFactory typeFactory = rexBuilder.getTypeFactory();
+      final RelDataType timestampType =
+          typeFactory.createSqlType(SqlTypeName.TIMESTAMP);
+      final RexNode date =
+          rexBuilder.makeDateLiteral(new DateString("2019-01-31"));
+      final RexNode timestamp =
+          rexBuilder.makeTimestampLiteral(
+              new TimestampString("2019-03-01 10:20:30"), 0);
+      final RexNode oneMonth =
+          rexBuilder.makeIntervalLiteral(BigDecimal.ONE,
+              new SqlIntervalQualifier(TimeUnit.MONTH, null, SqlParserPos.ZERO));
+      final RexNode oneDay =
+          rexBuilder.makeIntervalLiteral(
+              BigDecimal.valueOf(DateTimeUtils.MILLIS_PER_DAY),
+              new SqlIntervalQualifier(TimeUnit.DAY, null, SqlParserPos.ZERO));
+      final RexNode hello = rexBuilder.makeLiteral("  hello world ");
+      final List<RexNode> exps = ImmutableList.of(
+          rexBuilder.makeCast(typeFactory.createSqlType(SqlTypeName.DATE),
+              rexBuilder.makeLiteral("2019-03-15")),
+          rexBuilder.makeCall(SqlStdOperatorTable.DATETIME_PLUS, date,
+              oneMonth),
+          rexBuilder.makeCall(timestampType, SqlStdOperatorTable.MINUS_DATE,
+              ImmutableList.of(timestamp, oneDay)),
+          rexBuilder.makeCast(timestampType, date),
+          rexBuilder.makeCall(SqlStdOperatorTable.EXTRACT,
+              rexBuilder.makeFlag(TimeUnitRange.MONTH), date),
+          rexBuilder.makeCall(SqlStdOperatorTable.UPPER,
+              rexBuilder.makeCall(SqlStdOperatorTable.TRIM,
+                  rexBuilder.makeFlag(SqlTrimFunction.Flag.BOTH),
+                  rexBuilder.makeLiteral(" "), hello)),
+          rexBuilder.makeCall(SqlStdOperatorTable.CHAR_LENGTH,
+              rexBuilder.makeCall(SqlStdOperatorTable.SUBSTRING, hello,
+                  rexBuilder.makeExactLiteral(BigDecimal.valueOf(3)))),
+          rexBuilder.makeCast(
+              typeFactory.createSqlType(SqlTypeName.VARCHAR, 10),
+              rexBuilder.makeCall(SqlStdOperatorTable.MULTIPLY,
+                  rexBuilder.makeExactLiteral(BigDecimal.valueOf(6)),
+                  rexBuilder.makeExactLiteral(BigDecimal.valueOf(7)))));
+      final List<Pair<String, Object[]>> compiled = new ArrayList<>();
+      final List<RexNode> reducedValues = new ArrayList<>();
+      try (Hook.Closeable ignore =
+               Hook.EXPRESSION_REDUCER.addThread(
+                   (Consumer<Pair<String, Object[]>>) compiled::add)) {
+        executor.reduce(rexBuilder, exps, reducedValues);
+      }
+      assertThat(compiled.size(), is(0));
+      assertThat(reducedValues.subList(0, 5).toString(),
+          is("[2019-03-15, 2019-02-28, 2019-02-28 10:20:30, "
+              + "2019-01-31 00:00:00, 1:BIGINT]"));
+      assertThat(((RexLiteral) reducedValues.get(5)).getValue2(),
+          is((Object) "HELLO WORLD"));
+      assertThat(reducedValues.get(6).toString(), is("12"));
+      assertThat(((RexLiteral) reducedValues.get(7)).getValue2(),
+          is((Object) "42"));
+      checkSameAsCompiled(rexBuilder, executor, exps, reducedValues);
+    });
+  }
+
+  /** Tests that an expression that {@link RexInterpreter} cannot evaluate
+   * exactly, such as integer arithmetic that overflows, is reduced by
+   * generated code, and the other expressions are not compiled. */
+  @Test public void testInterpretedReductionFallback() throws Exception {
+    check((rexBuilder, executor) -> {
+      final RexNode overflow =
+          rexBuilder.makeCall(SqlStdOperatorTable.PLUS,
+              rexBuilder.makeLiteral(Integer.MAX_VALUE,
+                  rexBuilder.getTypeFactory()
+                      .createSqlType(SqlTypeName.INTEGER), false),
+              rexBuilder.makeExactLiteral(BigDecimal.ONE));
+      final RexNode plus =
+          rexBuilder.makeCall(SqlStdOperatorTable.PLUS,
+              rexBuilder.makeExactLiteral(BigDecimal.ONE),
+              rexBuilder.makeExactLiteral(BigDecimal.valueOf(2)));
+      final List<RexNode> exps = ImmutableList.of(plus, overflow);
+      final List<Pair<String, Object[]>> compiled = new ArrayList<>();
+      final List<RexNode> reducedValues = new ArrayList<>();
+      try (Hook.Closeable ignore =
+               Hook.EXPRESSION_REDUCER.addThread(
+                   (Consumer<Pair<String, Object[]>>) compiled::add)) {
+        executor.reduce(rexBuilder, exps, reducedValues);
+      }
+      assertThat(compiled.size(), is(1));
+      assertThat(compiled.get(0).right.length, is(1));
+      assertThat(reducedValues.toString(), is("[3, -2147483648]"));
+      checkSameAsCompiled(rexBuilder, executor, exps, reducedValues);
+    });
+  }
+
+  /** Tests that "datetime - interval" built using the {@code MINUS}
+   * operator, rather than {@code MINUS_DATE}, is reduced by
+   * {@link RexInterpreter} to the same value as generated code. */
+  @Test public void testInterpretedDatetimeMinusInterval() throws Exception {
+    check((rexBuilder, executor) -> {
+      final RexNode date =
+          rexBuilder.makeDateLiteral(new DateString("2019-03-31"));
+      final RexNode timestamp =
+          rexBuilder.makeTimestampLiteral(
+              new TimestampString("2019-03-31 10:20:30"), 0);
+      final RexNode oneMonth =
+          rexBuilder.makeIntervalLiteral(BigDecimal.ONE,
+              new SqlIntervalQualifier(TimeUnit.MONTH, null, SqlParserPos.ZERO));
+      final RexNode oneDay =
+          rexBuilder.makeIntervalLiteral(
+              BigDecimal.valueOf(DateTimeUtils.MILLIS_PER_DAY),
+              new SqlIntervalQualifier(TimeUnit.DAY, null, SqlParserPos.ZERO));
+      final List<RexNode> exps = ImmutableList.of(
+          rexBuilder.makeCall(SqlStdOperatorTable.MINUS, date, oneDay),
+          rexBuilder.makeCall(SqlStdOperatorTable.MINUS, date, oneMonth),
+          rexBuilder.makeCall(SqlStdOperatorTable.MINUS, timestamp, oneDay),
+          rexBuilder.makeCall(SqlStdOperatorTable.MINUS, timestamp,
+              oneMonth));
+      final List<Pair<String, Object[]>> compiled = new ArrayList<>();
+      final List<RexNode> reducedValues = new ArrayList<>();
+      try (Hook.Closeable ignore =
+               Hook.EXPRESSION_REDUCER.addThread(
+                   (Consumer<Pair<String, Object[]>>) compiled::add)) {
+        executor.reduce(rexBuilder, exps, reducedValues);
+      }
+      assertThat(compiled.size(), is(0));
+      assertThat(reducedValues.toString(),
+          is("[2019-03-30, 2019-02-28, 2019-03-30 10:20:30, "
+              + "2019-02-28 10:20:30]"));
+      checkSameAsCompiled(rexBuilder, executor, exps, reducedValues);
+    });
+  }
+
+  /** Tests that executables compiled from the same expressions share the
+   * compiled function. */
+  @Test public void testCompiledFunctionCache() throws Exception {
+    check((rexBuilder, executor) -> {
+      final RelDataType rowType =
+          rexBuilder.getTypeFactory().builder().build();
+      final List<RexNode> exps =
+          ImmutableList.of(
+              rexBuilder.makeCall(SqlStdOperatorTable.PLUS,
+                  rexBuilder.makeExactLiteral(BigDecimal.ONE),
+                  rexBuilder.makeExactLiteral(BigDecimal.TEN)));
+      final RexExecutable executable0 =
+          executor.getExecutable(rexBuilder, exps, rowType);
+      final RexExecutable executable1 =
+          executor.getExecutable(rexBuilder, exps, rowType);
+      assertThat(executable1, not(sameInstance(executable0)));
+      assertThat(executable1.getFunction(),
+          sameInstance(executable0.getFunction()));
+      assertThat(executable1.execute()[0], is((Object) 11));
+    });
+  }
+
+  /** Checks that reduced expressions are the same as the values of
+   * the expressions computed by generated code. */
+  private void checkSameAsCompiled(RexBuilder rexBuilder,
+      RexExecutorImpl executor, List<RexNode> exps,
+      List<RexNode> reducedValues) {
+    final RexExecutable executable =
+        executor.getExecutable(rexBuilder, exps,
+            rexBuilder.getTypeFactory().builder().build());
+    final Object[] values = executable.execute();
+    for (int i = 0; i < exps.size(); i++) {
+      final RexNode expected =
+          rexBuilder.makeLiteral(values[i], exps.get(i).getType(), true);
+      assertThat(reducedValues.get(i).toString(), is(expected.toString()));
+    }
+  }
+
   @Test public void testDeterministic1() throws Exception {
     check((rexBuilder, executor) -> {
       final RexNode plus =
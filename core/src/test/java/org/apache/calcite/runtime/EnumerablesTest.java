@@ -55,6 +55,12 @@ public class EnumerablesTest {
           new Dept(20, "Sales"),
           new Dept(15, "Marketing")));
 
+  private static final Enumerable<Emp> SORTED_EMPS =
+      EMPS.orderBy(e -> e.deptno);
+
+  private static final Enumerable<Dept> SORTED_DEPTS =
+      DEPTS.orderBy(d -> d.deptno);
+
   private static final Function2<Emp, Dept, String> EMP_DEPT_TO_STRING =
       (v0, v1) -> "{" + (v0 == null ? null : v0.name)
           + ", " + (v0 == null ? null : v0.deptno)
@@ -145,6 +151,98 @@ public class EnumerablesTest {
         equalTo("[]"));
   }
 
+  @Test public void testMergeLeftJoin() {
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, null, JoinType.LEFT),
+        equalTo("[{Fred, 10, null, null}, {Theodore, 20, 20, Sales}, "
+            + "{Sebastian, 20, 20, Sales}, {Joe, 30, null, null}]"));
+  }
+
+  @Test public void testMergeRightJoin() {
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, null, JoinType.RIGHT),
+        equalTo("[{null, null, 15, Marketing}, {Theodore, 20, 20, Sales}, "
+            + "{Sebastian, 20, 20, Sales}]"));
+  }
+
+  @Test public void testMergeFullJoin() {
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, null, JoinType.FULL),
+        equalTo("[{Fred, 10, null, null}, {null, null, 15, Marketing}, "
+            + "{Theodore, 20, 20, Sales}, {Sebastian, 20, 20, Sales}, "
+            + "{Joe, 30, null, null}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS.take(0), SORTED_DEPTS, null, JoinType.FULL),
+        equalTo("[{null, null, 15, Marketing}, {null, null, 20, Sales}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS.take(0), null, JoinType.FULL),
+        equalTo("[{Fred, 10, null, null}, {Theodore, 20, null, null}, "
+            + "{Sebastian, 20, null, null}, {Joe, 30, null, null}]"));
+  }
+
+  @Test public void testMergeSemiJoin() {
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, null, JoinType.SEMI),
+        equalTo("[{Theodore, 20, null, null}, {Sebastian, 20, null, null}]"));
+  }
+
+  @Test public void testMergeAntiJoin() {
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, null, JoinType.ANTI),
+        equalTo("[{Fred, 10, null, null}, {Joe, 30, null, null}]"));
+  }
+
+  /** Tests merge join with a predicate in addition to the equi-join
+   * condition; rows whose keys match but which fail the predicate are
+   * treated as unmatched. */
+  @Test public void testMergeJoinWithPredicate() {
+    final Predicate2<Emp, Dept> notS = (e, d) -> !e.name.startsWith("S");
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, notS, JoinType.INNER),
+        equalTo("[{Theodore, 20, 20, Sales}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, notS, JoinType.FULL),
+        equalTo("[{Fred, 10, null, null}, {null, null, 15, Marketing}, "
+            + "{Theodore, 20, 20, Sales}, {Sebastian, 20, null, null}, "
+            + "{Joe, 30, null, null}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, (e, d) -> false, JoinType.RIGHT),
+        equalTo("[{null, null, 15, Marketing}, {null, null, 20, Sales}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, notS, JoinType.SEMI),
+        equalTo("[{Theodore, 20, null, null}]"));
+    assertThat(
+        mergeJoin(SORTED_EMPS, SORTED_DEPTS, notS, JoinType.ANTI),
+        equalTo("[{Fred, 10, null, null}, {Sebastian, 20, null, null}, "
+            + "{Joe, 30, null, null}]"));
+  }
+
+  /** Tests that in a merge join, null keys match nothing, not even other
+   * null keys. */
+  @Test public void testMergeJoinNullKeys() {
+    final Enumerable<Integer> left = Linq4j.asEnumerable(Arrays.asList(1, 2, null));
+    final Enumerable<Integer> right = Linq4j.asEnumerable(Arrays.asList(null, 2));
+    final Function2<Integer, Integer, String> selector = (v0, v1) -> v0 + "-" + v1;
+    assertThat(
+        EnumerableDefaults.mergeJoin(left, right, Functions.identitySelector(),
+            Functions.identitySelector(), null, selector, JoinType.LEFT)
+            .toList().toString(),
+        equalTo("[1-null, 2-2, null-null]"));
+    assertThat(
+        EnumerableDefaults.mergeJoin(left, right, Functions.identitySelector(),
+            Functions.identitySelector(), null, selector, JoinType.FULL)
+            .toList().toString(),
+        equalTo("[null-null, 1-null, 2-2, null-null]"));
+  }
+
+  private static String mergeJoin(Enumerable<Emp> emps,
+      Enumerable<Dept> depts, Predicate2<Emp, Dept> predicate,
+      JoinType joinType) {
+    return EnumerableDefaults.mergeJoin(emps, depts, e -> e.deptno,
+        d -> d.deptno, predicate, EMP_DEPT_TO_STRING, joinType)
+        .toList().toString();
+  }
+
   private static <T extends Comparable<T>> Enumerable<T> intersect(
       List<T> list0, List<T> list1) {
     return EnumerableDefaults.mergeJoin(
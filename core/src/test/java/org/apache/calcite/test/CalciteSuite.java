@@ -18,6 +18,7 @@
 
 import org.apache.calcite.TestKtTest;
 import org.apache.calcite.adapter.clone.ArrayTableTest;
+import org.apache.calcite.adapter.enumerable.PersistentBindableCacheTest;
 import org.apache.calcite.adapter.enumerable.TypeFinderTest;
 import org.apache.calcite.jdbc.CalciteRemoteDriverTest;
 import org.apache.calcite.materialize.LatticeSuggesterTest;
@@ -32,6 +33,7 @@
 import org.apache.calcite.plan.volcano.VolcanoPlannerTest;
 import org.apache.calcite.plan.volcano.VolcanoPlannerTraitTest;
 import org.apache.calcite.prepare.LookupOperatorOverloadsTest;
+import org.apache.calcite.prepare.PlanCacheTest;
 import org.apache.calcite.profile.ProfilerTest;
 import org.apache.calcite.rel.RelCollationTest;
 import org.apache.calcite.rel.RelDistributionTest;
@@ -59,9 +61,17 @@
 import org.apache.calcite.sql.validate.LexCaseSensitiveTest;
 import org.apache.calcite.sql.validate.LexEscapeTest;
 import org.apache.calcite.sql.validate.SqlValidatorUtilTest;
+import org.apache.calcite.test.enumerable.EnumerableAggregateTest;
+import org.apache.calcite.test.enumerable.EnumerableAsyncCompilationTest;
+import org.apache.calcite.test.enumerable.EnumerableCalcTest;
 import org.apache.calcite.test.enumerable.EnumerableCorrelateTest;
+import org.apache.calcite.test.enumerable.EnumerableExchangeTest;
+import org.apache.calcite.test.enumerable.EnumerableLimitSortTest;
+import org.apache.calcite.test.enumerable.EnumerableMergeJoinTest;
 import org.apache.calcite.test.enumerable.EnumerableRepeatUnionHierarchyTest;
 import org.apache.calcite.test.enumerable.EnumerableRepeatUnionTest;
+import org.apache.calcite.test.enumerable.EnumerableSortTest;
+import org.apache.calcite.test.enumerable.EnumerableSortedAggregateTest;
 import org.apache.calcite.test.fuzzer.RexProgramFuzzyTest;
 import org.apache.calcite.tools.FrameworksTest;
 import org.apache.calcite.tools.PlannerTest;
@@ -163,6 +173,16 @@
     ChunkListTest.class,
     FrameworksTest.class,
     EnumerableCorrelateTest.class,
+    EnumerableAggregateTest.class,
+    EnumerableSortTest.class,
+    EnumerableSortedAggregateTest.class,
+    EnumerableLimitSortTest.class,
+    EnumerableMergeJoinTest.class,
+    EnumerableCalcTest.class,
+    EnumerableExchangeTest.class,
+    EnumerableAsyncCompilationTest.class,
+    PlanCacheTest.class,
+    PersistentBindableCacheTest.class,
     LookupOperatorOverloadsTest.class,
     LexCaseSensitiveTest.class,
     LexEscapeTest.class,
@@ -19,14 +19,24 @@
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.RelBuilder;
 
 import org.junit.After;
 import org.junit.Before;
@@ -36,6 +46,10 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -291,6 +305,124 @@ private static void assertRows(Interpreter interpreter,
     final Interpreter interpreter = new Interpreter(dataContext, convert);
     assertRows(interpreter, "[0]", "[10]", "[20]", "[30]");
   }
+
+  /** Tests equi-joins of each type, including null keys, which the
+   * interpreter executes using a hash table. */
+  @Test public void testInterpretHashJoin() throws Exception {
+    final String sql = "select t.y, u.z\n"
+        + "from (select nullif(x, 0) as x, y from (values (1, 'a'),\n"
+        + "    (2, 'b'), (2, 'c'), (0, 'n')) as t(x, y)) as t\n"
+        + "%s join (select nullif(x, 0) as x, z from (values (2, 'p'),\n"
+        + "    (2, 'q'), (3, 'r'), (0, 'm')) as u(x, z)) as u\n"
+        + "on t.x = u.x";
+    assertJoin(sql, "inner", "[b, p]", "[b, q]", "[c, p]", "[c, q]");
+    assertJoin(sql, "left", "[a, null]", "[b, p]", "[b, q]", "[c, p]",
+        "[c, q]", "[n, null]");
+    assertJoin(sql, "right", "[b, p]", "[b, q]", "[c, p]", "[c, q]",
+        "[null, m]", "[null, r]");
+    assertJoin(sql, "full", "[a, null]", "[b, p]", "[b, q]", "[c, p]",
+        "[c, q]", "[n, null]", "[null, m]", "[null, r]");
+  }
+
+  /** Tests joins whose condition has a non-equi part, or has no equi part
+   * and is evaluated for every pair of rows. */
+  @Test public void testInterpretNonEquiJoin() throws Exception {
+    final String sql = "select t.y, u.z\n"
+        + "from (values (1, 'a'), (2, 'b'), (3, 'c')) as t(x, y)\n"
+        + "%s join (values (1, 'p'), (2, 'q'), (2, 'r')) as u(x, z)\n";
+    assertJoin(sql + "on t.x = u.x and u.z > 'p'", "left", "[a, null]",
+        "[b, q]", "[b, r]", "[c, null]");
+    assertJoin(sql + "on t.x < u.x", "inner", "[a, q]", "[a, r]");
+    assertJoin(sql + "on t.x > u.x", "right", "[b, p]", "[c, p]", "[c, q]",
+        "[c, r]");
+  }
+
+  private void assertJoin(String sql, String joinType, String... rows)
+      throws Exception {
+    planner.close();
+    planner.reset();
+    final SqlNode parse = planner.parse(String.format(Locale.ROOT, sql, joinType));
+    final SqlNode validate = planner.validate(parse);
+    final RelNode convert = planner.rel(validate).rel;
+    final Interpreter interpreter = new Interpreter(dataContext, convert);
+    assertRowsUnordered(interpreter, rows);
+  }
+
+  /** Tests semi- and anti-joins, which are not generated from SQL, so are
+   * built using {@link RelBuilder}. */
+  @Test public void testInterpretSemiAntiJoin() throws Exception {
+    final RelBuilder builder =
+        RelBuilder.create(Frameworks.newConfigBuilder().build());
+    final Function<JoinRelType, RelNode> f = joinType -> builder
+        .values(new String[] {"x", "y"}, 1, "a", 2, "b", 2, "c", null, "n")
+        .values(new String[] {"x"}, 2, 2, 3, null)
+        .join(joinType,
+            builder.equals(builder.field(2, 0, "x"), builder.field(2, 1, "x")))
+        .build();
+    final DataContext dataContext = dataContext(builder);
+    assertRowsUnordered(new Interpreter(dataContext, f.apply(JoinRelType.SEMI)),
+        "[2, b]", "[2, c]");
+    assertRowsUnordered(new Interpreter(dataContext, f.apply(JoinRelType.ANTI)),
+        "[1, a]", "[null, n]");
+  }
+
+  /** Returns a data context for executing a plan created by a
+   * {@link RelBuilder}. */
+  private DataContext dataContext(RelBuilder builder) {
+    return new MyDataContext(planner) {
+      @Override public JavaTypeFactory getTypeFactory() {
+        return (JavaTypeFactory) builder.getTypeFactory();
+      }
+    };
+  }
+
+  /** Tests that rows stream through Filter, Project and a LIMIT without
+   * being buffered, so the interpreter stops reading a large table as soon
+   * as it has enough rows. */
+  @Test public void testInterpretLimitStopsEarly() {
+    final AtomicInteger rowCount = new AtomicInteger();
+    rootSchema.add("NUMBERS", new NumbersTable(rowCount));
+    final RelBuilder builder =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+    final RelNode rel = builder.values(new String[] {"I"}, 100)
+        .scan("NUMBERS")
+        .filter(
+            builder.call(SqlStdOperatorTable.GREATER_THAN, builder.field("I"),
+                builder.literal(10)))
+        .project(builder.field("I"))
+        .union(true)
+        .limit(2, 3)
+        .build();
+    assertRows(new Interpreter(dataContext(builder), rel),
+        "[12]", "[13]", "[14]");
+    assertThat(rowCount.get(), equalTo(15));
+  }
+
+  /** Table that contains the integers from 0 to one million, and counts how
+   * many rows have been read. */
+  private static class NumbersTable extends AbstractTable
+      implements ScannableTable {
+    private final AtomicInteger rowCount;
+
+    NumbersTable(AtomicInteger rowCount) {
+      this.rowCount = rowCount;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder().add("I", SqlTypeName.INTEGER).build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.asEnumerable(() ->
+          IntStream.range(0, 1_000_000)
+              .mapToObj(i -> {
+                rowCount.incrementAndGet();
+                return new Object[] {i};
+              })
+              .iterator());
+    }
+  }
 }
 
 // End InterpreterTest.java
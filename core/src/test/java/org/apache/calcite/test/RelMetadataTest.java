@@ -57,6 +57,7 @@
 import org.apache.calcite.rel.metadata.BuiltInMetadata;
 import org.apache.calcite.rel.metadata.CachingRelMetadataProvider;
 import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
+import org.apache.calcite.rel.metadata.CyclicMetadataException;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
 import org.apache.calcite.rel.metadata.Metadata;
@@ -70,6 +71,7 @@
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexInputRef;
@@ -77,6 +79,11 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexTableInputRef;
 import org.apache.calcite.rex.RexTableInputRef.RelTableRef;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlSpecialOperator;
@@ -91,6 +98,7 @@
 import org.apache.calcite.util.ImmutableIntList;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
@@ -2471,6 +2479,181 @@ private void checkNodeTypeCount(String sql, Map<Class<? extends RelNode>, Intege
         mq.getPulledUpPredicates(filter1).pulledUpPredicates.get(0).toString());
   }
 
+  /** Tests that {@link RelMetadataQuery#clearCache(RelNode)} removes the
+   * cached results of a relational expression and of the expressions whose
+   * results were derived from it, but keeps the others; and that the cache
+   * statistics count hits, misses and invalidations. */
+  @Test public void testClearCache() {
+    final RelNode project =
+        convertSql("select ename from emp where deptno = 10");
+    final RelNode filter = project.getInput(0);
+    final RelNode scan = filter.getInput(0);
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final double rowCount = mq.getRowCount(project);
+    final RelMetadataQuery.CacheStats stats =
+        mq.getCacheStats().get("RowCount.getRowCount");
+    assertThat(stats.getMisses(), is(3L));
+    assertThat(stats.getHits(), is(0L));
+    assertThat(mq.getRowCount(project), is(rowCount));
+    assertThat(stats.getHits(), is(1L));
+
+    // Clearing the filter removes its row count and the project's, which
+    // was derived from it, but keeps the scan's.
+    assertThat(mq.clearCache(filter), is(true));
+    assertThat(stats.getInvalidations(), is(2L));
+    assertThat(mq.getRowCount(project), is(rowCount));
+    assertThat(stats.getMisses(), is(5L));
+    assertThat(mq.getRowCount(scan), is(EMP_SIZE));
+    assertThat(stats.getMisses(), is(5L));
+
+    // Clearing the scan removes all three.
+    assertThat(mq.clearCache(scan), is(true));
+    assertThat(stats.getInvalidations(), is(5L));
+    assertThat(mq.clearCache(scan), is(false));
+    assertThat(mq.getCacheStats().get("RowCount.getRowCount").getHitRatio(),
+        within(0.375, 0.001));
+  }
+
+  /** Tests that selectivity, row count and distinct row count use the
+   * statistics of a table's columns (distinct count, null fraction, most
+   * common values and histogram), if the table has them. */
+  @Test public void testColumnStatistics() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", new AbstractTable() {
+      public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return typeFactory.builder()
+            .add("X", SqlTypeName.INTEGER).nullable(true)
+            .add("Y", SqlTypeName.VARCHAR, 10)
+            .build();
+      }
+
+      @Override public Statistic getStatistic() {
+        return Statistics.of(1000d, ImmutableList.of(), ImmutableList.of(),
+            ImmutableList.of(),
+            ImmutableList.of(
+                Statistics.column(100d, 0.1d,
+                    ImmutableMap.<Comparable, Double>of(7, 0.3d),
+                    new Histogram(Arrays.asList(0, 25, 50, 75, 100))),
+                Statistics.column(10d, 0d, null, null)));
+      }
+    });
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .defaultSchema(rootSchema)
+        .build();
+    final RelBuilder b = RelBuilder.create(config);
+    final RelNode scan = b.scan("T").build();
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    b.push(scan);
+
+    // 7 is a most common value
+    final RexNode eq7 = b.equals(b.field("X"), b.literal(7));
+    assertThat(mq.getSelectivity(scan, eq7), within(0.3d, EPSILON));
+    // other values share the remaining 0.6 of the rows
+    final RexNode eq8 = b.equals(b.literal(8), b.field("X"));
+    assertThat(mq.getSelectivity(scan, eq8), within(0.6d / 99d, EPSILON));
+    final RexNode ne8 = b.call(SqlStdOperatorTable.NOT_EQUALS,
+        b.field("X"), b.literal(8));
+    assertThat(mq.getSelectivity(scan, ne8),
+        within(0.9d - 0.6d / 99d, EPSILON));
+    // half of the non-null values are below 50
+    final RexNode lt50 = b.call(SqlStdOperatorTable.LESS_THAN,
+        b.field("X"), b.literal(50));
+    assertThat(mq.getSelectivity(scan, lt50), within(0.45d, EPSILON));
+    assertThat(
+        mq.getSelectivity(scan,
+            b.call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, b.literal(90),
+                b.field("X"))),
+        within(0.81d, EPSILON));
+    assertThat(mq.getSelectivity(scan, b.isNull(b.field("X"))),
+        within(0.1d, EPSILON));
+    assertThat(
+        mq.getSelectivity(scan, b.equals(b.field("Y"), b.literal("a"))),
+        within(0.1d, EPSILON));
+    // conjunctions without statistics are guessed
+    final RexNode like = b.call(SqlStdOperatorTable.LIKE, b.field("Y"),
+        b.literal("%a"));
+    assertThat(mq.getSelectivity(scan, b.and(eq7, like)),
+        within(0.3d * 0.25d, EPSILON));
+    assertThat(mq.getSelectivity(scan, like),
+        within(RelMdUtil.guessSelectivity(like), EPSILON));
+
+    final RelNode filter = b.filter(lt50).build();
+    assertThat(mq.getRowCount(filter), within(450d, EPSILON));
+
+    // (X, Y) has at most 101 * 10 distinct values, capped at the row count
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(0, 1), null),
+        within(1000d, EPSILON));
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(1), null),
+        within(10d, EPSILON));
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(1), lt50),
+        within(RelMdUtil.numDistinctVals(10d, 450d), EPSILON));
+  }
+
+  /** Tests that the results of metadata methods that have no arguments, such
+   * as row count, are cached without adding keys to
+   * {@link RelMetadataQuery#map}. */
+  @Test public void testCacheSlots() {
+    final RelNode scan =
+        convertSql("select ename from emp").getInput(0);
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    assertThat(mq.getRowCount(scan), is(EMP_SIZE));
+    assertThat(mq.getRowCount(scan), is(EMP_SIZE));
+    assertThat(mq.getMaxRowCount(scan), is(Double.POSITIVE_INFINITY));
+    assertThat(mq.getMaxRowCount(scan), is(Double.POSITIVE_INFINITY));
+    assertThat(mq.map.isEmpty(), is(true));
+    final Map<String, RelMetadataQuery.CacheStats> stats =
+        mq.getCacheStats();
+    assertThat(stats.get("RowCount.getRowCount").toString(),
+        is("hits=1, misses=1, invalidations=0"));
+    assertThat(stats.get("MaxRowCount.getMaxRowCount").toString(),
+        is("hits=1, misses=1, invalidations=0"));
+
+    // Both results are removed, and are computed again.
+    assertThat(mq.clearCache(scan), is(true));
+    assertThat(mq.getRowCount(scan), is(EMP_SIZE));
+    assertThat(stats.get("RowCount.getRowCount").toString(),
+        is("hits=1, misses=2, invalidations=1"));
+    assertThat(stats.get("MaxRowCount.getMaxRowCount").getInvalidations(),
+        is(1L));
+  }
+
+  /** Tests that when metadata results form a cycle, the results computed
+   * using a fall-back value are discarded, and that the result that started
+   * the cycle is still cleared when an expression it depends on is
+   * cleared. */
+  @Test public void testClearCacheCycle() {
+    final List<String> buf = new ArrayList<>();
+    ColTypeImpl.THREAD_LIST.set(buf);
+    final RelNode project = tester
+        .withClusterFactory(cluster -> {
+          cluster.setMetadataProvider(
+              ChainedRelMetadataProvider.of(
+                  ImmutableList.of(CyclicColTypeImpl.SOURCE,
+                      cluster.getMetadataProvider())));
+          return cluster;
+        })
+        .convertSqlToRel("select ename from emp where deptno = 10").rel;
+    assertThat(project, instanceOf(LogicalProject.class));
+    final RelNode filter = project.getInput(0);
+    CyclicColTypeImpl.THREAD_PARENT.set(project);
+    final MyRelMetadataQuery mq = new MyRelMetadataQuery();
+
+    // The filter's result, computed while the project's was active, used a
+    // fall-back value, and is discarded; the project's is kept.
+    assertThat(mq.colType(project, 0), is("p(f)"));
+    assertThat(mq.colType(project, 0), is("p(f)"));
+    assertThat(buf.toString(), is("[project, filter]"));
+    assertThat(mq.colType(filter, 0), is("f(p(f))"));
+    assertThat(buf.toString(), is("[project, filter, filter]"));
+
+    // The project's result was derived from the filter's, so clearing the
+    // filter clears the project.
+    assertThat(mq.clearCache(filter), is(true));
+    assertThat(mq.colType(project, 0), is("p(f)"));
+    assertThat(buf.toString(),
+        is("[project, filter, filter, project, filter]"));
+  }
+
   /**
    * Matcher that succeeds for any collection that, when converted to strings
    * and sorted on those strings, matches the given reference string.
@@ -2557,6 +2740,42 @@ public static class BrokenColTypeImpl extends PartialColTypeImpl {
             new BrokenColTypeImpl());
   }
 
+  /** Implementation of {@link ColType} in which the result for a
+   * {@link Filter} depends on the result for the {@link Project} above it,
+   * and so forms a cycle. */
+  public static class CyclicColTypeImpl extends PartialColTypeImpl {
+    public static final RelMetadataProvider SOURCE =
+        ReflectiveRelMetadataProvider.reflectiveSource(ColType.METHOD,
+            new CyclicColTypeImpl());
+
+    /** The relational expression whose input is the filter. */
+    static final ThreadLocal<RelNode> THREAD_PARENT = new ThreadLocal<>();
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getColType(Project rel, RelMetadataQuery mq, int column) {
+      THREAD_LIST.get().add("project");
+      return "p(" + ((MyRelMetadataQuery) mq).colType(rel.getInput(), column)
+          + ")";
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getColType(Filter rel, RelMetadataQuery mq, int column) {
+      THREAD_LIST.get().add("filter");
+      try {
+        return "f("
+            + ((MyRelMetadataQuery) mq).colType(THREAD_PARENT.get(), column)
+            + ")";
+      } catch (CyclicMetadataException e) {
+        return "f";
+      }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getColType(RelNode rel, RelMetadataQuery mq, int column) {
+      return "r";
+    }
+  }
+
   /** Extension to {@link RelMetadataQuery} to support {@link ColType}.
    *
    * <p>Illustrates how you would package up a user-defined metadata type. */
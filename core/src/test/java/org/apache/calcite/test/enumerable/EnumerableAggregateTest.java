@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}.
+ */
+public class EnumerableAggregateTest {
+
+  /** Tests that an aggregate gives the same results if it has to spill rows
+   * to disk because its groups exceed
+   * {@link CalciteConnectionProperty#OPERATOR_MEMORY_BUDGET}. */
+  @Test public void spillingAggregate() {
+    for (long memoryBudget : new long[] {-1L, 0L}) {
+      tester(memoryBudget)
+          .query(
+              "select e.deptno, e.name, count(*) as c, sum(e.salary) as s "
+                  + "from emps e group by e.deptno, e.name")
+          .returnsUnordered("deptno=10; name=Bill; c=1; s=10000.0",
+              "deptno=10; name=Sebastian; c=1; s=7000.0",
+              "deptno=10; name=Theodore; c=1; s=11500.0",
+              "deptno=20; name=Eric; c=1; s=8000.0");
+      tester(memoryBudget)
+          .query(
+              "select e.deptno, count(*) as c, min(e.name) as m "
+                  + "from emps e group by e.deptno")
+          .returnsUnordered("deptno=10; c=3; m=Bill",
+              "deptno=20; c=1; m=Eric");
+    }
+  }
+
+  /** Tests that if the input is sorted on the group keys, the aggregate
+   * streams groups rather than building a hash table. */
+  @Test public void sortedInputAggregate() {
+    tester(-1)
+        .query(
+            "select deptno, count(*) as c, sum(salary) as s from (\n"
+                + "  select * from emps e order by e.deptno limit 10)\n"
+                + "group by deptno")
+        .planContains("sortedGroupBy(")
+        .returnsUnordered("deptno=10; c=3; s=28500.0",
+            "deptno=20; c=1; s=8000.0");
+  }
+
+  /** Tests that with {@link CalciteConnectionProperty#PRIMITIVE_ROWS}, the
+   * aggregate and the Calc below it exchange generated objects rather than
+   * arrays, and a composite key is a generated object rather than a list. */
+  @Test public void primitiveRowsAggregate() {
+    final String sql = "select deptno, empid + 1 as e, count(*) as c,\n"
+        + "  sum(salary) as s\n"
+        + "from emps where salary > 7500\n"
+        + "group by deptno, empid + 1";
+    tester(-1)
+        .query(sql)
+        .planContains("org.apache.calcite.runtime.FlatLists.of(")
+        .planContains("return new Object[] {\n"
+            + "                current.deptno,\n"
+            + "                current.empid + 1,")
+        .returnsUnordered("deptno=10; e=101; c=1; s=10000.0",
+            "deptno=20; e=201; c=1; s=8000.0",
+            "deptno=10; e=111; c=1; s=11500.0");
+    tester(-1)
+        .with(CalciteConnectionProperty.PRIMITIVE_ROWS, true)
+        .query(sql)
+        .planContains("return new Record3_0(\n"
+            + "                current.deptno,\n"
+            + "                current.empid + 1,")
+        .planContains("public Record2_1 apply(Record3_0 a0) {\n"
+            + "        return new Record2_1(")
+        .returnsUnordered("deptno=10; e=101; c=1; s=10000.0",
+            "deptno=20; e=201; c=1; s=8000.0",
+            "deptno=10; e=111; c=1; s=11500.0");
+  }
+
+  private CalciteAssert.AssertThat tester(long memoryBudget) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.OPERATOR_MEMORY_BUDGET, memoryBudget)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableAggregateTest.java
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link CalciteConnectionProperty#ASYNC_COMPILATION}.
+ */
+public class EnumerableAsyncCompilationTest {
+
+  /** Tests that a query gives the same results whether it is interpreted
+   * (on the first execution, because the generated code contains a literal
+   * that no other test uses, so is not in the cache of compiled code) or
+   * compiled. */
+  @Test public void asyncCompilation() {
+    final String sql = "select e.name, e.salary + 12345 as s from emps e\n"
+        + "where e.deptno = 10 and e.empid > 100";
+    final AtomicInteger interpretCount = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      tester()
+          .query(sql)
+          .withHook(Hook.ASYNC_INTERPRET,
+              (Consumer<RelNode>) rel -> interpretCount.incrementAndGet())
+          .returnsUnordered("name=Sebastian; s=19345.0",
+              "name=Theodore; s=23845.0");
+    }
+    assertTrue(interpretCount.get() > 0);
+  }
+
+  /** Tests a query with a single column, whose compiled code returns scalars
+   * rather than arrays. */
+  @Test public void asyncCompilationScalar() {
+    final String sql = "select e.empid + 54321 as e from emps e\n"
+        + "where e.deptno = 20";
+    final AtomicInteger interpretCount = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      tester()
+          .query(sql)
+          .withHook(Hook.ASYNC_INTERPRET,
+              (Consumer<RelNode>) rel -> interpretCount.incrementAndGet())
+          .returns("e=54521\n");
+    }
+    assertTrue(interpretCount.get() > 0);
+  }
+
+  /** Tests a query with an operator that the interpreter does not support;
+   * executions wait for the compiler. */
+  @Test public void asyncCompilationNotInterpretable() {
+    final String sql = "select e.empid * 67890 as e, t.x from emps e,\n"
+        + "  unnest(array[1, 2]) as t(x)\n"
+        + "where e.deptno = 20";
+    final AtomicInteger interpretCount = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      tester()
+          .query(sql)
+          .withHook(Hook.ASYNC_INTERPRET,
+              (Consumer<RelNode>) rel -> interpretCount.incrementAndGet())
+          .returnsUnordered("e=13578000; x=1", "e=13578000; x=2");
+    }
+    assertThat(interpretCount.get(), is(0));
+  }
+
+  private CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.ASYNC_COMPILATION, true)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableAsyncCompilationTest.java
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableCalc}.
+ */
+public class EnumerableCalcTest {
+  /** Tests a Calc on top of an Aggregate with
+   * {@link CalciteConnectionProperty#PRIMITIVE_ROWS}; the Aggregate returns
+   * generated objects, including a nullable column, rather than arrays. */
+  @Test public void primitiveRows() {
+    for (boolean primitiveRows : new boolean[] {false, true}) {
+      tester()
+          .with(CalciteConnectionProperty.PRIMITIVE_ROWS, primitiveRows)
+          .query("select deptno, c + 1 as c1, m from (\n"
+              + "  select deptno, count(*) as c, max(commission) as m\n"
+              + "  from emps group by deptno)\n"
+              + "where c > 0")
+          .returnsUnordered("deptno=10; c1=4; m=1000",
+              "deptno=20; c1=2; m=500");
+    }
+  }
+
+  private CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableCalcTest.java
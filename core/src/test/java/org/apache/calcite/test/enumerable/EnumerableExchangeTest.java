@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableExchange}, and for
+ * parallel execution of
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}.
+ */
+public class EnumerableExchangeTest {
+
+  @Test public void exchange() {
+    tester(1)
+        .query("?")
+        .withRel(
+            builder -> builder
+                .scan("s", "emps")
+                .exchange(RelDistributions.hash(ImmutableList.of(1)))
+                .filter(
+                    builder.equals(builder.field("deptno"),
+                        builder.literal(10)))
+                .project(builder.field("name"))
+                .build())
+        .planContains("EnumerableDefaults.exchange(")
+        .returnsUnordered("name=Bill",
+            "name=Sebastian",
+            "name=Theodore");
+  }
+
+  /** Tests that an exchange preserves the order of its input. */
+  @Test public void exchangeSorted() {
+    tester(1)
+        .query("?")
+        .withRel(
+            builder -> builder
+                .scan("s", "emps")
+                .sort(builder.field("salary"))
+                .exchange(RelDistributions.SINGLETON)
+                .project(builder.field("name"))
+                .build())
+        .returnsOrdered("name=Sebastian",
+            "name=Eric",
+            "name=Bill",
+            "name=Theodore");
+  }
+
+  @Test public void parallelAggregate() {
+    for (int parallelism : new int[] {1, 2, 4}) {
+      tester(parallelism)
+          .query("select deptno, count(*) as c, sum(salary) as s\n"
+              + "from emps group by deptno")
+          .planContains(parallelism > 1
+              ? "EnumerableDefaults.parallelGroupBy("
+              : ".groupBy(")
+          .returnsUnordered("deptno=10; c=3; s=28500.0",
+              "deptno=20; c=1; s=8000.0");
+    }
+  }
+
+  @Test public void parallelJoin() {
+    for (int parallelism : new int[] {1, 2, 4}) {
+      tester(parallelism)
+          .query("select e.name, d.name as dname\n"
+              + "from emps as e left join depts as d on e.deptno = d.deptno")
+          .planContains(parallelism > 1
+              ? "EnumerableDefaults.parallelHashJoin("
+              : ".hashJoin(")
+          .returnsUnordered("name=Bill; dname=Sales",
+              "name=Eric; dname=null",
+              "name=Sebastian; dname=Sales",
+              "name=Theodore; dname=Sales");
+    }
+  }
+
+  /** Tests that if operators may use several threads, the planner runs the
+   * inputs of aggregates and joins on separate threads. */
+  @Test public void plannerInsertsExchange() {
+    final String sql = "select d.name, count(*) as c\n"
+        + "from emps as e join depts as d on e.deptno = d.deptno\n"
+        + "group by d.name";
+    tester(1)
+        .query(sql)
+        .explainContains(""
+            + "EnumerableAggregate(group=[{1}], c=[COUNT()])\n"
+            + "  EnumerableHashJoin(condition=[=($0, $2)], joinType=[inner])\n"
+            + "    EnumerableCalc(expr#0..3=[{inputs}], proj#0..1=[{exprs}])\n"
+            + "      EnumerableTableScan(table=[[s, depts]])\n"
+            + "    EnumerableCalc(expr#0..4=[{inputs}], deptno=[$t1])\n"
+            + "      EnumerableTableScan(table=[[s, emps]])\n")
+        .returnsUnordered("name=Sales; c=3");
+    tester(2)
+        .query(sql)
+        .explainContains(""
+            + "EnumerableAggregate(group=[{1}], c=[COUNT()])\n"
+            + "  EnumerableExchange(distribution=[hash[1]])\n"
+            + "    EnumerableHashJoin(condition=[=($0, $2)], joinType=[inner])\n"
+            + "      EnumerableExchange(distribution=[hash[0]])\n"
+            + "        EnumerableCalc(expr#0..3=[{inputs}], proj#0..1=[{exprs}])\n"
+            + "          EnumerableTableScan(table=[[s, depts]])\n"
+            + "      EnumerableExchange(distribution=[hash[0]])\n"
+            + "        EnumerableCalc(expr#0..4=[{inputs}], deptno=[$t1])\n"
+            + "          EnumerableTableScan(table=[[s, emps]])\n")
+        .returnsUnordered("name=Sales; c=3");
+  }
+
+  private CalciteAssert.AssertThat tester(int parallelism) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.PARALLELISM, parallelism)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableExchangeTest.java
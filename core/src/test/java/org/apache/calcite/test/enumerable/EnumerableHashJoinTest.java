@@ -25,6 +25,8 @@
 
 import org.junit.Test;
 
+import java.util.Locale;
+
 /**
  * Unit test for
  * {@link org.apache.calcite.adapter.enumerable.EnumerableHashJoin}.
@@ -148,6 +150,35 @@ public class EnumerableHashJoinTest {
   }
 
 
+  /** Tests that a hash join gives the same results if it has to spill its
+   * inputs to disk because they exceed
+   * {@link CalciteConnectionProperty#OPERATOR_MEMORY_BUDGET}. */
+  @Test public void spillingOuterJoins() {
+    final String sql = "select e.empid, e.name, d.name as dept from emps e "
+        + "%s join depts d on e.deptno=d.deptno";
+    tester(false, new JdbcTest.HrSchema())
+        .with(CalciteConnectionProperty.OPERATOR_MEMORY_BUDGET, 0)
+        .query(String.format(Locale.ROOT, sql, "inner"))
+        .explainContains("EnumerableHashJoin(condition=[=($1, $3)], "
+            + "joinType=[inner])")
+        .returnsUnordered(
+            "empid=100; name=Bill; dept=Sales",
+            "empid=110; name=Theodore; dept=Sales",
+            "empid=150; name=Sebastian; dept=Sales");
+    tester(false, new JdbcTest.HrSchema())
+        .with(CalciteConnectionProperty.OPERATOR_MEMORY_BUDGET, 0)
+        .query(String.format(Locale.ROOT, sql, "full"))
+        .explainContains("EnumerableHashJoin(condition=[=($1, $3)], "
+            + "joinType=[full])")
+        .returnsUnordered(
+            "empid=100; name=Bill; dept=Sales",
+            "empid=110; name=Theodore; dept=Sales",
+            "empid=150; name=Sebastian; dept=Sales",
+            "empid=200; name=Eric; dept=null",
+            "empid=null; name=null; dept=Marketing",
+            "empid=null; name=null; dept=HR");
+  }
+
   @Test public void semiJoin() {
     tester(false, new JdbcTest.HrSchema())
         .query(
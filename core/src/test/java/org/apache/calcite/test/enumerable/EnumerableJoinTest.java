@@ -19,12 +19,23 @@
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.MulticastRelOptListener;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.test.CalciteAssert;
 import org.apache.calcite.test.JdbcTest;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Unit tests for the different Enumerable Join implementations.
  */
@@ -158,6 +169,51 @@ public class EnumerableJoinTest {
         "empid=200");
   }
 
+  /** Tests that a query with joins gives the same results if the planner
+   * optimizes top-down, with {@link CalciteConnectionProperty#PLANNER_TOP_DOWN},
+   * and that it fires fewer rule matches to get there. */
+  @Test public void joinTopDown() {
+    final List<Integer> ruleMatchCounts = new ArrayList<>();
+    for (boolean topDown : new boolean[] {false, true}) {
+      tester(false, new JdbcTest.HrSchema())
+          .with(CalciteConnectionProperty.PLANNER_TOP_DOWN, topDown)
+          .query("select d.name, count(*) as c\n"
+              + "from emps e\n"
+              + "join depts d on e.deptno = d.deptno\n"
+              + "join emps e2 on e.empid = e2.empid\n"
+              + "where e2.salary > 7500\n"
+              + "group by d.name")
+          .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+              planner.addListener(new MulticastRelOptListener() {
+                @Override public void planningCompleted(
+                    PlanningCompletedEvent event) {
+                  ruleMatchCounts.add(event.getRuleMatchCount());
+                }
+              }))
+          .returnsUnordered("name=Sales; c=2");
+    }
+    assertThat(ruleMatchCounts.size(), is(2));
+    assertTrue(ruleMatchCounts.get(1) < ruleMatchCounts.get(0));
+  }
+
+  /** Tests that a query with joins gives the same results if the planner
+   * matches rules concurrently, with
+   * {@link CalciteConnectionProperty#PLANNER_RULE_MATCH_PARALLELISM}. */
+  @Test public void joinParallelRuleMatching() {
+    for (int parallelism : new int[] {1, 4}) {
+      tester(false, new JdbcTest.HrSchema())
+          .with(CalciteConnectionProperty.PLANNER_RULE_MATCH_PARALLELISM,
+              parallelism)
+          .query("select d.name, e.name as ename, e2.empid\n"
+              + "from emps e\n"
+              + "join depts d on e.deptno = d.deptno\n"
+              + "join emps e2 on e.empid = e2.empid\n"
+              + "where e2.salary > 7500")
+          .returnsUnordered("name=Sales; ename=Bill; empid=100",
+              "name=Sales; ename=Theodore; empid=110");
+    }
+  }
+
   private CalciteAssert.AssertThat tester(boolean forceDecorrelate,
       Object schema) {
     return CalciteAssert.that()
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableLimitSort}.
+ */
+public class EnumerableLimitSortTest {
+
+  @Test public void limitSort() {
+    tester()
+        .query(
+            "select e.empid, e.name from emps e "
+                + "order by e.salary desc limit 2")
+        .explainContains("EnumerableLimitSort(sort0=[$3], dir0=[DESC], "
+            + "fetch=[2])")
+        .returns("empid=110; name=Theodore\n"
+            + "empid=100; name=Bill\n");
+  }
+
+  @Test public void limitSortWithOffset() {
+    tester()
+        .query(
+            "select e.empid, e.name from emps e "
+                + "order by e.deptno, e.name offset 1 rows fetch next 2 rows only")
+        .explainContains("EnumerableLimitSort(sort0=[$1], sort1=[$2], "
+            + "dir0=[ASC], dir1=[ASC], offset=[1], fetch=[2])")
+        .returns("empid=150; name=Sebastian\n"
+            + "empid=110; name=Theodore\n");
+  }
+
+  /** Offset without fetch cannot use a bounded heap, so the planner uses
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableLimit} on top of
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableSort}. */
+  @Test public void offsetOnly() {
+    tester()
+        .query(
+            "select e.empid from emps e order by e.empid offset 2 rows")
+        .explainContains("EnumerableLimit(offset=[2])\n"
+            + "    EnumerableSort(sort0=[$0], dir0=[ASC])")
+        .returns("empid=150\n"
+            + "empid=200\n");
+  }
+
+  private CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableLimitSortTest.java
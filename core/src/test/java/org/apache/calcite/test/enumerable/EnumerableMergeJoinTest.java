@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+import java.util.function.Consumer;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableMergeJoin}.
+ */
+public class EnumerableMergeJoinTest {
+  private static final String SORTED_EMPS =
+      "(select * from emps order by deptno limit 10)";
+  private static final String SORTED_DEPTS =
+      "(select * from depts order by deptno limit 10)";
+
+  @Test public void leftJoin() {
+    query("select e.name, d.name as dname from " + SORTED_EMPS + " e\n"
+            + "left join " + SORTED_DEPTS + " d on e.deptno = d.deptno")
+        .explainContains("EnumerableMergeJoin(condition=[=($0, $2)], "
+            + "joinType=[left])")
+        .returnsUnordered("name=Bill; dname=Sales",
+            "name=Eric; dname=null",
+            "name=Sebastian; dname=Sales",
+            "name=Theodore; dname=Sales");
+  }
+
+  @Test public void rightJoin() {
+    query("select e.name, d.name as dname from " + SORTED_EMPS + " e\n"
+            + "right join " + SORTED_DEPTS + " d on e.deptno = d.deptno")
+        .explainContains("EnumerableMergeJoin(condition=[=($0, $2)], "
+            + "joinType=[right])")
+        .returnsUnordered("name=Bill; dname=Sales",
+            "name=Sebastian; dname=Sales",
+            "name=Theodore; dname=Sales",
+            "name=null; dname=HR",
+            "name=null; dname=Marketing");
+  }
+
+  @Test public void fullJoin() {
+    query("select e.name, d.name as dname from " + SORTED_EMPS + " e\n"
+            + "full join " + SORTED_DEPTS + " d on e.deptno = d.deptno")
+        .explainContains("EnumerableMergeJoin(condition=[=($0, $2)], "
+            + "joinType=[full])")
+        .returnsUnordered("name=Bill; dname=Sales",
+            "name=Eric; dname=null",
+            "name=Sebastian; dname=Sales",
+            "name=Theodore; dname=Sales",
+            "name=null; dname=HR",
+            "name=null; dname=Marketing");
+  }
+
+  /** The sub-query becomes a sorted aggregate, whose output is sorted on
+   * the join key, and can therefore be the input to a merge join. */
+  @Test public void joinSortedAggregate() {
+    query("select e.name from " + SORTED_EMPS + " e\n"
+            + "where e.deptno in (select d.deptno from " + SORTED_DEPTS + " d)")
+        .explainContains("EnumerableMergeJoin(condition=[=($1, $0)], "
+            + "joinType=[inner])\n"
+            + "    EnumerableSortedAggregate(group=[{0}])")
+        .returnsUnordered("name=Bill",
+            "name=Sebastian",
+            "name=Theodore");
+  }
+
+  /** Tests an outer join whose condition has a part that is not an equi-join;
+   * it is evaluated by the merge join, not by a filter after it. */
+  @Test public void leftJoinWithNonEquiCondition() {
+    query("select e.name, d.name as dname from " + SORTED_EMPS + " e\n"
+            + "left join " + SORTED_DEPTS + " d\n"
+            + "on e.deptno = d.deptno and e.salary > 10000")
+        .explainContains("EnumerableMergeJoin(condition=[AND(=($0, $3), "
+            + ">($2, 10000))], joinType=[left])")
+        .returnsUnordered("name=Bill; dname=null",
+            "name=Eric; dname=null",
+            "name=Sebastian; dname=null",
+            "name=Theodore; dname=Sales");
+  }
+
+  /** Removes the hash join rule, so that the planner has to choose a merge
+   * join (or a nested-loop join, which it deems more expensive). */
+  private CalciteAssert.AssertQuery query(String sql) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()))
+        .query(sql)
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_JOIN_RULE));
+  }
+}
+
+// End EnumerableMergeJoinTest.java
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort}.
+ */
+public class EnumerableSortTest {
+
+  @Test public void sort() {
+    tester(-1)
+        .query(
+            "select e.deptno, e.empid, e.name from emps e "
+                + "order by e.deptno desc, e.name")
+        .explainContains("EnumerableSort(sort0=[$0], sort1=[$2], "
+            + "dir0=[DESC], dir1=[ASC])")
+        .returns("deptno=20; empid=200; name=Eric\n"
+            + "deptno=10; empid=100; name=Bill\n"
+            + "deptno=10; empid=150; name=Sebastian\n"
+            + "deptno=10; empid=110; name=Theodore\n");
+  }
+
+  /** Tests that a sort gives the same results if it has to spill runs to
+   * disk because its input exceeds
+   * {@link CalciteConnectionProperty#OPERATOR_MEMORY_BUDGET}. */
+  @Test public void spillingSort() {
+    tester(0)
+        .query(
+            "select e.deptno, e.empid, e.name from emps e "
+                + "order by e.deptno desc, e.name")
+        .returns("deptno=20; empid=200; name=Eric\n"
+            + "deptno=10; empid=100; name=Bill\n"
+            + "deptno=10; empid=150; name=Sebastian\n"
+            + "deptno=10; empid=110; name=Theodore\n");
+    tester(0)
+        .query(
+            "select e.commission, e.empid from emps e "
+                + "order by e.commission nulls first, e.empid desc")
+        .returns("commission=null; empid=150\n"
+            + "commission=250; empid=110\n"
+            + "commission=500; empid=200\n"
+            + "commission=1000; empid=100\n");
+  }
+
+  private CalciteAssert.AssertThat tester(long memoryBudget) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.OPERATOR_MEMORY_BUDGET, memoryBudget)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableSortTest.java
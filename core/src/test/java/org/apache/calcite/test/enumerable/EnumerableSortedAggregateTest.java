@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.Test;
+
+import java.util.function.Consumer;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSortedAggregate}.
+ */
+public class EnumerableSortedAggregateTest {
+
+  /** If the input is already sorted on the group keys, the planner chooses a
+   * sorted aggregate, and does not need to sort again. */
+  @Test public void sortedInput() {
+    tester()
+        .query(
+            "select deptno, count(*) as c, sum(salary) as s from (\n"
+                + "  select * from emps e order by e.deptno limit 10)\n"
+                + "group by deptno")
+        .explainContains("EnumerableSortedAggregate(group=[{1}], c=[COUNT()], "
+            + "s=[$SUM0($3)])\n"
+            + "  EnumerableLimitSort(sort0=[$1], dir0=[ASC], fetch=[10])")
+        .returns("deptno=10; c=3; s=28500.0\n"
+            + "deptno=20; c=1; s=8000.0\n");
+  }
+
+  /** If the hash aggregate is not available, the planner sorts the input of
+   * the sorted aggregate; its output is sorted on the group keys. */
+  @Test public void unsortedInput() {
+    tester()
+        .query(
+            "select e.deptno, e.name, count(*) as c from emps e "
+                + "group by e.name, e.deptno")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_AGGREGATE_RULE))
+        .explainContains("EnumerableSortedAggregate(group=[{1, 2}], c=[COUNT()])\n"
+            + "  EnumerableSort(sort0=[$1], sort1=[$2], dir0=[ASC], dir1=[ASC])")
+        .returns("deptno=10; name=Bill; c=1\n"
+            + "deptno=10; name=Sebastian; c=1\n"
+            + "deptno=10; name=Theodore; c=1\n"
+            + "deptno=20; name=Eric; c=1\n");
+  }
+
+  /** Tests a sorted aggregate with no aggregate functions whose group keys
+   * are all of its input fields, i.e. a DISTINCT. It must remove adjacent
+   * duplicates rather than collect rows into a hash set, because the planner
+   * relies on its output being sorted and removes the ORDER BY. */
+  @Test public void sortedDistinct() {
+    tester()
+        .query(
+            "select distinct a, b from (values (2, 'zz'), (1, 'b'), (2, 'a'),\n"
+                + "  (1, 'b'), (3, 'y'), (1, 'ab'), (2, 'a'), (3, 'x')) as t(a, b)\n"
+                + "order by a, b")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_AGGREGATE_RULE))
+        .explainContains("EnumerableSortedAggregate(group=[{0, 1}])\n"
+            + "  EnumerableSort(sort0=[$0], sort1=[$1], dir0=[ASC], dir1=[ASC])")
+        .planContains("sortedGroupBy(")
+        .returns("a=1; b=ab\n"
+            + "a=1; b=b \n"
+            + "a=2; b=a \n"
+            + "a=2; b=zz\n"
+            + "a=3; b=x \n"
+            + "a=3; b=y \n");
+  }
+
+  private CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableSortedAggregateTest.java
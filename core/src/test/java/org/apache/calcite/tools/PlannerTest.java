@@ -47,6 +47,7 @@
 import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.FilterMergeRule;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectToWindowRule;
 import org.apache.calcite.rel.rules.PruneEmptyRules;
@@ -97,6 +98,7 @@
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
@@ -1158,6 +1160,148 @@ private void checkBushy(String sql, String expected) throws Exception {
     assertThat(toString(transform), containsString(expected));
   }
 
+  /** Plans a 5-table join query on the FoodMart schema using
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}. */
+  @Test public void testDp5() throws Exception {
+    final String sql = "select *\n"
+        + "from sales_fact_1997 as s\n"
+        + "join customer as c\n"
+        + "  on s.customer_id = c.customer_id\n"
+        + "join product as p\n"
+        + "  on s.product_id = p.product_id\n"
+        + "join product_class as pc\n"
+        + "  on p.product_class_id = pc.product_class_id\n"
+        + "join store as st\n"
+        + "  on s.store_id = st.store_id\n"
+        + "where c.city = 'San Francisco'\n";
+    final String expected = ""
+        + "    EnumerableHashJoin(condition=[=($6, $73)], joinType=[inner])\n"
+        + "      EnumerableHashJoin(condition=[=($0, $5)], joinType=[inner])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, product_class]])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, product]])\n"
+        + "      EnumerableHashJoin(condition=[=($0, $55)], joinType=[inner])\n"
+        + "        EnumerableFilter(condition=[=($9, ";
+    final String expected2 = ""
+        + "          EnumerableTableScan(table=[[foodmart2, customer]])\n"
+        + "        EnumerableHashJoin(condition=[=($0, $28)], joinType=[inner])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, store]])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n";
+    checkDp(sql, expected, expected2);
+  }
+
+  /** Tests that {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}
+   * uses the greedy algorithm if a table does not join to anything. */
+  @Test public void testDpCrossJoin() throws Exception {
+    final String sql = "select * from sales_fact_1997 as s\n"
+        + "join customer as c\n"
+        + "  on s.customer_id = c.customer_id\n"
+        + "cross join department";
+    final String expected = ""
+        + "    EnumerableHashJoin(condition=[true], joinType=[inner])\n"
+        + "      EnumerableTableScan(table=[[foodmart2, department]])\n"
+        + "      EnumerableHashJoin(condition=[=($0, $31)], joinType=[inner])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, customer]])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])";
+    checkDp(sql, expected);
+  }
+
+  /** Tests that {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}
+   * plans a chain of 20 joins, and uses the greedy algorithm for a chain of
+   * 40. */
+  @Test public void testDpJoinNWay() throws Exception {
+    for (int n : new int[] {20, 40}) {
+      final StringBuilder buf = new StringBuilder();
+      buf.append("select *");
+      for (int i = 0; i < n; i++) {
+        buf.append(i == 0 ? "\nfrom " : ",\n ")
+            .append("depts as d").append(i);
+      }
+      for (int i = 1; i < n; i++) {
+        buf.append(i == 1 ? "\nwhere" : "\nand").append(" d")
+            .append(i).append(".deptno = d")
+            .append(i - 1).append(".deptno");
+      }
+      final FrameworkConfig config = Frameworks.newConfigBuilder()
+          .parserConfig(SqlParser.configBuilder().setLex(Lex.JAVA).build())
+          .defaultSchema(
+              CalciteAssert.addSchema(Frameworks.createRootSchema(true),
+                  CalciteAssert.SchemaSpec.HR))
+          .programs(Programs.dpJoinOrder(Programs.RULE_SET, 2, 20))
+          .build();
+      Planner planner = Frameworks.getPlanner(config);
+      SqlNode parse = planner.parse(buf.toString());
+      SqlNode validate = planner.validate(parse);
+      RelNode convert = planner.rel(validate).project();
+      RelTraitSet traitSet = convert.getTraitSet()
+          .replace(EnumerableConvention.INSTANCE);
+      RelNode transform = planner.transform(0, traitSet, convert);
+      assertThat(toString(transform),
+          containsString("EnumerableHashJoin(condition=[=("));
+      assertThat(toString(transform),
+          not(containsString("condition=[true]")));
+    }
+  }
+
+  /** Tests that {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}
+   * uses {@link org.apache.calcite.rel.rules.LoptOptimizeJoinRule} if there
+   * is an outer join. The relation (dependents) in the inner join is not
+   * pushed into the outer join (emps left join depts). */
+  @Test public void testDpLeftJoin() throws Exception {
+    final String sql = "select * from emps as e\n"
+        + "left join depts as d on e.deptno = d.deptno\n"
+        + "join dependents as p on e.empid = p.empid";
+    final String expected = ""
+        + "  EnumerableHashJoin(condition=[=($0, $10)], joinType=[inner])\n"
+        + "    EnumerableHashJoin(condition=[=($1, $5)], joinType=[left])\n"
+        + "      EnumerableTableScan(table=[[hr, emps]])\n"
+        + "      EnumerableProject(deptno=[$0], name=[$1], employees=[$2], x=[$3.x], y=[$3.y])\n"
+        + "        EnumerableTableScan(table=[[hr, depts]])\n"
+        + "    EnumerableTableScan(table=[[hr, dependents]])\n";
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .parserConfig(SqlParser.configBuilder().setLex(Lex.JAVA).build())
+        .defaultSchema(
+            CalciteAssert.addSchema(Frameworks.createRootSchema(true),
+                CalciteAssert.SchemaSpec.HR))
+        .programs(Programs.dpJoinOrder(Programs.RULE_SET, 0, 20))
+        .build();
+    Planner planner = Frameworks.getPlanner(config);
+    SqlNode parse = planner.parse(sql);
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.rel(validate).rel;
+    RelTraitSet traitSet = convert.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE);
+    RelNode transform = planner.transform(0, traitSet, convert);
+    assertThat(toString(transform), containsString(expected));
+  }
+
+  /** Checks that a query returns a particular plan, using a planner with
+   * MultiJoinOptimizeDpRule enabled. Identifiers are case-sensitive, and
+   * need not be quoted. */
+  private void checkDp(String sql, String... expected) throws Exception {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .parserConfig(SqlParser.configBuilder().setLex(Lex.JAVA).build())
+        .defaultSchema(
+            CalciteAssert.addSchema(rootSchema,
+                CalciteAssert.SchemaSpec.CLONE_FOODMART))
+        .traitDefs((List<RelTraitDef>) null)
+        .programs(
+            Programs.dpJoinOrder(Programs.RULE_SET, 2,
+                MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS))
+        .build();
+    Planner planner = Frameworks.getPlanner(config);
+    SqlNode parse = planner.parse(sql);
+
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.rel(validate).project();
+    RelTraitSet traitSet = convert.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE);
+    RelNode transform = planner.transform(0, traitSet, convert);
+    for (String s : expected) {
+      assertThat(toString(transform), containsString(s));
+    }
+  }
+
   /**
    * Rule to convert a
    * {@link org.apache.calcite.adapter.enumerable.EnumerableProject} to an
@@ -310,6 +310,17 @@ public <TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
         accumulatorInitializer, accumulatorAdder, resultSelector, comparer);
   }
 
+  public <TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Function1<T, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, T, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, long memoryBudget) {
+    return EnumerableDefaults.groupBy(getThis(), keySelector,
+        accumulatorInitializer, accumulatorAdder, resultSelector, comparer,
+        memoryBudget);
+  }
+
   public <TInner, TKey, TResult> Enumerable<TResult> groupJoin(
       Enumerable<TInner> inner, Function1<T, TKey> outerKeySelector,
       Function1<TInner, TKey> innerKeySelector,
@@ -384,6 +395,18 @@ public <TInner, TKey, TResult> Enumerable<TResult> hashJoin(
         generateNullsOnRight, predicate);
   }
 
+  public <TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TInner> inner, Function1<T, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<T, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight,
+      Predicate2<T, TInner> predicate, long memoryBudget) {
+    return EnumerableDefaults.hashJoin(getThis(), inner, outerKeySelector,
+        innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+        generateNullsOnRight, predicate, memoryBudget);
+  }
+
   public <TInner, TResult> Enumerable<TResult> correlateJoin(
       JoinType joinType, Function1<T, Enumerable<TInner>> inner,
       Function2<T, TInner, TResult> resultSelector) {
@@ -527,6 +550,12 @@ public <TKey> Enumerable<T> orderBy(Function1<T, TKey> keySelector,
     return EnumerableDefaults.orderBy(getThis(), keySelector, comparator);
   }
 
+  public <TKey> Enumerable<T> orderBy(Function1<T, TKey> keySelector,
+      Comparator<TKey> comparator, long memoryBudget) {
+    return EnumerableDefaults.orderBy(getThis(), keySelector, comparator,
+        memoryBudget);
+  }
+
   public <TKey extends Comparable> Enumerable<T> orderByDescending(
       Function1<T, TKey> keySelector) {
     return EnumerableDefaults.orderByDescending(getThis(), keySelector);
@@ -36,7 +36,6 @@
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
 import java.math.BigDecimal;
@@ -45,6 +44,7 @@
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -56,9 +56,13 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
 
 import static org.apache.calcite.linq4j.Linq4j.CollectionEnumerable;
 import static org.apache.calcite.linq4j.Linq4j.ListEnumerable;
@@ -68,6 +72,17 @@
  * Default implementations of methods in the {@link Enumerable} interface.
  */
 public abstract class EnumerableDefaults {
+  /** Number of partitions that an operator splits its input into when it
+   * spills to disk. */
+  private static final int SPILL_PARTITION_COUNT = 16;
+
+  /** Maximum number of times that an operator re-partitions a partition that
+   * is still too large to process in memory. */
+  private static final int SPILL_MAX_DEPTH = 3;
+
+  /** Estimated number of bytes, in addition to the row itself, that it costs
+   * to hold a row in an in-memory hash table. */
+  private static final int SPILL_ROW_OVERHEAD = 48;
 
   /**
    * Applies an accumulator function over a sequence.
@@ -792,6 +807,286 @@ public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
         resultSelector);
   }
 
+  /**
+   * Groups the elements of a sequence according to a
+   * specified key selector function, initializing an accumulator for each
+   * group and adding to it each time an element with the same key is seen,
+   * using at most a given amount of memory.
+   *
+   * <p>While the groups fit into {@code memoryBudget} bytes (as estimated by
+   * {@link SpillFile#estimateSize(Object)}) behaves the same as the other
+   * {@code groupBy} methods. After that, elements of groups that are already
+   * in memory continue to be accumulated, but elements whose key has not
+   * been seen are partitioned by hash of the key into temporary files; when
+   * the input is exhausted, the in-memory groups are returned, and then each
+   * partition is grouped in turn (a "hybrid hash" aggregation).
+   *
+   * <p>If {@code memoryBudget} is negative, never spills. If
+   * {@code comparer} is null, the default equality comparer is used.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, long memoryBudget) {
+    if (memoryBudget < 0) {
+      return comparer == null
+          ? groupBy(enumerable, keySelector, accumulatorInitializer,
+              accumulatorAdder, resultSelector)
+          : groupBy(enumerable, keySelector, accumulatorInitializer,
+              accumulatorAdder, resultSelector, comparer);
+    }
+    return spillingGroupBy_(enumerable, keySelector, accumulatorInitializer,
+        accumulatorAdder, resultSelector, comparer, memoryBudget, 0);
+  }
+
+  /**
+   * Groups the elements of a sequence in which elements with the same key are
+   * adjacent (for example, because the sequence is sorted on the key),
+   * initializing an accumulator for each group and adding to it each element
+   * with the same key. Creates a result value from each accumulator and its
+   * key using a specified function.
+   *
+   * <p>Each group is emitted as soon as an element with a different key is
+   * seen, so only one accumulator is held at a time, and the result is in the
+   * same order as the input. If {@code comparer} is null, the default
+   * equality comparer is used.
+   *
+   * <p>This method does not correspond to any method in {@link Enumerable}.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> sortedGroupBy(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new SortedAggregateEnumerator<>(enumerable.enumerator(),
+            keySelector, accumulatorInitializer, accumulatorAdder,
+            resultSelector, comparer);
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a
+   * specified key selector function, using several threads.
+   *
+   * <p>The calling thread reads the input, computes the key of each element,
+   * and partitions the elements by hash of the key; each of
+   * {@code parallelism} worker threads accumulates the groups of one
+   * partition, using the keys computed by the calling thread. Since each key
+   * belongs to exactly one partition, the groups need no merging; the result
+   * is the groups of each partition in turn.
+   *
+   * <p>Each accumulator is only used by one thread, so accumulators need not
+   * be thread-safe; but the functions are called from several threads at
+   * once, so they must not have side effects.
+   * If {@code comparer} is null, the default equality comparer is used.
+   *
+   * <p>This method does not correspond to any method in {@link Enumerable}.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> parallelGroupBy(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final int parallelism) {
+    if (parallelism <= 1) {
+      return comparer == null
+          ? groupBy(enumerable, keySelector, accumulatorInitializer,
+              accumulatorAdder, resultSelector)
+          : groupBy(enumerable, keySelector, accumulatorInitializer,
+              accumulatorAdder, resultSelector, comparer);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<GroupByWorker<TSource, TKey, TAccumulate>> workers =
+            new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+          workers.add(
+              new GroupByWorker<>(accumulatorInitializer, accumulatorAdder,
+                  comparer));
+        }
+        final List<KeyedRows<TKey, TSource>> chunks = new ArrayList<>();
+        final List<Future<?>> futures = new ArrayList<>();
+        for (GroupByWorker<TSource, TKey, TAccumulate> worker : workers) {
+          chunks.add(new KeyedRows<>(ExchangeEnumerable.CHUNK_SIZE));
+          futures.add(ExchangeEnumerable.EXECUTOR.submit(worker));
+        }
+        Throwable failure = null;
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            final int i = hashPartition(key, comparer, 0, parallelism);
+            final KeyedRows<TKey, TSource> chunk = chunks.get(i);
+            chunk.add(key, o);
+            if (chunk.size() == ExchangeEnumerable.CHUNK_SIZE) {
+              workers.get(i).put(chunk);
+              chunks.set(i, new KeyedRows<>(ExchangeEnumerable.CHUNK_SIZE));
+            }
+          }
+          for (int i = 0; i < parallelism; i++) {
+            if (chunks.get(i).size() > 0) {
+              workers.get(i).put(chunks.get(i));
+            }
+          }
+        } catch (Throwable e) {
+          failure = e;
+        } finally {
+          // An empty chunk tells each worker that the input is exhausted.
+          for (GroupByWorker<TSource, TKey, TAccumulate> worker : workers) {
+            worker.put(new KeyedRows<>(0));
+          }
+        }
+        for (Future<?> future : futures) {
+          try {
+            future.get();
+          } catch (Throwable e) {
+            if (failure == null) {
+              failure = e;
+            }
+          }
+        }
+        for (GroupByWorker<TSource, TKey, TAccumulate> worker : workers) {
+          if (failure == null) {
+            failure = worker.failure;
+          }
+        }
+        if (failure != null) {
+          throw ExchangeEnumerable.rethrow(failure);
+        }
+        final List<Enumerable<TResult>> results = new ArrayList<>();
+        for (GroupByWorker<TSource, TKey, TAccumulate> worker : workers) {
+          results.add(new LookupResultEnumerable<>(worker.map, resultSelector));
+        }
+        return Linq4j.concat(results).enumerator();
+      }
+    };
+  }
+
+  /**
+   * Returns a sequence that contains the elements of a sequence, read by
+   * another thread.
+   *
+   * <p>The producer thread reads ahead of the consumer by up to
+   * {@code bufferSize} chunks of rows, so that the input and its consumer
+   * can run concurrently.
+   *
+   * <p>This method does not correspond to any method in {@link Enumerable}.
+   */
+  public static <TSource> Enumerable<TSource> exchange(
+      Enumerable<TSource> source, int bufferSize) {
+    return new ExchangeEnumerable<>(source, bufferSize);
+  }
+
+  /** Implementation of {@code groupBy} that spills to disk if the groups do
+   * not fit within {@code memoryBudget} bytes.
+   *
+   * <p>A partition is grouped by a recursive call, using a different hash
+   * function, up to {@link #SPILL_MAX_DEPTH} levels; beyond that a partition
+   * is grouped in memory regardless of its size. */
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> spillingGroupBy_(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final long memoryBudget,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final Map<TKey, TAccumulate> map = comparer == null
+            ? new HashMap<>()
+            : new WrapMap<>(
+                () -> new HashMap<Wrapped<TKey>, TAccumulate>(), comparer);
+        // Empty until the budget is exceeded; then one file per partition.
+        final List<SpillFile<TSource>> files = new ArrayList<>();
+        long size = 0;
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            TAccumulate accumulator = map.get(key);
+            if (accumulator != null) {
+              TAccumulate accumulator0 = accumulator;
+              accumulator = accumulatorAdder.apply(accumulator, o);
+              if (accumulator != accumulator0) {
+                map.put(key, accumulator);
+              }
+            } else if (files.isEmpty()) {
+              accumulator = accumulatorInitializer.apply();
+              accumulator = accumulatorAdder.apply(accumulator, o);
+              map.put(key, accumulator);
+              size += SpillFile.estimateSize(key)
+                  + SpillFile.estimateSize(accumulator) + SPILL_ROW_OVERHEAD;
+              if (size > memoryBudget && depth < SPILL_MAX_DEPTH) {
+                for (int i = 0; i < SPILL_PARTITION_COUNT; i++) {
+                  files.add(new SpillFile<>());
+                }
+              }
+            } else {
+              files.get(hashPartition(key, comparer, depth, SPILL_PARTITION_COUNT)).add(o);
+            }
+          }
+        } catch (RuntimeException | Error e) {
+          closeAll(files);
+          throw e;
+        }
+        return new Enumerator<TResult>() {
+          /** Partition being read, or -1 while reading the groups that were
+           * accumulated in memory. */
+          int partition = -1;
+          Enumerator<TResult> enumerator =
+              new LookupResultEnumerable<>(map, resultSelector).enumerator();
+
+          public TResult current() {
+            return enumerator.current();
+          }
+
+          public boolean moveNext() {
+            for (;;) {
+              if (enumerator.moveNext()) {
+                return true;
+              }
+              enumerator.close();
+              enumerator = Linq4j.emptyEnumerator();
+              if (partition + 1 >= files.size()) {
+                return false;
+              }
+              final SpillFile<TSource> file = files.get(++partition);
+              if (file.size() == 0) {
+                continue;
+              }
+              enumerator =
+                  spillingGroupBy_(file.asEnumerable(), keySelector,
+                      accumulatorInitializer, accumulatorAdder,
+                      resultSelector, comparer, memoryBudget, depth + 1)
+                      .enumerator();
+            }
+          }
+
+          public void reset() {
+            enumerator.close();
+            enumerator =
+                new LookupResultEnumerable<>(map, resultSelector).enumerator();
+            partition = -1;
+          }
+
+          public void close() {
+            enumerator.close();
+            closeAll(files);
+          }
+        };
+      }
+    };
+  }
+
   private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy_(
       final Map<TKey, TAccumulate> map, Enumerable<TSource> enumerable,
       Function1<TSource, TKey> keySelector,
@@ -1093,6 +1388,169 @@ public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
     }
   }
 
+  /**
+   * Correlates the elements of two sequences based on
+   * matching keys, using at most a given amount of memory.
+   *
+   * <p>If the inner sequence fits into {@code memoryBudget} bytes (as
+   * estimated by {@link SpillFile#estimateSize(Object)}) behaves the same as
+   * the other {@code hashJoin} methods. Otherwise partitions both inputs by
+   * hash of the key into temporary files, and joins each pair of partitions
+   * in turn (a "grace" hash join); in that case, the order of the outer
+   * sequence is not preserved.
+   *
+   * <p>If {@code memoryBudget} is negative, never spills.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    if (memoryBudget < 0) {
+      return hashJoin(outer, inner, outerKeySelector, innerKeySelector,
+          resultSelector, comparer, generateNullsOnLeft,
+          generateNullsOnRight, predicate);
+    }
+    return spillingHashJoin_(outer, inner, outerKeySelector, innerKeySelector,
+        resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+        predicate, memoryBudget, 0);
+  }
+
+  /**
+   * Correlates the elements of two sequences based on
+   * matching keys, using several threads.
+   *
+   * <p>The calling thread reads both inputs, computes the key of each element,
+   * and partitions the elements by hash of the key. Since matching elements
+   * belong to the same partition, each of {@code parallelism} worker threads
+   * can join one pair of partitions on its own, using the keys computed by
+   * the calling thread. The result is the output of each partition in turn,
+   * so the order of the outer sequence is not preserved.
+   *
+   * <p>The functions are called from several threads at once, so they must
+   * not have side effects.
+   *
+   * <p>This method does not correspond to any method in {@link Enumerable}.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> parallelHashJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate, final int parallelism) {
+    if (parallelism <= 1) {
+      return hashJoin(outer, inner, outerKeySelector, innerKeySelector,
+          resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+          predicate);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<KeyedRows<TKey, TInner>> innerPartitions =
+            partition(inner, innerKeySelector, comparer, parallelism);
+        final List<KeyedRows<TKey, TSource>> outerPartitions =
+            partition(outer, outerKeySelector, comparer, parallelism);
+        final List<Future<List<TResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+          final KeyedRows<TKey, TSource> outerRows = outerPartitions.get(i);
+          final KeyedRows<TKey, TInner> innerRows = innerPartitions.get(i);
+          futures.add(
+              ExchangeEnumerable.EXECUTOR.submit(() ->
+                  joinPartition(outerRows, innerRows, resultSelector,
+                      comparer, generateNullsOnLeft, generateNullsOnRight,
+                      predicate)));
+        }
+        final List<Enumerable<TResult>> results = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<List<TResult>> future : futures) {
+          try {
+            results.add(Linq4j.asEnumerable(future.get()));
+          } catch (Throwable e) {
+            if (failure == null) {
+              failure = e;
+            }
+          }
+        }
+        if (failure != null) {
+          throw ExchangeEnumerable.rethrow(failure);
+        }
+        return Linq4j.concat(results).enumerator();
+      }
+    };
+  }
+
+  /** Reads a sequence, and partitions its elements by hash of their key;
+   * for {@link #parallelHashJoin}. Null elements have a null key. */
+  private static <TSource, TKey> List<KeyedRows<TKey, TSource>> partition(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      EqualityComparer<TKey> comparer, int count) {
+    final List<KeyedRows<TKey, TSource>> partitions = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      partitions.add(new KeyedRows<>(ExchangeEnumerable.CHUNK_SIZE));
+    }
+    try (Enumerator<TSource> os = source.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        final TKey key = o == null ? null : keySelector.apply(o);
+        partitions.get(hashPartition(key, comparer, 0, count)).add(key, o);
+      }
+    }
+    return partitions;
+  }
+
+  /** Joins one pair of partitions; for {@link #parallelHashJoin}.
+   *
+   * <p>Builds a hash table of the positions of the inner rows, and probes it
+   * with each outer row. Rows with a null key match nothing. */
+  private static <TSource, TInner, TKey, TResult> List<TResult> joinPartition(
+      KeyedRows<TKey, TSource> outers, KeyedRows<TKey, TInner> inners,
+      Function2<TSource, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight, Predicate2<TSource, TInner> predicate) {
+    final Map<TKey, List<Integer>> lookup = comparer == null
+        ? new HashMap<>()
+        : new WrapMap<>(
+            () -> new HashMap<Wrapped<TKey>, List<Integer>>(), comparer);
+    for (int i = 0; i < inners.size(); i++) {
+      final TKey key = inners.keys.get(i);
+      if (key != null) {
+        lookup.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+      }
+    }
+    final BitSet matched = new BitSet(inners.size());
+    final List<TResult> results = new ArrayList<>();
+    for (int j = 0; j < outers.size(); j++) {
+      final TKey key = outers.keys.get(j);
+      final TSource outer = outers.rows.get(j);
+      boolean found = false;
+      final List<Integer> positions = key == null ? null : lookup.get(key);
+      if (positions != null) {
+        for (int i : positions) {
+          final TInner inner = inners.rows.get(i);
+          if (predicate == null || predicate.apply(outer, inner)) {
+            results.add(resultSelector.apply(outer, inner));
+            matched.set(i);
+            found = true;
+          }
+        }
+      }
+      if (!found && generateNullsOnRight) {
+        results.add(resultSelector.apply(outer, null));
+      }
+    }
+    if (generateNullsOnLeft) {
+      for (int i = matched.nextClearBit(0); i < inners.size();
+           i = matched.nextClearBit(i + 1)) {
+        results.add(resultSelector.apply(null, inners.rows.get(i)));
+      }
+    }
+    return results;
+  }
+
   /** Implementation of join that builds the right input and probes with the
    * left. */
   private static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashEquiJoin_(
@@ -1295,6 +1753,163 @@ public void close() {
     };
   }
 
+  /** Implementation of join that reads the right input into memory, as
+   * long as it fits within {@code memoryBudget} bytes, and otherwise
+   * partitions both inputs to temporary files and joins partition by
+   * partition.
+   *
+   * <p>Partitions that are still too large are partitioned again, using a
+   * different hash function, up to {@link #SPILL_MAX_DEPTH} levels; beyond
+   * that (which happens only if many rows have the same key) a partition is
+   * joined in memory regardless of its size. */
+  private static <TSource, TInner, TKey, TResult> Enumerable<TResult> spillingHashJoin_(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate, final long memoryBudget,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<TInner> innerList = new ArrayList<>();
+        long size = 0;
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            final TInner o = inners.current();
+            innerList.add(o);
+            size += SpillFile.estimateSize(o) + SPILL_ROW_OVERHEAD;
+            if (size > memoryBudget && depth < SPILL_MAX_DEPTH) {
+              return partitionedHashJoin_(outer, innerList, inners,
+                  outerKeySelector, innerKeySelector, resultSelector,
+                  comparer, generateNullsOnLeft, generateNullsOnRight,
+                  predicate, memoryBudget, depth);
+            }
+          }
+        }
+        return EnumerableDefaults.hashJoin(outer,
+            Linq4j.asEnumerable(innerList),
+            outerKeySelector, innerKeySelector, resultSelector, comparer,
+            generateNullsOnLeft, generateNullsOnRight, predicate)
+            .enumerator();
+      }
+    };
+  }
+
+  /** Helper for {@link #spillingHashJoin_}. Writes the rows of the right input
+   * (those read so far and the remainder) and the left input to partition
+   * files, and returns an enumerator that joins each pair of partitions. */
+  private static <TSource, TInner, TKey, TResult> Enumerator<TResult> partitionedHashJoin_(
+      Enumerable<TSource> outer, List<TInner> innerList,
+      Enumerator<TInner> inners,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate, final long memoryBudget,
+      final int depth) {
+    final List<SpillFile<TInner>> innerFiles = new ArrayList<>();
+    final List<SpillFile<TSource>> outerFiles = new ArrayList<>();
+    for (int i = 0; i < SPILL_PARTITION_COUNT; i++) {
+      innerFiles.add(new SpillFile<>());
+      outerFiles.add(new SpillFile<>());
+    }
+    try {
+      for (TInner o : innerList) {
+        final TKey key = innerKeySelector.apply(o);
+        innerFiles.get(hashPartition(key, comparer, depth, SPILL_PARTITION_COUNT)).add(o);
+      }
+      innerList.clear();
+      while (inners.moveNext()) {
+        final TInner o = inners.current();
+        final TKey key = innerKeySelector.apply(o);
+        innerFiles.get(hashPartition(key, comparer, depth, SPILL_PARTITION_COUNT)).add(o);
+      }
+      try (Enumerator<TSource> outers = outer.enumerator()) {
+        while (outers.moveNext()) {
+          final TSource o = outers.current();
+          final TKey key = o == null ? null : outerKeySelector.apply(o);
+          outerFiles.get(hashPartition(key, comparer, depth, SPILL_PARTITION_COUNT)).add(o);
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      closeAll(innerFiles);
+      closeAll(outerFiles);
+      throw e;
+    }
+    return new Enumerator<TResult>() {
+      int partition = -1;
+      Enumerator<TResult> enumerator = Linq4j.emptyEnumerator();
+
+      public TResult current() {
+        return enumerator.current();
+      }
+
+      public boolean moveNext() {
+        for (;;) {
+          if (enumerator.moveNext()) {
+            return true;
+          }
+          enumerator.close();
+          enumerator = Linq4j.emptyEnumerator();
+          if (partition + 1 >= SPILL_PARTITION_COUNT) {
+            return false;
+          }
+          ++partition;
+          final SpillFile<TSource> outerFile = outerFiles.get(partition);
+          final SpillFile<TInner> innerFile = innerFiles.get(partition);
+          if (outerFile.size() == 0 && !generateNullsOnLeft
+              || innerFile.size() == 0 && !generateNullsOnRight) {
+            // This partition cannot produce any rows.
+            continue;
+          }
+          enumerator =
+              spillingHashJoin_(outerFile.asEnumerable(),
+                  innerFile.asEnumerable(), outerKeySelector, innerKeySelector,
+                  resultSelector, comparer, generateNullsOnLeft,
+                  generateNullsOnRight, predicate, memoryBudget, depth + 1)
+                  .enumerator();
+        }
+      }
+
+      public void reset() {
+        enumerator.close();
+        enumerator = Linq4j.emptyEnumerator();
+        partition = -1;
+      }
+
+      public void close() {
+        enumerator.close();
+        closeAll(innerFiles);
+        closeAll(outerFiles);
+      }
+    };
+  }
+
+  /** Returns which of {@code count} partitions a key belongs to, at a given
+   * level of partitioning. Null keys all go to partition 0. */
+  private static <TKey> int hashPartition(TKey key,
+      EqualityComparer<TKey> comparer, int depth, int count) {
+    if (key == null) {
+      return 0;
+    }
+    int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+    // Mix in the depth, so that each level uses a different hash function;
+    // otherwise all rows of a partition would end up in the same
+    // sub-partition.
+    h = (h ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+    h ^= h >>> 16;
+    return Math.floorMod(h, count);
+  }
+
+  private static void closeAll(List<? extends SpillFile<?>> files) {
+    for (SpillFile<?> file : files) {
+      file.close();
+    }
+  }
+
   /**
    * For each row of the {@code outer} enumerable returns the correlated rows
    * from the {@code inner} enumerable.
@@ -1813,19 +2428,38 @@ public static <TSource, TInner, TResult> Enumerable<TResult> nestedLoopJoin(
       final Function2<TSource, TInner, TResult> resultSelector,
       boolean generateNullsOnLeft,
       boolean generateNullsOnRight) {
+    final JoinType joinType;
     if (generateNullsOnLeft) {
-      throw new UnsupportedOperationException(
-        "not implemented, mergeJoin with generateNullsOnLeft");
-    }
-    if (generateNullsOnRight) {
-      throw new UnsupportedOperationException(
-        "not implemented, mergeJoin with generateNullsOnRight");
+      joinType = generateNullsOnRight ? JoinType.FULL : JoinType.RIGHT;
+    } else {
+      joinType = generateNullsOnRight ? JoinType.LEFT : JoinType.INNER;
     }
+    return mergeJoin(outer, inner, outerKeySelector, innerKeySelector, null,
+        resultSelector, joinType);
+  }
+
+  /** Joins two inputs that are sorted on the key, with an optional
+   * predicate on each pair of rows whose keys match.
+   *
+   * <p>Both inputs are read once, in a streaming fashion; only the rows of
+   * the current key are held in memory. Rows whose key is null, or contains
+   * a null value, match no rows.
+   *
+   * <p>For {@link JoinType#SEMI} and {@link JoinType#ANTI} joins, the result
+   * selector is called with a null right row. */
+  public static <TSource, TInner, TKey extends Comparable<TKey>, TResult> Enumerable<TResult>
+      mergeJoin(final Enumerable<TSource> outer,
+      final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Predicate2<TSource, TInner> extraPredicate,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final JoinType joinType) {
     return new AbstractEnumerable<TResult>() {
       public Enumerator<TResult> enumerator() {
         return new MergeJoinEnumerator<>(outer.enumerator(),
             inner.enumerator(), outerKeySelector, innerKeySelector,
-            resultSelector);
+            extraPredicate, resultSelector, joinType);
       }
     };
   }
@@ -2261,6 +2895,92 @@ public static <TSource, TKey> Enumerable<TSource> orderBy(
     return lookup.valuesEnumerable();
   }
 
+  /**
+   * Sorts the elements of a sequence in ascending
+   * order by using a specified comparer, using at most a given amount of
+   * memory.
+   *
+   * <p>Unlike {@link #orderBy(Enumerable, Function1, Comparator)}, holds rows
+   * and keys in arrays rather than a tree, and sorts when the result is first
+   * enumerated. If the rows do not fit into {@code memoryBudget} bytes (as
+   * estimated by {@link SpillFile#estimateSize(Object)}), sorted runs are
+   * written to temporary files and then merged (an "external merge sort").
+   * If {@code memoryBudget} is negative, never spills.
+   *
+   * <p>The sort is stable. If {@code comparator} is null, keys must be
+   * {@link Comparable} and not null.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, long memoryBudget) {
+    return new ExternalSortEnumerable<>(source, keySelector, comparator,
+        memoryBudget);
+  }
+
+  /**
+   * Sorts the elements of a sequence in ascending
+   * order by using a specified comparer, and returns {@code fetch} elements
+   * after skipping {@code offset} elements.
+   *
+   * <p>Equivalent to {@code orderBy(...).skip(offset).take(fetch)}, but
+   * rather than sorting the whole sequence, keeps a heap of the
+   * {@code offset + fetch} smallest elements seen so far. For n elements
+   * and k = {@code offset + fetch}, takes O(n log k) time and O(k) memory.
+   *
+   * <p>The sort is stable. If {@code comparator} is null, keys must be
+   * {@link Comparable} and not null.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final int offset, final int fetch) {
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        if (fetch <= 0) {
+          return Linq4j.emptyEnumerator();
+        }
+        final int limit = (int) Math.min((long) Math.max(offset, 0) + fetch,
+            Integer.MAX_VALUE);
+        //noinspection unchecked
+        final Comparator<TKey> keyComparator = comparator != null
+            ? comparator
+            : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+        final Comparator<TopNEntry<TKey, TSource>> entryComparator =
+            (e0, e1) -> {
+              final int c = keyComparator.compare(e0.key, e1.key);
+              return c != 0 ? c : Long.compare(e0.ordinal, e1.ordinal);
+            };
+        // Heap whose head is the largest entry, that is, the first to be
+        // evicted. Among equal keys, later rows are larger, which makes the
+        // sort stable.
+        final PriorityQueue<TopNEntry<TKey, TSource>> heap =
+            new PriorityQueue<>(Math.min(limit, 1024),
+                entryComparator.reversed());
+        long ordinal = 0;
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            if (heap.size() < limit) {
+              heap.add(new TopNEntry<>(key, ordinal, o));
+            } else if (keyComparator.compare(key, heap.peek().key) < 0) {
+              heap.poll();
+              heap.add(new TopNEntry<>(key, ordinal, o));
+            }
+            ++ordinal;
+          }
+        }
+        final List<TopNEntry<TKey, TSource>> entries = new ArrayList<>(heap);
+        entries.sort(entryComparator);
+        final List<TSource> list = new ArrayList<>();
+        for (int i = Math.max(offset, 0); i < entries.size(); i++) {
+          list.add(entries.get(i).element);
+        }
+        return Linq4j.enumerator(list);
+      }
+    };
+  }
+
   /**
    * Sorts the elements of a sequence in descending
    * order according to a key.
@@ -3519,6 +4239,23 @@ public T unwrap() {
     }
   }
 
+  /** Element held in the heap of a Top-N sort, with its sort key and its
+   * position in the input.
+   *
+   * @param <K> key type
+   * @param <T> element type */
+  private static class TopNEntry<K, T> {
+    final K key;
+    final long ordinal;
+    final T element;
+
+    TopNEntry(K key, long ordinal, T element) {
+      this.key = key;
+      this.ordinal = ordinal;
+      this.element = element;
+    }
+  }
+
   /** Map that wraps each value.
    *
    * @param <K> key type
@@ -3589,6 +4326,90 @@ private Wrapped<K> wrap(K key) {
     }
   }
 
+  /** Enumerator that groups adjacent elements that have the same key.
+   *
+   * <p>Reads one element ahead: while there are more groups, the underlying
+   * enumerator is positioned on the first element of the next group.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type
+   * @param <TAccumulate> accumulator type
+   * @param <TResult> result type */
+  private static class SortedAggregateEnumerator<TSource, TKey, TAccumulate,
+      TResult> implements Enumerator<TResult> {
+    private final Enumerator<TSource> enumerator;
+    private final Function1<TSource, TKey> keySelector;
+    private final Function0<TAccumulate> accumulatorInitializer;
+    private final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder;
+    private final Function2<TKey, TAccumulate, TResult> resultSelector;
+    private final EqualityComparer<TKey> comparer;
+    private boolean started;
+    private boolean done;
+    private TResult current;
+
+    SortedAggregateEnumerator(Enumerator<TSource> enumerator,
+        Function1<TSource, TKey> keySelector,
+        Function0<TAccumulate> accumulatorInitializer,
+        Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+        Function2<TKey, TAccumulate, TResult> resultSelector,
+        EqualityComparer<TKey> comparer) {
+      this.enumerator = enumerator;
+      this.keySelector = keySelector;
+      this.accumulatorInitializer = accumulatorInitializer;
+      this.accumulatorAdder = accumulatorAdder;
+      this.resultSelector = resultSelector;
+      this.comparer = comparer;
+    }
+
+    public TResult current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        done = !enumerator.moveNext();
+      }
+      if (done) {
+        return false;
+      }
+      TSource o = enumerator.current();
+      final TKey key = keySelector.apply(o);
+      TAccumulate accumulator = accumulatorInitializer.apply();
+      accumulator = accumulatorAdder.apply(accumulator, o);
+      for (;;) {
+        if (!enumerator.moveNext()) {
+          done = true;
+          break;
+        }
+        o = enumerator.current();
+        if (!keyEquals(key, keySelector.apply(o))) {
+          break;
+        }
+        accumulator = accumulatorAdder.apply(accumulator, o);
+      }
+      current = resultSelector.apply(key, accumulator);
+      return true;
+    }
+
+    private boolean keyEquals(TKey key0, TKey key1) {
+      return comparer == null
+          ? Objects.equals(key0, key1)
+          : comparer.equal(key0, key1);
+    }
+
+    public void reset() {
+      enumerator.reset();
+      started = false;
+      done = false;
+      current = null;
+    }
+
+    public void close() {
+      enumerator.close();
+    }
+  }
+
   /** Reads a populated map, applying a selector function.
    *
    * @param <TResult> result type
@@ -3625,7 +4446,119 @@ public void remove() {
     }
   }
 
+  /** Elements of one partition, each with its key, as computed by the thread
+   * that partitions the input; for {@link #parallelGroupBy} and
+   * {@link #parallelHashJoin}.
+   *
+   * @param <TKey> key type
+   * @param <TSource> element type */
+  private static class KeyedRows<TKey, TSource> {
+    final List<TKey> keys;
+    final List<TSource> rows;
+
+    KeyedRows(int capacity) {
+      keys = new ArrayList<>(capacity);
+      rows = new ArrayList<>(capacity);
+    }
+
+    void add(TKey key, TSource row) {
+      keys.add(key);
+      rows.add(row);
+    }
+
+    int size() {
+      return rows.size();
+    }
+  }
+
+  /** Task that accumulates the groups of one partition, for
+   * {@link #parallelGroupBy}.
+   *
+   * <p>Takes chunks of rows from a queue until it receives an empty chunk.
+   * If accumulating fails, records the failure, and keeps taking chunks so
+   * that the thread that is reading the input does not block.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type
+   * @param <TAccumulate> accumulator type */
+  private static class GroupByWorker<TSource, TKey, TAccumulate>
+      implements Runnable {
+    private static final int QUEUE_SIZE = 4;
+
+    final BlockingQueue<KeyedRows<TKey, TSource>> queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    final Map<TKey, TAccumulate> map;
+    private final Function0<TAccumulate> accumulatorInitializer;
+    private final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder;
+    volatile Throwable failure;
+
+    GroupByWorker(Function0<TAccumulate> accumulatorInitializer,
+        Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+        EqualityComparer<TKey> comparer) {
+      this.accumulatorInitializer = accumulatorInitializer;
+      this.accumulatorAdder = accumulatorAdder;
+      this.map = comparer == null
+          ? new HashMap<>()
+          : new WrapMap<>(
+              () -> new HashMap<Wrapped<TKey>, TAccumulate>(), comparer);
+    }
+
+    /** Passes a chunk of rows to this worker; called by the reading
+     * thread. */
+    void put(KeyedRows<TKey, TSource> chunk) {
+      try {
+        queue.put(chunk);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void run() {
+      try {
+        for (;;) {
+          final KeyedRows<TKey, TSource> chunk = queue.take();
+          if (chunk.size() == 0) {
+            return;
+          }
+          if (failure != null) {
+            continue;
+          }
+          try {
+            for (int i = 0; i < chunk.size(); i++) {
+              final TKey key = chunk.keys.get(i);
+              final TSource o = chunk.rows.get(i);
+              TAccumulate accumulator = map.get(key);
+              if (accumulator == null) {
+                accumulator = accumulatorInitializer.apply();
+                accumulator = accumulatorAdder.apply(accumulator, o);
+                map.put(key, accumulator);
+              } else {
+                TAccumulate accumulator0 = accumulator;
+                accumulator = accumulatorAdder.apply(accumulator, o);
+                if (accumulator != accumulator0) {
+                  map.put(key, accumulator);
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure = e;
+          }
+        }
+      } catch (InterruptedException e) {
+        failure = e;
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /** Enumerator that performs a merge join on its sorted inputs.
+   *
+   * <p>Reads ahead one row from each input. Each step gathers a "group": the
+   * rows of both inputs that have the next key, or a single row that matches
+   * nothing. It then emits the combinations of the group that satisfy the
+   * extra predicate, followed by, depending on the join type, the left and
+   * right rows of the group that matched nothing.
    *
    * @param <TResult> result type
    * @param <TSource> left input record type
@@ -3635,142 +4568,228 @@ public void remove() {
       implements Enumerator<TResult> {
     final List<TSource> lefts = new ArrayList<>();
     final List<TInner> rights = new ArrayList<>();
+    /** Which rows of {@link #rights} have matched at least one left row;
+     * used only if the join generates nulls on the left. */
+    final BitSet matchedRights = new BitSet();
     private final Enumerator<TSource> leftEnumerator;
     private final Enumerator<TInner> rightEnumerator;
     private final Function1<TSource, TKey> outerKeySelector;
     private final Function1<TInner, TKey> innerKeySelector;
+    private final Predicate2<TSource, TInner> extraPredicate;
     private final Function2<TSource, TInner, TResult> resultSelector;
-    boolean done;
-    Enumerator<List<Object>> cartesians;
+    private final JoinType joinType;
+    private final boolean emitUnmatchedLefts;
+    private final boolean emitUnmatchedRights;
+
+    // Next unread row of each input, and its key
+    private TSource left;
+    private TKey leftKey;
+    private boolean leftDone;
+    private TInner right;
+    private TKey rightKey;
+    private boolean rightDone;
+
+    // Position within the current group
+    private int leftOrdinal;
+    private int rightOrdinal;
+    private boolean leftMatched;
+    private int unmatchedRightOrdinal;
+
+    private TResult current;
 
     MergeJoinEnumerator(Enumerator<TSource> leftEnumerator,
         Enumerator<TInner> rightEnumerator,
         Function1<TSource, TKey> outerKeySelector,
         Function1<TInner, TKey> innerKeySelector,
-        Function2<TSource, TInner, TResult> resultSelector) {
+        Predicate2<TSource, TInner> extraPredicate,
+        Function2<TSource, TInner, TResult> resultSelector,
+        JoinType joinType) {
       this.leftEnumerator = leftEnumerator;
       this.rightEnumerator = rightEnumerator;
       this.outerKeySelector = outerKeySelector;
       this.innerKeySelector = innerKeySelector;
+      this.extraPredicate = extraPredicate;
       this.resultSelector = resultSelector;
+      this.joinType = joinType;
+      this.emitUnmatchedLefts =
+          joinType.generatesNullsOnRight() || joinType == JoinType.ANTI;
+      this.emitUnmatchedRights = joinType.generatesNullsOnLeft();
       start();
     }
 
     private void start() {
-      if (!leftEnumerator.moveNext()
-          || !rightEnumerator.moveNext()
-          || !advance()) {
-        done = true;
-        cartesians = Linq4j.emptyEnumerator();
-      }
-    }
-
-    /** Moves to the next key that is present in both sides. Populates
-     * lefts and rights with the rows. Restarts the cross-join
-     * enumerator. */
-    private boolean advance() {
-      TSource left = leftEnumerator.current();
-      TKey leftKey = outerKeySelector.apply(left);
-      TInner right = rightEnumerator.current();
-      TKey rightKey = innerKeySelector.apply(right);
+      advanceLeft();
+      advanceRight();
+      clearGroup();
+    }
+
+    private void advanceLeft() {
+      leftDone = !leftEnumerator.moveNext();
+      left = leftDone ? null : leftEnumerator.current();
+      leftKey = leftDone ? null : outerKeySelector.apply(left);
+    }
+
+    private void advanceRight() {
+      rightDone = !rightEnumerator.moveNext();
+      right = rightDone ? null : rightEnumerator.current();
+      rightKey = rightDone ? null : innerKeySelector.apply(right);
+    }
+
+    private void clearGroup() {
+      lefts.clear();
+      rights.clear();
+      matchedRights.clear();
+      leftOrdinal = 0;
+      rightOrdinal = 0;
+      leftMatched = false;
+      unmatchedRightOrdinal = 0;
+    }
+
+    /** Returns whether a key can match nothing, because it is null or
+     * contains a null value. */
+    private static boolean hasNull(Object key) {
+      return key == null
+          || key instanceof List && ((List) key).contains(null);
+    }
+
+    /** Reads the next group of rows. Returns false if the inputs have no more
+     * rows that can contribute to the result. */
+    private boolean nextGroup() {
+      clearGroup();
       for (;;) {
-        int c = leftKey.compareTo(rightKey);
-        if (c == 0) {
-          break;
+        if (leftDone && (rightDone || !emitUnmatchedRights)
+            || rightDone && !emitUnmatchedLefts) {
+          return false;
+        }
+        final int c;
+        if (rightDone || !leftDone && hasNull(leftKey)) {
+          c = -1;
+        } else if (leftDone || hasNull(rightKey)) {
+          c = 1;
+        } else {
+          c = leftKey.compareTo(rightKey);
         }
         if (c < 0) {
-          if (!leftEnumerator.moveNext()) {
-            done = true;
-            return false;
+          // The left row matches nothing
+          if (emitUnmatchedLefts) {
+            lefts.add(left);
+            advanceLeft();
+            return true;
           }
-          left = leftEnumerator.current();
-          leftKey = outerKeySelector.apply(left);
-        } else {
-          if (!rightEnumerator.moveNext()) {
-            done = true;
-            return false;
+          advanceLeft();
+        } else if (c > 0) {
+          // The right row matches nothing
+          if (emitUnmatchedRights) {
+            rights.add(right);
+            advanceRight();
+            return true;
           }
-          right = rightEnumerator.current();
-          rightKey = innerKeySelector.apply(right);
+          advanceRight();
+        } else {
+          final TKey key = leftKey;
+          do {
+            lefts.add(left);
+            advanceLeft();
+          } while (!leftDone && sameKey(key, leftKey));
+          do {
+            rights.add(right);
+            advanceRight();
+          } while (!rightDone && sameKey(key, rightKey));
+          return true;
         }
       }
-      lefts.clear();
-      lefts.add(left);
-      for (;;) {
-        if (!leftEnumerator.moveNext()) {
-          done = true;
-          break;
-        }
-        left = leftEnumerator.current();
-        TKey leftKey2 = outerKeySelector.apply(left);
-        int c = leftKey.compareTo(leftKey2);
-        if (c != 0) {
-          if (c > 0) {
-            throw new IllegalStateException(
-              "mergeJoin assumes inputs sorted in ascending order, "
-                 + "however " + leftKey + " is greater than " + leftKey2);
+    }
+
+    /** Returns whether the next key of an input is equal to the key of the
+     * current group; throws if the input is not sorted. */
+    private boolean sameKey(TKey key, TKey nextKey) {
+      if (hasNull(nextKey)) {
+        return false;
+      }
+      final int c = key.compareTo(nextKey);
+      if (c > 0) {
+        throw new IllegalStateException(
+            "mergeJoin assumes inputs sorted in ascending order, "
+                + "however " + key + " is greater than " + nextKey);
+      }
+      return c == 0;
+    }
+
+    /** Moves to the next result within the current group. */
+    private boolean nextInGroup() {
+      while (leftOrdinal < lefts.size()) {
+        final TSource leftRow = lefts.get(leftOrdinal);
+        while (rightOrdinal < rights.size()) {
+          final TInner rightRow = rights.get(rightOrdinal++);
+          if (extraPredicate == null || extraPredicate.apply(leftRow, rightRow)) {
+            leftMatched = true;
+            if (emitUnmatchedRights) {
+              matchedRights.set(rightOrdinal - 1);
+            }
+            switch (joinType) {
+            case SEMI:
+              rightOrdinal = rights.size();
+              current = resultSelector.apply(leftRow, null);
+              return true;
+            case ANTI:
+              rightOrdinal = rights.size();
+              break;
+            default:
+              current = resultSelector.apply(leftRow, rightRow);
+              return true;
+            }
           }
-          break;
         }
-        lefts.add(left);
-      }
-      rights.clear();
-      rights.add(right);
-      for (;;) {
-        if (!rightEnumerator.moveNext()) {
-          done = true;
-          break;
+        final boolean matched = leftMatched;
+        ++leftOrdinal;
+        rightOrdinal = 0;
+        leftMatched = false;
+        if (!matched && emitUnmatchedLefts) {
+          current = resultSelector.apply(leftRow, null);
+          return true;
         }
-        right = rightEnumerator.current();
-        TKey rightKey2 = innerKeySelector.apply(right);
-        int c = rightKey.compareTo(rightKey2);
-        if (c != 0) {
-          if (c > 0) {
-            throw new IllegalStateException(
-              "mergeJoin assumes input sorted in ascending order, "
-                 + "however " + rightKey + " is greater than " + rightKey2);
+      }
+      if (emitUnmatchedRights) {
+        while (unmatchedRightOrdinal < rights.size()) {
+          final int i = unmatchedRightOrdinal++;
+          if (!matchedRights.get(i)) {
+            current = resultSelector.apply(null, rights.get(i));
+            return true;
           }
-          break;
         }
-        rights.add(right);
       }
-      cartesians = Linq4j.product(
-          ImmutableList.of(Linq4j.enumerator(lefts),
-              Linq4j.enumerator(rights)));
-      return true;
+      return false;
     }
 
     public TResult current() {
-      final List<Object> list = cartesians.current();
-      @SuppressWarnings("unchecked") final TSource left =
-          (TSource) list.get(0);
-      @SuppressWarnings("unchecked") final TInner right =
-          (TInner) list.get(1);
-      return resultSelector.apply(left, right);
+      return current;
     }
 
     public boolean moveNext() {
       for (;;) {
-        if (cartesians.moveNext()) {
+        if (nextInGroup()) {
           return true;
         }
-        if (done) {
-          return false;
-        }
-        if (!advance()) {
+        if (!nextGroup()) {
+          current = null;
           return false;
         }
       }
     }
 
     public void reset() {
-      done = false;
       leftEnumerator.reset();
       rightEnumerator.reset();
+      current = null;
       start();
     }
 
     public void close() {
+      try {
+        leftEnumerator.close();
+      } finally {
+        rightEnumerator.close();
+      }
     }
   }
 
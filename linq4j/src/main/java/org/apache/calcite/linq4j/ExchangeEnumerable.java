@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enumerable that reads its input on another thread, and passes the rows to
+ * the consumer through a bounded queue.
+ *
+ * <p>This is the "exchange" operator of the Volcano execution model: the
+ * producer (the input and everything below it) and the consumer run
+ * concurrently, each on its own thread. Rows are passed in chunks of
+ * {@link #CHUNK_SIZE}, to reduce contention on the queue, and at most
+ * {@code bufferSize} chunks are queued, so a fast producer cannot get far
+ * ahead of a slow consumer.
+ *
+ * <p>An exception thrown by the input is re-thrown to the consumer.
+ * Closing the enumerator stops the producer and closes the input.
+ *
+ * @param <T> Element type
+ */
+class ExchangeEnumerable<T> extends AbstractEnumerable<T> {
+  /** Number of rows passed through the queue at a time. */
+  static final int CHUNK_SIZE = 256;
+
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  /** Threads on which the producers of exchanges, and the workers of
+   * parallel operators, run. Threads are created as needed, and are daemon
+   * threads, so they do not prevent the JVM from exiting. */
+  static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread =
+            new Thread(r, "linq4j-worker-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /** Marks the end of the input. */
+  private static final Object END = new Object();
+
+  private final Enumerable<T> source;
+  private final int bufferSize;
+
+  ExchangeEnumerable(Enumerable<T> source, int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize must be positive");
+    }
+    this.source = source;
+    this.bufferSize = bufferSize;
+  }
+
+  public Enumerator<T> enumerator() {
+    return new ExchangeEnumerator();
+  }
+
+  /** Re-throws an exception that occurred on another thread. */
+  static RuntimeException rethrow(Throwable e) {
+    if (e instanceof ExecutionException && e.getCause() != null) {
+      e = e.getCause();
+    }
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    throw new RuntimeException(e);
+  }
+
+  /** Exception thrown by the producer, to be re-thrown by the consumer. */
+  private static class Failure {
+    final Throwable throwable;
+
+    Failure(Throwable throwable) {
+      this.throwable = throwable;
+    }
+  }
+
+  /** Enumerator that starts the producer on the first call to
+   * {@link #moveNext()}. */
+  private class ExchangeEnumerator implements Enumerator<T> {
+    private BlockingQueue<Object> queue;
+    private volatile boolean cancelled;
+    private Future<?> future;
+    private List<T> chunk = Collections.emptyList();
+    private int i;
+    private boolean done;
+    private T current;
+
+    public T current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (future == null && !done) {
+        start();
+      }
+      for (;;) {
+        if (i < chunk.size()) {
+          current = chunk.get(i++);
+          return true;
+        }
+        if (done) {
+          return false;
+        }
+        final Object o = take();
+        if (o == END) {
+          done = true;
+        } else if (o instanceof Failure) {
+          done = true;
+          throw rethrow(((Failure) o).throwable);
+        } else {
+          //noinspection unchecked
+          chunk = (List<T>) o;
+          i = 0;
+        }
+      }
+    }
+
+    private void start() {
+      queue = new ArrayBlockingQueue<>(bufferSize);
+      cancelled = false;
+      final BlockingQueue<Object> queue = this.queue;
+      future = EXECUTOR.submit(() -> produce(queue));
+    }
+
+    /** Reads the input and puts its rows into the queue; runs on a worker
+     * thread. */
+    private void produce(BlockingQueue<Object> queue) {
+      try (Enumerator<T> enumerator = source.enumerator()) {
+        List<T> rows = new ArrayList<>(CHUNK_SIZE);
+        while (!cancelled && enumerator.moveNext()) {
+          rows.add(enumerator.current());
+          if (rows.size() == CHUNK_SIZE) {
+            put(queue, rows);
+            rows = new ArrayList<>(CHUNK_SIZE);
+          }
+        }
+        if (!rows.isEmpty()) {
+          put(queue, rows);
+        }
+        put(queue, END);
+      } catch (Throwable e) {
+        put(queue, new Failure(e));
+      }
+    }
+
+    /** Adds an object to the queue, waiting for space; gives up if the
+     * consumer has been closed. */
+    private void put(BlockingQueue<Object> queue, Object o) {
+      try {
+        while (!cancelled) {
+          if (queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private Object take() {
+      try {
+        return queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void reset() {
+      close();
+      chunk = Collections.emptyList();
+      i = 0;
+      done = false;
+      current = null;
+    }
+
+    /** Stops the producer, and waits until it has closed the input. */
+    public void close() {
+      if (future == null) {
+        return;
+      }
+      cancelled = true;
+      queue.clear();
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // The producer passes its exceptions through the queue, so this
+        // cannot happen.
+        throw rethrow(e);
+      } finally {
+        future = null;
+        done = true;
+      }
+    }
+  }
+}
+
+// End ExchangeEnumerable.java
@@ -443,6 +443,26 @@ <TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
       Function2<TKey, TAccumulate, TResult> resultSelector,
       EqualityComparer<TKey> comparer);
 
+  /**
+   * Groups the elements of a sequence according to a
+   * specified key selector function, initializing an accumulator for each
+   * group and adding to it each time an element with the same key is seen,
+   * using at most a given amount of memory.
+   *
+   * <p>Behaves the same as the other {@code groupBy} methods, except that
+   * once the groups do not fit into {@code memoryBudget} bytes, elements
+   * whose key has not been seen yet are partitioned into temporary files and
+   * grouped one partition at a time. If {@code memoryBudget} is negative,
+   * never spills. If {@code comparer} is null, the default equality comparer
+   * is used.
+   */
+  <TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, long memoryBudget);
+
   /**
    * Correlates the elements of two sequences based on
    * equality of keys and groups the results. The default equality
@@ -567,6 +587,24 @@ <TInner, TKey, TResult> Enumerable<TResult> hashJoin(Enumerable<TInner> inner,
       boolean generateNullsOnLeft, boolean generateNullsOnRight,
       Predicate2<TSource, TInner> predicate);
 
+  /**
+   * Correlates the elements of two sequences based on matching keys, with
+   * optional outer join semantics, using a limited amount of memory.
+   *
+   * <p>Behaves the same as the other {@code hashJoin} methods, except that
+   * if {@code inner} does not fit into {@code memoryBudget} bytes, both
+   * inputs are partitioned into temporary files and joined one partition at
+   * a time. In that case, the order of the current enumerable is not
+   * preserved. A negative {@code memoryBudget} means no limit.</p>
+   */
+  <TInner, TKey, TResult> Enumerable<TResult> hashJoin(Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight,
+      Predicate2<TSource, TInner> predicate, long memoryBudget);
+
   /**
    * For each row of the current enumerable returns the correlated rows
    * from the {@code inner} enumerable (nested loops join).
@@ -802,6 +840,17 @@ <TKey extends Comparable> Enumerable<TSource> orderBy(
   <TKey> Enumerable<TSource> orderBy(Function1<TSource, TKey> keySelector,
       Comparator<TKey> comparator);
 
+  /**
+   * Sorts the elements of a sequence in ascending
+   * order by using a specified comparer, using a limited amount of memory.
+   *
+   * <p>If the elements do not fit into {@code memoryBudget} bytes, sorted
+   * runs are written to temporary files and merged. A negative
+   * {@code memoryBudget} means no limit. The sort is stable.</p>
+   */
+  <TKey> Enumerable<TSource> orderBy(Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, long memoryBudget);
+
   /**
    * Sorts the elements of a sequence in descending
    * order according to a key.
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Enumerable that sorts its input, spilling sorted runs to temporary files if
+ * the input does not fit within a memory budget.
+ *
+ * <p>Rows and their keys are accumulated in array buffers. When the estimated
+ * size of the buffer exceeds the budget, the buffer is sorted and written to a
+ * {@link SpillFile} (a "run"), and the buffer is emptied. At the end of the
+ * input, the runs and the remaining buffer are merged lazily. If there are
+ * more than {@link #MERGE_FAN_IN} runs, groups of runs are first merged into
+ * longer runs.
+ *
+ * <p>The sort is stable: rows with equal keys are returned in the order they
+ * were read.
+ *
+ * @param <TSource> Element type
+ * @param <TKey> Sort key type
+ */
+class ExternalSortEnumerable<TSource, TKey> extends AbstractEnumerable<TSource> {
+  /** Maximum number of runs that are merged at a time. */
+  static final int MERGE_FAN_IN = 64;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** Estimated bytes per buffered row, in addition to the row itself, for
+   * the slots in the row, key and permutation arrays. */
+  private static final int ROW_OVERHEAD = 20;
+
+  private final Enumerable<TSource> source;
+  private final Function1<TSource, TKey> keySelector;
+  private final Comparator<TKey> comparator;
+  private final long memoryBudget;
+
+  /**
+   * Creates an ExternalSortEnumerable.
+   *
+   * @param source Input
+   * @param keySelector Function that computes the sort key of a row
+   * @param comparator Comparator for keys; if null, keys must be
+   *                   {@link Comparable} and not null
+   * @param memoryBudget Maximum number of bytes to buffer before spilling;
+   *                     if negative, never spills
+   */
+  ExternalSortEnumerable(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector, Comparator<TKey> comparator,
+      long memoryBudget) {
+    this.source = source;
+    this.keySelector = keySelector;
+    //noinspection unchecked
+    this.comparator = comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+    this.memoryBudget = memoryBudget;
+  }
+
+  public Enumerator<TSource> enumerator() {
+    final Buffer buffer = new Buffer();
+    final List<SpillFile<TSource>> runs = new ArrayList<>();
+    try {
+      try (Enumerator<TSource> os = source.enumerator()) {
+        while (os.moveNext()) {
+          buffer.add(os.current());
+          if (memoryBudget >= 0 && buffer.bytes > memoryBudget) {
+            runs.add(buffer.spill());
+          }
+        }
+      }
+      if (runs.isEmpty()) {
+        return Linq4j.enumerator(buffer.sortedRows());
+      }
+      // The remaining buffer counts as one more input to the final merge.
+      while (runs.size() >= MERGE_FAN_IN) {
+        mergePass(runs);
+      }
+      final List<Enumerable<TSource>> inputs = new ArrayList<>();
+      for (SpillFile<TSource> run : runs) {
+        inputs.add(run.asEnumerable());
+      }
+      inputs.add(Linq4j.asEnumerable(buffer.sortedRows()));
+      return new MergeEnumerator(inputs, runs);
+    } catch (RuntimeException | Error e) {
+      closeAll(runs);
+      throw e;
+    }
+  }
+
+  /** Merges groups of adjacent runs into longer runs, reducing the number of
+   * runs by a factor of {@link #MERGE_FAN_IN}. Adjacent runs are merged so
+   * that the sort remains stable. */
+  private void mergePass(List<SpillFile<TSource>> runs) {
+    final List<SpillFile<TSource>> mergedRuns = new ArrayList<>();
+    try {
+      for (int i = 0; i < runs.size(); i += MERGE_FAN_IN) {
+        final List<SpillFile<TSource>> group =
+            new ArrayList<>(
+                runs.subList(i, Math.min(i + MERGE_FAN_IN, runs.size())));
+        final List<Enumerable<TSource>> inputs = new ArrayList<>();
+        for (SpillFile<TSource> run : group) {
+          inputs.add(run.asEnumerable());
+        }
+        final SpillFile<TSource> mergedRun = new SpillFile<>();
+        mergedRuns.add(mergedRun);
+        try (Enumerator<TSource> merge = new MergeEnumerator(inputs, group)) {
+          while (merge.moveNext()) {
+            mergedRun.add(merge.current());
+          }
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      closeAll(mergedRuns);
+      throw e;
+    }
+    runs.clear();
+    runs.addAll(mergedRuns);
+  }
+
+  private static void closeAll(List<? extends SpillFile<?>> files) {
+    for (SpillFile<?> file : files) {
+      file.close();
+    }
+  }
+
+  /** Buffer of rows and their keys, held in arrays. */
+  private class Buffer {
+    private Object[] rows = new Object[INITIAL_CAPACITY];
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private int count;
+    private long bytes;
+
+    void add(TSource row) {
+      if (count == rows.length) {
+        final int capacity = rows.length * 2;
+        rows = Arrays.copyOf(rows, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+      }
+      rows[count] = row;
+      keys[count] = keySelector.apply(row);
+      ++count;
+      bytes += SpillFile.estimateSize(row) + ROW_OVERHEAD;
+    }
+
+    /** Writes the rows, in sorted order, to a new run, and empties this
+     * buffer. */
+    SpillFile<TSource> spill() {
+      final SpillFile<TSource> run = new SpillFile<>();
+      try {
+        for (TSource row : sortedRows()) {
+          run.add(row);
+        }
+      } catch (RuntimeException | Error e) {
+        run.close();
+        throw e;
+      }
+      rows = new Object[INITIAL_CAPACITY];
+      keys = new Object[INITIAL_CAPACITY];
+      count = 0;
+      bytes = 0;
+      return run;
+    }
+
+    /** Returns the rows in sorted order. */
+    List<TSource> sortedRows() {
+      final int[] permutation = new int[count];
+      for (int i = 0; i < count; i++) {
+        permutation[i] = i;
+      }
+      sort(permutation, new int[count], 0, count);
+      final List<TSource> list = new ArrayList<>(count);
+      for (int i : permutation) {
+        //noinspection unchecked
+        list.add((TSource) rows[i]);
+      }
+      return list;
+    }
+
+    /** Sorts a range of a permutation by key, using merge sort (which, unlike
+     * {@link Arrays#sort(int[])}, allows a custom comparison, and is
+     * stable). */
+    private void sort(int[] permutation, int[] work, int start, int end) {
+      if (end - start < 2) {
+        return;
+      }
+      final int middle = (start + end) >>> 1;
+      sort(permutation, work, start, middle);
+      sort(permutation, work, middle, end);
+      if (compare(permutation[middle - 1], permutation[middle]) <= 0) {
+        return; // already in order
+      }
+      System.arraycopy(permutation, start, work, start, end - start);
+      int i = start;
+      int j = middle;
+      int k = start;
+      while (i < middle && j < end) {
+        permutation[k++] = compare(work[j], work[i]) < 0 ? work[j++] : work[i++];
+      }
+      while (i < middle) {
+        permutation[k++] = work[i++];
+      }
+      while (j < end) {
+        permutation[k++] = work[j++];
+      }
+    }
+
+    private int compare(int i, int j) {
+      //noinspection unchecked
+      return comparator.compare((TKey) keys[i], (TKey) keys[j]);
+    }
+  }
+
+  /** Current row of one of the inputs to a merge. */
+  private class Cursor {
+    final Enumerator<TSource> enumerator;
+    final int ordinal;
+    TSource row;
+    TKey key;
+
+    Cursor(Enumerator<TSource> enumerator, int ordinal) {
+      this.enumerator = enumerator;
+      this.ordinal = ordinal;
+    }
+
+    boolean advance() {
+      if (enumerator.moveNext()) {
+        row = enumerator.current();
+        key = keySelector.apply(row);
+        return true;
+      }
+      return false;
+    }
+
+    int compareTo(Cursor that) {
+      final int c = comparator.compare(key, that.key);
+      // Among equal keys, rows from earlier inputs come first.
+      return c != 0 ? c : Integer.compare(ordinal, that.ordinal);
+    }
+  }
+
+  /** Enumerator that merges sorted inputs. Closes the given runs when
+   * closed. */
+  private class MergeEnumerator implements Enumerator<TSource> {
+    private final List<Enumerable<TSource>> inputs;
+    private final List<SpillFile<TSource>> runs;
+    private final List<Cursor> cursors = new ArrayList<>();
+    private final PriorityQueue<Cursor> queue =
+        new PriorityQueue<>(Cursor::compareTo);
+    private TSource current;
+
+    MergeEnumerator(List<Enumerable<TSource>> inputs,
+        List<SpillFile<TSource>> runs) {
+      this.inputs = inputs;
+      this.runs = runs;
+      start();
+    }
+
+    private void start() {
+      for (Enumerable<TSource> input : inputs) {
+        final Cursor cursor = new Cursor(input.enumerator(), cursors.size());
+        cursors.add(cursor);
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+    }
+
+    public TSource current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      final Cursor cursor = queue.poll();
+      if (cursor == null) {
+        return false;
+      }
+      current = cursor.row;
+      if (cursor.advance()) {
+        queue.add(cursor);
+      }
+      return true;
+    }
+
+    public void reset() {
+      closeCursors();
+      current = null;
+      start();
+    }
+
+    private void closeCursors() {
+      queue.clear();
+      for (Cursor cursor : cursors) {
+        cursor.enumerator.close();
+      }
+      cursors.clear();
+    }
+
+    public void close() {
+      closeCursors();
+      closeAll(runs);
+    }
+  }
+}
+
+// End ExternalSortEnumerable.java
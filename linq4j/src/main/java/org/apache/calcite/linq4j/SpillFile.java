@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Sequence of objects that is written to a temporary file and can be read
+ * back any number of times.
+ *
+ * <p>Used by operators such as hash join, sort and aggregate when their
+ * working set does not fit within a memory budget. Elements are written using
+ * Java serialization, so they (and their fields) must be
+ * {@link java.io.Serializable}; arrays and lists of the usual runtime values
+ * ({@link String}, boxed primitives, {@link BigDecimal} and so forth) are.
+ *
+ * <p>The file is created lazily, when the first element is added, and is
+ * deleted by {@link #close()}.
+ *
+ * @param <E> Element type
+ */
+public class SpillFile<E> implements AutoCloseable {
+  /** Number of elements after which the output stream forgets the objects it
+   * has written. Without this, the stream would keep a reference to every
+   * element, defeating the purpose of spilling. */
+  private static final int RESET_INTERVAL = 1024;
+
+  private File file;
+  private ObjectOutputStream out;
+  private ClassLoader classLoader;
+  private int size;
+  private boolean closed;
+
+  /** Creates an empty SpillFile. */
+  public SpillFile() {
+  }
+
+  /** Returns the number of elements in this file. */
+  public int size() {
+    return size;
+  }
+
+  /** Appends an element. */
+  public void add(E e) {
+    if (closed) {
+      throw new IllegalStateException("spill file is closed");
+    }
+    try {
+      if (out == null) {
+        if (file != null) {
+          throw new IllegalStateException(
+              "cannot add to spill file after it has been read");
+        }
+        file = File.createTempFile("linq4j", ".spill");
+        file.deleteOnExit();
+        out = new ObjectOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+      }
+      if (classLoader == null && e != null) {
+        // Remember the loader of the element class; rows may be instances of
+        // generated classes that the default loader cannot see.
+        classLoader = e.getClass().getClassLoader();
+      }
+      out.writeObject(e);
+      if (++size % RESET_INTERVAL == 0) {
+        out.reset();
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException("while writing to spill file", ex);
+    }
+  }
+
+  /** Finishes writing, and returns an enumerable that reads the elements in
+   * the order they were added. No more elements may be added. */
+  public Enumerable<E> asEnumerable() {
+    finishWriting();
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        return new SpillFileEnumerator();
+      }
+    };
+  }
+
+  private void finishWriting() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw new RuntimeException("while writing to spill file", e);
+      } finally {
+        out = null;
+      }
+    }
+  }
+
+  /** Deletes the underlying file. */
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      finishWriting();
+    } finally {
+      if (file != null) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        file = null;
+      }
+    }
+  }
+
+  /** Returns a rough estimate of the number of bytes of heap occupied by an
+   * object, including the objects it references.
+   *
+   * <p>Understands the types that commonly occur in rows: arrays, lists,
+   * maps, strings, boxed primitives and {@link BigDecimal}. Other objects are
+   * assumed to be small. The estimate is meant for deciding when to spill,
+   * not for accounting. */
+  public static long estimateSize(Object o) {
+    if (o == null) {
+      return 0;
+    } else if (o instanceof Object[]) {
+      final Object[] objects = (Object[]) o;
+      long size = 16 + 8L * objects.length;
+      for (Object object : objects) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof String) {
+      return 40 + 2L * ((String) o).length();
+    } else if (o instanceof BigDecimal) {
+      return 64;
+    } else if (o instanceof Long
+        || o instanceof Double) {
+      return 24;
+    } else if (o instanceof Number
+        || o instanceof Boolean
+        || o instanceof Character) {
+      return 16;
+    } else if (o instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) o;
+      long size = 24 + 8L * collection.size();
+      for (Object object : collection) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof Map) {
+      long size = 48;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
+        size += 32 + estimateSize(entry.getKey())
+            + estimateSize(entry.getValue());
+      }
+      return size;
+    } else if (o instanceof byte[]) {
+      return 16 + ((byte[]) o).length;
+    } else {
+      return 64;
+    }
+  }
+
+  /** Enumerator that reads the elements of a spill file. */
+  private class SpillFileEnumerator implements Enumerator<E> {
+    private ObjectInputStream in;
+    private int i = 0;
+    private E current;
+
+    public E current() {
+      if (i == 0) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (i >= size) {
+        return false;
+      }
+      try {
+        if (in == null) {
+          if (closed) {
+            throw new IllegalStateException("spill file is closed");
+          }
+          in = new ClassLoaderObjectInputStream(
+              new BufferedInputStream(new FileInputStream(file)),
+              classLoader);
+        }
+        //noinspection unchecked
+        current = (E) in.readObject();
+        ++i;
+        return true;
+      } catch (IOException | ClassNotFoundException e) {
+        throw new RuntimeException("while reading spill file", e);
+      }
+    }
+
+    public void reset() {
+      close();
+      i = 0;
+      current = null;
+    }
+
+    public void close() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw new RuntimeException("while reading spill file", e);
+        } finally {
+          in = null;
+        }
+      }
+    }
+  }
+
+  /** Object input stream that resolves classes using a given class loader,
+   * falling back to the default mechanism. */
+  private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader classLoader;
+
+    ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader)
+        throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+          // fall through
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
+
+// End SpillFile.java
@@ -56,6 +56,7 @@
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -1071,6 +1072,46 @@ public int hashCode(Integer integer) {
         s);
   }
 
+  /** Tests a hash join whose inner input does not fit into its memory
+   * budget, and is therefore partitioned into temporary files. The result
+   * must be the same as the in-memory join. */
+  @Test public void testSpillingHashJoin() {
+    final Enumerable<Integer> outer = Linq4j.asEnumerable(range(0, 200));
+    final Enumerable<Integer> inner = Linq4j.asEnumerable(range(0, 100));
+    final Function1<Integer, Integer> outerKey = i -> i % 50;
+    final Function1<Integer, Integer> innerKey = i -> i % 41;
+    final Function2<Integer, Integer, String> selector = (i, j) -> i + ":" + j;
+    final Predicate2<Integer, Integer> predicate = (i, j) -> i < j;
+    for (boolean nullsOnLeft : new boolean[] {false, true}) {
+      for (boolean nullsOnRight : new boolean[] {false, true}) {
+        for (Predicate2<Integer, Integer> p : Arrays.asList(null, predicate)) {
+          final List<String> expected =
+              outer.hashJoin(inner, outerKey, innerKey, selector, null,
+                  nullsOnLeft, nullsOnRight, p)
+                  .orderBy(Functions.identitySelector())
+                  .toList();
+          assertThat(expected.isEmpty(), is(false));
+          for (long memoryBudget : new long[] {0L, 1_000L, 1_000_000L}) {
+            final List<String> actual =
+                outer.hashJoin(inner, outerKey, innerKey, selector, null,
+                    nullsOnLeft, nullsOnRight, p, memoryBudget)
+                    .orderBy(Functions.identitySelector())
+                    .toList();
+            assertThat(actual, equalTo(expected));
+          }
+        }
+      }
+    }
+  }
+
+  private static List<Integer> range(int start, int end) {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
   @Test public void testJoinCartesianProduct() {
     int n =
         Linq4j.asEnumerable(emps)
@@ -1436,6 +1477,64 @@ public boolean apply(Department v1, Integer v2) {
             .toList().toString());
   }
 
+  /** Tests sort with a memory budget. With a small budget, the sort spills
+   * runs to disk, and with a budget of 0 there are so many runs that they
+   * are merged in more than one pass. The sort must still be stable. */
+  @Test public void testOrderByWithMemoryBudget() {
+    final List<String> list = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      list.add((i * 37) % 100 + ":" + i);
+    }
+    final Function1<String, Integer> keySelector =
+        s -> Integer.valueOf(s.substring(0, s.indexOf(':')));
+    final List<String> expected =
+        Linq4j.asEnumerable(list).orderBy(keySelector).toList();
+    for (long memoryBudget : new long[] {-1L, 0L, 2_000L, 1_000_000L}) {
+      assertThat(
+          Linq4j.asEnumerable(list)
+              .orderBy(keySelector, null, memoryBudget)
+              .toList(),
+          equalTo(expected));
+      assertThat(
+          Linq4j.asEnumerable(list)
+              .orderBy(keySelector, Collections.reverseOrder(), memoryBudget)
+              .toList(),
+          equalTo(
+              Linq4j.asEnumerable(list)
+                  .orderBy(keySelector, Collections.reverseOrder())
+                  .toList()));
+    }
+  }
+
+  /** Tests the Top-N version of sort, which has an offset and fetch, against
+   * a full sort followed by skip and take. */
+  @Test public void testOrderByWithOffsetAndFetch() {
+    final List<String> list = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      list.add((i * 37) % 10 + ":" + i);
+    }
+    final Function1<String, Integer> keySelector =
+        s -> Integer.valueOf(s.substring(0, s.indexOf(':')));
+    for (int offset : new int[] {0, 1, 15, 99, 100, 150}) {
+      for (int fetch : new int[] {0, 1, 5, 27, 200}) {
+        assertThat(
+            EnumerableDefaults.orderBy(Linq4j.asEnumerable(list), keySelector,
+                Collections.reverseOrder(), offset, fetch).toList(),
+            equalTo(
+                Linq4j.asEnumerable(list)
+                    .orderBy(keySelector, Collections.reverseOrder())
+                    .skip(offset)
+                    .take(fetch)
+                    .toList()));
+      }
+    }
+    assertThat(
+        EnumerableDefaults.orderBy(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, null, 1, 2).toList().toString(),
+        equalTo("[Employee(name: Eric, deptno:10),"
+            + " Employee(name: Janet, deptno:10)]"));
+  }
+
   @Test public void testOrderByDescending() {
     assertEquals(
         "[Employee(name: Janet, deptno:10),"
@@ -1961,6 +2060,172 @@ public int hashCode(Integer integer) {
         s);
   }
 
+  @Test public void testGroupByWithMemoryBudget() {
+    final Enumerable<Integer> source = Linq4j.asEnumerable(range(0, 1000));
+    final Function1<Integer, Integer> keySelector = i -> i % 97;
+    final Function0<Integer> initializer = () -> 0;
+    final Function2<Integer, Integer, Integer> adder = (acc, i) -> acc + i;
+    final Function2<Integer, Integer, String> resultSelector =
+        (key, acc) -> key + ":" + acc;
+    final List<String> expected =
+        source.groupBy(keySelector, initializer, adder, resultSelector)
+            .orderBy(Functions.identitySelector())
+            .toList();
+    assertThat(expected.size(), is(97));
+    for (EqualityComparer<Integer> comparer
+        : Arrays.asList(null, Functions.<Integer>identityComparer())) {
+      for (long memoryBudget : new long[] {-1L, 0L, 1_000L, 1_000_000L}) {
+        final Enumerable<String> actual =
+            source.groupBy(keySelector, initializer, adder, resultSelector,
+                comparer, memoryBudget);
+        assertThat(actual.orderBy(Functions.identitySelector()).toList(),
+            equalTo(expected));
+        // Enumerating a second time gives the same result.
+        assertThat(actual.count(), is(97));
+      }
+    }
+  }
+
+  @Test public void testSortedGroupBy() {
+    final Function2<Integer, Integer, String> resultSelector =
+        (key, acc) -> key + ":" + acc;
+    final Enumerable<String> groups =
+        EnumerableDefaults.sortedGroupBy(
+            Linq4j.asEnumerable(Arrays.asList(1, 1, 2, 3, 3, 3, 1)),
+            Functions.identitySelector(), () -> 0, (acc, i) -> acc + i,
+            resultSelector, null);
+    // Only adjacent elements are grouped, so key 1 occurs twice.
+    assertThat(groups.toList().toString(), is("[1:2, 2:2, 3:9, 1:1]"));
+    assertThat(groups.toList().toString(), is("[1:2, 2:2, 3:9, 1:1]"));
+
+    final Enumerable<String> empty =
+        EnumerableDefaults.sortedGroupBy(
+            Linq4j.asEnumerable(Collections.<Integer>emptyList()),
+            Functions.identitySelector(), () -> 0, (acc, i) -> acc + i,
+            resultSelector, Functions.identityComparer());
+    assertThat(empty.count(), is(0));
+  }
+
+  @Test public void testParallelGroupBy() {
+    final Enumerable<Integer> source = Linq4j.asEnumerable(range(0, 10000));
+    final Function1<Integer, Integer> keySelector = i -> i % 97;
+    final Function0<Integer> initializer = () -> 0;
+    final Function2<Integer, Integer, Integer> adder = (acc, i) -> acc + i;
+    final Function2<Integer, Integer, String> resultSelector =
+        (key, acc) -> key + ":" + acc;
+    final List<String> expected =
+        source.groupBy(keySelector, initializer, adder, resultSelector)
+            .orderBy(Functions.identitySelector())
+            .toList();
+    for (EqualityComparer<Integer> comparer
+        : Arrays.asList(null, Functions.<Integer>identityComparer())) {
+      for (int parallelism : new int[] {1, 2, 4, 7}) {
+        final Enumerable<String> actual =
+            EnumerableDefaults.parallelGroupBy(source, keySelector,
+                initializer, adder, resultSelector, comparer, parallelism);
+        assertThat(actual.orderBy(Functions.identitySelector()).toList(),
+            equalTo(expected));
+        assertThat(actual.count(), is(97));
+      }
+    }
+
+    // The key of each row is computed once.
+    final AtomicInteger keyCount = new AtomicInteger();
+    EnumerableDefaults.parallelGroupBy(source,
+        i -> {
+          keyCount.incrementAndGet();
+          return i % 97;
+        },
+        initializer, adder, resultSelector, null, 4).count();
+    assertThat(keyCount.get(), is(10000));
+
+    // An exception thrown by a worker is re-thrown to the caller.
+    final Enumerable<String> failing =
+        EnumerableDefaults.parallelGroupBy(source, keySelector, initializer,
+            (acc, i) -> {
+              if (i == 5000) {
+                throw new IllegalStateException("bad row " + i);
+              }
+              return acc + i;
+            },
+            resultSelector, null, 4);
+    try {
+      failing.count();
+      fail("expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("bad row 5000"));
+    }
+  }
+
+  @Test public void testParallelHashJoin() {
+    final List<Integer> outerList = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      outerList.add(i % 10 == 0 ? null : i);
+    }
+    final Enumerable<Integer> outer = Linq4j.asEnumerable(outerList);
+    final Enumerable<Integer> inner = Linq4j.asEnumerable(range(500, 1000));
+    final Function1<Integer, Integer> outerKeySelector =
+        i -> i == null ? null : i % 300;
+    final Function1<Integer, Integer> innerKeySelector = i -> i % 300;
+    final Function2<Integer, Integer, String> resultSelector =
+        (o, i) -> o + ":" + i;
+    for (Predicate2<Integer, Integer> predicate
+        : Arrays.<Predicate2<Integer, Integer>>asList(null, (o, i) -> o < i)) {
+      for (boolean generateNullsOnLeft : new boolean[] {false, true}) {
+        for (boolean generateNullsOnRight : new boolean[] {false, true}) {
+          final List<String> expected =
+              EnumerableDefaults.hashJoin(outer, inner, outerKeySelector,
+                  innerKeySelector, resultSelector, null, generateNullsOnLeft,
+                  generateNullsOnRight, predicate)
+                  .orderBy(Functions.identitySelector())
+                  .toList();
+          for (int parallelism : new int[] {1, 2, 4, 7}) {
+            final Enumerable<String> actual =
+                EnumerableDefaults.parallelHashJoin(outer, inner,
+                    outerKeySelector, innerKeySelector, resultSelector,
+                    Functions.identityComparer(), generateNullsOnLeft,
+                    generateNullsOnRight, predicate, parallelism);
+            assertThat(actual.orderBy(Functions.identitySelector()).toList(),
+                equalTo(expected));
+          }
+        }
+      }
+    }
+  }
+
+  @Test public void testExchange() {
+    final List<Integer> list = range(0, 1000);
+    for (int bufferSize : new int[] {1, 2, 100}) {
+      final Enumerable<Integer> exchange =
+          EnumerableDefaults.exchange(Linq4j.asEnumerable(list), bufferSize);
+      assertThat(exchange.toList(), equalTo(list));
+      // Closing the enumerator before the end stops the producer.
+      try (Enumerator<Integer> enumerator = exchange.enumerator()) {
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is(0));
+        enumerator.reset();
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is(0));
+      }
+    }
+
+    // An exception thrown by the input is re-thrown to the consumer.
+    final Enumerable<Integer> failing =
+        EnumerableDefaults.exchange(
+            Linq4j.asEnumerable(list).select(i -> {
+              if (i == 500) {
+                throw new IllegalStateException("bad row " + i);
+              }
+              return i;
+            }), 2);
+    try {
+      failing.count();
+      fail("expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("bad row 500"));
+    }
+  }
+
   @Test public void testGroupByWithKeySelectorAndElementSelectorAndResultSelector() {
     String s =
         Linq4j.asEnumerable(emps)
@@ -411,4 +411,29 @@ SqlDrop SqlDropFunction(Span s, boolean replace) :
     }
 }
 
+/**
+ * Parses an ANALYZE TABLE statement.
+ */
+SqlNode SqlAnalyzeTable() :
+{
+    final Span s;
+    final SqlIdentifier id;
+    SqlNodeList columnList = null;
+    final List<SqlNode> list = new ArrayList<SqlNode>();
+}
+{
+    <ANALYZE> { s = span(); } <TABLE> id = CompoundIdentifier()
+    [
+        <COMPUTE> <STATISTICS>
+        [
+            <FOR> <COLUMNS> SimpleIdentifierCommaList(list) {
+                columnList = new SqlNodeList(list, s.end(this));
+            }
+        ]
+    ]
+    {
+        return SqlDdlNodes.analyzeTable(s.end(this), id, columnList);
+    }
+}
+
 // End parserImpls.ftl
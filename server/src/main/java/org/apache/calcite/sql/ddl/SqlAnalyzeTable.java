@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.sql.ddl;
+
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.profile.ColumnStatisticCollector;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelReferentialConstraint;
+import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlDdl;
+import org.apache.calcite.sql.SqlExecutableStatement;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlSpecialOperator;
+import org.apache.calcite.sql.SqlUtil;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.statistic.StatisticCatalog;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableNullableList;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.apache.calcite.util.Static.RESOURCE;
+
+/**
+ * Parse tree for {@code ANALYZE TABLE} statement.
+ *
+ * <blockquote><code>ANALYZE TABLE name
+ * [ COMPUTE STATISTICS [ FOR COLUMNS column [, column ]* ] ]</code>
+ * </blockquote>
+ *
+ * <p>Scans the table, feeding every value of each column into a
+ * {@link ColumnStatisticCollector}, then stores its row count and statistics
+ * about each column (distinct count, null fraction, most common values and
+ * histogram) in {@link StatisticCatalog}.
+ * The planner uses those statistics from then on, rather than running
+ * queries or relying on the statistics the table provides. The catalog
+ * entry is discarded when the table is modified.
+ *
+ * <p>If there is a {@code FOR COLUMNS} clause, only the given columns are
+ * profiled. Columns whose type is not numeric, character, boolean or
+ * datetime are not profiled.
+ *
+ * <p>The row count and null fractions are exact. Distinct counts are exact
+ * up to a thousand values, and beyond that are estimated by a HyperLogLog
+ * sketch over all rows, in bounded memory.
+ *
+ * <p>Data that happens to be unique does not make a key, because later
+ * inserts may break it; a column whose values are all different is only
+ * recorded as having a distinct count equal to the row count. Keys are
+ * those the table declares.
+ */
+public class SqlAnalyzeTable extends SqlDdl implements SqlExecutableStatement {
+  /** Number of buckets in each column's histogram. */
+  private static final int HISTOGRAM_BUCKET_COUNT = 100;
+
+  /** Maximum number of most common values recorded for each column. */
+  private static final int MOST_COMMON_COUNT = 100;
+
+  private static final SqlOperator OPERATOR =
+      new SqlSpecialOperator("ANALYZE TABLE", SqlKind.OTHER_DDL);
+
+  private final SqlIdentifier name;
+  private final SqlNodeList columnList;
+
+  /** Creates a SqlAnalyzeTable. */
+  SqlAnalyzeTable(SqlParserPos pos, SqlIdentifier name,
+      SqlNodeList columnList) {
+    super(OPERATOR, pos);
+    this.name = Objects.requireNonNull(name);
+    this.columnList = columnList; // may be null
+  }
+
+  public List<SqlNode> getOperandList() {
+    return ImmutableNullableList.of(name, columnList);
+  }
+
+  @Override public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+    writer.keyword("ANALYZE");
+    writer.keyword("TABLE");
+    name.unparse(writer, leftPrec, rightPrec);
+    writer.keyword("COMPUTE");
+    writer.keyword("STATISTICS");
+    if (columnList != null) {
+      writer.keyword("FOR");
+      writer.keyword("COLUMNS");
+      final SqlWriter.Frame frame = writer.startList("", "");
+      for (SqlNode c : columnList) {
+        writer.sep(",");
+        c.unparse(writer, 0, 0);
+      }
+      writer.endList(frame);
+    }
+  }
+
+  public void execute(CalcitePrepare.Context context) {
+    final Pair<CalciteSchema, String> pair =
+        SqlDdlNodes.schema(context, false, name);
+    final boolean caseSensitive = context.config().caseSensitive();
+    final CalciteSchema.TableEntry tableEntry =
+        pair.left.getTable(pair.right, caseSensitive);
+    if (tableEntry == null) {
+      throw SqlUtil.newContextException(name.getParserPosition(),
+          RESOURCE.tableNotFound(pair.right, Locale.getDefault()));
+    }
+    final Table table = tableEntry.getTable();
+    final RelDataType rowType = table.getRowType(context.getTypeFactory());
+
+    // Figure out which columns to profile.
+    final List<RelDataTypeField> fields = new ArrayList<>();
+    if (columnList == null) {
+      fields.addAll(rowType.getFieldList());
+    } else {
+      for (SqlNode c : columnList) {
+        final SqlIdentifier id = (SqlIdentifier) c;
+        final RelDataTypeField field =
+            rowType.getField(id.getSimple(), caseSensitive, false);
+        if (field == null) {
+          throw SqlUtil.newContextException(id.getParserPosition(),
+              RESOURCE.columnNotFound(id.getSimple(), Locale.getDefault()));
+        }
+        fields.add(field);
+      }
+    }
+    fields.removeIf(field -> !isAnalyzable(field.getType()));
+    final List<ColumnStatisticCollector> collectors = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      collectors.add(
+          new ColumnStatisticCollector(HISTOGRAM_BUCKET_COUNT,
+              MOST_COMMON_COUNT));
+    }
+
+    // Scan the table, counting the rows and collecting statistics about
+    // every value.
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .defaultSchema(context.getRootSchema().plus())
+        .build();
+    final RelBuilder b = RelBuilder.create(config);
+    b.scan(tableEntry.path());
+    final List<Integer> ordinals = new ArrayList<>();
+    for (RelDataTypeField field : fields) {
+      ordinals.add(field.getIndex());
+    }
+    final RelNode rel = b.project(b.fields(ordinals)).build();
+    long rowCount = 0;
+    try (PreparedStatement statement = context.getRelRunner().prepare(rel);
+         ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        ++rowCount;
+        for (int i = 0; i < collectors.size(); i++) {
+          collectors.get(i).add(value(resultSet.getObject(i + 1)));
+        }
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+
+    final ImmutableMap.Builder<Integer, ColumnStatistic> columnStatistics =
+        ImmutableMap.builder();
+    for (int i = 0; i < collectors.size(); i++) {
+      columnStatistics.put(ordinals.get(i), collectors.get(i).finish());
+    }
+    StatisticCatalog.instance().put(table,
+        new AnalyzedStatistic(table.getStatistic(), rowCount,
+            columnStatistics.build()));
+  }
+
+  /** Returns whether the values of a column of a given type can be
+   * profiled. */
+  private static boolean isAnalyzable(RelDataType type) {
+    final SqlTypeFamily family = type.getSqlTypeName().getFamily();
+    if (family == null) {
+      return false;
+    }
+    switch (family) {
+    case NUMERIC:
+    case CHARACTER:
+    case BOOLEAN:
+    case DATE:
+    case TIME:
+    case TIMESTAMP:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Converts a value from JDBC to the representation that the planner uses
+   * for literals of its type. */
+  private static Comparable value(Object o) {
+    if (o == null) {
+      return NullSentinel.INSTANCE;
+    }
+    if (o instanceof Timestamp) {
+      return SqlFunctions.toLong((Timestamp) o);
+    }
+    if (o instanceof Time) {
+      return SqlFunctions.toInt((Time) o);
+    }
+    if (o instanceof java.sql.Date) {
+      return SqlFunctions.toInt((java.sql.Date) o);
+    }
+    return (Comparable) o;
+  }
+
+  /** Statistic of a table that has been analyzed. Keys, collations,
+   * distribution and referential constraints are those of the table
+   * itself. */
+  private static class AnalyzedStatistic implements Statistic {
+    private final Statistic statistic;
+    private final double rowCount;
+    private final Map<Integer, ColumnStatistic> columnStatistics;
+
+    AnalyzedStatistic(Statistic statistic, double rowCount,
+        Map<Integer, ColumnStatistic> columnStatistics) {
+      this.statistic = Objects.requireNonNull(statistic);
+      this.rowCount = rowCount;
+      this.columnStatistics = columnStatistics;
+    }
+
+    public Double getRowCount() {
+      return rowCount;
+    }
+
+    public boolean isKey(ImmutableBitSet columns) {
+      return statistic.isKey(columns);
+    }
+
+    public List<RelReferentialConstraint> getReferentialConstraints() {
+      return statistic.getReferentialConstraints();
+    }
+
+    public List<RelCollation> getCollations() {
+      return statistic.getCollations();
+    }
+
+    public RelDistribution getDistribution() {
+      return statistic.getDistribution();
+    }
+
+    @Override public ColumnStatistic getColumnStatistic(int column) {
+      final ColumnStatistic columnStatistic = columnStatistics.get(column);
+      return columnStatistic != null
+          ? columnStatistic
+          : statistic.getColumnStatistic(column);
+    }
+  }
+}
+
+// End SqlAnalyzeTable.java
@@ -125,7 +125,7 @@ public void execute(CalcitePrepare.Context context) {
     if (subSchema0 != null) {
       if (!getReplace() && !ifNotExists) {
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.schemaExists(pair.right));
+            RESOURCE.schemaExists(pair.right, Locale.getDefault()));
       }
     }
     final Schema subSchema;
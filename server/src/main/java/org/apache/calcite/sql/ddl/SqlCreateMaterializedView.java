@@ -46,6 +46,7 @@
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import static org.apache.calcite.util.Static.RESOURCE;
@@ -105,7 +106,7 @@ public void execute(CalcitePrepare.Context context) {
       if (!ifNotExists) {
         // They did not specify IF NOT EXISTS, so give error.
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.tableExists(pair.right));
+            RESOURCE.tableExists(pair.right, Locale.getDefault()));
       }
       return;
     }
@@ -35,6 +35,7 @@
 import org.apache.calcite.util.Pair;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import static org.apache.calcite.util.Static.RESOURCE;
@@ -80,7 +81,7 @@ public void execute(CalcitePrepare.Context context) {
     if (subSchema0 != null) {
       if (!getReplace() && !ifNotExists) {
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.schemaExists(pair.right));
+            RESOURCE.schemaExists(pair.right, Locale.getDefault()));
       }
     }
     final Schema subSchema = new AbstractSchema();
@@ -73,6 +73,7 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import static org.apache.calcite.util.Static.RESOURCE;
@@ -141,7 +142,7 @@ public void execute(CalcitePrepare.Context context) {
       if (columnList != null
           && queryRowType.getFieldCount() != columnList.size()) {
         throw SqlUtil.newContextException(columnList.getParserPosition(),
-            RESOURCE.columnCountMismatch());
+            RESOURCE.columnCountMismatch(Locale.getDefault()));
       }
     } else {
       queryRowType = null;
@@ -154,7 +155,7 @@ public void execute(CalcitePrepare.Context context) {
         // "CREATE TABLE t" is invalid; because there is no "AS query" we need
         // a list of column names and types, "CREATE TABLE t (INT c)".
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.createTableRequiresColumnList());
+            RESOURCE.createTableRequiresColumnList(Locale.getDefault()));
       }
       columnList = new ArrayList<>();
       for (String name : queryRowType.getFieldNames()) {
@@ -180,7 +181,7 @@ public void execute(CalcitePrepare.Context context) {
         final SqlIdentifier id = (SqlIdentifier) c.e;
         if (queryRowType == null) {
           throw SqlUtil.newContextException(id.getParserPosition(),
-              RESOURCE.createTableRequiresColumnTypes(id.getSimple()));
+              RESOURCE.createTableRequiresColumnTypes(id.getSimple(), Locale.getDefault()));
         }
         final RelDataTypeField f = queryRowType.getFieldList().get(c.i);
         final ColumnStrategy strategy = f.getType().isNullable()
@@ -217,7 +218,7 @@ public void execute(CalcitePrepare.Context context) {
       if (!ifNotExists) {
         // They did not specify IF NOT EXISTS, so give error.
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.tableExists(pair.right));
+            RESOURCE.tableExists(pair.right, Locale.getDefault()));
       }
       return;
     }
@@ -42,6 +42,7 @@
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import static org.apache.calcite.util.Static.RESOURCE;
@@ -100,7 +101,7 @@ public void execute(CalcitePrepare.Context context) {
       if (function.getParameters().isEmpty()) {
         if (!getReplace()) {
           throw SqlUtil.newContextException(name.getParserPosition(),
-              RESOURCE.viewExists(pair.right));
+              RESOURCE.viewExists(pair.right, Locale.getDefault()));
         }
         pair.left.removeFunction(pair.right);
       }
@@ -145,6 +145,12 @@ public static SqlDrop dropFunction(SqlParserPos pos,
     return new SqlDropFunction(pos, ifExists, name);
   }
 
+  /** Creates an ANALYZE TABLE. */
+  public static SqlAnalyzeTable analyzeTable(SqlParserPos pos,
+      SqlIdentifier name, SqlNodeList columnList) {
+    return new SqlAnalyzeTable(pos, name, columnList);
+  }
+
   /** Creates a column declaration. */
   public static SqlNode column(SqlParserPos pos, SqlIdentifier name,
       SqlDataTypeSpec dataType, SqlNode expression, ColumnStrategy strategy) {
@@ -30,6 +30,7 @@
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Locale;
 
 import static org.apache.calcite.util.Static.RESOURCE;
 
@@ -73,7 +74,7 @@ public void execute(CalcitePrepare.Context context) {
       existed = schema.removeTable(name.getSimple());
       if (!existed && !ifExists) {
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.tableNotFound(name.getSimple()));
+            RESOURCE.tableNotFound(name.getSimple(), Locale.getDefault()));
       }
       break;
     case DROP_VIEW:
@@ -81,14 +82,14 @@ public void execute(CalcitePrepare.Context context) {
       existed = schema.removeFunction(name.getSimple());
       if (!existed && !ifExists) {
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.viewNotFound(name.getSimple()));
+            RESOURCE.viewNotFound(name.getSimple(), Locale.getDefault()));
       }
       break;
     case DROP_TYPE:
       existed = schema.removeType(name.getSimple());
       if (!existed && !ifExists) {
         throw SqlUtil.newContextException(name.getParserPosition(),
-            RESOURCE.typeNotFound(name.getSimple()));
+            RESOURCE.typeNotFound(name.getSimple(), Locale.getDefault()));
       }
       break;
     case OTHER_DDL:
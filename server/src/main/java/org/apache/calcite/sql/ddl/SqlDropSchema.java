@@ -33,6 +33,7 @@
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Locale;
 
 import static org.apache.calcite.util.Static.RESOURCE;
 
@@ -81,7 +82,7 @@ public void execute(CalcitePrepare.Context context) {
     final boolean existed = schema.removeSubSchema(name.getSimple());
     if (!existed && !ifExists) {
       throw SqlUtil.newContextException(name.getParserPosition(),
-          RESOURCE.schemaNotFound(name.getSimple()));
+          RESOURCE.schemaNotFound(name.getSimple(), Locale.getDefault()));
     }
   }
 }
@@ -313,6 +313,30 @@ public class ServerParserTest extends SqlParserTest {
     sql(sql).ok(expected);
   }
 
+  @Test public void testAnalyzeTable() {
+    sql("analyze table x.y")
+        .ok("ANALYZE TABLE `X`.`Y` COMPUTE STATISTICS");
+    sql("analyze table x compute statistics")
+        .ok("ANALYZE TABLE `X` COMPUTE STATISTICS");
+  }
+
+  @Test public void testAnalyzeTableForColumns() {
+    sql("analyze table x compute statistics for columns a, b")
+        .ok("ANALYZE TABLE `X` COMPUTE STATISTICS FOR COLUMNS `A`, `B`");
+    sql("analyze table x compute statistics for columns ^(^a)")
+        .fails("(?s)Encountered \"\\(\" at .*");
+  }
+
+  /** ANALYZE, COMPUTE, STATISTICS and COLUMNS are non-reserved keywords, so
+   * they may be used as identifiers. */
+  @Test public void testAnalyzeTableNonReserved() {
+    sql("analyze table statistics compute statistics for columns columns")
+        .ok("ANALYZE TABLE `STATISTICS` COMPUTE STATISTICS FOR COLUMNS `COLUMNS`");
+    sql("select analyze, compute from t")
+        .ok("SELECT `ANALYZE`, `COMPUTE`\n"
+            + "FROM `T`");
+  }
+
 }
 
 // End ServerParserTest.java
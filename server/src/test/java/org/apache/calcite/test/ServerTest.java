@@ -17,7 +17,14 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.parser.ddl.SqlDdlParserImpl;
+import org.apache.calcite.statistic.StatisticCatalog;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Util;
 
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -29,11 +36,13 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 import static org.apache.calcite.test.Matchers.isLinux;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.fail;
@@ -351,6 +360,90 @@ static Connection connect() throws SQLException {
       }
     }
   }
+
+  /** Tests ANALYZE TABLE, and that the planner uses the statistics that it
+   * collects. */
+  @Test public void testAnalyzeTable() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      boolean b = s.execute("create table t (i int not null, j varchar(10))");
+      assertThat(b, is(false));
+      int x = s.executeUpdate("insert into t values (1, 'a'), (2, 'a'),\n"
+          + "(3, 'b'), (4, null)");
+      assertThat(x, is(4));
+      final Table table = c.unwrap(CalciteConnection.class).getRootSchema()
+          .getTable("T");
+      assertThat(StatisticCatalog.instance().get(table), nullValue());
+
+      final String explain = "explain plan including all attributes for\n"
+          + "select * from t";
+      try (ResultSet r = s.executeQuery(explain)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1), containsString("rowcount = 100.0"));
+      }
+
+      b = s.execute("analyze table t");
+      assertThat(b, is(false));
+      Statistic statistic = StatisticCatalog.instance().get(table);
+      assertThat(statistic.getRowCount(), is(4d));
+      // I is unique, but that is a property of the data, not a key
+      assertThat(statistic.isKey(ImmutableBitSet.of(0)), is(false));
+      assertThat(statistic.isKey(ImmutableBitSet.of(1)), is(false));
+      final ColumnStatistic i = statistic.getColumnStatistic(0);
+      assertThat(i.getDistinctCount(), is(4d));
+      assertThat(i.getNullFraction(), is(0d));
+      final ColumnStatistic j = statistic.getColumnStatistic(1);
+      assertThat(j.getDistinctCount(), is(2d));
+      assertThat(j.getNullFraction(), is(0.25d));
+      assertThat(j.getMostCommonValues().toString(), is("{a=0.5}"));
+      final List<Comparable> bounds = j.getHistogram().getBounds();
+      assertThat(bounds.get(0), is("a"));
+      assertThat(Util.last(bounds), is("b"));
+
+      try (ResultSet r = s.executeQuery(explain)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1), containsString("rowcount = 4.0"));
+      }
+
+      // Modifying the table discards its statistics
+      x = s.executeUpdate("insert into t values (5, 'c')");
+      assertThat(x, is(1));
+      assertThat(StatisticCatalog.instance().get(table), nullValue());
+      try (ResultSet r = s.executeQuery(explain)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1), containsString("rowcount = 100.0"));
+      }
+
+      // Only column J is profiled
+      b = s.execute("analyze table t compute statistics for columns j");
+      assertThat(b, is(false));
+      statistic = StatisticCatalog.instance().get(table);
+      assertThat(statistic.getRowCount(), is(5d));
+      assertThat(statistic.isKey(ImmutableBitSet.of(0)), is(false));
+      assertThat(statistic.getColumnStatistic(0), nullValue());
+      assertThat(statistic.getColumnStatistic(1).getDistinctCount(), is(3d));
+    }
+  }
+
+  @Test public void testAnalyzeTableFails() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      boolean b = s.execute("create table t (i int not null)");
+      assertThat(b, is(false));
+      try {
+        b = s.execute("analyze table u");
+        fail("expected error, got " + b);
+      } catch (SQLException e) {
+        assertThat(e.getMessage(), containsString("Table 'U' not found"));
+      }
+      try {
+        b = s.execute("analyze table t compute statistics for columns k");
+        fail("expected error, got " + b);
+      } catch (SQLException e) {
+        assertThat(e.getMessage(), containsString("Column 'K' not found"));
+      }
+    }
+  }
 }
 
 // End ServerTest.java